@@ -0,0 +1,82 @@
+package com.yyxnb.android.secure.benchmark;
+
+import com.yyxnb.android.secure.encrypt.aes.AesCbc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AesCbc各入口的吞吐量
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AesCbcBenchmark {
+
+	@Param({"64", "1024", "16384", "262144"})
+	public int size;
+
+	private byte[] key;
+
+	private byte[] content;
+
+	private byte[] encrypted;
+
+	private byte[] output;
+
+	private String text;
+
+	private String encryptedText;
+
+	@Setup
+	public void setup() {
+		key = BenchmarkData.bytes(16, 1);
+		content = BenchmarkData.bytes(size, 2);
+		encrypted = AesCbc.encrypt(content, key);
+		output = new byte[AesCbc.getEncryptOutputLen(size)];
+		char[] chars = new char[size];
+		Arrays.fill(chars, 'a');
+		text = new String(chars);
+		encryptedText = AesCbc.encrypt(text, key);
+		if (!Arrays.equals(content, AesCbc.decrypt(encrypted, key)) || !text.equals(AesCbc.decrypt(encryptedText, key))) {
+			throw new IllegalStateException("AesCbc round trip failed");
+		}
+	}
+
+	@Benchmark
+	public byte[] encryptBytes() {
+		return AesCbc.encrypt(content, key);
+	}
+
+	@Benchmark
+	public byte[] decryptBytes() {
+		return AesCbc.decrypt(encrypted, key);
+	}
+
+	@Benchmark
+	public int encryptIntoBuffer() {
+		return AesCbc.encrypt(content, 0, content.length, key, output, 0);
+	}
+
+	@Benchmark
+	public String encryptHexString() {
+		return AesCbc.encrypt(text, key);
+	}
+
+	@Benchmark
+	public String decryptHexString() {
+		return AesCbc.decrypt(encryptedText, key);
+	}
+}
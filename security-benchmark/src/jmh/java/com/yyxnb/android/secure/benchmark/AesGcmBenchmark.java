@@ -0,0 +1,108 @@
+package com.yyxnb.android.secure.benchmark;
+
+import com.yyxnb.android.secure.encrypt.aes.AesGcm;
+import com.yyxnb.android.secure.encrypt.aes.AesGcmKeyContext;
+import com.yyxnb.android.secure.encrypt.aes.NonceSequence;
+import com.yyxnb.android.secure.utils.EncryptUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AesGcm各入口的吞吐量
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AesGcmBenchmark {
+
+	@Param({"64", "1024", "16384", "262144"})
+	public int size;
+
+	private byte[] key;
+
+	private byte[] content;
+
+	private byte[] encrypted;
+
+	private byte[] output;
+
+	private String text;
+
+	private String encryptedText;
+
+	private AesGcmKeyContext keyContext;
+
+	private NonceSequence sequence;
+
+	@Setup
+	public void setup() {
+		key = BenchmarkData.bytes(16, 1);
+		content = BenchmarkData.bytes(size, 2);
+		encrypted = AesGcm.encrypt(content, key);
+		output = new byte[AesGcm.getEncryptOutputLen(size)];
+		char[] chars = new char[size];
+		Arrays.fill(chars, 'a');
+		text = new String(chars);
+		encryptedText = AesGcm.encrypt(text, key);
+		keyContext = AesGcmKeyContext.create(key);
+		// 内存计数只能用于临时密钥，每次setup生成新密钥
+		sequence = NonceSequence.createEphemeral(EncryptUtil.generateSecureRandom(16));
+		if (!Arrays.equals(content, AesGcm.decrypt(encrypted, key))
+				|| !text.equals(AesGcm.decrypt(encryptedText, key))) {
+			throw new IllegalStateException("AesGcm round trip failed");
+		}
+	}
+
+	@Benchmark
+	public byte[] encryptBytes() {
+		return AesGcm.encrypt(content, key);
+	}
+
+	@Benchmark
+	public byte[] decryptBytes() {
+		return AesGcm.decrypt(encrypted, key);
+	}
+
+	@Benchmark
+	public int encryptIntoBuffer() {
+		return AesGcm.encrypt(content, 0, content.length, key, output, 0);
+	}
+
+	@Benchmark
+	public String encryptHexString() {
+		return AesGcm.encrypt(text, key);
+	}
+
+	@Benchmark
+	public String decryptHexString() {
+		return AesGcm.decrypt(encryptedText, key);
+	}
+
+	@Benchmark
+	public byte[] encryptKeyContext() {
+		return keyContext.seal(content);
+	}
+
+	@Benchmark
+	public byte[] encryptNonceSequence() {
+		return AesGcm.encrypt(content, sequence);
+	}
+
+	@Benchmark
+	public byte[] encryptEnvelope() {
+		return AesGcm.encryptEnvelope(content, key, BenchmarkData.KEY_ID);
+	}
+}
@@ -0,0 +1,70 @@
+package com.yyxnb.android.secure.benchmark;
+
+import com.yyxnb.android.secure.encrypt.aes.AesGcmParallel;
+import com.yyxnb.android.secure.encrypt.aes.AesGcmStreams;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AesGcmParallel随线程数的扩展情况，threads为1时即单线程分段加密的基线
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AesGcmParallelBenchmark {
+
+	@Param({"1048576", "16777216"})
+	public int size;
+
+	@Param({"1", "2", "4", "8"})
+	public int threads;
+
+	private byte[] key;
+
+	private byte[] content;
+
+	private byte[] encrypted;
+
+	private ForkJoinPool pool;
+
+	@Setup
+	public void setup() {
+		key = BenchmarkData.bytes(16, 1);
+		content = BenchmarkData.bytes(size, 2);
+		pool = new ForkJoinPool(threads);
+		encrypted = AesGcmParallel.encrypt(content, key, AesGcmStreams.DEFAULT_SEGMENT_SIZE, pool);
+		if (!Arrays.equals(content, AesGcmParallel.decrypt(encrypted, key, pool))) {
+			throw new IllegalStateException("AesGcmParallel round trip failed");
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public byte[] encrypt() {
+		return AesGcmParallel.encrypt(content, key, AesGcmStreams.DEFAULT_SEGMENT_SIZE, pool);
+	}
+
+	@Benchmark
+	public byte[] decrypt() {
+		return AesGcmParallel.decrypt(encrypted, key, pool);
+	}
+}
@@ -0,0 +1,74 @@
+package com.yyxnb.android.secure.benchmark;
+
+import com.yyxnb.android.secure.encrypt.aes.AesGcm;
+import com.yyxnb.android.secure.encrypt.aes.AesSiv;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AES-SIV（两遍：CMAC + CTR）与AES-GCM的对比，索引字段通常很短，重点看64字节
+ *
+ * @author yyx
+ * @date 2023/10/16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AesSivBenchmark {
+
+	@Param({"16", "64", "1024", "16384"})
+	public int size;
+
+	private byte[] sivKey;
+
+	private byte[] gcmKey;
+
+	private byte[] content;
+
+	private byte[] encryptedSiv;
+
+	private byte[] encryptedGcm;
+
+	@Setup
+	public void setup() {
+		sivKey = BenchmarkData.bytes(32, 1);
+		gcmKey = BenchmarkData.bytes(16, 1);
+		content = BenchmarkData.bytes(size, 2);
+		encryptedSiv = AesSiv.encrypt(content, sivKey);
+		encryptedGcm = AesGcm.encrypt(content, gcmKey);
+		if (!Arrays.equals(content, AesSiv.decrypt(encryptedSiv, sivKey))
+				|| !Arrays.equals(content, AesGcm.decrypt(encryptedGcm, gcmKey))) {
+			throw new IllegalStateException("round trip failed");
+		}
+	}
+
+	@Benchmark
+	public byte[] encryptSiv() {
+		return AesSiv.encrypt(content, sivKey);
+	}
+
+	@Benchmark
+	public byte[] decryptSiv() {
+		return AesSiv.decrypt(encryptedSiv, sivKey);
+	}
+
+	@Benchmark
+	public byte[] encryptGcm() {
+		return AesGcm.encrypt(content, gcmKey);
+	}
+
+	@Benchmark
+	public byte[] decryptGcm() {
+		return AesGcm.decrypt(encryptedGcm, gcmKey);
+	}
+}
@@ -0,0 +1,24 @@
+package com.yyxnb.android.secure.benchmark;
+
+import java.util.Random;
+
+/**
+ * 基准测试的固定输入，按种子生成，每次运行相同
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+final class BenchmarkData {
+
+	static final byte[] KEY_ID = {'b', 'e', 'n', 'c', 'h'};
+
+	private BenchmarkData() {
+
+	}
+
+	static byte[] bytes(int len, long seed) {
+		byte[] bytes = new byte[len];
+		new Random(seed).nextBytes(bytes);
+		return bytes;
+	}
+}
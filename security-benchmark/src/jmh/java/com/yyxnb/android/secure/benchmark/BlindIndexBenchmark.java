@@ -0,0 +1,93 @@
+package com.yyxnb.android.secure.benchmark;
+
+import com.yyxnb.android.secure.encrypt.aes.AesGcm;
+import com.yyxnb.android.secure.encrypt.hash.BlindIndex;
+import com.yyxnb.android.secure.encrypt.hash.InMemoryBlindIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在加密记录中查找关键词：盲索引查询（含解密候选确认）与逐条解密扫描的对比
+ *
+ * @author yyx
+ * @date 2023/10/16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlindIndexBenchmark {
+
+	private static final String[] WORDS = {"alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel",
+			"india", "juliet", "kilo", "lima", "mike", "november", "oscar", "papa"};
+
+	@Param({"1000", "10000"})
+	public int records;
+
+	private byte[] key;
+
+	private BlindIndex blindIndex;
+
+	private InMemoryBlindIndex<Integer> index;
+
+	private List<String> encrypted;
+
+	private String keyword;
+
+	@Setup
+	public void setup() {
+		key = BenchmarkData.bytes(16, 1);
+		blindIndex = BlindIndex.create(BenchmarkData.bytes(32, 3), BlindIndex.DEFAULT_TOKEN_LEN);
+		index = new InMemoryBlindIndex<>();
+		encrypted = new ArrayList<>(records);
+		Random random = new Random(4);
+		for (int i = 0; i < records; i++) {
+			StringBuilder text = new StringBuilder();
+			for (int j = 0; j < 8; j++) {
+				text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+			}
+			text.append("user").append(i);
+			encrypted.add(AesGcm.encrypt(text.toString(), key));
+			index.add(i, blindIndex.keywordTokens(text.toString()));
+		}
+		keyword = "user" + (records / 2);
+		if (indexLookup() != 1 || decryptAndScan() != 1) {
+			throw new IllegalStateException("lookup mismatch");
+		}
+	}
+
+	@Benchmark
+	public int indexLookup() {
+		Set<Integer> candidates = index.query(blindIndex.keywordToken(keyword));
+		int found = 0;
+		for (Integer id : candidates) {
+			if (BlindIndex.splitKeywords(AesGcm.decrypt(encrypted.get(id), key)).contains(keyword)) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int decryptAndScan() {
+		int found = 0;
+		for (String item : encrypted) {
+			if (BlindIndex.splitKeywords(AesGcm.decrypt(item, key)).contains(keyword)) {
+				found++;
+			}
+		}
+		return found;
+	}
+}
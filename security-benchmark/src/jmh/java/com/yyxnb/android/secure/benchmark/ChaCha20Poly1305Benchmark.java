@@ -0,0 +1,75 @@
+package com.yyxnb.android.secure.benchmark;
+
+import com.yyxnb.android.secure.encrypt.ChaCha20Poly1305;
+import com.yyxnb.android.secure.encrypt.aes.AesGcm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ChaCha20-Poly1305与AES-256-GCM的对比，两者使用同一个32字节密钥
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ChaCha20Poly1305Benchmark {
+
+	@Param({"64", "1024", "16384", "262144"})
+	public int size;
+
+	private byte[] key;
+
+	private byte[] content;
+
+	private byte[] encryptedChaCha;
+
+	private byte[] encryptedGcm;
+
+	@Setup
+	public void setup() {
+		// 系统实现与BouncyCastle实现都要符合RFC 8439的测试向量
+		if (!ChaCha20Poly1305.selfTest()) {
+			throw new IllegalStateException("RFC 8439 known answer test failed");
+		}
+		key = BenchmarkData.bytes(32, 1);
+		content = BenchmarkData.bytes(size, 2);
+		encryptedChaCha = ChaCha20Poly1305.encrypt(content, key);
+		encryptedGcm = AesGcm.encrypt(content, key);
+		if (!Arrays.equals(content, ChaCha20Poly1305.decrypt(encryptedChaCha, key))
+				|| !Arrays.equals(content, AesGcm.decrypt(encryptedGcm, key))) {
+			throw new IllegalStateException("round trip failed");
+		}
+	}
+
+	@Benchmark
+	public byte[] encryptChaCha20Poly1305() {
+		return ChaCha20Poly1305.encrypt(content, key);
+	}
+
+	@Benchmark
+	public byte[] decryptChaCha20Poly1305() {
+		return ChaCha20Poly1305.decrypt(encryptedChaCha, key);
+	}
+
+	@Benchmark
+	public byte[] encryptAes256Gcm() {
+		return AesGcm.encrypt(content, key);
+	}
+
+	@Benchmark
+	public byte[] decryptAes256Gcm() {
+		return AesGcm.decrypt(encryptedGcm, key);
+	}
+}
@@ -0,0 +1,61 @@
+package com.yyxnb.android.secure.benchmark;
+
+import com.yyxnb.android.secure.encrypt.aes.CipherUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+
+/**
+ * CipherUtil创建cipher并加密的开销，包括每次新建cipher的入口和使用线程池cipher的入口
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CipherUtilBenchmark {
+
+	@Param({"64", "1024", "16384"})
+	public int size;
+
+	private byte[] key;
+
+	private byte[] content;
+
+	private byte[] cbcIv;
+
+	@Setup
+	public void setup() {
+		key = BenchmarkData.bytes(16, 1);
+		content = BenchmarkData.bytes(size, 2);
+		cbcIv = BenchmarkData.bytes(16, 4);
+	}
+
+	@Benchmark
+	public byte[] gcmCipherEncrypt() {
+		Cipher cipher = CipherUtil.getAesGcmEncryptCipher(key);
+		return CipherUtil.getContent(cipher, content);
+	}
+
+	@Benchmark
+	public byte[] cbcCipherEncrypt() {
+		Cipher cipher = CipherUtil.getAesCbcEncryptCipher(key, cbcIv);
+		return CipherUtil.getContent(cipher, content);
+	}
+
+	@Benchmark
+	public int gcmEncryptContentLen() {
+		return CipherUtil.getAesGcmEncryptContentLen(content, key);
+	}
+}
@@ -0,0 +1,77 @@
+package com.yyxnb.android.secure.benchmark;
+
+import com.yyxnb.android.secure.encrypt.aes.AesGcm;
+import com.yyxnb.android.secure.encrypt.hash.SHA;
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
+import com.yyxnb.android.secure.metrics.SimpleCryptoMetrics;
+import com.yyxnb.android.secure.utils.SecureConfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 统计的开销：none为默认的关闭状态，simple为内置实现。小数据量时最能体现每次调用的固定开销
+ *
+ * @author yyx
+ * @date 2023/10/16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CryptoMetricsBenchmark {
+
+	@Param({"none", "simple"})
+	public String metrics;
+
+	@Param({"64", "4096"})
+	public int size;
+
+	private byte[] key;
+
+	private byte[] content;
+
+	private byte[] encrypted;
+
+	private byte[] output;
+
+	@Setup
+	public void setup() {
+		SecureConfig.getInstance().setCryptoMetrics("simple".equals(metrics)
+				? new SimpleCryptoMetrics() : CryptoMetrics.NONE);
+		key = BenchmarkData.bytes(16, 1);
+		content = BenchmarkData.bytes(size, 2);
+		encrypted = AesGcm.encrypt(content, key);
+		output = new byte[size];
+	}
+
+	@TearDown
+	public void tearDown() {
+		SecureConfig.getInstance().setCryptoMetrics(CryptoMetrics.NONE);
+	}
+
+	@Benchmark
+	public int gcmDecrypt() {
+		return AesGcm.decrypt(encrypted, 0, encrypted.length, key, output, 0);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public int gcmDecryptThreads4() {
+		return AesGcm.decrypt(encrypted, 0, encrypted.length, key, new byte[size], 0);
+	}
+
+	@Benchmark
+	public byte[] sha256() {
+		return SHA.shaEncryptByte(content, "SHA-256");
+	}
+}
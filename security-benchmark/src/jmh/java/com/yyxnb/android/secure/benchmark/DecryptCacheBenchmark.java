@@ -0,0 +1,70 @@
+package com.yyxnb.android.secure.benchmark;
+
+import com.yyxnb.android.secure.encrypt.DecryptCache;
+import com.yyxnb.android.secure.encrypt.aes.AesGcm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存命中时的解密耗时与直接解密的对比，命中时的主要开销是对密文计算摘要
+ *
+ * @author yyx
+ * @date 2023/10/17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DecryptCacheBenchmark {
+
+	@Param({"32", "1024"})
+	public int size;
+
+	private byte[] key;
+
+	private String encryptedString;
+
+	private byte[] encrypted;
+
+	private DecryptCache cache;
+
+	@Setup
+	public void setup() {
+		key = BenchmarkData.bytes(16, 1);
+		StringBuilder builder = new StringBuilder(size);
+		for (int i = 0; i < size; i++) {
+			builder.append((char) ('a' + i % 26));
+		}
+		encryptedString = AesGcm.encrypt(builder.toString(), key);
+		encrypted = AesGcm.encrypt(BenchmarkData.bytes(size, 2), key);
+		cache = new DecryptCache(64, 1, TimeUnit.HOURS);
+	}
+
+	@Benchmark
+	public String cachedString() {
+		return cache.decrypt(encryptedString, key);
+	}
+
+	@Benchmark
+	public String directString() {
+		return AesGcm.decrypt(encryptedString, key);
+	}
+
+	@Benchmark
+	public byte[] cachedBytes() {
+		return cache.decrypt(encrypted, key);
+	}
+
+	@Benchmark
+	public byte[] directBytes() {
+		return AesGcm.decrypt(encrypted, key);
+	}
+}
@@ -0,0 +1,99 @@
+package com.yyxnb.android.secure.benchmark;
+
+import com.yyxnb.android.secure.encrypt.aes.AesGcm;
+import com.yyxnb.android.secure.encrypt.store.EncryptedKeyValueStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 加密键值存储的单键读写，与手动AesGcm加解密字符串（原先配合SharedPreferences的用法，不含XML读写）对比。
+ * keys大于缓存大小时读操作基本都要解密
+ *
+ * @author yyx
+ * @date 2023/10/17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EncryptedKeyValueStoreBenchmark {
+
+	@Param({"16", "1024"})
+	public int keys;
+
+	private byte[] key;
+
+	private File file;
+
+	private EncryptedKeyValueStore store;
+
+	private String[] names;
+
+	private String value;
+
+	private String encryptedValue;
+
+	private int next;
+
+	@Setup
+	public void setup() throws IOException {
+		key = BenchmarkData.bytes(32, 1);
+		file = File.createTempFile("kv", ".log");
+		if (!file.delete()) {
+			throw new IOException("delete temp file failed");
+		}
+		store = EncryptedKeyValueStore.open(file, key);
+		names = new String[keys];
+		value = "token-0123456789abcdef0123456789abcdef";
+		for (int i = 0; i < keys; i++) {
+			names[i] = "key" + i;
+			store.putString(names[i], value);
+		}
+		store.flush();
+		encryptedValue = AesGcm.encrypt(value, key);
+	}
+
+	@TearDown
+	public void tearDown() {
+		store.close();
+		if (!file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+
+	private String nextName() {
+		next = (next + 1) % keys;
+		return names[next];
+	}
+
+	@Benchmark
+	public String storeGet() {
+		return store.getString(nextName(), null);
+	}
+
+	@Benchmark
+	public boolean storePut() {
+		return store.putString(nextName(), value);
+	}
+
+	@Benchmark
+	public String manualDecrypt() {
+		return AesGcm.decrypt(encryptedValue, key);
+	}
+
+	@Benchmark
+	public String manualEncrypt() {
+		return AesGcm.encrypt(value, key);
+	}
+}
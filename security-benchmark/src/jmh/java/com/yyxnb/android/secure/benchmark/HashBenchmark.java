@@ -0,0 +1,92 @@
+package com.yyxnb.android.secure.benchmark;
+
+import com.yyxnb.android.secure.encrypt.hash.FileSHA256;
+import com.yyxnb.android.secure.encrypt.hash.HMACSHA256;
+import com.yyxnb.android.secure.encrypt.hash.SHA;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SHA、HMACSHA256、FileSHA256的吞吐量
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HashBenchmark {
+
+	@Param({"64", "1024", "16384", "1048576"})
+	public int size;
+
+	private byte[] content;
+
+	private String text;
+
+	private byte[] key;
+
+	private File file;
+
+	@Setup
+	public void setup() throws IOException {
+		content = BenchmarkData.bytes(size, 1);
+		char[] chars = new char[size];
+		Arrays.fill(chars, 'a');
+		text = new String(chars);
+		key = BenchmarkData.bytes(32, 2);
+		file = File.createTempFile("hash-benchmark", ".bin");
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (!file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+
+	@Benchmark
+	public byte[] sha256Bytes() {
+		return SHA.shaEncryptByte(content, "SHA-256");
+	}
+
+	@Benchmark
+	public String sha256String() {
+		return SHA.sha256Encrypt(text);
+	}
+
+	@Benchmark
+	public byte[] hmacSha256Bytes() {
+		return HMACSHA256.hmacEncrypt(content, key);
+	}
+
+	@Benchmark
+	public String hmacSha256String() {
+		return HMACSHA256.hmacSHA256Encrypt(text, key);
+	}
+
+	@Benchmark
+	public String fileSha256() {
+		return FileSHA256.fileSHA256Encrypt(file);
+	}
+}
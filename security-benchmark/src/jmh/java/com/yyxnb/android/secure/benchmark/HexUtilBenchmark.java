@@ -0,0 +1,84 @@
+package com.yyxnb.android.secure.benchmark;
+
+import com.yyxnb.android.secure.utils.HexUtil;
+import com.yyxnb.android.secure.utils.TextCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HexUtil与改造前实现、Base64编码的对比
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HexUtilBenchmark {
+
+	@Param({"16", "256", "4096", "65536"})
+	public int size;
+
+	private byte[] bytes;
+
+	private String hex;
+
+	private String base64;
+
+	private char[] chars;
+
+	@Setup
+	public void setup() {
+		bytes = BenchmarkData.bytes(size, 1);
+		hex = HexUtil.byteArray2HexStr(bytes);
+		base64 = TextCodec.BASE64.encode(bytes);
+		chars = new char[size * 2];
+		if (!hex.equals(LegacyHexUtil.byteArray2HexStr(bytes))) {
+			throw new IllegalStateException("hex mismatch");
+		}
+	}
+
+	@Benchmark
+	public String encodeHex() {
+		return HexUtil.byteArray2HexStr(bytes);
+	}
+
+	@Benchmark
+	public String encodeHexLegacy() {
+		return LegacyHexUtil.byteArray2HexStr(bytes);
+	}
+
+	@Benchmark
+	public int encodeHexIntoChars() {
+		return HexUtil.byteArray2HexChars(bytes, 0, bytes.length, chars, 0);
+	}
+
+	@Benchmark
+	public byte[] decodeHex() {
+		return HexUtil.hexStr2ByteArray(hex);
+	}
+
+	@Benchmark
+	public byte[] decodeHexLegacy() {
+		return LegacyHexUtil.hexStr2ByteArray(hex);
+	}
+
+	@Benchmark
+	public String encodeBase64() {
+		return TextCodec.BASE64.encode(bytes);
+	}
+
+	@Benchmark
+	public byte[] decodeBase64() {
+		return TextCodec.BASE64.decode(base64);
+	}
+}
@@ -0,0 +1,52 @@
+package com.yyxnb.android.secure.benchmark;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Locale;
+
+/**
+ * 改为查表实现之前的HexUtil，只用于对比
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+final class LegacyHexUtil {
+
+	private LegacyHexUtil() {
+
+	}
+
+	static String byteArray2HexStr(byte[] bytes) {
+		if (null == bytes || bytes.length == 0) {
+			return "";
+		}
+		StringBuilder sb = new StringBuilder();
+		for (byte aByte : bytes) {
+			String hex = Integer.toHexString(0xFF & aByte);
+			if (hex.length() == 1) {
+				sb.append('0');
+			}
+			sb.append(hex);
+		}
+		return sb.toString();
+	}
+
+	static byte[] hexStr2ByteArray(String str) {
+		if (str == null || str.isEmpty()) {
+			return new byte[0];
+		}
+		str = str.toUpperCase(Locale.ENGLISH);
+		byte[] bytes = new byte[str.length() / 2];
+		try {
+			byte[] source = str.getBytes("UTF-8");
+			for (int i = 0; i < bytes.length; ++i) {
+				byte bh = Byte.decode("0x" + new String(new byte[]{source[i * 2]}, "UTF-8")).byteValue();
+				bh = (byte) (bh << 4);
+				byte bl = Byte.decode("0x" + new String(new byte[]{source[i * 2 + 1]}, "UTF-8")).byteValue();
+				bytes[i] = (byte) (bh ^ bl);
+			}
+		} catch (UnsupportedEncodingException | NumberFormatException e) {
+			return new byte[0];
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,69 @@
+package com.yyxnb.android.secure.benchmark;
+
+import com.yyxnb.android.secure.utils.LogUtil;
+import com.yyxnb.android.secure.utils.SecureConfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LogUtil的格式化开销，android.util.Log替身不输出，desensitization为true时走脱敏分支
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LogUtilBenchmark {
+
+	private static final String TAG = "LogUtilBenchmark";
+
+	@Param({"false", "true"})
+	public boolean desensitization;
+
+	@Param({"32", "512"})
+	public int length;
+
+	private String message;
+
+	private Exception exception;
+
+	@Setup
+	public void setup() {
+		SecureConfig.getInstance().setDebug(true).setLogDesensitization(desensitization);
+		StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			sb.append((char) ('a' + i % 26));
+		}
+		message = sb.toString();
+		exception = new IllegalStateException(message);
+	}
+
+	@Benchmark
+	public void error(Blackhole blackhole) {
+		LogUtil.e(TAG, message);
+		blackhole.consume(message);
+	}
+
+	@Benchmark
+	public void errorWithThrowable(Blackhole blackhole) {
+		LogUtil.e(TAG, message, exception);
+		blackhole.consume(exception);
+	}
+
+	@Benchmark
+	public void debug(Blackhole blackhole) {
+		LogUtil.d(TAG, message);
+		blackhole.consume(message);
+	}
+}
@@ -0,0 +1,57 @@
+package com.yyxnb.android.secure.benchmark;
+
+import com.yyxnb.android.secure.encrypt.hash.PBKDF2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PBKDF2派生的耗时随迭代次数的变化
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class Pbkdf2Benchmark {
+
+	@Param({"1000", "10000"})
+	public int iterations;
+
+	private char[] password;
+
+	private byte[] salt;
+
+	private String encryptedPassword;
+
+	@Setup
+	public void setup() {
+		password = "benchmark-password".toCharArray();
+		salt = BenchmarkData.bytes(16, 1);
+		encryptedPassword = PBKDF2.pbkdf2EncryptNew(new String(password), iterations);
+	}
+
+	@Benchmark
+	public byte[] pbkdf2Sha1() {
+		return PBKDF2.pbkdf2(password, salt, iterations, 256);
+	}
+
+	@Benchmark
+	public byte[] pbkdf2Sha256() {
+		return PBKDF2.pbkdf2SHA256(password, salt, iterations, 256);
+	}
+
+	@Benchmark
+	public boolean validatePasswordNew() {
+		return PBKDF2.validatePasswordNew(new String(password), encryptedPassword, iterations);
+	}
+}
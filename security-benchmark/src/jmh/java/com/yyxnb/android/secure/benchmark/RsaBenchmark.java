@@ -0,0 +1,85 @@
+package com.yyxnb.android.secure.benchmark;
+
+import com.yyxnb.android.secure.encrypt.rsa.RSAEncrypt;
+import com.yyxnb.android.secure.encrypt.rsa.RSASign;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Security;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RSAEncrypt、RSASign的耗时，数据长度固定为32字节
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RsaBenchmark {
+
+	@Param({"2048", "3072"})
+	public int keySize;
+
+	private PublicKey publicKey;
+
+	private PrivateKey privateKey;
+
+	private byte[] content;
+
+	private byte[] encrypted;
+
+	private byte[] signature;
+
+	@Setup
+	public void setup() throws GeneralSecurityException {
+		// JDK没有SHA256WithRSA/PSS，Android上由Conscrypt提供，这里用BC代替
+		if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+			Security.addProvider(new BouncyCastleProvider());
+		}
+		Map<String, Key> keyPair = RSAEncrypt.generateRSAKeyPair(keySize);
+		publicKey = (PublicKey) keyPair.get("publicKey");
+		privateKey = (PrivateKey) keyPair.get("privateKey");
+		content = BenchmarkData.bytes(32, 1);
+		encrypted = RSAEncrypt.encrypt(content, publicKey);
+		signature = RSASign.sign(content, privateKey, true);
+		if (encrypted.length == 0 || signature.length == 0 || !RSASign.verifySign(content, signature, publicKey, true)) {
+			throw new IllegalStateException("RSA setup failed");
+		}
+	}
+
+	@Benchmark
+	public byte[] encrypt() {
+		return RSAEncrypt.encrypt(content, publicKey);
+	}
+
+	@Benchmark
+	public byte[] decrypt() {
+		return RSAEncrypt.decrypt(encrypted, privateKey);
+	}
+
+	@Benchmark
+	public byte[] sign() {
+		return RSASign.sign(content, privateKey, true);
+	}
+
+	@Benchmark
+	public boolean verify() {
+		return RSASign.verifySign(content, signature, publicKey, true);
+	}
+}
@@ -0,0 +1,68 @@
+package com.yyxnb.android.secure.benchmark;
+
+import com.yyxnb.android.secure.utils.EncryptUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IV、密钥长度随机数的生成开销，对比是否开启RandomPool、是否使用BC生成器
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SecureRandomBenchmark {
+
+	@Param({"12", "32", "256"})
+	public int size;
+
+	@Param({"false", "true"})
+	public boolean pool;
+
+	@Param({"false", "true"})
+	public boolean bouncycastle;
+
+	private byte[] output;
+
+	@Setup
+	public void setup() {
+		EncryptUtil.setBouncycastleFlag(bouncycastle);
+		EncryptUtil.setRandomPoolEnabled(pool);
+		output = new byte[size];
+	}
+
+	@TearDown
+	public void tearDown() {
+		EncryptUtil.setRandomPoolEnabled(false);
+		EncryptUtil.setBouncycastleFlag(false);
+	}
+
+	@Benchmark
+	public byte[] generate() {
+		return EncryptUtil.generateSecureRandom(size);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public byte[] generateContended() {
+		return EncryptUtil.generateSecureRandom(size);
+	}
+
+	@Benchmark
+	public boolean generateIntoBuffer() {
+		return EncryptUtil.generateSecureRandom(output, 0, size);
+	}
+}
@@ -0,0 +1,55 @@
+package com.yyxnb.android.secure.benchmark;
+
+import com.yyxnb.android.secure.utils.WorkKeyCryptUtil;
+import com.yyxnb.android.secure.utils.WorkKeyHolder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每次使用工作密钥时重新解密与通过WorkKeyHolder复用的对比
+ *
+ * @author yyx
+ * @date 2023/10/17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WorkKeyHolderBenchmark {
+
+	private byte[] rootKey;
+
+	private String enWorkKey;
+
+	private WorkKeyHolder holder;
+
+	@Setup
+	public void setup() {
+		rootKey = BenchmarkData.bytes(16, 1);
+		enWorkKey = WorkKeyCryptUtil.encryptWorkKeyGcm("00112233445566778899aabbccddeeff", rootKey);
+		holder = new WorkKeyHolder(rootKey, 1, TimeUnit.HOURS);
+	}
+
+	@TearDown
+	public void tearDown() {
+		holder.destroy();
+	}
+
+	@Benchmark
+	public String decryptEachTime() {
+		return WorkKeyCryptUtil.decryptWorkKeyGcm(enWorkKey, rootKey);
+	}
+
+	@Benchmark
+	public String holder() {
+		return holder.decryptWorkKeyGcm(enWorkKey);
+	}
+}
@@ -0,0 +1,16 @@
+package android.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * JVM基准测试用的替身
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+@Retention(RetentionPolicy.CLASS)
+public @interface SuppressLint {
+
+	String[] value();
+}
@@ -0,0 +1,12 @@
+package android.app;
+
+import android.content.Context;
+
+/**
+ * JVM基准测试用的替身
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+public class Application extends Context {
+}
@@ -0,0 +1,20 @@
+package android.content;
+
+/**
+ * JVM基准测试用的替身，没有持久化存储
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+public abstract class Context {
+
+	public static final int MODE_PRIVATE = 0;
+
+	public Context getApplicationContext() {
+		return this;
+	}
+
+	public SharedPreferences getSharedPreferences(String name, int mode) {
+		return null;
+	}
+}
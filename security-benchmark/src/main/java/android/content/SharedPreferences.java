@@ -0,0 +1,35 @@
+package android.content;
+
+/**
+ * JVM基准测试用的替身
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+public interface SharedPreferences {
+
+	String getString(String key, String defValue);
+
+	int getInt(String key, int defValue);
+
+	long getLong(String key, long defValue);
+
+	Editor edit();
+
+	interface Editor {
+
+		Editor putString(String key, String value);
+
+		Editor putInt(String key, int value);
+
+		Editor putLong(String key, long value);
+
+		Editor remove(String key);
+
+		Editor clear();
+
+		boolean commit();
+
+		void apply();
+	}
+}
@@ -0,0 +1,15 @@
+package android.database;
+
+import java.io.Closeable;
+
+/**
+ * JVM基准测试用的替身
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+public interface Cursor extends Closeable {
+
+	@Override
+	void close();
+}
@@ -0,0 +1,34 @@
+package android.os;
+
+/**
+ * JVM基准测试用的替身，按最新系统版本走各分支
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+public class Build {
+
+	public static final String FINGERPRINT = "jvm/benchmark";
+
+	public static class VERSION {
+
+		public static final int SDK_INT = VERSION_CODES.TIRAMISU;
+	}
+
+	public static class VERSION_CODES {
+
+		public static final int KITKAT = 19;
+
+		public static final int LOLLIPOP = 21;
+
+		public static final int M = 23;
+
+		public static final int N = 24;
+
+		public static final int O = 26;
+
+		public static final int P = 28;
+
+		public static final int TIRAMISU = 33;
+	}
+}
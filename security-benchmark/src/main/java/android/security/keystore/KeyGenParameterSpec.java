@@ -0,0 +1,42 @@
+package android.security.keystore;
+
+import java.security.spec.AlgorithmParameterSpec;
+
+/**
+ * JVM基准测试用的替身，JVM上没有AndroidKeyStore，keystore相关类只需要能编译
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+public final class KeyGenParameterSpec implements AlgorithmParameterSpec {
+
+	public static final class Builder {
+
+		public Builder(String keystoreAlias, int purposes) {
+		}
+
+		public Builder setKeySize(int keySize) {
+			return this;
+		}
+
+		public Builder setBlockModes(String... blockModes) {
+			return this;
+		}
+
+		public Builder setEncryptionPaddings(String... paddings) {
+			return this;
+		}
+
+		public Builder setSignaturePaddings(String... paddings) {
+			return this;
+		}
+
+		public Builder setDigests(String... digests) {
+			return this;
+		}
+
+		public KeyGenParameterSpec build() {
+			return new KeyGenParameterSpec();
+		}
+	}
+}
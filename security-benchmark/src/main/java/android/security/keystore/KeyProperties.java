@@ -0,0 +1,38 @@
+package android.security.keystore;
+
+/**
+ * JVM基准测试用的替身，JVM上没有AndroidKeyStore，keystore相关类只需要能编译
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+public abstract class KeyProperties {
+
+	public static final int PURPOSE_ENCRYPT = 1;
+
+	public static final int PURPOSE_DECRYPT = 2;
+
+	public static final int PURPOSE_SIGN = 4;
+
+	public static final int PURPOSE_VERIFY = 8;
+
+	public static final String KEY_ALGORITHM_RSA = "RSA";
+
+	public static final String KEY_ALGORITHM_AES = "AES";
+
+	public static final String BLOCK_MODE_CBC = "CBC";
+
+	public static final String BLOCK_MODE_GCM = "GCM";
+
+	public static final String ENCRYPTION_PADDING_NONE = "NoPadding";
+
+	public static final String ENCRYPTION_PADDING_PKCS7 = "PKCS7Padding";
+
+	public static final String ENCRYPTION_PADDING_RSA_OAEP = "OAEPPadding";
+
+	public static final String SIGNATURE_PADDING_RSA_PSS = "PSS";
+
+	public static final String DIGEST_SHA256 = "SHA-256";
+
+	public static final String DIGEST_SHA512 = "SHA-512";
+}
@@ -0,0 +1,14 @@
+package android.text;
+
+/**
+ * JVM基准测试用的替身
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+public class TextUtils {
+
+	public static boolean isEmpty(CharSequence str) {
+		return str == null || str.length() == 0;
+	}
+}
@@ -0,0 +1,96 @@
+package com.yyxnb.android.secure.metrics;
+
+/**
+ * 加解密操作的统计接口
+ * <p>
+ * 通过{@link com.yyxnb.android.secure.utils.SecureConfig#setCryptoMetrics(CryptoMetrics)}设置，
+ * 默认为{@link #NONE}，此时各算法只读一个静态开关，不计时也不调用本接口。
+ * 回调在加解密线程上同步执行，实现需要线程安全并且足够轻量，不能在回调中再调用本库的加解密方法。
+ * 内置实现见{@link SimpleCryptoMetrics}。
+ *
+ * <pre>
+ *     SimpleCryptoMetrics metrics = new SimpleCryptoMetrics();
+ *     SecureConfig.getInstance().setCryptoMetrics(metrics);
+ *     metrics.startExport(1, TimeUnit.MINUTES, true, snapshot -> LogUtil.i("metrics", snapshot.toString()));
+ * </pre>
+ *
+ * @author yyx
+ * @date 2023/10/16
+ */
+public interface CryptoMetrics {
+
+    /**
+     * 不做任何统计的实现
+     */
+    CryptoMetrics NONE = new CryptoMetrics() {
+        @Override
+        public void onSuccess(Operation operation, String algorithm, long bytes, long elapsedNanos) {
+        }
+
+        @Override
+        public void onFailure(Operation operation, String algorithm, String cause, long elapsedNanos) {
+        }
+    };
+
+    /**
+     * 操作类型
+     */
+    enum Operation {
+        /**
+         * 加密
+         */
+        ENCRYPT,
+        /**
+         * 解密
+         */
+        DECRYPT,
+        /**
+         * 调用方自行初始化cipher后经{@code CipherUtil.getContent}完成的加解密，无法区分方向
+         */
+        CIPHER,
+        /**
+         * 摘要
+         */
+        HASH,
+        /**
+         * 消息认证码
+         */
+        HMAC,
+        /**
+         * 签名
+         */
+        SIGN,
+        /**
+         * 验签，验签不通过也算成功完成
+         */
+        VERIFY,
+        /**
+         * 密钥派生
+         */
+        KEY_DERIVATION,
+        /**
+         * AndroidKeyStore中的密钥生成和读取，KeyStore密钥的加解密、签名仍按对应的操作类型统计
+         */
+        KEYSTORE
+    }
+
+    /**
+     * 操作成功完成
+     *
+     * @param operation    操作类型
+     * @param algorithm    算法，如 AES/GCM/NoPadding
+     * @param bytes        处理的输入字节数，无法确定时为0
+     * @param elapsedNanos 耗时（纳秒）
+     */
+    void onSuccess(Operation operation, String algorithm, long bytes, long elapsedNanos);
+
+    /**
+     * 操作因异常失败，参数校验不通过的调用不会走到这里
+     *
+     * @param operation    操作类型
+     * @param algorithm    算法
+     * @param cause        失败原因，为异常的类名，如 AEADBadTagException
+     * @param elapsedNanos 耗时（纳秒）
+     */
+    void onFailure(Operation operation, String algorithm, String cause, long elapsedNanos);
+}
@@ -0,0 +1,252 @@
+package com.yyxnb.android.secure.metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link SimpleCryptoMetrics}的统计快照，创建后不再变化
+ *
+ * @author yyx
+ * @date 2023/10/16
+ */
+public final class CryptoMetricsSnapshot {
+
+    /**
+     * 耗时分布的桶数。第0个桶为1微秒以内，第i个桶为[2^(i-1), 2^i)微秒，最后一个桶包含更慢的操作
+     */
+    public static final int BUCKET_COUNT = 32;
+
+    private final long startMillis;
+
+    private final long endMillis;
+
+    private final List<Entry> entries;
+
+    CryptoMetricsSnapshot(long startMillis, long endMillis, List<Entry> entries) {
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * 统计开始时间，即创建统计实现或上次重置的时间
+     *
+     * @return 毫秒时间戳
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * 快照时间
+     *
+     * @return 毫秒时间戳
+     */
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    /**
+     * 按操作类型和算法区分的统计项，不包含没有发生过的组合
+     *
+     * @return 统计项
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * 查找统计项
+     *
+     * @param operation 操作类型
+     * @param algorithm 算法
+     * @return 统计项，没有时返回null
+     */
+    public Entry getEntry(CryptoMetrics.Operation operation, String algorithm) {
+        for (Entry entry : entries) {
+            if (entry.operation == operation && entry.algorithm.equals(algorithm)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 第index个桶的耗时上限
+     *
+     * @param index 桶序号
+     * @return 上限（纳秒），最后一个桶返回Long.MAX_VALUE
+     */
+    public static long getBucketUpperNanos(int index) {
+        if (index >= BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        return 1000L << index;
+    }
+
+    /**
+     * 耗时对应的桶序号
+     */
+    static int getBucketIndex(long elapsedNanos) {
+        long micros = elapsedNanos / 1000;
+        int index = 64 - Long.numberOfLeadingZeros(micros);
+        return index < BUCKET_COUNT ? index : BUCKET_COUNT - 1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(64 + entries.size() * 96);
+        builder.append("CryptoMetrics[").append(endMillis - startMillis).append("ms]");
+        for (Entry entry : entries) {
+            builder.append('\n').append(entry);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 一种操作类型和算法的统计
+     */
+    public static final class Entry {
+
+        private final CryptoMetrics.Operation operation;
+
+        private final String algorithm;
+
+        private final long count;
+
+        private final long bytes;
+
+        private final long totalNanos;
+
+        private final long maxNanos;
+
+        private final long[] buckets;
+
+        private final long failureCount;
+
+        private final Map<String, Long> failureCauses;
+
+        Entry(CryptoMetrics.Operation operation, String algorithm, long count, long bytes, long totalNanos,
+              long maxNanos, long[] buckets, long failureCount, Map<String, Long> failureCauses) {
+            this.operation = operation;
+            this.algorithm = algorithm;
+            this.count = count;
+            this.bytes = bytes;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.buckets = buckets;
+            this.failureCount = failureCount;
+            this.failureCauses = Collections.unmodifiableMap(failureCauses);
+        }
+
+        public CryptoMetrics.Operation getOperation() {
+            return operation;
+        }
+
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        /**
+         * 成功次数
+         *
+         * @return 次数
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 成功操作处理的输入字节数
+         *
+         * @return 字节数
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * 成功操作的总耗时
+         *
+         * @return 纳秒
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * 成功操作的平均耗时
+         *
+         * @return 纳秒，没有成功操作时返回0
+         */
+        public long getAverageNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        /**
+         * 成功操作的最大耗时
+         *
+         * @return 纳秒
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * 成功操作的耗时分布，见{@link #BUCKET_COUNT}
+         *
+         * @return 各桶的次数
+         */
+        public long[] getLatencyBuckets() {
+            return buckets.clone();
+        }
+
+        /**
+         * 按耗时分布估算分位数，返回所在桶的上限，最后一个桶返回最大耗时
+         *
+         * @param percentile 分位，0到1之间，如0.99
+         * @return 纳秒，没有成功操作时返回0
+         */
+        public long getLatencyPercentileNanos(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(count * Math.min(1, Math.max(0, percentile)));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+                seen += buckets[i];
+                if (seen >= target) {
+                    return Math.min(getBucketUpperNanos(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        /**
+         * 失败次数
+         *
+         * @return 次数
+         */
+        public long getFailureCount() {
+            return failureCount;
+        }
+
+        /**
+         * 按原因区分的失败次数
+         *
+         * @return 异常类名到次数的映射
+         */
+        public Map<String, Long> getFailureCauses() {
+            return failureCauses;
+        }
+
+        @Override
+        public String toString() {
+            return operation + " " + algorithm + ": count=" + count + ", bytes=" + bytes
+                    + ", avg=" + getAverageNanos() / 1000 + "us, p99<=" + getLatencyPercentileNanos(0.99) / 1000
+                    + "us, max=" + maxNanos / 1000 + "us, failures=" + failureCount
+                    + (failureCauses.isEmpty() ? "" : " " + failureCauses);
+        }
+    }
+}
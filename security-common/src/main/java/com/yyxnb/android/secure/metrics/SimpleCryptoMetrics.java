@@ -0,0 +1,235 @@
+package com.yyxnb.android.secure.metrics;
+
+import com.yyxnb.android.secure.utils.LogUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 内置的低开销统计实现
+ * <p>
+ * 按操作类型和算法分别累计次数、字节数、耗时分布和按原因区分的失败次数。
+ * 每次上报是一次哈希表查找加几次原子加法，不加锁、不创建对象（首次出现新的算法或失败原因时除外）。
+ * 可以随时调用{@link #snapshot(boolean)}取快照，或用{@link #startExport}定期导出。
+ *
+ * @author yyx
+ * @date 2023/10/16
+ */
+public class SimpleCryptoMetrics implements CryptoMetrics {
+
+    private static final String TAG = "SimpleCryptoMetrics";
+
+    private static final String UNKNOWN = "unknown";
+
+    /**
+     * 按{@link Operation#ordinal()}存放，每种操作类型一个 算法 -> 统计 的映射
+     */
+    private final List<ConcurrentHashMap<String, Stats>> stats;
+
+    private volatile long startMillis = System.currentTimeMillis();
+
+    private ScheduledExecutorService exportExecutor;
+
+    /**
+     * 快照导出回调
+     */
+    public interface Exporter {
+
+        /**
+         * 在导出线程上调用
+         *
+         * @param snapshot 快照
+         */
+        void export(CryptoMetricsSnapshot snapshot);
+    }
+
+    public SimpleCryptoMetrics() {
+        Operation[] operations = Operation.values();
+        stats = new ArrayList<>(operations.length);
+        for (int i = 0; i < operations.length; i++) {
+            stats.add(new ConcurrentHashMap<String, Stats>(4));
+        }
+    }
+
+    @Override
+    public void onSuccess(Operation operation, String algorithm, long bytes, long elapsedNanos) {
+        Stats s = getStats(operation, algorithm);
+        s.count.incrementAndGet();
+        s.bytes.addAndGet(bytes);
+        s.totalNanos.addAndGet(elapsedNanos);
+        s.buckets.incrementAndGet(CryptoMetricsSnapshot.getBucketIndex(elapsedNanos));
+        long max;
+        while (elapsedNanos > (max = s.maxNanos.get())) {
+            if (s.maxNanos.compareAndSet(max, elapsedNanos)) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void onFailure(Operation operation, String algorithm, String cause, long elapsedNanos) {
+        Stats s = getStats(operation, algorithm);
+        s.failures.incrementAndGet();
+        if (cause == null) {
+            cause = UNKNOWN;
+        }
+        AtomicLong counter = s.causes.get(cause);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = s.causes.putIfAbsent(cause, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    /**
+     * 取快照
+     *
+     * @param reset 是否在取快照的同时清零，定期导出增量时使用
+     * @return 快照
+     */
+    public CryptoMetricsSnapshot snapshot(boolean reset) {
+        long now = System.currentTimeMillis();
+        long start = startMillis;
+        if (reset) {
+            startMillis = now;
+        }
+        List<CryptoMetricsSnapshot.Entry> entries = new ArrayList<>();
+        Operation[] operations = Operation.values();
+        for (int i = 0; i < operations.length; i++) {
+            for (Map.Entry<String, Stats> item : stats.get(i).entrySet()) {
+                CryptoMetricsSnapshot.Entry entry = item.getValue().toEntry(operations[i], item.getKey(), reset);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        }
+        return new CryptoMetricsSnapshot(start, now, entries);
+    }
+
+    /**
+     * 开始定期导出快照，已在导出时先停止之前的导出
+     *
+     * @param period   导出周期
+     * @param unit     周期单位
+     * @param reset    每次导出后是否清零，为true时每个快照只包含本周期的增量
+     * @param exporter 导出回调
+     */
+    public synchronized void startExport(long period, TimeUnit unit, final boolean reset, final Exporter exporter) {
+        if (period <= 0 || unit == null || exporter == null) {
+            LogUtil.e(TAG, "startExport: period must be positive and exporter must not be null");
+            return;
+        }
+        stopExport();
+        exportExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, TAG);
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        exportExecutor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    exporter.export(snapshot(reset));
+                } catch (RuntimeException e) {
+                    // 抛出异常会取消后续的定期任务
+                    LogUtil.e(TAG, "export exception : " + e.getMessage());
+                }
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * 停止定期导出
+     */
+    public synchronized void stopExport() {
+        if (exportExecutor != null) {
+            exportExecutor.shutdownNow();
+            exportExecutor = null;
+        }
+    }
+
+    private Stats getStats(Operation operation, String algorithm) {
+        if (algorithm == null) {
+            algorithm = UNKNOWN;
+        }
+        ConcurrentHashMap<String, Stats> map = stats.get(operation.ordinal());
+        Stats s = map.get(algorithm);
+        if (s == null) {
+            Stats created = new Stats();
+            s = map.putIfAbsent(algorithm, created);
+            if (s == null) {
+                s = created;
+            }
+        }
+        return s;
+    }
+
+    private static final class Stats {
+
+        final AtomicLong count = new AtomicLong();
+
+        final AtomicLong bytes = new AtomicLong();
+
+        final AtomicLong totalNanos = new AtomicLong();
+
+        final AtomicLong maxNanos = new AtomicLong();
+
+        final AtomicLongArray buckets = new AtomicLongArray(CryptoMetricsSnapshot.BUCKET_COUNT);
+
+        final AtomicLong failures = new AtomicLong();
+
+        final ConcurrentHashMap<String, AtomicLong> causes = new ConcurrentHashMap<>(2);
+
+        /**
+         * 各字段分别读取或清零，并发上报时快照内的字段之间可能相差几次操作
+         *
+         * @return 统计项，没有任何操作时返回null
+         */
+        CryptoMetricsSnapshot.Entry toEntry(Operation operation, String algorithm, boolean reset) {
+            long[] latency = new long[CryptoMetricsSnapshot.BUCKET_COUNT];
+            for (int i = 0; i < latency.length; i++) {
+                latency[i] = read(buckets, i, reset);
+            }
+            Map<String, Long> failureCauses = new HashMap<>(causes.size());
+            for (Map.Entry<String, AtomicLong> cause : causes.entrySet()) {
+                long value = read(cause.getValue(), reset);
+                if (value > 0) {
+                    failureCauses.put(cause.getKey(), value);
+                }
+            }
+            long c = read(count, reset);
+            long f = read(failures, reset);
+            long b = read(bytes, reset);
+            long t = read(totalNanos, reset);
+            long m = read(maxNanos, reset);
+            if (c == 0 && f == 0) {
+                return null;
+            }
+            return new CryptoMetricsSnapshot.Entry(operation, algorithm, c, b, t, m, latency, f, failureCauses);
+        }
+
+        private static long read(AtomicLong value, boolean reset) {
+            return reset ? value.getAndSet(0) : value.get();
+        }
+
+        private static long read(AtomicLongArray array, int index, boolean reset) {
+            return reset ? array.getAndSet(index, 0) : array.get(index);
+        }
+    }
+}
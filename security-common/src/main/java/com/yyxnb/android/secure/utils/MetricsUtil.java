@@ -0,0 +1,114 @@
+package com.yyxnb.android.secure.utils;
+
+import androidx.annotation.RestrictTo;
+
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
+
+/**
+ * 各算法上报统计的入口
+ * <p>
+ * 未设置统计实现时只读一个普通静态字段，不调用System.nanoTime，不创建对象。
+ * 开关没有用volatile，切换后其他线程可能稍晚才看到，统计允许这点误差。
+ *
+ * <pre>
+ *     long start = MetricsUtil.start();
+ *     try {
+ *         byte[] result = cipher.doFinal(content);
+ *         MetricsUtil.onSuccess(CryptoMetrics.Operation.ENCRYPT, ALGORITHM, content.length, start);
+ *         return result;
+ *     } catch (GeneralSecurityException e) {
+ *         MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, ALGORITHM, e, start);
+ *     }
+ * </pre>
+ *
+ * @author yyx
+ * @date 2023/10/16
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class MetricsUtil {
+
+    private static final String TAG = "MetricsUtil";
+
+    private static boolean sEnabled = false;
+
+    private static volatile CryptoMetrics sMetrics = CryptoMetrics.NONE;
+
+    private MetricsUtil() {
+    }
+
+    /**
+     * 设置统计实现
+     *
+     * @param metrics 统计实现，为null或{@link CryptoMetrics#NONE}时关闭统计
+     */
+    static synchronized void setMetrics(CryptoMetrics metrics) {
+        if (metrics == null) {
+            metrics = CryptoMetrics.NONE;
+        }
+        sMetrics = metrics;
+        sEnabled = metrics != CryptoMetrics.NONE;
+    }
+
+    static CryptoMetrics getMetrics() {
+        return sMetrics;
+    }
+
+    /**
+     * 是否开启统计
+     *
+     * @return 开启返回true
+     */
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * 操作开始
+     *
+     * @return 开始时间，未开启统计时返回0
+     */
+    public static long start() {
+        return sEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * 操作成功
+     *
+     * @param operation 操作类型
+     * @param algorithm 算法
+     * @param bytes     处理的输入字节数
+     * @param start     {@link #start()}的返回值
+     */
+    public static void onSuccess(CryptoMetrics.Operation operation, String algorithm, long bytes, long start) {
+        if (!sEnabled || start == 0) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        try {
+            sMetrics.onSuccess(operation, algorithm, bytes, elapsed);
+        } catch (RuntimeException e) {
+            LogUtil.e(TAG, "onSuccess: metrics exception : " + e.getMessage());
+        }
+    }
+
+    /**
+     * 操作失败
+     *
+     * @param operation 操作类型
+     * @param algorithm 算法
+     * @param cause     导致失败的异常
+     * @param start     {@link #start()}的返回值
+     */
+    public static void onFailure(CryptoMetrics.Operation operation, String algorithm, Throwable cause, long start) {
+        if (!sEnabled || start == 0) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        try {
+            sMetrics.onFailure(operation, algorithm, cause == null ? "unknown" : cause.getClass().getSimpleName(),
+                    elapsed);
+        } catch (RuntimeException e) {
+            LogUtil.e(TAG, "onFailure: metrics exception : " + e.getMessage());
+        }
+    }
+}
@@ -5,6 +5,8 @@ import android.content.Context;
 
 import androidx.annotation.NonNull;
 
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
+
 /**
  * 配置项
  *
@@ -68,6 +70,20 @@ public class SecureConfig {
         return getInstance();
     }
 
+    /**
+     * 设置加解密统计实现，默认不统计
+     *
+     * @param metrics 统计实现，为null或{@link CryptoMetrics#NONE}时关闭统计
+     */
+    public SecureConfig setCryptoMetrics(CryptoMetrics metrics) {
+        MetricsUtil.setMetrics(metrics);
+        return getInstance();
+    }
+
+    public CryptoMetrics getCryptoMetrics() {
+        return MetricsUtil.getMetrics();
+    }
+
     public boolean isLogDesensitization() {
         return logDesensitization;
     }
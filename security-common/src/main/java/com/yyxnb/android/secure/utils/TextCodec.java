@@ -0,0 +1,351 @@
+package com.yyxnb.android.secure.utils;
+
+import java.util.Arrays;
+
+/**
+ * 二进制与文本互转的编码方式
+ * <p>
+ * 内置十六进制、Base64、Base64url三种实现，纯Java查表实现，不依赖android.util.Base64，Android和JVM上均可使用。
+ * 解码遇到非法字符时不抛异常，返回空数组或-1。需要其他编码方式时继承本类即可。
+ *
+ * <pre>
+ * </pre>
+ *
+ * @author yyx
+ * @date 2023/10/13
+ */
+public abstract class TextCodec {
+
+    private static final String TAG = TextCodec.class.getSimpleName();
+
+    /**
+     * 十六进制，输出小写，解码大小写均可
+     */
+    public static final TextCodec HEX = new HexCodec();
+
+    /**
+     * 标准Base64（RFC 4648），输出带填充、不换行，解码时忽略空白字符，可以解码android.util.Base64.DEFAULT的输出
+     */
+    public static final TextCodec BASE64 = new Base64Codec("base64",
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/", true, 0);
+
+    /**
+     * 与android.util.Base64.DEFAULT的输出逐字节相同的标准Base64：带填充，每76个字符换行（\n），非空输出以换行结尾。
+     * RSA等原本使用Base64.DEFAULT的接口用它保持输出不变
+     */
+    public static final TextCodec BASE64_DEFAULT = new Base64Codec("base64-default",
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/", true, 76);
+
+    /**
+     * URL安全的Base64（RFC 4648），输出不带填充，解码时填充可有可无
+     */
+    public static final TextCodec BASE64_URL = new Base64Codec("base64url",
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_", false, 0);
+
+    /**
+     * 编码方式名称
+     *
+     * @return 名称
+     */
+    public abstract String getName();
+
+    /**
+     * 编码后的字符数
+     *
+     * @param len 字节数
+     * @return 字符数
+     */
+    public abstract int getEncodedLength(int len);
+
+    /**
+     * 解码后字节数的上限
+     *
+     * @param len 字符数
+     * @return 字节数上限
+     */
+    public abstract int getMaxDecodedLength(int len);
+
+    /**
+     * 编码到调用方提供的字符数组
+     *
+     * @param src       源数据
+     * @param offset    源数据起始位置
+     * @param len       源数据长度
+     * @param dst       输出，剩余长度不少于{@link #getEncodedLength(int)}
+     * @param dstOffset 输出起始位置
+     * @return 写入的字符数
+     */
+    public abstract int encode(byte[] src, int offset, int len, char[] dst, int dstOffset);
+
+    /**
+     * 解码到调用方提供的字节数组
+     *
+     * @param src       文本
+     * @param offset    文本起始位置
+     * @param len       文本长度
+     * @param dst       输出，剩余长度不少于{@link #getMaxDecodedLength(int)}
+     * @param dstOffset 输出起始位置
+     * @return 写入的字节数，文本不合法时返回-1
+     */
+    public abstract int decode(CharSequence src, int offset, int len, byte[] dst, int dstOffset);
+
+    /**
+     * 编码
+     *
+     * @param src 源数据
+     * @return 文本，src为null时返回空字符串
+     */
+    public String encode(byte[] src) {
+        if (src == null) {
+            return "";
+        }
+        return encode(src, 0, src.length);
+    }
+
+    /**
+     * 编码数组的一部分
+     *
+     * @param src    源数据
+     * @param offset 起始位置
+     * @param len    长度
+     * @return 文本，参数不合法时返回空字符串
+     */
+    public String encode(byte[] src, int offset, int len) {
+        if (src == null || offset < 0 || len < 0 || src.length - offset < len) {
+            LogUtil.e(TAG, getName() + " encode: offset or length is out of range");
+            return "";
+        }
+        char[] chars = new char[getEncodedLength(len)];
+        int written = encode(src, offset, len, chars, 0);
+        return new String(chars, 0, written);
+    }
+
+    /**
+     * 解码
+     *
+     * @param src 文本
+     * @return 字节数组，文本为空或不合法时返回空数组
+     */
+    public byte[] decode(CharSequence src) {
+        if (src == null || src.length() == 0) {
+            return new byte[0];
+        }
+        byte[] bytes = new byte[getMaxDecodedLength(src.length())];
+        int written = decode(src, 0, src.length(), bytes, 0);
+        if (written < 0) {
+            LogUtil.e(TAG, getName() + " decode: invalid input");
+            return new byte[0];
+        }
+        return written == bytes.length ? bytes : Arrays.copyOf(bytes, written);
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+
+    private static final class HexCodec extends TextCodec {
+
+        private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+        private static final byte[] VALUES = new byte[128];
+
+        static {
+            Arrays.fill(VALUES, (byte) -1);
+            for (int i = 0; i < 10; i++) {
+                VALUES['0' + i] = (byte) i;
+            }
+            for (int i = 0; i < 6; i++) {
+                VALUES['a' + i] = (byte) (10 + i);
+                VALUES['A' + i] = (byte) (10 + i);
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "hex";
+        }
+
+        @Override
+        public int getEncodedLength(int len) {
+            return len * 2;
+        }
+
+        @Override
+        public int getMaxDecodedLength(int len) {
+            return len / 2;
+        }
+
+        @Override
+        public int encode(byte[] src, int offset, int len, char[] dst, int dstOffset) {
+            int pos = dstOffset;
+            for (int i = offset, end = offset + len; i < end; i++) {
+                int b = src[i] & 0xFF;
+                dst[pos++] = DIGITS[b >>> 4];
+                dst[pos++] = DIGITS[b & 0x0F];
+            }
+            return pos - dstOffset;
+        }
+
+        @Override
+        public int decode(CharSequence src, int offset, int len, byte[] dst, int dstOffset) {
+            if ((len & 1) != 0) {
+                return -1;
+            }
+            int pos = dstOffset;
+            for (int i = offset, end = offset + len; i < end; i += 2) {
+                char high = src.charAt(i);
+                char low = src.charAt(i + 1);
+                if (high >= 128 || low >= 128) {
+                    return -1;
+                }
+                int h = VALUES[high];
+                int l = VALUES[low];
+                if ((h | l) < 0) {
+                    return -1;
+                }
+                dst[pos++] = (byte) ((h << 4) | l);
+            }
+            return pos - dstOffset;
+        }
+    }
+
+    private static final class Base64Codec extends TextCodec {
+
+        private static final byte WHITESPACE = -2;
+
+        private static final byte PAD = -3;
+
+        private final String name;
+
+        private final char[] alphabet;
+
+        private final byte[] values = new byte[128];
+
+        private final boolean padding;
+
+        /**
+         * 每行字符数，4的倍数，为0时不换行
+         */
+        private final int lineLength;
+
+        Base64Codec(String name, String alphabet, boolean padding, int lineLength) {
+            this.name = name;
+            this.alphabet = alphabet.toCharArray();
+            this.padding = padding;
+            this.lineLength = lineLength;
+            Arrays.fill(values, (byte) -1);
+            for (int i = 0; i < this.alphabet.length; i++) {
+                values[this.alphabet[i]] = (byte) i;
+            }
+            values[' '] = WHITESPACE;
+            values['\t'] = WHITESPACE;
+            values['\r'] = WHITESPACE;
+            values['\n'] = WHITESPACE;
+            values['='] = PAD;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int getEncodedLength(int len) {
+            int chars = padding ? (len + 2) / 3 * 4 : len / 3 * 4 + (len % 3 == 0 ? 0 : len % 3 + 1);
+            if (lineLength > 0) {
+                chars += (chars + lineLength - 1) / lineLength;
+            }
+            return chars;
+        }
+
+        @Override
+        public int getMaxDecodedLength(int len) {
+            return len / 4 * 3 + (len % 4 * 3) / 4;
+        }
+
+        @Override
+        public int encode(byte[] src, int offset, int len, char[] dst, int dstOffset) {
+            int pos = dstOffset;
+            int i = offset;
+            int fullEnd = offset + len / 3 * 3;
+            int column = 0;
+            while (i < fullEnd) {
+                int bits = (src[i++] & 0xFF) << 16 | (src[i++] & 0xFF) << 8 | (src[i++] & 0xFF);
+                dst[pos++] = alphabet[bits >>> 18];
+                dst[pos++] = alphabet[(bits >>> 12) & 0x3F];
+                dst[pos++] = alphabet[(bits >>> 6) & 0x3F];
+                dst[pos++] = alphabet[bits & 0x3F];
+                column += 4;
+                if (column == lineLength) {
+                    dst[pos++] = '\n';
+                    column = 0;
+                }
+            }
+            int remain = offset + len - fullEnd;
+            if (remain == 1) {
+                int bits = (src[i] & 0xFF) << 16;
+                dst[pos++] = alphabet[bits >>> 18];
+                dst[pos++] = alphabet[(bits >>> 12) & 0x3F];
+                if (padding) {
+                    dst[pos++] = '=';
+                    dst[pos++] = '=';
+                }
+            } else if (remain == 2) {
+                int bits = (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8;
+                dst[pos++] = alphabet[bits >>> 18];
+                dst[pos++] = alphabet[(bits >>> 12) & 0x3F];
+                dst[pos++] = alphabet[(bits >>> 6) & 0x3F];
+                if (padding) {
+                    dst[pos++] = '=';
+                }
+            }
+            // 最后一行不满时也以换行结尾
+            if (lineLength > 0 && (column > 0 || remain > 0)) {
+                dst[pos++] = '\n';
+            }
+            return pos - dstOffset;
+        }
+
+        @Override
+        public int decode(CharSequence src, int offset, int len, byte[] dst, int dstOffset) {
+            int pos = dstOffset;
+            int bits = 0;
+            int count = 0;
+            int pads = 0;
+            for (int i = offset, end = offset + len; i < end; i++) {
+                char c = src.charAt(i);
+                int value = c < 128 ? values[c] : -1;
+                if (value == WHITESPACE) {
+                    continue;
+                }
+                if (value == PAD) {
+                    pads++;
+                    continue;
+                }
+                // 填充之后不允许再出现数据字符
+                if (value < 0 || pads > 0) {
+                    return -1;
+                }
+                bits = bits << 6 | value;
+                if (++count == 4) {
+                    dst[pos++] = (byte) (bits >>> 16);
+                    dst[pos++] = (byte) (bits >>> 8);
+                    dst[pos++] = (byte) bits;
+                    bits = 0;
+                    count = 0;
+                }
+            }
+            if (count == 1 || (pads > 0 && count + pads != 4)) {
+                return -1;
+            }
+            if (count == 2) {
+                dst[pos++] = (byte) (bits >>> 4);
+            } else if (count == 3) {
+                dst[pos++] = (byte) (bits >>> 10);
+                dst[pos++] = (byte) (bits >>> 2);
+            }
+            return pos - dstOffset;
+        }
+    }
+}
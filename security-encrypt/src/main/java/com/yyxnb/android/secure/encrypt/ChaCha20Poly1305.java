@@ -0,0 +1,548 @@
+package com.yyxnb.android.secure.encrypt;
+
+import android.text.TextUtils;
+
+import com.yyxnb.android.secure.encrypt.aes.CipherUtil;
+import com.yyxnb.android.secure.utils.EncryptUtil;
+import com.yyxnb.android.secure.utils.HexUtil;
+import com.yyxnb.android.secure.utils.LogUtil;
+import com.yyxnb.android.secure.utils.TextCodec;
+
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * ChaCha20-Poly1305（RFC 8439）加解密算法类
+ * <p>
+ * 纯软件实现即可达到较高速度，适合没有AES硬件加速的设备。接口与{@link com.yyxnb.android.secure.encrypt.aes.AesGcm}一致：
+ * 字符串接口输出十六进制的 nonce + 密文 + tag，字节数组接口输出 nonce（12字节）+ 密文 + tag（16字节），
+ * 也支持{@link CipherEnvelope}信封格式。密钥固定为32字节。
+ * <p>
+ * 优先使用系统提供的实现（Android 9及以上、Java 11及以上），没有时使用BouncyCastle的实现，两者输出相同。
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+public final class ChaCha20Poly1305 {
+
+	private static final String TAG = "ChaCha20Poly1305";
+
+	private static final String[] PLATFORM_TRANSFORMATIONS = {"ChaCha20-Poly1305", "ChaCha20/Poly1305/NoPadding"};
+
+	private static final String CHACHA20_ALGORITHM = "ChaCha20";
+
+	private static final String EMPTY = "";
+
+	private static final int KEY_LEN = 32;
+
+	private static final int NONCE_LEN = 12;
+
+	private static final int TAG_LEN = 16;
+
+	/**
+	 * 每个线程缓存BouncyCastle的实例，只在系统不支持时使用
+	 */
+	private static final ThreadLocal<org.bouncycastle.crypto.modes.ChaCha20Poly1305> BC_CIPHER = new ThreadLocal<>();
+
+	private ChaCha20Poly1305() {
+
+	}
+
+	/**
+	 * ChaCha20-Poly1305加密
+	 *
+	 * @param content 待加密内容
+	 * @param key     十六进制字符串形式的密钥，32字节
+	 * @return 十六进制的 nonce + 密文 + tag
+	 */
+	public static String encrypt(String content, String key) {
+		if (TextUtils.isEmpty(key)) {
+			LogUtil.e(TAG, "encrypt 1 key is null");
+			return EMPTY;
+		}
+		return encrypt(content, HexUtil.hexStr2ByteArray(key));
+	}
+
+	/**
+	 * ChaCha20-Poly1305解密
+	 *
+	 * @param content 十六进制的 nonce + 密文 + tag
+	 * @param key     十六进制字符串形式的密钥，32字节
+	 * @return 解密结果
+	 */
+	public static String decrypt(String content, String key) {
+		if (TextUtils.isEmpty(key)) {
+			LogUtil.e(TAG, "decrypt 1 key is null");
+			return EMPTY;
+		}
+		return decrypt(content, HexUtil.hexStr2ByteArray(key));
+	}
+
+	/**
+	 * ChaCha20-Poly1305加密，nonce随机生成
+	 *
+	 * @param content 待加密内容
+	 * @param key     字节数组形式密钥，32字节
+	 * @return 十六进制的 nonce + 密文 + tag
+	 */
+	public static String encrypt(String content, byte[] key) {
+		return encrypt(content, key, TextCodec.HEX);
+	}
+
+	/**
+	 * ChaCha20-Poly1305解密
+	 *
+	 * @param content 十六进制的 nonce + 密文 + tag
+	 * @param key     字节数组形式密钥，32字节
+	 * @return 解密结果
+	 */
+	public static String decrypt(String content, byte[] key) {
+		return decrypt(content, key, TextCodec.HEX);
+	}
+
+	/**
+	 * 加密字符串，使用指定的文本编码输出
+	 *
+	 * @param content 待加密内容
+	 * @param key     字节数组形式密钥，32字节
+	 * @param codec   文本编码方式
+	 * @return 编码后的 nonce + 密文 + tag，失败返回空字符串
+	 */
+	public static String encrypt(String content, byte[] key, TextCodec codec) {
+		if (TextUtils.isEmpty(content)) {
+			LogUtil.e(TAG, "encrypt 2 content is null");
+			return EMPTY;
+		}
+		if (codec == null) {
+			LogUtil.e(TAG, "encrypt 2 codec is null");
+			return EMPTY;
+		}
+		try {
+			byte[] encrypted = encrypt(content.getBytes("UTF-8"), key);
+			return encrypted.length == 0 ? EMPTY : codec.encode(encrypted);
+		} catch (UnsupportedEncodingException e) {
+			LogUtil.e(TAG, "encrypt 2 exception: " + e.getMessage());
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * 解密{@link #encrypt(String, byte[], TextCodec)}的结果
+	 *
+	 * @param content 编码后的密文
+	 * @param key     字节数组形式密钥，32字节
+	 * @param codec   加密时使用的文本编码方式
+	 * @return 明文，失败返回空字符串
+	 */
+	public static String decrypt(String content, byte[] key, TextCodec codec) {
+		if (TextUtils.isEmpty(content)) {
+			LogUtil.e(TAG, "decrypt 2 content is null");
+			return EMPTY;
+		}
+		if (codec == null) {
+			LogUtil.e(TAG, "decrypt 2 codec is null");
+			return EMPTY;
+		}
+		byte[] encrypted = codec.decode(content);
+		if (encrypted.length == 0) {
+			return EMPTY;
+		}
+		byte[] decrypted = decrypt(encrypted, key);
+		if (decrypted.length == 0) {
+			return EMPTY;
+		}
+		try {
+			return new String(decrypted, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			LogUtil.e(TAG, "decrypt 2 exception: " + e.getMessage());
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * ChaCha20-Poly1305加密，使用指定的nonce
+	 *
+	 * @param content 待加密内容
+	 * @param key     字节数组形式密钥，32字节
+	 * @param nonce   12字节nonce，同一密钥下不能重复
+	 * @return 密文 + tag
+	 */
+	public static byte[] encrypt(byte[] content, byte[] key, byte[] nonce) {
+		if (!isParamValid(content, 0, content == null ? 0 : content.length, key, "encrypt 3")) {
+			return new byte[0];
+		}
+		if (nonce == null || nonce.length != NONCE_LEN) {
+			LogUtil.e(TAG, "encrypt 3 nonce error: nonce length is not 12 bytes.");
+			return new byte[0];
+		}
+		byte[] output = new byte[content.length + TAG_LEN];
+		int length = doFinal(true, key, nonce, 0, null, 0, 0, content, 0, content.length, output, 0);
+		return length < 0 ? new byte[0] : output;
+	}
+
+	/**
+	 * ChaCha20-Poly1305解密，使用指定的nonce
+	 *
+	 * @param encryptContent 密文 + tag
+	 * @param key            字节数组形式密钥，32字节
+	 * @param nonce          12字节nonce
+	 * @return 解密结果
+	 */
+	public static byte[] decrypt(byte[] encryptContent, byte[] key, byte[] nonce) {
+		if (!isParamValid(encryptContent, 0, encryptContent == null ? 0 : encryptContent.length, key,
+				"decrypt 3")) {
+			return new byte[0];
+		}
+		if (nonce == null || nonce.length != NONCE_LEN) {
+			LogUtil.e(TAG, "decrypt 3 nonce error: nonce length is not 12 bytes.");
+			return new byte[0];
+		}
+		if (encryptContent.length < TAG_LEN) {
+			LogUtil.e(TAG, "decrypt 3 content is too short");
+			return new byte[0];
+		}
+		byte[] output = new byte[encryptContent.length - TAG_LEN];
+		int length = doFinal(false, key, nonce, 0, null, 0, 0, encryptContent, 0, encryptContent.length, output, 0);
+		return length < 0 ? new byte[0] : output;
+	}
+
+	/**
+	 * ChaCha20-Poly1305加密，nonce随机生成
+	 *
+	 * @param content 待加密内容
+	 * @param key     字节数组形式密钥，32字节
+	 * @return nonce + 密文 + tag
+	 */
+	public static byte[] encrypt(byte[] content, byte[] key) {
+		if (content == null) {
+			LogUtil.e(TAG, "encrypt 4 content is null");
+			return new byte[0];
+		}
+		byte[] output = new byte[getEncryptOutputLen(content.length)];
+		int length = encrypt(content, 0, content.length, key, output, 0);
+		return length < 0 ? new byte[0] : output;
+	}
+
+	/**
+	 * ChaCha20-Poly1305解密，同时支持{@link #encryptEnvelope(byte[], byte[], byte[])}生成的信封格式
+	 *
+	 * @param content nonce + 密文 + tag，或二进制信封
+	 * @param key     字节数组形式密钥，32字节
+	 * @return 解密结果
+	 */
+	public static byte[] decrypt(byte[] content, byte[] key) {
+		if (CipherEnvelope.isEnvelope(content)) {
+			byte[] decrypted = decryptEnvelope(CipherEnvelope.parse(content), key);
+			if (decrypted != null) {
+				return decrypted;
+			}
+			// 随机nonce恰好以魔数开头时按普通格式解密
+		}
+		if (content == null || content.length < NONCE_LEN + TAG_LEN) {
+			LogUtil.e(TAG, "decrypt 4 content is null or too short");
+			return new byte[0];
+		}
+		byte[] output = new byte[content.length - NONCE_LEN - TAG_LEN];
+		int length = decrypt(content, 0, content.length, key, output, 0);
+		return length < 0 ? new byte[0] : output;
+	}
+
+	/**
+	 * ChaCha20-Poly1305加密，nonce随机生成，nonce + 密文 + tag 直接写入调用方提供的数组
+	 *
+	 * @param content      待加密内容
+	 * @param offset       待加密内容起始位置
+	 * @param len          待加密内容长度
+	 * @param key          字节数组形式密钥，32字节
+	 * @param output       输出数组，剩余长度不少于{@link #getEncryptOutputLen(int)}
+	 * @param outputOffset 输出起始位置
+	 * @return 写入的长度，失败返回-1
+	 */
+	public static int encrypt(byte[] content, int offset, int len, byte[] key, byte[] output, int outputOffset) {
+		if (!isParamValid(content, offset, len, key, "encrypt 5")) {
+			return -1;
+		}
+		if (output == null || outputOffset < 0 || output.length - outputOffset < getEncryptOutputLen(len)) {
+			LogUtil.e(TAG, "encrypt 5 output is null or too short");
+			return -1;
+		}
+		if (!EncryptUtil.generateSecureRandom(output, outputOffset, NONCE_LEN)) {
+			LogUtil.e(TAG, "encrypt 5 generate nonce failed");
+			return -1;
+		}
+		int length = doFinal(true, key, output, outputOffset, null, 0, 0, content, offset, len, output,
+				outputOffset + NONCE_LEN);
+		return length < 0 ? -1 : NONCE_LEN + length;
+	}
+
+	/**
+	 * ChaCha20-Poly1305解密 nonce + 密文 + tag 格式的数据，明文直接写入调用方提供的数组
+	 *
+	 * @param content      nonce + 密文 + tag
+	 * @param offset       起始位置
+	 * @param len          长度
+	 * @param key          字节数组形式密钥，32字节
+	 * @param output       输出数组，剩余长度不少于 len - 28
+	 * @param outputOffset 输出起始位置
+	 * @return 明文长度，失败返回-1
+	 */
+	public static int decrypt(byte[] content, int offset, int len, byte[] key, byte[] output, int outputOffset) {
+		if (!isParamValid(content, offset, len, key, "decrypt 5")) {
+			return -1;
+		}
+		if (len < NONCE_LEN + TAG_LEN) {
+			LogUtil.e(TAG, "decrypt 5 content is too short");
+			return -1;
+		}
+		if (output == null || outputOffset < 0 || output.length - outputOffset < len - NONCE_LEN - TAG_LEN) {
+			LogUtil.e(TAG, "decrypt 5 output is null or too short");
+			return -1;
+		}
+		return doFinal(false, key, content, offset, null, 0, 0, content, offset + NONCE_LEN, len - NONCE_LEN,
+				output, outputOffset);
+	}
+
+	/**
+	 * ChaCha20-Poly1305加密，nonce随机生成，输出二进制信封，信封头部作为AAD
+	 *
+	 * @param content 待加密内容
+	 * @param key     字节数组形式密钥，32字节
+	 * @param keyId   密钥ID，写入信封用于解密时选择密钥，可以为null，不超过255字节
+	 * @return 信封格式密文，可以用{@link #decrypt(byte[], byte[])}解密，失败返回空数组
+	 */
+	public static byte[] encryptEnvelope(byte[] content, byte[] key, byte[] keyId) {
+		if (!isParamValid(content, 0, content == null ? 0 : content.length, key, "encrypt envelope")) {
+			return new byte[0];
+		}
+		byte[] nonce = EncryptUtil.generateSecureRandom(NONCE_LEN);
+		if (nonce.length != NONCE_LEN) {
+			LogUtil.e(TAG, "encrypt envelope generate nonce failed");
+			return new byte[0];
+		}
+		int headerLen = CipherEnvelope.getHeaderLength(keyId == null ? 0 : keyId.length, NONCE_LEN);
+		byte[] output = new byte[headerLen + content.length + TAG_LEN];
+		if (CipherEnvelope.writeHeader(output, 0, CipherEnvelope.ALG_CHACHA20_POLY1305, keyId, nonce) < 0) {
+			return new byte[0];
+		}
+		int length = doFinal(true, key, nonce, 0, output, 0, headerLen, content, 0, content.length, output,
+				headerLen);
+		return length < 0 ? new byte[0] : output;
+	}
+
+	/**
+	 * 根据明文长度计算 nonce + 密文 + tag 的长度
+	 *
+	 * @param contentLen 明文长度
+	 * @return 加密输出长度
+	 */
+	public static int getEncryptOutputLen(int contentLen) {
+		return NONCE_LEN + contentLen + TAG_LEN;
+	}
+
+	/**
+	 * 系统是否提供ChaCha20-Poly1305实现，不提供时使用BouncyCastle
+	 *
+	 * @return 系统提供返回true
+	 */
+	public static boolean isPlatformSupported() {
+		return PlatformHolder.TRANSFORMATION != null;
+	}
+
+	/**
+	 * 用RFC 8439 2.8.2节的测试向量自检：系统实现（可用时）和BouncyCastle实现分别加密、解密，
+	 * 结果都要与向量一致，两种实现的输出也因此相同
+	 *
+	 * @return 全部通过返回true
+	 */
+	public static boolean selfTest() {
+		byte[] key = HexUtil.hexStr2ByteArray(KnownAnswer.KEY);
+		byte[] nonce = HexUtil.hexStr2ByteArray(KnownAnswer.NONCE);
+		byte[] aad = HexUtil.hexStr2ByteArray(KnownAnswer.AAD);
+		byte[] plain = HexUtil.hexStr2ByteArray(KnownAnswer.PLAINTEXT);
+		byte[] expected = HexUtil.hexStr2ByteArray(KnownAnswer.CIPHERTEXT + KnownAnswer.AUTH_TAG);
+		byte[] bcOutput = new byte[expected.length];
+		int bcLen = bcDoFinal(true, key, nonce, 0, aad, 0, aad.length, plain, 0, plain.length, bcOutput, 0);
+		if (bcLen != expected.length || !Arrays.equals(bcOutput, expected)) {
+			LogUtil.e(TAG, "selfTest: bouncycastle encrypt does not match RFC 8439");
+			return false;
+		}
+		byte[] bcPlain = new byte[plain.length];
+		if (bcDoFinal(false, key, nonce, 0, aad, 0, aad.length, expected, 0, expected.length, bcPlain, 0)
+				!= plain.length || !Arrays.equals(bcPlain, plain)) {
+			LogUtil.e(TAG, "selfTest: bouncycastle decrypt does not match RFC 8439");
+			return false;
+		}
+		String transformation = PlatformHolder.TRANSFORMATION;
+		if (transformation == null) {
+			LogUtil.i(TAG, "selfTest: platform implementation is not available, only bouncycastle checked");
+			return true;
+		}
+		byte[] platformOutput = new byte[expected.length];
+		int platformLen = platformDoFinal(transformation, true, key, nonce, 0, aad, 0, aad.length, plain, 0,
+				plain.length, platformOutput, 0);
+		if (platformLen != bcLen || !Arrays.equals(platformOutput, bcOutput)) {
+			LogUtil.e(TAG, "selfTest: platform encrypt differs from bouncycastle");
+			return false;
+		}
+		byte[] platformPlain = new byte[plain.length];
+		if (platformDoFinal(transformation, false, key, nonce, 0, aad, 0, aad.length, expected, 0,
+				expected.length, platformPlain, 0) != plain.length || !Arrays.equals(platformPlain, plain)) {
+			LogUtil.e(TAG, "selfTest: platform decrypt does not match RFC 8439");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 解密信封，失败返回null以便调用方回退到普通格式
+	 */
+	private static byte[] decryptEnvelope(CipherEnvelope envelope, byte[] key) {
+		if (envelope == null || envelope.getAlgorithm() != CipherEnvelope.ALG_CHACHA20_POLY1305
+				|| envelope.getNonceLength() != NONCE_LEN || envelope.getPayloadLength() < TAG_LEN) {
+			return null;
+		}
+		if (!isParamValid(envelope.getData(), 0, 0, key, "decrypt envelope")) {
+			return null;
+		}
+		byte[] data = envelope.getData();
+		byte[] output = new byte[envelope.getPayloadLength() - TAG_LEN];
+		int length = doFinal(false, key, data, envelope.getNonceOffset(), data, envelope.getHeaderOffset(),
+				envelope.getHeaderLength(), data, envelope.getPayloadOffset(), envelope.getPayloadLength(), output, 0);
+		return length < 0 ? null : output;
+	}
+
+	private static int doFinal(boolean encrypt, byte[] key, byte[] nonce, int nonceOffset, byte[] aad, int aadOffset,
+							   int aadLen, byte[] input, int inputOffset, int inputLen, byte[] output,
+							   int outputOffset) {
+		String transformation = PlatformHolder.TRANSFORMATION;
+		if (transformation != null) {
+			return platformDoFinal(transformation, encrypt, key, nonce, nonceOffset, aad, aadOffset, aadLen, input,
+					inputOffset, inputLen, output, outputOffset);
+		}
+		return bcDoFinal(encrypt, key, nonce, nonceOffset, aad, aadOffset, aadLen, input, inputOffset, inputLen,
+				output, outputOffset);
+	}
+
+	private static int platformDoFinal(String transformation, boolean encrypt, byte[] key, byte[] nonce,
+									   int nonceOffset, byte[] aad, int aadOffset, int aadLen, byte[] input,
+									   int inputOffset, int inputLen, byte[] output, int outputOffset) {
+		try {
+			Cipher cipher = CipherUtil.initPooledCipher(transformation,
+					encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, new SecretKeySpec(key, CHACHA20_ALGORITHM),
+					new IvParameterSpec(nonce, nonceOffset, NONCE_LEN));
+			if (aadLen > 0) {
+				cipher.updateAAD(aad, aadOffset, aadLen);
+			}
+			return cipher.doFinal(input, inputOffset, inputLen, output, outputOffset);
+		} catch (GeneralSecurityException e) {
+			LogUtil.e(TAG, (encrypt ? "encrypt" : "decrypt") + " data exception: " + e.getMessage());
+		}
+		return -1;
+	}
+
+	private static int bcDoFinal(boolean encrypt, byte[] key, byte[] nonce, int nonceOffset, byte[] aad,
+								 int aadOffset, int aadLen, byte[] input, int inputOffset, int inputLen,
+								 byte[] output, int outputOffset) {
+		String method = encrypt ? "encrypt" : "decrypt";
+		try {
+			org.bouncycastle.crypto.modes.ChaCha20Poly1305 cipher = BC_CIPHER.get();
+			if (cipher == null) {
+				cipher = new org.bouncycastle.crypto.modes.ChaCha20Poly1305();
+				BC_CIPHER.set(cipher);
+			}
+			byte[] associatedText = aadLen > 0 ? Arrays.copyOfRange(aad, aadOffset, aadOffset + aadLen) : null;
+			cipher.init(encrypt, new AEADParameters(new KeyParameter(key, 0, KEY_LEN), TAG_LEN * 8,
+					Arrays.copyOfRange(nonce, nonceOffset, nonceOffset + NONCE_LEN), associatedText));
+			// 输入输出是同一数组时（原地解密）先拷贝输入
+			if (input == output) {
+				input = Arrays.copyOfRange(input, inputOffset, inputOffset + inputLen);
+				inputOffset = 0;
+			}
+			int length = cipher.processBytes(input, inputOffset, inputLen, output, outputOffset);
+			return length + cipher.doFinal(output, outputOffset + length);
+		} catch (InvalidCipherTextException | RuntimeException e) {
+			// 认证失败，或同一实例重复使用相同的密钥和nonce加密
+			LogUtil.e(TAG, method + " data exception: " + e.getMessage());
+			BC_CIPHER.remove();
+		} catch (Throwable e) {
+			// 没有引入bc库时会报类找不到的错误
+			LogUtil.e(TAG, method + " exception : " + e.getMessage() + " , you should implementation bcprov library");
+			BC_CIPHER.remove();
+		}
+		return -1;
+	}
+
+	private static boolean isParamValid(byte[] content, int offset, int len, byte[] key, String method) {
+		if (content == null) {
+			LogUtil.e(TAG, method + " content is null");
+			return false;
+		}
+		if (offset < 0 || len < 0 || content.length - offset < len) {
+			LogUtil.e(TAG, method + " offset or length is out of range");
+			return false;
+		}
+		if (key == null || key.length != KEY_LEN) {
+			LogUtil.e(TAG, method + " key error: key is null or length is not 32 bytes.");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * RFC 8439 2.8.2节 AEAD_CHACHA20_POLY1305 测试向量，十六进制
+	 */
+	private static final class KnownAnswer {
+
+		private static final String KEY = "808182838485868788898a8b8c8d8e8f909192939495969798999a9b9c9d9e9f";
+
+		private static final String NONCE = "070000004041424344454647";
+
+		private static final String AAD = "50515253c0c1c2c3c4c5c6c7";
+
+		/**
+		 * "Ladies and Gentlemen of the class of '99: If I could offer you only one tip for the future,
+		 * sunscreen would be it."
+		 */
+		private static final String PLAINTEXT = "4c616469657320616e642047656e746c656d656e206f662074686520636c6173"
+				+ "73206f66202739393a204966204920636f756c64206f6666657220796f75206f"
+				+ "6e6c79206f6e652074697020666f7220746865206675747572652c2073756e73"
+				+ "637265656e20776f756c642062652069742e";
+
+		private static final String CIPHERTEXT = "d31a8d34648e60db7b86afbc53ef7ec2a4aded51296e08fea9e2b5a736ee62d6"
+				+ "3dbea45e8ca9671282fafb69da92728b1a71de0a9e060b2905d6a5b67ecd3b36"
+				+ "92ddbd7f2d778b8c9803aee328091b58fab324e4fad675945585808b4831d7bc"
+				+ "3ff4def08e4b7a9de576d26586cec64b6116";
+
+		private static final String AUTH_TAG = "1ae10b594f09e26a7e902ecbd0600691";
+	}
+
+	/**
+	 * 首次使用时查找系统实现
+	 */
+	private static final class PlatformHolder {
+
+		private static final String TRANSFORMATION = findTransformation();
+
+		private static String findTransformation() {
+			for (String transformation : PLATFORM_TRANSFORMATIONS) {
+				try {
+					Cipher.getInstance(transformation);
+					return transformation;
+				} catch (GeneralSecurityException e) {
+					LogUtil.d(TAG, transformation + " is not supported by platform");
+				}
+			}
+			LogUtil.i(TAG, "use bouncycastle ChaCha20Poly1305");
+			return null;
+		}
+	}
+}
@@ -0,0 +1,289 @@
+package com.yyxnb.android.secure.encrypt;
+
+import com.yyxnb.android.secure.utils.LogUtil;
+
+import java.util.Arrays;
+
+/**
+ * 二进制密文信封
+ * <p>
+ * 与十六进制字符串格式相比体积减半，解析时只记录各字段在原数组中的位置，不拷贝、不创建子串。
+ * <p>
+ * 格式：魔数（2字节）+ 版本号（1字节）+ 算法ID（1字节）+ 密钥ID长度（1字节）+ 密钥ID
+ * + nonce长度（1字节）+ nonce + 密文（AEAD算法包含tag）。
+ * <p>
+ * AEAD算法把 魔数 到 nonce 的全部字节作为AAD，算法ID、密钥ID被篡改会导致解密失败。
+ *
+ * @author yyx
+ * @date 2023/10/12
+ */
+public final class CipherEnvelope {
+
+	private static final String TAG = "CipherEnvelope";
+
+	private static final byte MAGIC_0 = (byte) 0xA5;
+
+	private static final byte MAGIC_1 = (byte) 0x5E;
+
+	/**
+	 * 当前格式版本
+	 */
+	public static final byte VERSION_1 = 0x01;
+
+	/**
+	 * AES/GCM/NoPadding，密文包含16字节tag
+	 */
+	public static final byte ALG_AES_GCM = 0x01;
+
+	/**
+	 * AES/CBC/PKCS5Padding
+	 */
+	public static final byte ALG_AES_CBC = 0x02;
+
+	/**
+	 * ChaCha20-Poly1305，密文包含16字节tag
+	 */
+	public static final byte ALG_CHACHA20_POLY1305 = 0x03;
+
+	/**
+	 * 密钥ID和nonce的最大长度
+	 */
+	public static final int MAX_FIELD_LEN = 0xFF;
+
+	private static final int FIXED_LEN = 2 + 1 + 1 + 1 + 1;
+
+	private final byte[] data;
+
+	private final int offset;
+
+	private final int length;
+
+	private final byte algorithm;
+
+	private final int keyIdOffset;
+
+	private final int keyIdLength;
+
+	private final int nonceOffset;
+
+	private final int nonceLength;
+
+	private CipherEnvelope(byte[] data, int offset, int length, byte algorithm, int keyIdOffset, int keyIdLength,
+						   int nonceOffset, int nonceLength) {
+		this.data = data;
+		this.offset = offset;
+		this.length = length;
+		this.algorithm = algorithm;
+		this.keyIdOffset = keyIdOffset;
+		this.keyIdLength = keyIdLength;
+		this.nonceOffset = nonceOffset;
+		this.nonceLength = nonceLength;
+	}
+
+	/**
+	 * 解析信封，只记录字段位置，不拷贝数据
+	 *
+	 * @param data 信封数据
+	 * @return 信封，不是合法信封时返回null
+	 */
+	public static CipherEnvelope parse(byte[] data) {
+		if (data == null) {
+			return null;
+		}
+		return parse(data, 0, data.length);
+	}
+
+	/**
+	 * 解析数组的一部分
+	 *
+	 * @param data   信封数据
+	 * @param offset 起始位置
+	 * @param len    长度
+	 * @return 信封，不是合法信封时返回null
+	 */
+	public static CipherEnvelope parse(byte[] data, int offset, int len) {
+		if (data == null || offset < 0 || len < FIXED_LEN || data.length - offset < len) {
+			return null;
+		}
+		if (data[offset] != MAGIC_0 || data[offset + 1] != MAGIC_1 || data[offset + 2] != VERSION_1) {
+			return null;
+		}
+		byte algorithm = data[offset + 3];
+		int end = offset + len;
+		int keyIdOffset = offset + 5;
+		int keyIdLength = data[offset + 4] & 0xFF;
+		int nonceLengthPos = keyIdOffset + keyIdLength;
+		if (nonceLengthPos >= end) {
+			return null;
+		}
+		int nonceOffset = nonceLengthPos + 1;
+		int nonceLength = data[nonceLengthPos] & 0xFF;
+		if (nonceOffset + nonceLength > end) {
+			return null;
+		}
+		return new CipherEnvelope(data, offset, len, algorithm, keyIdOffset, keyIdLength, nonceOffset, nonceLength);
+	}
+
+	/**
+	 * 判断是否为信封格式，只检查魔数和版本号
+	 *
+	 * @param data 数据
+	 * @return 是信封格式返回true
+	 */
+	public static boolean isEnvelope(byte[] data) {
+		return data != null && data.length >= FIXED_LEN && data[0] == MAGIC_0 && data[1] == MAGIC_1
+				&& data[2] == VERSION_1;
+	}
+
+	/**
+	 * 计算头部长度，即密文在信封中的起始位置
+	 *
+	 * @param keyIdLength 密钥ID长度
+	 * @param nonceLength nonce长度
+	 * @return 头部长度
+	 */
+	public static int getHeaderLength(int keyIdLength, int nonceLength) {
+		return FIXED_LEN + keyIdLength + nonceLength;
+	}
+
+	/**
+	 * 写入头部
+	 *
+	 * @param output    输出数组，剩余长度不少于{@link #getHeaderLength(int, int)}
+	 * @param offset    输出起始位置
+	 * @param algorithm 算法ID
+	 * @param keyId     密钥ID，可以为null
+	 * @param nonce     nonce/IV，可以为null
+	 * @return 头部长度，参数不合法时返回-1
+	 */
+	public static int writeHeader(byte[] output, int offset, byte algorithm, byte[] keyId, byte[] nonce) {
+		int keyIdLength = keyId == null ? 0 : keyId.length;
+		int nonceLength = nonce == null ? 0 : nonce.length;
+		if (keyIdLength > MAX_FIELD_LEN || nonceLength > MAX_FIELD_LEN) {
+			LogUtil.e(TAG, "write header: key id or nonce is too long");
+			return -1;
+		}
+		int headerLength = getHeaderLength(keyIdLength, nonceLength);
+		if (output == null || offset < 0 || output.length - offset < headerLength) {
+			LogUtil.e(TAG, "write header: output is null or too short");
+			return -1;
+		}
+		int pos = offset;
+		output[pos++] = MAGIC_0;
+		output[pos++] = MAGIC_1;
+		output[pos++] = VERSION_1;
+		output[pos++] = algorithm;
+		output[pos++] = (byte) keyIdLength;
+		if (keyIdLength > 0) {
+			System.arraycopy(keyId, 0, output, pos, keyIdLength);
+			pos += keyIdLength;
+		}
+		output[pos++] = (byte) nonceLength;
+		if (nonceLength > 0) {
+			System.arraycopy(nonce, 0, output, pos, nonceLength);
+		}
+		return headerLength;
+	}
+
+	/**
+	 * 算法ID
+	 *
+	 * @return 算法ID
+	 */
+	public byte getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * 拷贝出密钥ID
+	 *
+	 * @return 密钥ID，没有时返回空数组
+	 */
+	public byte[] getKeyId() {
+		return Arrays.copyOfRange(data, keyIdOffset, keyIdOffset + keyIdLength);
+	}
+
+	/**
+	 * 比较密钥ID，不拷贝
+	 *
+	 * @param keyId 密钥ID
+	 * @return 相同返回true
+	 */
+	public boolean isKeyId(byte[] keyId) {
+		if (keyId == null) {
+			return keyIdLength == 0;
+		}
+		if (keyId.length != keyIdLength) {
+			return false;
+		}
+		for (int i = 0; i < keyIdLength; i++) {
+			if (data[keyIdOffset + i] != keyId[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 信封所在的原数组，配合各getXxxOffset方法使用，避免拷贝
+	 *
+	 * @return 原数组
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	/**
+	 * 头部（AAD）在原数组中的起始位置
+	 *
+	 * @return 起始位置
+	 */
+	public int getHeaderOffset() {
+		return offset;
+	}
+
+	/**
+	 * 头部长度，AEAD算法使用头部作为AAD
+	 *
+	 * @return 头部长度
+	 */
+	public int getHeaderLength() {
+		return nonceOffset + nonceLength - offset;
+	}
+
+	/**
+	 * nonce在原数组中的起始位置
+	 *
+	 * @return 起始位置
+	 */
+	public int getNonceOffset() {
+		return nonceOffset;
+	}
+
+	/**
+	 * nonce长度
+	 *
+	 * @return 长度
+	 */
+	public int getNonceLength() {
+		return nonceLength;
+	}
+
+	/**
+	 * 密文在原数组中的起始位置
+	 *
+	 * @return 起始位置
+	 */
+	public int getPayloadOffset() {
+		return nonceOffset + nonceLength;
+	}
+
+	/**
+	 * 密文长度，AEAD算法包含tag
+	 *
+	 * @return 长度
+	 */
+	public int getPayloadLength() {
+		return offset + length - getPayloadOffset();
+	}
+}
@@ -0,0 +1,215 @@
+package com.yyxnb.android.secure.encrypt;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+
+import androidx.annotation.WorkerThread;
+
+import com.yyxnb.android.secure.encrypt.aes.AesGcm;
+import com.yyxnb.android.secure.utils.EncryptUtil;
+import com.yyxnb.android.secure.utils.LogUtil;
+import com.yyxnb.android.secure.utils.SecureConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 根据设备实测速度选择默认的AEAD算法
+ * <p>
+ * 首次使用时在当前线程上对AES-GCM和ChaCha20-Poly1305各做一次有时间上限的加密测速，选出较快的算法作为新数据的默认算法。
+ * 结果按设备指纹和系统版本保存在SharedPreferences中，系统升级后重新测速。
+ * 未调用{@link SecureConfig#init(android.app.Application)}时只缓存在内存中。
+ * <p>
+ * 加密输出{@link CipherEnvelope}信封格式，信封中记录算法ID，解密时按算法ID选择算法，与当前的选择结果无关。
+ * 两种算法使用同一个32字节密钥（AES-GCM即AES-256）。
+ *
+ * <pre>
+ *     byte[] encrypted = CipherSelector.encrypt(content, key, keyId);
+ *     byte[] decrypted = CipherSelector.decrypt(encrypted, key);
+ * </pre>
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+public final class CipherSelector {
+
+	private static final String TAG = "CipherSelector";
+
+	private static final String PREFS_NAME = "secure_cipher_selector";
+
+	private static final String KEY_FINGERPRINT = "fingerprint";
+
+	private static final String KEY_ALGORITHM = "algorithm";
+
+	private static final int KEY_LEN = 32;
+
+	/**
+	 * 测速使用的明文长度
+	 */
+	private static final int BENCH_DATA_LEN = 4096;
+
+	/**
+	 * 每个算法预热次数，预热不计时
+	 */
+	private static final int BENCH_WARMUP_ROUNDS = 16;
+
+	/**
+	 * 每个算法测速的时间上限
+	 */
+	private static final long BENCH_TIME_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+	/**
+	 * 每个算法测速的次数上限
+	 */
+	private static final int BENCH_MAX_ROUNDS = 2000;
+
+	/**
+	 * ChaCha20-Poly1305至少快这么多才替换AES-GCM，避免测速误差导致在两种算法之间来回切换
+	 */
+	private static final double CHACHA_MIN_SPEEDUP = 1.1;
+
+	private static volatile byte defaultAlgorithm;
+
+	private CipherSelector() {
+
+	}
+
+	/**
+	 * 获取新数据使用的默认算法，首次调用时可能执行测速
+	 *
+	 * @return {@link CipherEnvelope#ALG_AES_GCM}或{@link CipherEnvelope#ALG_CHACHA20_POLY1305}
+	 */
+	@WorkerThread
+	public static byte getDefaultAlgorithm() {
+		byte algorithm = defaultAlgorithm;
+		if (algorithm != 0) {
+			return algorithm;
+		}
+		synchronized (CipherSelector.class) {
+			if (defaultAlgorithm == 0) {
+				defaultAlgorithm = loadOrSelect();
+			}
+			return defaultAlgorithm;
+		}
+	}
+
+	/**
+	 * 使用默认算法加密，输出信封格式
+	 *
+	 * @param content 待加密内容
+	 * @param key     32字节密钥
+	 * @param keyId   密钥ID，可以为null，不超过255字节
+	 * @return 信封格式密文，失败返回空数组
+	 */
+	@WorkerThread
+	public static byte[] encrypt(byte[] content, byte[] key, byte[] keyId) {
+		if (key == null || key.length != KEY_LEN) {
+			LogUtil.e(TAG, "encrypt key error: key is null or length is not 32 bytes.");
+			return new byte[0];
+		}
+		return encrypt(getDefaultAlgorithm(), content, key, keyId);
+	}
+
+	/**
+	 * 解密{@link #encrypt(byte[], byte[], byte[])}的结果，按信封中的算法ID选择算法
+	 *
+	 * @param content 信封格式密文
+	 * @param key     32字节密钥
+	 * @return 解密结果，失败返回空数组
+	 */
+	public static byte[] decrypt(byte[] content, byte[] key) {
+		CipherEnvelope envelope = CipherEnvelope.parse(content);
+		if (envelope == null) {
+			LogUtil.e(TAG, "decrypt content is not an envelope");
+			return new byte[0];
+		}
+		switch (envelope.getAlgorithm()) {
+			case CipherEnvelope.ALG_AES_GCM:
+				return AesGcm.decrypt(content, key);
+			case CipherEnvelope.ALG_CHACHA20_POLY1305:
+				return ChaCha20Poly1305.decrypt(content, key);
+			default:
+				LogUtil.e(TAG, "decrypt unsupported algorithm: " + envelope.getAlgorithm());
+				return new byte[0];
+		}
+	}
+
+	/**
+	 * 清除保存的选择结果，下次使用时重新测速
+	 */
+	public static synchronized void reset() {
+		defaultAlgorithm = 0;
+		SharedPreferences prefs = getPreferences();
+		if (prefs != null) {
+			prefs.edit().remove(KEY_FINGERPRINT).remove(KEY_ALGORITHM).apply();
+		}
+	}
+
+	private static byte[] encrypt(byte algorithm, byte[] content, byte[] key, byte[] keyId) {
+		if (algorithm == CipherEnvelope.ALG_CHACHA20_POLY1305) {
+			return ChaCha20Poly1305.encryptEnvelope(content, key, keyId);
+		}
+		return AesGcm.encryptEnvelope(content, key, keyId);
+	}
+
+	private static byte loadOrSelect() {
+		String fingerprint = Build.FINGERPRINT + "/" + Build.VERSION.SDK_INT;
+		SharedPreferences prefs = getPreferences();
+		if (prefs != null && fingerprint.equals(prefs.getString(KEY_FINGERPRINT, null))) {
+			byte saved = (byte) prefs.getInt(KEY_ALGORITHM, 0);
+			if (saved == CipherEnvelope.ALG_AES_GCM || saved == CipherEnvelope.ALG_CHACHA20_POLY1305) {
+				return saved;
+			}
+		}
+		byte algorithm = select();
+		if (prefs != null) {
+			prefs.edit().putString(KEY_FINGERPRINT, fingerprint).putInt(KEY_ALGORITHM, algorithm).apply();
+		}
+		return algorithm;
+	}
+
+	private static byte select() {
+		byte[] key = EncryptUtil.generateSecureRandom(KEY_LEN);
+		if (key.length != KEY_LEN) {
+			return CipherEnvelope.ALG_AES_GCM;
+		}
+		byte[] content = new byte[BENCH_DATA_LEN];
+		double aes = measure(CipherEnvelope.ALG_AES_GCM, content, key);
+		double chacha = measure(CipherEnvelope.ALG_CHACHA20_POLY1305, content, key);
+		LogUtil.i(TAG, "select: aes-gcm " + (long) aes + " B/ms, chacha20-poly1305 " + (long) chacha + " B/ms");
+		if (chacha > 0 && (aes <= 0 || chacha >= aes * CHACHA_MIN_SPEEDUP)) {
+			return CipherEnvelope.ALG_CHACHA20_POLY1305;
+		}
+		return CipherEnvelope.ALG_AES_GCM;
+	}
+
+	/**
+	 * 测量加密速度
+	 *
+	 * @return 每毫秒加密的字节数，算法不可用时返回-1
+	 */
+	private static double measure(byte algorithm, byte[] content, byte[] key) {
+		for (int i = 0; i < BENCH_WARMUP_ROUNDS; i++) {
+			if (encrypt(algorithm, content, key, null).length == 0) {
+				return -1;
+			}
+		}
+		long start = System.nanoTime();
+		long elapsed;
+		int rounds = 0;
+		do {
+			encrypt(algorithm, content, key, null);
+			rounds++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < BENCH_TIME_NANOS && rounds < BENCH_MAX_ROUNDS);
+		return (double) rounds * content.length * TimeUnit.MILLISECONDS.toNanos(1) / Math.max(1, elapsed);
+	}
+
+	private static SharedPreferences getPreferences() {
+		Context context = SecureConfig.getInstance().getContext();
+		if (context == null) {
+			return null;
+		}
+		return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+	}
+}
@@ -0,0 +1,386 @@
+package com.yyxnb.android.secure.encrypt;
+
+import com.yyxnb.android.secure.encrypt.aes.AesGcm;
+import com.yyxnb.android.secure.utils.LogUtil;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 解密结果缓存，可选地包装已有的解密入口
+ * <p>
+ * 界面上同一个令牌、同一个资料字段往往每次刷新都要解密一遍，用本类代替直接调用{@link AesGcm}的解密方法，
+ * 相同的密文和密钥在有效期内只解密一次。缓存键是 SHA-256(入口类型 + 密钥 + 密文) 的前16字节，
+ * 密钥本身作为密钥标识参与摘要，换了密钥不会命中旧结果；缓存中不保存密钥和密文。
+ * <p>
+ * 条目数有上限，按最近使用淘汰；超过有效期的条目在下次访问或{@link #trimExpired()}时移除。
+ * 被淘汰、过期、{@link #clear()}的明文会先清零。字节数组接口返回副本，
+ * String接口返回的字符串无法清零，敏感数据优先使用字节数组接口。解密失败的结果不缓存。线程安全。
+ *
+ * <pre>
+ *     DecryptCache cache = new DecryptCache(128, 5, TimeUnit.MINUTES);
+ *     String token = cache.decrypt(encryptedToken, key);
+ * </pre>
+ *
+ * @author yyx
+ * @date 2023/10/17
+ */
+public final class DecryptCache {
+
+	private static final String TAG = "DecryptCache";
+
+	private static final byte SOURCE_AES_GCM_STRING = 1;
+
+	private static final byte SOURCE_AES_GCM_BYTES = 2;
+
+	private static final byte SOURCE_DECRYPTOR = 3;
+
+	private static final ThreadLocal<MessageDigest> DIGEST = new ThreadLocal<>();
+
+	private final int maxEntries;
+
+	private final long ttlNanos;
+
+	private final LinkedHashMap<CacheKey, CachedValue> entries;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * 解密入口，用于包装{@link ChaCha20Poly1305}、{@link CipherSelector}等其他算法
+	 */
+	public interface Decryptor {
+
+		/**
+		 * 解密
+		 *
+		 * @param content 密文
+		 * @param key     密钥
+		 * @return 明文，失败返回空数组或null
+		 */
+		byte[] decrypt(byte[] content, byte[] key);
+	}
+
+	/**
+	 * @param maxEntries 最多缓存的条目数
+	 * @param ttl        有效期
+	 * @param unit       有效期单位
+	 */
+	public DecryptCache(int maxEntries, long ttl, TimeUnit unit) {
+		if (maxEntries <= 0 || ttl <= 0 || unit == null) {
+			throw new IllegalArgumentException("maxEntries and ttl must be positive");
+		}
+		this.maxEntries = maxEntries;
+		this.ttlNanos = unit.toNanos(ttl);
+		this.entries = new LinkedHashMap<CacheKey, CachedValue>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<CacheKey, CachedValue> eldest) {
+				if (size() > DecryptCache.this.maxEntries) {
+					eldest.getValue().clear();
+					evictionCount.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * 带缓存的{@link AesGcm#decrypt(String, byte[])}
+	 *
+	 * @param content 十六进制的 IV + 密文
+	 * @param key     字节数组形式密钥
+	 * @return 解密结果，失败返回空字符串
+	 */
+	public String decrypt(String content, byte[] key) {
+		if (content == null || content.isEmpty() || key == null) {
+			return AesGcm.decrypt(content, key);
+		}
+		byte[] contentBytes;
+		try {
+			contentBytes = content.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			LogUtil.e(TAG, "decrypt 1 exception : " + e.getMessage());
+			return AesGcm.decrypt(content, key);
+		}
+		CacheKey cacheKey = cacheKey(SOURCE_AES_GCM_STRING, key, contentBytes);
+		byte[] cached = get(cacheKey);
+		try {
+			if (cached != null) {
+				return new String(cached, "UTF-8");
+			}
+			String result = AesGcm.decrypt(content, key);
+			if (!result.isEmpty()) {
+				put(cacheKey, result.getBytes("UTF-8"));
+			}
+			return result;
+		} catch (UnsupportedEncodingException e) {
+			LogUtil.e(TAG, "decrypt 1 exception : " + e.getMessage());
+			return AesGcm.decrypt(content, key);
+		} finally {
+			if (cached != null) {
+				Arrays.fill(cached, (byte) 0);
+			}
+		}
+	}
+
+	/**
+	 * 带缓存的{@link AesGcm#decrypt(byte[], byte[])}
+	 *
+	 * @param content IV + 密文 + tag，或二进制信封
+	 * @param key     字节数组形式密钥
+	 * @return 明文副本，调用方用完后可以清零；失败返回空数组
+	 */
+	public byte[] decrypt(byte[] content, byte[] key) {
+		if (content == null || key == null) {
+			return AesGcm.decrypt(content, key);
+		}
+		CacheKey cacheKey = cacheKey(SOURCE_AES_GCM_BYTES, key, content);
+		byte[] cached = get(cacheKey);
+		if (cached != null) {
+			return cached;
+		}
+		byte[] result = AesGcm.decrypt(content, key);
+		if (result.length > 0) {
+			put(cacheKey, result.clone());
+		}
+		return result;
+	}
+
+	/**
+	 * 带缓存地调用其他解密入口。不同的解密入口解密同一密文和密钥时共用缓存条目，
+	 * 同一个缓存实例只应配合一种解密入口使用
+	 *
+	 * @param content   密文
+	 * @param key       密钥
+	 * @param decryptor 解密入口
+	 * @return 明文副本，调用方用完后可以清零；失败返回空数组
+	 */
+	public byte[] decrypt(byte[] content, byte[] key, Decryptor decryptor) {
+		if (decryptor == null) {
+			LogUtil.e(TAG, "decrypt 3 decryptor is null");
+			return new byte[0];
+		}
+		if (content == null || key == null) {
+			byte[] result = decryptor.decrypt(content, key);
+			return result == null ? new byte[0] : result;
+		}
+		CacheKey cacheKey = cacheKey(SOURCE_DECRYPTOR, key, content);
+		byte[] cached = get(cacheKey);
+		if (cached != null) {
+			return cached;
+		}
+		byte[] result = decryptor.decrypt(content, key);
+		if (result == null) {
+			return new byte[0];
+		}
+		if (result.length > 0) {
+			put(cacheKey, result.clone());
+		}
+		return result;
+	}
+
+	/**
+	 * 移除所有过期条目并清零
+	 */
+	public void trimExpired() {
+		long now = System.nanoTime();
+		synchronized (entries) {
+			Iterator<CachedValue> iterator = entries.values().iterator();
+			while (iterator.hasNext()) {
+				CachedValue entry = iterator.next();
+				if (entry.isExpired(now)) {
+					entry.clear();
+					iterator.remove();
+					evictionCount.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 清空缓存并清零所有明文，如密钥轮换或用户退出登录时调用
+	 */
+	public void clear() {
+		synchronized (entries) {
+			for (CachedValue entry : entries.values()) {
+				entry.clear();
+			}
+			entries.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * 命中次数
+	 *
+	 * @return 次数
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * 未命中次数，包括过期和无法计算缓存键的情况
+	 *
+	 * @return 次数
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * 因超过条目上限或过期被移除的次数
+	 *
+	 * @return 次数
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * 命中率
+	 *
+	 * @return 0到1之间，没有访问时返回0
+	 */
+	public double getHitRate() {
+		long hits = hitCount.get();
+		long total = hits + missCount.get();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * 查找缓存
+	 *
+	 * @return 明文副本，未命中返回null
+	 */
+	private byte[] get(CacheKey cacheKey) {
+		if (cacheKey == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		synchronized (entries) {
+			CachedValue entry = entries.get(cacheKey);
+			if (entry != null) {
+				if (!entry.isExpired(System.nanoTime())) {
+					hitCount.incrementAndGet();
+					return entry.plaintext.clone();
+				}
+				entry.clear();
+				entries.remove(cacheKey);
+				evictionCount.incrementAndGet();
+			}
+		}
+		missCount.incrementAndGet();
+		return null;
+	}
+
+	private void put(CacheKey cacheKey, byte[] plaintext) {
+		if (cacheKey == null) {
+			Arrays.fill(plaintext, (byte) 0);
+			return;
+		}
+		CachedValue entry = new CachedValue(plaintext, System.nanoTime() + ttlNanos);
+		synchronized (entries) {
+			CachedValue old = entries.put(cacheKey, entry);
+			if (old != null) {
+				old.clear();
+			}
+		}
+	}
+
+	private static CacheKey cacheKey(byte source, byte[] key, byte[] content) {
+		MessageDigest digest = DIGEST.get();
+		if (digest == null) {
+			try {
+				digest = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) {
+				LogUtil.e(TAG, "cacheKey exception : " + e.getMessage());
+				return null;
+			}
+			DIGEST.set(digest);
+		}
+		digest.update(source);
+		digest.update((byte) key.length);
+		digest.update(key);
+		digest.update(content);
+		byte[] hash = digest.digest();
+		return new CacheKey(toLong(hash, 0), toLong(hash, 8));
+	}
+
+	private static long toLong(byte[] bytes, int offset) {
+		long value = 0;
+		for (int i = offset; i < offset + 8; i++) {
+			value = (value << 8) | (bytes[i] & 0xFF);
+		}
+		return value;
+	}
+
+	private static final class CacheKey {
+
+		private final long high;
+
+		private final long low;
+
+		CacheKey(long high, long low) {
+			this.high = high;
+			this.low = low;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey other = (CacheKey) o;
+			return high == other.high && low == other.low;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (high ^ (high >>> 32));
+		}
+	}
+
+	private static final class CachedValue {
+
+		private final byte[] plaintext;
+
+		private final long expireNanos;
+
+		CachedValue(byte[] plaintext, long expireNanos) {
+			this.plaintext = plaintext;
+			this.expireNanos = expireNanos;
+		}
+
+		boolean isExpired(long now) {
+			return now - expireNanos >= 0;
+		}
+
+		void clear() {
+			Arrays.fill(plaintext, (byte) 0);
+		}
+	}
+}
@@ -2,11 +2,17 @@ package com.yyxnb.android.secure.encrypt.aes;
 
 import android.text.TextUtils;
 
+import com.yyxnb.android.secure.encrypt.CipherEnvelope;
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
 import com.yyxnb.android.secure.utils.EncryptUtil;
 import com.yyxnb.android.secure.utils.HexUtil;
 import com.yyxnb.android.secure.utils.LogUtil;
+import com.yyxnb.android.secure.utils.MetricsUtil;
+import com.yyxnb.android.secure.utils.TextCodec;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
@@ -44,6 +50,8 @@ public final class AesCbc {
 
 	private static final int AES_128_CBC_IV_LEN = 16;
 
+	private static final int AES_BLOCK_LEN = 16;
+
 	/**
 	 * 默认构造函数
 	 */
@@ -427,13 +435,8 @@ public final class AesCbc {
 			return new byte[0];
 		}
 
-		SecretKeySpec secretkey = new SecretKeySpec(key, AES_ALGORITHM);
-		Cipher cipher = null;
 		try {
-			cipher = Cipher.getInstance(AES_CBC_ALGORITHM);
-			IvParameterSpec ivparam = new IvParameterSpec(ivParameter);
-			cipher.init(Cipher.ENCRYPT_MODE, secretkey, ivparam);
-			return cipher.doFinal(content);
+			return doFinal(Cipher.ENCRYPT_MODE, key, ivParameter, 0, ivParameter.length, content, 0, content.length);
 		} catch (NoSuchAlgorithmException e) {
 			LogUtil.e(TAG, "NoSuchAlgorithmException: " + e.getMessage());
 		} catch (NoSuchPaddingException e) {
@@ -446,6 +449,8 @@ public final class AesCbc {
 			LogUtil.e(TAG, "IllegalBlockSizeException: " + e.getMessage());
 		} catch (BadPaddingException e) {
 			LogUtil.e(TAG, "BadPaddingException: " + e.getMessage());
+		} catch (GeneralSecurityException e) {
+			LogUtil.e(TAG, "GeneralSecurityException: " + e.getMessage());
 		} catch (NullPointerException e) {
 			LogUtil.e(TAG, "NullPointerException: " + e.getMessage());
 		}
@@ -489,13 +494,8 @@ public final class AesCbc {
 			LogUtil.e(TAG, "decrypt 6 iv error: 6 iv length less than 16 bytes.");
 			return new byte[0];
 		}
-		SecretKeySpec secretkey = new SecretKeySpec(key, AES_ALGORITHM);
-		Cipher cipher = null;
 		try {
-			cipher = Cipher.getInstance(AES_CBC_ALGORITHM);
-			IvParameterSpec ivparam = new IvParameterSpec(ivParameter);
-			cipher.init(Cipher.DECRYPT_MODE, secretkey, ivparam);
-			return cipher.doFinal(content);
+			return doFinal(Cipher.DECRYPT_MODE, key, ivParameter, 0, ivParameter.length, content, 0, content.length);
 		} catch (NoSuchAlgorithmException e) {
 			LogUtil.e(TAG, "NoSuchAlgorithmException: " + e.getMessage());
 		} catch (NoSuchPaddingException e) {
@@ -509,6 +509,8 @@ public final class AesCbc {
 		} catch (BadPaddingException e) {
 			LogUtil.e(TAG, "BadPaddingException: " + e.getMessage());
 			LogUtil.e(TAG, "key is not right");
+		} catch (GeneralSecurityException e) {
+			LogUtil.e(TAG, "GeneralSecurityException: " + e.getMessage());
 		} catch (NullPointerException e) {
 			LogUtil.e(TAG, "NullPointerException: " + e.getMessage());
 		}
@@ -520,44 +522,454 @@ public final class AesCbc {
 	 *
 	 * @param content 待加密数据
 	 * @param key     密钥
-	 * @return 加密结果
+	 * @return 加密结果，IV + 密文
 	 */
 	public static byte[] encrypt(byte[] content, byte[] key) {
-		byte[] ivParameter = EncryptUtil.generateSecureRandom(AES_128_CBC_IV_LEN);
-		byte[] encryptContent = encrypt(content, key, ivParameter);
-		return byteMerger(ivParameter, encryptContent);
+		if (content == null) {
+			LogUtil.e(TAG, "encrypt 7 content is null");
+			return new byte[0];
+		}
+		byte[] output = new byte[getEncryptOutputLen(content.length)];
+		int length = encrypt(content, 0, content.length, key, output, 0);
+		if (length < 0) {
+			return new byte[0];
+		}
+		return output;
 	}
 
 	/**
-	 * 解密接口
+	 * 解密接口，同时支持{@link #encryptEnvelope(byte[], byte[], byte[])}生成的信封格式
 	 *
-	 * @param content 待解密数据
+	 * @param content 待解密数据，IV + 密文，或二进制信封
 	 * @param key     密钥
 	 * @return 解密结果
 	 */
 	public static byte[] decrypt(byte[] content, byte[] key) {
-		byte[] ivParameter = getIV(content);
-		byte[] encryptContent = getEncryptContent(content);
-		return decrypt(encryptContent, key, ivParameter);
+		if (CipherEnvelope.isEnvelope(content)) {
+			byte[] decrypted = decryptEnvelope(CipherEnvelope.parse(content), key);
+			if (decrypted != null) {
+				return decrypted;
+			}
+			// 旧格式的随机IV恰好以魔数开头时按旧格式解密
+		}
+		if (content == null || content.length <= AES_128_CBC_IV_LEN) {
+			LogUtil.e(TAG, "decrypt 7 content is null or too short");
+			return new byte[0];
+		}
+		return decrypt(content, AES_128_CBC_IV_LEN, content.length - AES_128_CBC_IV_LEN, key, content);
+	}
+
+	/**
+	 * 加密字符串，使用指定的文本编码输出
+	 * <p>
+	 * 输出为 IV + 密文 整体编码后的文本，与{@link #encrypt(String, byte[])}的IV混合拼接格式不同。
+	 * 使用{@link TextCodec#BASE64}或{@link TextCodec#BASE64_URL}时长度约为十六进制的三分之二。
+	 *
+	 * @param content 待加密内容
+	 * @param key     字节数组形式密钥
+	 * @param codec   文本编码方式
+	 * @return 编码后的密文，失败返回空字符串
+	 */
+	public static String encrypt(String content, byte[] key, TextCodec codec) {
+		if (TextUtils.isEmpty(content)) {
+			LogUtil.e(TAG, "encrypt codec content is null");
+			return EMPTY;
+		}
+		if (codec == null) {
+			LogUtil.e(TAG, "encrypt codec is null");
+			return EMPTY;
+		}
+		try {
+			byte[] encrypted = encrypt(content.getBytes("UTF-8"), key);
+			return encrypted.length == 0 ? EMPTY : codec.encode(encrypted);
+		} catch (UnsupportedEncodingException e) {
+			LogUtil.e(TAG, "encrypt codec exception: " + e.getMessage());
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * 解密{@link #encrypt(String, byte[], TextCodec)}的结果
+	 *
+	 * @param content 编码后的密文
+	 * @param key     字节数组形式密钥
+	 * @param codec   加密时使用的文本编码方式
+	 * @return 明文，失败返回空字符串
+	 */
+	public static String decrypt(String content, byte[] key, TextCodec codec) {
+		if (TextUtils.isEmpty(content)) {
+			LogUtil.e(TAG, "decrypt codec content is null");
+			return EMPTY;
+		}
+		if (codec == null) {
+			LogUtil.e(TAG, "decrypt codec is null");
+			return EMPTY;
+		}
+		byte[] encrypted = codec.decode(content);
+		if (encrypted.length == 0) {
+			return EMPTY;
+		}
+		byte[] decrypted = decrypt(encrypted, key);
+		if (decrypted.length == 0) {
+			return EMPTY;
+		}
+		try {
+			return new String(decrypted, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			LogUtil.e(TAG, "decrypt codec exception: " + e.getMessage());
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * 加密接口，IV随机生成，输出二进制信封
+	 * <p>
+	 * CBC不带认证，信封头部不受保护，需要完整性保护时请使用{@link AesGcm#encryptEnvelope(byte[], byte[], byte[])}
+	 *
+	 * @param content 待加密数据
+	 * @param key     密钥
+	 * @param keyId   密钥ID，可以为null，不超过255字节
+	 * @return 信封格式密文，可以用{@link #decrypt(byte[], byte[])}解密，失败返回空数组
+	 */
+	public static byte[] encryptEnvelope(byte[] content, byte[] key, byte[] keyId) {
+		if (content == null) {
+			LogUtil.e(TAG, "encrypt envelope content is null");
+			return new byte[0];
+		}
+		if (!isKeyValid(key, "encrypt envelope")) {
+			return new byte[0];
+		}
+		byte[] ivParameter = EncryptUtil.generateSecureRandom(AES_128_CBC_IV_LEN);
+		if (ivParameter.length != AES_128_CBC_IV_LEN) {
+			LogUtil.e(TAG, "encrypt envelope generate iv failed");
+			return new byte[0];
+		}
+		int headerLen = CipherEnvelope.getHeaderLength(keyId == null ? 0 : keyId.length, AES_128_CBC_IV_LEN);
+		byte[] output = new byte[headerLen + getEncryptOutputLen(content.length) - AES_128_CBC_IV_LEN];
+		if (CipherEnvelope.writeHeader(output, 0, CipherEnvelope.ALG_AES_CBC, keyId, ivParameter) < 0) {
+			return new byte[0];
+		}
+		try {
+			doFinal(Cipher.ENCRYPT_MODE, key, ivParameter, 0, AES_128_CBC_IV_LEN, content, 0, content.length, output,
+					headerLen);
+			return output;
+		} catch (GeneralSecurityException e) {
+			LogUtil.e(TAG, "cbc encrypt envelope error" + e.getMessage());
+		}
+		return new byte[0];
+	}
+
+	/**
+	 * 加密数组的一部分，不拷贝输入
+	 *
+	 * @param content     待加密数据
+	 * @param offset      起始位置
+	 * @param len         长度
+	 * @param key         密钥
+	 * @param ivParameter iv
+	 * @return 加密结果
+	 */
+	public static byte[] encrypt(byte[] content, int offset, int len, byte[] key, byte[] ivParameter) {
+		if (!isParamValid(content, offset, len, key, ivParameter, "encrypt 8")) {
+			return new byte[0];
+		}
+		try {
+			return doFinal(Cipher.ENCRYPT_MODE, key, ivParameter, 0, ivParameter.length, content, offset, len);
+		} catch (GeneralSecurityException e) {
+			LogUtil.e(TAG, "cbc encrypt data error" + e.getMessage());
+		}
+		return new byte[0];
+	}
+
+	/**
+	 * 解密数组的一部分，不拷贝输入
+	 *
+	 * @param content     待解密数据
+	 * @param offset      起始位置
+	 * @param len         长度
+	 * @param key         密钥
+	 * @param ivParameter iv，使用数组开头的16字节
+	 * @return 解密结果
+	 */
+	public static byte[] decrypt(byte[] content, int offset, int len, byte[] key, byte[] ivParameter) {
+		if (!isParamValid(content, offset, len, key, ivParameter, "decrypt 8")) {
+			return new byte[0];
+		}
+		try {
+			return doFinal(Cipher.DECRYPT_MODE, key, ivParameter, 0, AES_128_CBC_IV_LEN, content, offset, len);
+		} catch (GeneralSecurityException e) {
+			LogUtil.e(TAG, "cbc decrypt data error" + e.getMessage());
+		}
+		return new byte[0];
+	}
+
+	/**
+	 * 加密，IV随机生成，IV + 密文 直接写入调用方提供的数组
+	 *
+	 * @param content      待加密数据
+	 * @param offset       起始位置
+	 * @param len          长度
+	 * @param key          密钥
+	 * @param output       输出数组，剩余长度不少于{@link #getEncryptOutputLen(int)}
+	 * @param outputOffset 输出起始位置
+	 * @return 写入的长度，失败返回-1
+	 */
+	public static int encrypt(byte[] content, int offset, int len, byte[] key, byte[] output, int outputOffset) {
+		if (!isParamValid(content, offset, len, key, null, "encrypt 9")) {
+			return -1;
+		}
+		if (output == null || outputOffset < 0 || output.length - outputOffset < getEncryptOutputLen(len)) {
+			LogUtil.e(TAG, "encrypt 9 output is null or too short");
+			return -1;
+		}
+		byte[] ivParameter = EncryptUtil.generateSecureRandom(AES_128_CBC_IV_LEN);
+		if (ivParameter.length != AES_128_CBC_IV_LEN) {
+			LogUtil.e(TAG, "encrypt 9 generate iv failed");
+			return -1;
+		}
+		System.arraycopy(ivParameter, 0, output, outputOffset, AES_128_CBC_IV_LEN);
+		try {
+			return AES_128_CBC_IV_LEN + doFinal(Cipher.ENCRYPT_MODE, key, ivParameter, 0, AES_128_CBC_IV_LEN,
+					content, offset, len, output, outputOffset + AES_128_CBC_IV_LEN);
+		} catch (GeneralSecurityException e) {
+			LogUtil.e(TAG, "cbc encrypt data error" + e.getMessage());
+		}
+		return -1;
 	}
 
-	private static byte[] byteMerger(byte[] bt1, byte[] bt2) {
-		byte[] bt3 = new byte[bt1.length + bt2.length];
-		System.arraycopy(bt1, 0, bt3, 0, bt1.length);
-		System.arraycopy(bt2, 0, bt3, bt1.length, bt2.length);
-		return bt3;
+	/**
+	 * 解密 IV + 密文 格式的数据，明文直接写入调用方提供的数组，输出可以与输入是同一个数组
+	 *
+	 * @param content      IV + 密文
+	 * @param offset       起始位置
+	 * @param len          长度
+	 * @param key          密钥
+	 * @param output       输出数组，剩余长度不少于 len - 16
+	 * @param outputOffset 输出起始位置
+	 * @return 明文长度，失败返回-1
+	 */
+	public static int decrypt(byte[] content, int offset, int len, byte[] key, byte[] output, int outputOffset) {
+		if (!isParamValid(content, offset, len, key, null, "decrypt 9")) {
+			return -1;
+		}
+		if (len <= AES_128_CBC_IV_LEN) {
+			LogUtil.e(TAG, "decrypt 9 content is too short");
+			return -1;
+		}
+		if (output == null || outputOffset < 0 || output.length - outputOffset < len - AES_128_CBC_IV_LEN) {
+			LogUtil.e(TAG, "decrypt 9 output is null or too short");
+			return -1;
+		}
+		try {
+			return doFinal(Cipher.DECRYPT_MODE, key, content, offset, AES_128_CBC_IV_LEN, content,
+					offset + AES_128_CBC_IV_LEN, len - AES_128_CBC_IV_LEN, output, outputOffset);
+		} catch (GeneralSecurityException e) {
+			LogUtil.e(TAG, "cbc decrypt data error" + e.getMessage());
+		}
+		return -1;
 	}
 
-	private static byte[] getIV(byte[] bt) {
-		byte[] iv = new byte[AES_128_CBC_IV_LEN];
-		System.arraycopy(bt, 0, iv, 0, AES_128_CBC_IV_LEN);
-		return iv;
+	/**
+	 * 加密，IV + 密文 直接写入dst，不产生中间数组，支持direct buffer。
+	 * 成功时src的position移动到limit，失败时src和dst的position不变。
+	 *
+	 * @param src 待加密数据
+	 * @param dst 输出，剩余空间不少于{@link #getEncryptOutputLen(int)}
+	 * @param key 密钥
+	 * @return 写入的长度，失败返回-1
+	 */
+	public static int encrypt(ByteBuffer src, ByteBuffer dst, byte[] key) {
+		if (src == null || dst == null) {
+			LogUtil.e(TAG, "encrypt 10 src or dst is null");
+			return -1;
+		}
+		if (src == dst) {
+			LogUtil.e(TAG, "encrypt 10 src and dst must not be the same buffer");
+			return -1;
+		}
+		if (!isKeyValid(key, "encrypt 10")) {
+			return -1;
+		}
+		if (dst.remaining() < getEncryptOutputLen(src.remaining())) {
+			LogUtil.e(TAG, "encrypt 10 dst is too short");
+			return -1;
+		}
+		byte[] ivParameter = EncryptUtil.generateSecureRandom(AES_128_CBC_IV_LEN);
+		if (ivParameter.length != AES_128_CBC_IV_LEN) {
+			LogUtil.e(TAG, "encrypt 10 generate iv failed");
+			return -1;
+		}
+		int srcPosition = src.position();
+		int dstPosition = dst.position();
+		try {
+			dst.put(ivParameter);
+			return AES_128_CBC_IV_LEN + doFinal(Cipher.ENCRYPT_MODE, key, ivParameter, src, dst);
+		} catch (GeneralSecurityException e) {
+			LogUtil.e(TAG, "cbc encrypt data error" + e.getMessage());
+		}
+		src.position(srcPosition);
+		dst.position(dstPosition);
+		return -1;
 	}
 
-	private static byte[] getEncryptContent(byte[] bt) {
-		byte[] encryptContent = new byte[bt.length - AES_128_CBC_IV_LEN];
-		System.arraycopy(bt, AES_128_CBC_IV_LEN, encryptContent, 0, bt.length - AES_128_CBC_IV_LEN);
-		return encryptContent;
+	/**
+	 * 解密 IV + 密文 格式的数据，明文直接写入dst，支持direct buffer。
+	 * 成功时src的position移动到limit，失败时src和dst的position不变。
+	 *
+	 * @param src IV + 密文
+	 * @param dst 输出，剩余空间不少于 src.remaining() - 16
+	 * @param key 密钥
+	 * @return 明文长度，失败返回-1
+	 */
+	public static int decrypt(ByteBuffer src, ByteBuffer dst, byte[] key) {
+		if (src == null || dst == null) {
+			LogUtil.e(TAG, "decrypt 10 src or dst is null");
+			return -1;
+		}
+		if (src == dst) {
+			LogUtil.e(TAG, "decrypt 10 src and dst must not be the same buffer");
+			return -1;
+		}
+		if (!isKeyValid(key, "decrypt 10")) {
+			return -1;
+		}
+		if (src.remaining() <= AES_128_CBC_IV_LEN) {
+			LogUtil.e(TAG, "decrypt 10 src is too short");
+			return -1;
+		}
+		if (dst.remaining() < src.remaining() - AES_128_CBC_IV_LEN) {
+			LogUtil.e(TAG, "decrypt 10 dst is too short");
+			return -1;
+		}
+		int srcPosition = src.position();
+		int dstPosition = dst.position();
+		try {
+			byte[] ivParameter = new byte[AES_128_CBC_IV_LEN];
+			src.get(ivParameter);
+			return doFinal(Cipher.DECRYPT_MODE, key, ivParameter, src, dst);
+		} catch (GeneralSecurityException e) {
+			LogUtil.e(TAG, "cbc decrypt data error" + e.getMessage());
+		}
+		src.position(srcPosition);
+		dst.position(dstPosition);
+		return -1;
+	}
+
+	/**
+	 * 获取 IV + 密文 的长度（PKCS5填充）
+	 *
+	 * @param contentLen 明文长度
+	 * @return 加密输出长度
+	 */
+	public static int getEncryptOutputLen(int contentLen) {
+		return AES_128_CBC_IV_LEN + (contentLen / AES_BLOCK_LEN + 1) * AES_BLOCK_LEN;
+	}
+
+	private static Cipher initCipher(int mode, byte[] key, byte[] ivBuffer, int ivOffset, int ivLen)
+			throws GeneralSecurityException {
+		SecretKeySpec secretkey = new SecretKeySpec(key, AES_ALGORITHM);
+		return CipherUtil.initPooledCipher(AES_CBC_ALGORITHM, mode, secretkey,
+				new IvParameterSpec(ivBuffer, ivOffset, ivLen));
+	}
+
+	/**
+	 * 初始化cipher并完成加解密，上报统计后把异常原样抛给调用方处理
+	 */
+	private static byte[] doFinal(int mode, byte[] key, byte[] ivBuffer, int ivOffset, int ivLen, byte[] input,
+								  int inputOffset, int inputLen) throws GeneralSecurityException {
+		long start = MetricsUtil.start();
+		try {
+			byte[] result = initCipher(mode, key, ivBuffer, ivOffset, ivLen).doFinal(input, inputOffset, inputLen);
+			MetricsUtil.onSuccess(getOperation(mode), AES_CBC_ALGORITHM, inputLen, start);
+			return result;
+		} catch (GeneralSecurityException | RuntimeException e) {
+			MetricsUtil.onFailure(getOperation(mode), AES_CBC_ALGORITHM, e, start);
+			throw e;
+		}
+	}
+
+	private static int doFinal(int mode, byte[] key, byte[] ivBuffer, int ivOffset, int ivLen, byte[] input,
+							   int inputOffset, int inputLen, byte[] output, int outputOffset)
+			throws GeneralSecurityException {
+		long start = MetricsUtil.start();
+		try {
+			int length = initCipher(mode, key, ivBuffer, ivOffset, ivLen).doFinal(input, inputOffset, inputLen,
+					output, outputOffset);
+			MetricsUtil.onSuccess(getOperation(mode), AES_CBC_ALGORITHM, inputLen, start);
+			return length;
+		} catch (GeneralSecurityException | RuntimeException e) {
+			MetricsUtil.onFailure(getOperation(mode), AES_CBC_ALGORITHM, e, start);
+			throw e;
+		}
+	}
+
+	private static int doFinal(int mode, byte[] key, byte[] ivParameter, ByteBuffer src, ByteBuffer dst)
+			throws GeneralSecurityException {
+		int inputLen = src.remaining();
+		long start = MetricsUtil.start();
+		try {
+			int length = initCipher(mode, key, ivParameter, 0, AES_128_CBC_IV_LEN).doFinal(src, dst);
+			MetricsUtil.onSuccess(getOperation(mode), AES_CBC_ALGORITHM, inputLen, start);
+			return length;
+		} catch (GeneralSecurityException | RuntimeException e) {
+			MetricsUtil.onFailure(getOperation(mode), AES_CBC_ALGORITHM, e, start);
+			throw e;
+		}
+	}
+
+	private static CryptoMetrics.Operation getOperation(int mode) {
+		return mode == Cipher.ENCRYPT_MODE ? CryptoMetrics.Operation.ENCRYPT : CryptoMetrics.Operation.DECRYPT;
+	}
+
+	/**
+	 * 解密信封，失败返回null以便调用方回退到旧格式
+	 */
+	private static byte[] decryptEnvelope(CipherEnvelope envelope, byte[] key) {
+		if (envelope == null || envelope.getAlgorithm() != CipherEnvelope.ALG_AES_CBC
+				|| envelope.getNonceLength() != AES_128_CBC_IV_LEN
+				|| envelope.getPayloadLength() == 0 || envelope.getPayloadLength() % AES_BLOCK_LEN != 0) {
+			return null;
+		}
+		if (!isKeyValid(key, "decrypt envelope")) {
+			return null;
+		}
+		byte[] data = envelope.getData();
+		try {
+			return doFinal(Cipher.DECRYPT_MODE, key, data, envelope.getNonceOffset(), AES_128_CBC_IV_LEN, data,
+					envelope.getPayloadOffset(), envelope.getPayloadLength());
+		} catch (GeneralSecurityException e) {
+			LogUtil.e(TAG, "cbc decrypt envelope error" + e.getMessage());
+		}
+		return null;
+	}
+
+	private static boolean isKeyValid(byte[] key, String method) {
+		if (key == null) {
+			LogUtil.e(TAG, method + " key is null");
+			return false;
+		}
+		if (key.length < AES_128_CBC_KEY_LEN) {
+			LogUtil.e(TAG, method + " key error: key length less than 16 bytes.");
+			return false;
+		}
+		return true;
+	}
+
+	private static boolean isParamValid(byte[] content, int offset, int len, byte[] key, byte[] ivParameter,
+										String method) {
+		if (content == null) {
+			LogUtil.e(TAG, method + " content is null");
+			return false;
+		}
+		if (offset < 0 || len < 0 || content.length - offset < len) {
+			LogUtil.e(TAG, method + " offset or length is out of range");
+			return false;
+		}
+		if (ivParameter != null && ivParameter.length < AES_128_CBC_IV_LEN) {
+			LogUtil.e(TAG, method + " iv error: iv length less than 16 bytes.");
+			return false;
+		}
+		return isKeyValid(key, method);
 	}
 
 	/**
@@ -3,14 +3,21 @@ package com.yyxnb.android.secure.encrypt.aes;
 import android.os.Build;
 import android.text.TextUtils;
 
+import com.yyxnb.android.secure.encrypt.CipherEnvelope;
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
 import com.yyxnb.android.secure.utils.EncryptUtil;
 import com.yyxnb.android.secure.utils.HexUtil;
 import com.yyxnb.android.secure.utils.LogUtil;
+import com.yyxnb.android.secure.utils.MetricsUtil;
+import com.yyxnb.android.secure.utils.TextCodec;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.spec.AlgorithmParameterSpec;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.GCMParameterSpec;
@@ -42,6 +49,8 @@ public final class AesGcm {
 
 	private static final int AES_GCM_IV_LEN = 12;
 
+	private static final int AES_GCM_TAG_LEN = 16;
+
 	private static final int TIMES = 2;
 
 	/**
@@ -180,9 +189,6 @@ public final class AesGcm {
 			return EMPTY;
 		}
 		try {
-			SecretKeySpec secretkey = new SecretKeySpec(key, AES_ALGORITHM);
-			Cipher cipher = Cipher.getInstance(AES_GCM_ALGORITHM);
-
 			// 从密文中获取加密使用的IV向量和密文
 			String ivParameter = getIv(content);
 			String encrypedWord = getEncryptWord(content);
@@ -197,8 +203,8 @@ public final class AesGcm {
 				return EMPTY;
 			}
 
-			AlgorithmParameterSpec algorithmParameterSpec = getGcmAlgorithmParams(HexUtil.hexStr2ByteArray(ivParameter));
-			cipher.init(Cipher.DECRYPT_MODE, secretkey, algorithmParameterSpec);
+			byte[] ivBytes = HexUtil.hexStr2ByteArray(ivParameter);
+			Cipher cipher = initCipher(Cipher.DECRYPT_MODE, key, ivBytes, 0, ivBytes.length);
 			byte[] decrypted = cipher.doFinal(HexUtil.hexStr2ByteArray(encrypedWord));
 			return new String(decrypted, "UTF-8");
 
@@ -462,15 +468,17 @@ public final class AesGcm {
 			return new byte[0];
 		}
 
+		long start = MetricsUtil.start();
 		try {
-			SecretKeySpec secretkey = new SecretKeySpec(key, AES_ALGORITHM);
-			Cipher cipher = Cipher.getInstance(AES_GCM_ALGORITHM);
-			AlgorithmParameterSpec algorithmParameterSpec = getGcmAlgorithmParams(ivParameter);
-			cipher.init(Cipher.ENCRYPT_MODE, secretkey, algorithmParameterSpec);
-			return cipher.doFinal(content);
+			Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, key, ivParameter, 0, ivParameter.length);
+			byte[] result = cipher.doFinal(content);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.ENCRYPT, AES_GCM_ALGORITHM, content.length, start);
+			return result;
 		} catch (GeneralSecurityException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, AES_GCM_ALGORITHM, e, start);
 			LogUtil.e(TAG, "GCM encrypt data error" + e.getMessage());
 		} catch (NullPointerException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, AES_GCM_ALGORITHM, e, start);
 			LogUtil.e(TAG, "GCM encrypt data error" + e.getMessage());
 		}
 		return new byte[0];
@@ -512,49 +520,643 @@ public final class AesGcm {
 			return new byte[0];
 		}
 
+		long start = MetricsUtil.start();
 		try {
-			SecretKeySpec secretkey = new SecretKeySpec(key, AES_ALGORITHM);
-			Cipher cipher = Cipher.getInstance(AES_GCM_ALGORITHM);
-			AlgorithmParameterSpec algorithmParameterSpec = getGcmAlgorithmParams(ivParameter);
-			cipher.init(Cipher.DECRYPT_MODE, secretkey, algorithmParameterSpec);
-			return cipher.doFinal(encryptContent);
+			Cipher cipher = initCipher(Cipher.DECRYPT_MODE, key, ivParameter, 0, ivParameter.length);
+			byte[] result = cipher.doFinal(encryptContent);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.DECRYPT, AES_GCM_ALGORITHM, encryptContent.length, start);
+			return result;
 		} catch (GeneralSecurityException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, AES_GCM_ALGORITHM, e, start);
 			LogUtil.e(TAG, "GCM decrypt data exception: " + e.getMessage());
 		}
 		return new byte[0];
 	}
 
 
+	/**
+	 * AES GCM加密，IV随机生成
+	 *
+	 * @param content 待加密内容
+	 * @param key     字节数组形式密钥
+	 * @return IV + 密文 + tag
+	 */
 	public static byte[] encrypt(byte[] content, byte[] key) {
+		if (content == null) {
+			LogUtil.e(TAG, "encrypt 7 content is null");
+			return new byte[0];
+		}
+		byte[] output = new byte[getEncryptOutputLen(content.length)];
+		int length = encrypt(content, 0, content.length, key, output, 0);
+		if (length < 0) {
+			return new byte[0];
+		}
+		return output;
+	}
+
+	/**
+	 * AES GCM解密，同时支持{@link #encryptEnvelope(byte[], byte[], byte[])}生成的信封格式
+	 *
+	 * @param content IV + 密文 + tag，或二进制信封
+	 * @param key     字节数组形式密钥
+	 * @return 解密结果
+	 */
+	public static byte[] decrypt(byte[] content, byte[] key) {
+		if (CipherEnvelope.isEnvelope(content)) {
+			byte[] decrypted = decryptEnvelope(CipherEnvelope.parse(content), key);
+			if (decrypted != null) {
+				return decrypted;
+			}
+			// 旧格式的随机IV恰好以魔数开头时按旧格式解密
+		}
+		if (content == null || content.length < AES_GCM_IV_LEN + AES_GCM_TAG_LEN) {
+			LogUtil.e(TAG, "decrypt 7 content is null or too short");
+			return new byte[0];
+		}
+		byte[] output = new byte[content.length - AES_GCM_IV_LEN - AES_GCM_TAG_LEN];
+		int length = decrypt(content, 0, content.length, key, output, 0);
+		if (length < 0) {
+			return new byte[0];
+		}
+		return output;
+	}
+
+	/**
+	 * 加密字符串，使用指定的文本编码输出
+	 * <p>
+	 * 输出为 IV + 密文 + tag 整体编码后的文本，codec为{@link TextCodec#HEX}时与{@link #encrypt(String, byte[])}的输出相同。
+	 * 使用{@link TextCodec#BASE64}或{@link TextCodec#BASE64_URL}时长度约为十六进制的三分之二。
+	 *
+	 * @param content 待加密内容
+	 * @param key     字节数组形式密钥
+	 * @param codec   文本编码方式
+	 * @return 编码后的密文，失败返回空字符串
+	 */
+	public static String encrypt(String content, byte[] key, TextCodec codec) {
+		if (TextUtils.isEmpty(content)) {
+			LogUtil.e(TAG, "encrypt codec content is null");
+			return EMPTY;
+		}
+		if (codec == null) {
+			LogUtil.e(TAG, "encrypt codec is null");
+			return EMPTY;
+		}
+		try {
+			byte[] encrypted = encrypt(content.getBytes("UTF-8"), key);
+			return encrypted.length == 0 ? EMPTY : codec.encode(encrypted);
+		} catch (UnsupportedEncodingException e) {
+			LogUtil.e(TAG, "encrypt codec exception: " + e.getMessage());
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * 解密{@link #encrypt(String, byte[], TextCodec)}的结果
+	 *
+	 * @param content 编码后的密文
+	 * @param key     字节数组形式密钥
+	 * @param codec   加密时使用的文本编码方式
+	 * @return 明文，失败返回空字符串
+	 */
+	public static String decrypt(String content, byte[] key, TextCodec codec) {
+		if (TextUtils.isEmpty(content)) {
+			LogUtil.e(TAG, "decrypt codec content is null");
+			return EMPTY;
+		}
+		if (codec == null) {
+			LogUtil.e(TAG, "decrypt codec is null");
+			return EMPTY;
+		}
+		byte[] encrypted = codec.decode(content);
+		if (encrypted.length == 0) {
+			return EMPTY;
+		}
+		byte[] decrypted = decrypt(encrypted, key);
+		if (decrypted.length == 0) {
+			return EMPTY;
+		}
+		try {
+			return new String(decrypted, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			LogUtil.e(TAG, "decrypt codec exception: " + e.getMessage());
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * AES GCM加密，IV随机生成，输出二进制信封，体积约为十六进制字符串的一半
+	 *
+	 * @param content 待加密内容
+	 * @param key     字节数组形式密钥
+	 * @param keyId   密钥ID，写入信封用于解密时选择密钥，可以为null，不超过255字节
+	 * @return 信封格式密文，可以用{@link #decrypt(byte[], byte[])}解密，失败返回空数组
+	 */
+	public static byte[] encryptEnvelope(byte[] content, byte[] key, byte[] keyId) {
+		if (content == null) {
+			LogUtil.e(TAG, "encrypt envelope content is null");
+			return new byte[0];
+		}
+		if (!isKeyValid(key, "encrypt envelope")) {
+			return new byte[0];
+		}
 		byte[] ivParameter = EncryptUtil.generateSecureRandom(AES_GCM_IV_LEN);
-		byte[] encryptContent = encrypt(content, key, ivParameter);
-		return byteMerger(ivParameter, encryptContent);
+		if (ivParameter.length != AES_GCM_IV_LEN) {
+			LogUtil.e(TAG, "encrypt envelope generate iv failed");
+			return new byte[0];
+		}
+		int headerLen = CipherEnvelope.getHeaderLength(keyId == null ? 0 : keyId.length, AES_GCM_IV_LEN);
+		byte[] output = new byte[headerLen + content.length + AES_GCM_TAG_LEN];
+		if (CipherEnvelope.writeHeader(output, 0, CipherEnvelope.ALG_AES_GCM, keyId, ivParameter) < 0) {
+			return new byte[0];
+		}
+		long start = MetricsUtil.start();
+		try {
+			Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, key, ivParameter, 0, AES_GCM_IV_LEN);
+			cipher.updateAAD(output, 0, headerLen);
+			cipher.doFinal(content, 0, content.length, output, headerLen);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.ENCRYPT, AES_GCM_ALGORITHM, content.length, start);
+			return output;
+		} catch (GeneralSecurityException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, AES_GCM_ALGORITHM, e, start);
+			LogUtil.e(TAG, "GCM encrypt envelope exception: " + e.getMessage());
+		}
+		return new byte[0];
 	}
 
+	/**
+	 * AES GCM加密数组的一部分，不拷贝输入
+	 *
+	 * @param content     待加密内容
+	 * @param offset      待加密内容起始位置
+	 * @param len         待加密内容长度
+	 * @param key         字节数组形式密钥
+	 * @param ivParameter 字节数组形式iv
+	 * @return 密文 + tag
+	 */
+	public static byte[] encrypt(byte[] content, int offset, int len, byte[] key, byte[] ivParameter) {
+		if (!isParamValid(content, offset, len, key, ivParameter, 0, "encrypt 8")) {
+			return new byte[0];
+		}
+		byte[] output = new byte[len + AES_GCM_TAG_LEN];
+		int length = doFinal(Cipher.ENCRYPT_MODE, key, ivParameter, 0, ivParameter.length, content, offset, len,
+				output, 0);
+		return length < 0 ? new byte[0] : output;
+	}
 
-	public static byte[] decrypt(byte[] content, byte[] key) {
-		byte[] ivParameter = getIV(content);
-		byte[] encryptContent = getEncryptContent(content);
-		return decrypt(encryptContent, key, ivParameter);
+	/**
+	 * AES GCM解密数组的一部分，不拷贝输入
+	 *
+	 * @param encryptContent 密文 + tag
+	 * @param offset         密文起始位置
+	 * @param len            密文长度（包含tag）
+	 * @param key            字节数组形式密钥
+	 * @param ivParameter    字节数组形式iv
+	 * @return 解密结果
+	 */
+	public static byte[] decrypt(byte[] encryptContent, int offset, int len, byte[] key, byte[] ivParameter) {
+		if (!isParamValid(encryptContent, offset, len, key, ivParameter, 0, "decrypt 8")) {
+			return new byte[0];
+		}
+		if (len < AES_GCM_TAG_LEN) {
+			LogUtil.e(TAG, "decrypt 8 content is too short");
+			return new byte[0];
+		}
+		byte[] output = new byte[len - AES_GCM_TAG_LEN];
+		int length = doFinal(Cipher.DECRYPT_MODE, key, ivParameter, 0, ivParameter.length, encryptContent, offset,
+				len, output, 0);
+		return length < 0 ? new byte[0] : output;
 	}
 
-	private static byte[] byteMerger(byte[] bt1, byte[] bt2) {
-		byte[] bt3 = new byte[bt1.length + bt2.length];
-		System.arraycopy(bt1, 0, bt3, 0, bt1.length);
-		System.arraycopy(bt2, 0, bt3, bt1.length, bt2.length);
-		return bt3;
+	/**
+	 * AES GCM加密，IV随机生成，IV + 密文 + tag 直接写入调用方提供的数组
+	 *
+	 * @param content      待加密内容
+	 * @param offset       待加密内容起始位置
+	 * @param len          待加密内容长度
+	 * @param key          字节数组形式密钥
+	 * @param output       输出数组，剩余长度不少于{@link #getEncryptOutputLen(int)}
+	 * @param outputOffset 输出起始位置
+	 * @return 写入的长度，失败返回-1
+	 */
+	public static int encrypt(byte[] content, int offset, int len, byte[] key, byte[] output, int outputOffset) {
+		if (!isParamValid(content, offset, len, key, null, 0, "encrypt 9")) {
+			return -1;
+		}
+		if (output == null || outputOffset < 0 || output.length - outputOffset < getEncryptOutputLen(len)) {
+			LogUtil.e(TAG, "encrypt 9 output is null or too short");
+			return -1;
+		}
+		byte[] ivParameter = EncryptUtil.generateSecureRandom(AES_GCM_IV_LEN);
+		if (ivParameter.length != AES_GCM_IV_LEN) {
+			LogUtil.e(TAG, "encrypt 9 generate iv failed");
+			return -1;
+		}
+		System.arraycopy(ivParameter, 0, output, outputOffset, AES_GCM_IV_LEN);
+		int length = doFinal(Cipher.ENCRYPT_MODE, key, output, outputOffset, AES_GCM_IV_LEN, content, offset, len,
+				output, outputOffset + AES_GCM_IV_LEN);
+		return length < 0 ? -1 : AES_GCM_IV_LEN + length;
 	}
 
-	private static byte[] getIV(byte[] bt) {
-		byte[] iv = new byte[AES_GCM_IV_LEN];
-		System.arraycopy(bt, 0, iv, 0, AES_GCM_IV_LEN);
-		return iv;
+	/**
+	 * AES GCM加密，IV取自计数器nonce序列，不生成随机数
+	 *
+	 * @param content  待加密内容
+	 * @param sequence nonce序列，同时提供当前密钥
+	 * @return IV + 密文 + tag，使用序列当前密钥调用{@link #decrypt(byte[], byte[])}解密
+	 */
+	public static byte[] encrypt(byte[] content, NonceSequence sequence) {
+		if (content == null) {
+			LogUtil.e(TAG, "encrypt 10 content is null");
+			return new byte[0];
+		}
+		byte[] output = new byte[getEncryptOutputLen(content.length)];
+		int length = encrypt(content, 0, content.length, sequence, output, 0);
+		if (length < 0) {
+			return new byte[0];
+		}
+		return output;
 	}
 
-	private static byte[] getEncryptContent(byte[] bt) {
-		byte[] encryptContent = new byte[bt.length - AES_GCM_IV_LEN];
-		System.arraycopy(bt, AES_GCM_IV_LEN, encryptContent, 0, bt.length - AES_GCM_IV_LEN);
-		return encryptContent;
+	/**
+	 * AES GCM加密，IV取自计数器nonce序列，输出直接写入调用方提供的数组
+	 *
+	 * @param content      待加密内容
+	 * @param offset       待加密内容起始位置
+	 * @param len          待加密内容长度
+	 * @param sequence     nonce序列，同时提供当前密钥
+	 * @param output       输出数组，剩余长度不少于{@link #getEncryptOutputLen(int)}
+	 * @param outputOffset 输出起始位置
+	 * @return 写入的长度，失败返回-1
+	 */
+	public static int encrypt(byte[] content, int offset, int len, NonceSequence sequence, byte[] output,
+							  int outputOffset) {
+		if (sequence == null) {
+			LogUtil.e(TAG, "encrypt 11 nonce sequence is null");
+			return -1;
+		}
+		if (content == null || offset < 0 || len < 0 || content.length - offset < len) {
+			LogUtil.e(TAG, "encrypt 11 content is null or out of range");
+			return -1;
+		}
+		if (output == null || outputOffset < 0 || output.length - outputOffset < getEncryptOutputLen(len)) {
+			LogUtil.e(TAG, "encrypt 11 output is null or too short");
+			return -1;
+		}
+		if (!isBuildVersionHigherThan19()) {
+			LogUtil.e(TAG, "encrypt 11 build version not higher than 19");
+			return -1;
+		}
+		byte[] key = sequence.next(output, outputOffset);
+		if (key == null) {
+			LogUtil.e(TAG, "encrypt 11 nonce sequence exhausted");
+			return -1;
+		}
+		int length;
+		try {
+			length = doFinal(Cipher.ENCRYPT_MODE, key, output, outputOffset, AES_GCM_IV_LEN, content, offset, len,
+					output, outputOffset + AES_GCM_IV_LEN);
+		} finally {
+			Arrays.fill(key, (byte) 0);
+		}
+		return length < 0 ? -1 : AES_GCM_IV_LEN + length;
+	}
+
+	/**
+	 * AES GCM解密 IV + 密文 + tag 格式的数据，明文直接写入调用方提供的数组。
+	 * 输出可以与输入是同一个数组（原地解密）。
+	 *
+	 * @param content      IV + 密文 + tag
+	 * @param offset       起始位置
+	 * @param len          长度
+	 * @param key          字节数组形式密钥
+	 * @param output       输出数组，剩余长度不少于 len - 28
+	 * @param outputOffset 输出起始位置
+	 * @return 明文长度，失败返回-1
+	 */
+	public static int decrypt(byte[] content, int offset, int len, byte[] key, byte[] output, int outputOffset) {
+		if (!isParamValid(content, offset, len, key, null, 0, "decrypt 9")) {
+			return -1;
+		}
+		if (len < AES_GCM_IV_LEN + AES_GCM_TAG_LEN) {
+			LogUtil.e(TAG, "decrypt 9 content is too short");
+			return -1;
+		}
+		if (output == null || outputOffset < 0
+				|| output.length - outputOffset < len - AES_GCM_IV_LEN - AES_GCM_TAG_LEN) {
+			LogUtil.e(TAG, "decrypt 9 output is null or too short");
+			return -1;
+		}
+		return doFinal(Cipher.DECRYPT_MODE, key, content, offset, AES_GCM_IV_LEN, content, offset + AES_GCM_IV_LEN,
+				len - AES_GCM_IV_LEN, output, outputOffset);
+	}
+
+	/**
+	 * AES GCM加密，IV + 密文 + tag 直接写入dst，不产生中间数组，支持direct buffer。
+	 * 成功时src的position移动到limit，失败时src和dst的position不变。
+	 *
+	 * @param src 待加密内容
+	 * @param dst 输出，剩余空间不少于{@link #getEncryptOutputLen(int)}
+	 * @param key 字节数组形式密钥
+	 * @return 写入的长度，失败返回-1
+	 */
+	public static int encrypt(ByteBuffer src, ByteBuffer dst, byte[] key) {
+		if (src == null || dst == null) {
+			LogUtil.e(TAG, "encrypt 12 src or dst is null");
+			return -1;
+		}
+		if (src == dst) {
+			LogUtil.e(TAG, "encrypt 12 src and dst must not be the same buffer");
+			return -1;
+		}
+		if (!isKeyValid(key, "encrypt 12")) {
+			return -1;
+		}
+		if (dst.remaining() < getEncryptOutputLen(src.remaining())) {
+			LogUtil.e(TAG, "encrypt 12 dst is too short");
+			return -1;
+		}
+		byte[] ivParameter = EncryptUtil.generateSecureRandom(AES_GCM_IV_LEN);
+		if (ivParameter.length != AES_GCM_IV_LEN) {
+			LogUtil.e(TAG, "encrypt 12 generate iv failed");
+			return -1;
+		}
+		int srcPosition = src.position();
+		int dstPosition = dst.position();
+		int srcRemaining = src.remaining();
+		long start = MetricsUtil.start();
+		try {
+			Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, key, ivParameter, 0, AES_GCM_IV_LEN);
+			dst.put(ivParameter);
+			int length = AES_GCM_IV_LEN + cipher.doFinal(src, dst);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.ENCRYPT, AES_GCM_ALGORITHM, srcRemaining, start);
+			return length;
+		} catch (GeneralSecurityException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, AES_GCM_ALGORITHM, e, start);
+			LogUtil.e(TAG, "GCM encrypt data error" + e.getMessage());
+		}
+		src.position(srcPosition);
+		dst.position(dstPosition);
+		return -1;
+	}
+
+	/**
+	 * AES GCM解密 IV + 密文 + tag 格式的数据，明文直接写入dst，支持direct buffer。
+	 * 成功时src的position移动到limit，失败时src和dst的position不变。
+	 *
+	 * @param src IV + 密文 + tag
+	 * @param dst 输出，剩余空间不少于 src.remaining() - 28
+	 * @param key 字节数组形式密钥
+	 * @return 明文长度，失败返回-1
+	 */
+	public static int decrypt(ByteBuffer src, ByteBuffer dst, byte[] key) {
+		if (src == null || dst == null) {
+			LogUtil.e(TAG, "decrypt 10 src or dst is null");
+			return -1;
+		}
+		if (src == dst) {
+			LogUtil.e(TAG, "decrypt 10 src and dst must not be the same buffer");
+			return -1;
+		}
+		if (!isKeyValid(key, "decrypt 10")) {
+			return -1;
+		}
+		if (src.remaining() < AES_GCM_IV_LEN + AES_GCM_TAG_LEN) {
+			LogUtil.e(TAG, "decrypt 10 src is too short");
+			return -1;
+		}
+		if (dst.remaining() < src.remaining() - AES_GCM_IV_LEN - AES_GCM_TAG_LEN) {
+			LogUtil.e(TAG, "decrypt 10 dst is too short");
+			return -1;
+		}
+		int srcPosition = src.position();
+		int dstPosition = dst.position();
+		int srcRemaining = src.remaining();
+		long start = MetricsUtil.start();
+		try {
+			byte[] ivParameter = new byte[AES_GCM_IV_LEN];
+			src.get(ivParameter);
+			Cipher cipher = initCipher(Cipher.DECRYPT_MODE, key, ivParameter, 0, AES_GCM_IV_LEN);
+			int length = cipher.doFinal(src, dst);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.DECRYPT, AES_GCM_ALGORITHM, srcRemaining, start);
+			return length;
+		} catch (GeneralSecurityException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, AES_GCM_ALGORITHM, e, start);
+			LogUtil.e(TAG, "GCM decrypt data exception: " + e.getMessage());
+		}
+		src.position(srcPosition);
+		dst.position(dstPosition);
+		return -1;
+	}
+
+	/**
+	 * 批量加密，所有记录共用一次密钥初始化和一次随机数生成，结果连续存放在一个数组中
+	 *
+	 * @param contents 待加密内容列表
+	 * @param key      加密密钥
+	 * @return 批量结果，每条记录格式为 IV + 密文 + tag，失败返回null
+	 */
+	public static AesGcmBatch encryptBatch(List<byte[]> contents, byte[] key) {
+		return encryptBatch(contents, key, null);
+	}
+
+	/**
+	 * 批量加密，记录较多时拆分到executor上并行处理，当前线程也参与处理并等待全部完成
+	 *
+	 * @param contents 待加密内容列表
+	 * @param key      加密密钥
+	 * @param executor 并行处理使用的executor，为null时在当前线程处理
+	 * @return 批量结果，每条记录格式为 IV + 密文 + tag，失败返回null
+	 */
+	public static AesGcmBatch encryptBatch(List<byte[]> contents, byte[] key, Executor executor) {
+		if (!isBatchValid(contents, key, "encrypt batch")) {
+			return null;
+		}
+		int count = contents.size();
+		byte[][] arrays = contents.toArray(new byte[count][]);
+		int[] lens = new int[count];
+		for (int i = 0; i < count; i++) {
+			lens[i] = arrays[i].length;
+		}
+		return AesGcmBatch.encrypt(arrays, new int[count], lens, key, executor);
+	}
+
+	/**
+	 * 批量解密
+	 *
+	 * @param contents 每条格式为 IV + 密文 + tag 的列表
+	 * @param key      解密密钥
+	 * @return 批量结果，单条解密失败时该条标记为失败、长度为0，参数错误或工作线程异常退出返回null
+	 */
+	public static AesGcmBatch decryptBatch(List<byte[]> contents, byte[] key) {
+		return decryptBatch(contents, key, null);
+	}
+
+	/**
+	 * 批量解密，记录较多时拆分到executor上并行处理
+	 *
+	 * @param contents 每条格式为 IV + 密文 + tag 的列表
+	 * @param key      解密密钥
+	 * @param executor 并行处理使用的executor，为null时在当前线程处理
+	 * @return 批量结果，单条解密失败时该条标记为失败、长度为0，参数错误或工作线程异常退出返回null
+	 */
+	public static AesGcmBatch decryptBatch(List<byte[]> contents, byte[] key, Executor executor) {
+		if (!isBatchValid(contents, key, "decrypt batch")) {
+			return null;
+		}
+		int count = contents.size();
+		byte[][] arrays = contents.toArray(new byte[count][]);
+		int[] lens = new int[count];
+		for (int i = 0; i < count; i++) {
+			lens[i] = arrays[i].length;
+		}
+		return AesGcmBatch.decrypt(arrays, new int[count], lens, key, executor);
+	}
+
+	/**
+	 * 批量解密{@link #encryptBatch(List, byte[])}的结果，直接读取连续数组，不拆分拷贝
+	 *
+	 * @param batch 批量加密结果
+	 * @param key   解密密钥
+	 * @return 批量结果，单条解密失败时该条标记为失败、长度为0，参数错误或工作线程异常退出返回null
+	 */
+	public static AesGcmBatch decryptBatch(AesGcmBatch batch, byte[] key) {
+		return decryptBatch(batch, key, null);
+	}
+
+	/**
+	 * 批量解密{@link #encryptBatch(List, byte[])}的结果，记录较多时拆分到executor上并行处理
+	 *
+	 * @param batch    批量加密结果
+	 * @param key      解密密钥
+	 * @param executor 并行处理使用的executor，为null时在当前线程处理
+	 * @return 批量结果，单条解密失败时该条标记为失败、长度为0，参数错误或工作线程异常退出返回null
+	 */
+	public static AesGcmBatch decryptBatch(AesGcmBatch batch, byte[] key, Executor executor) {
+		if (batch == null) {
+			LogUtil.e(TAG, "decrypt batch is null");
+			return null;
+		}
+		if (!isKeyValid(key, "decrypt batch")) {
+			return null;
+		}
+		int count = batch.size();
+		byte[][] arrays = new byte[count][];
+		int[] offsets = new int[count];
+		int[] lens = new int[count];
+		for (int i = 0; i < count; i++) {
+			arrays[i] = batch.getData();
+			offsets[i] = batch.getOffset(i);
+			lens[i] = batch.getLength(i);
+		}
+		return AesGcmBatch.decrypt(arrays, offsets, lens, key, executor);
+	}
+
+	/**
+	 * 获取 IV + 密文 + tag 的长度
+	 *
+	 * @param contentLen 明文长度
+	 * @return 加密输出长度
+	 */
+	public static int getEncryptOutputLen(int contentLen) {
+		return AES_GCM_IV_LEN + contentLen + AES_GCM_TAG_LEN;
+	}
+
+	private static int doFinal(int mode, byte[] key, byte[] ivBuffer, int ivOffset, int ivLen, byte[] input,
+							   int inputOffset, int inputLen, byte[] output, int outputOffset) {
+		CryptoMetrics.Operation operation = mode == Cipher.ENCRYPT_MODE
+				? CryptoMetrics.Operation.ENCRYPT : CryptoMetrics.Operation.DECRYPT;
+		long start = MetricsUtil.start();
+		try {
+			Cipher cipher = initCipher(mode, key, ivBuffer, ivOffset, ivLen);
+			int length = cipher.doFinal(input, inputOffset, inputLen, output, outputOffset);
+			MetricsUtil.onSuccess(operation, AES_GCM_ALGORITHM, inputLen, start);
+			return length;
+		} catch (GeneralSecurityException e) {
+			MetricsUtil.onFailure(operation, AES_GCM_ALGORITHM, e, start);
+			LogUtil.e(TAG, "GCM " + (mode == Cipher.ENCRYPT_MODE ? "encrypt" : "decrypt")
+					+ " data exception: " + e.getMessage());
+		}
+		return -1;
+	}
+
+	private static Cipher initCipher(int mode, byte[] key, byte[] ivBuffer, int ivOffset, int ivLen)
+			throws GeneralSecurityException {
+		SecretKeySpec secretkey = new SecretKeySpec(key, AES_ALGORITHM);
+		return CipherUtil.initPooledCipher(AES_GCM_ALGORITHM, mode, secretkey,
+				getGcmAlgorithmParams(ivBuffer, ivOffset, ivLen));
+	}
+
+	/**
+	 * 解密信封，失败返回null以便调用方回退到旧格式
+	 */
+	private static byte[] decryptEnvelope(CipherEnvelope envelope, byte[] key) {
+		if (envelope == null || envelope.getAlgorithm() != CipherEnvelope.ALG_AES_GCM
+				|| envelope.getNonceLength() != AES_GCM_IV_LEN || envelope.getPayloadLength() < AES_GCM_TAG_LEN) {
+			return null;
+		}
+		if (!isKeyValid(key, "decrypt envelope")) {
+			return null;
+		}
+		byte[] data = envelope.getData();
+		long start = MetricsUtil.start();
+		try {
+			Cipher cipher = initCipher(Cipher.DECRYPT_MODE, key, data, envelope.getNonceOffset(), AES_GCM_IV_LEN);
+			cipher.updateAAD(data, envelope.getHeaderOffset(), envelope.getHeaderLength());
+			byte[] result = cipher.doFinal(data, envelope.getPayloadOffset(), envelope.getPayloadLength());
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.DECRYPT, AES_GCM_ALGORITHM, envelope.getPayloadLength(), start);
+			return result;
+		} catch (GeneralSecurityException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, AES_GCM_ALGORITHM, e, start);
+			LogUtil.e(TAG, "GCM decrypt envelope exception: " + e.getMessage());
+		}
+		return null;
+	}
+
+	private static boolean isBatchValid(List<byte[]> contents, byte[] key, String method) {
+		if (contents == null) {
+			LogUtil.e(TAG, method + " contents is null");
+			return false;
+		}
+		for (byte[] content : contents) {
+			if (content == null) {
+				LogUtil.e(TAG, method + " contents contains null");
+				return false;
+			}
+		}
+		return isKeyValid(key, method);
+	}
+
+	private static boolean isKeyValid(byte[] key, String method) {
+		if (key == null) {
+			LogUtil.e(TAG, method + " key is null");
+			return false;
+		}
+		if (key.length < AES_GCM_KEY_LEN) {
+			LogUtil.e(TAG, method + " key error: key length less than 16 bytes.");
+			return false;
+		}
+		if (!isBuildVersionHigherThan19()) {
+			LogUtil.e(TAG, method + " build version not higher than 19");
+			return false;
+		}
+		return true;
+	}
+
+	private static boolean isParamValid(byte[] content, int offset, int len, byte[] key, byte[] ivParameter,
+										int ivOffset, String method) {
+		if (content == null) {
+			LogUtil.e(TAG, method + " content is null");
+			return false;
+		}
+		if (offset < 0 || len < 0 || content.length - offset < len) {
+			LogUtil.e(TAG, method + " offset or length is out of range");
+			return false;
+		}
+		if (ivParameter != null && ivParameter.length - ivOffset < AES_GCM_IV_LEN) {
+			LogUtil.e(TAG, method + " iv error: iv length less than 12 bytes.");
+			return false;
+		}
+		return isKeyValid(key, method);
 	}
 
 
@@ -689,12 +1291,24 @@ public final class AesGcm {
 	 * @return
 	 */
 	public static AlgorithmParameterSpec getGcmAlgorithmParams(final byte[] buf) {
+		return getGcmAlgorithmParams(buf, 0, buf.length);
+	}
+
+	/**
+	 * 使用数组的一部分作为IV，避免拷贝IV
+	 *
+	 * @param buf    包含IV的数组
+	 * @param offset IV起始位置
+	 * @param len    IV长度
+	 * @return
+	 */
+	public static AlgorithmParameterSpec getGcmAlgorithmParams(final byte[] buf, int offset, int len) {
 		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
 			// GCMParameterSpec should always be present in Java 7 or newer, but it's missing on
 			// some Android devices with API level <= 19. Fortunately, we can initialize the cipher
 			// with just an IvParameterSpec. It will use a tag size of 128 bits.
-			return new IvParameterSpec(buf);
+			return new IvParameterSpec(buf, offset, len);
 		}
-		return new GCMParameterSpec(128, buf);
+		return new GCMParameterSpec(AES_GCM_TAG_LEN * 8, buf, offset, len);
 	}
 }
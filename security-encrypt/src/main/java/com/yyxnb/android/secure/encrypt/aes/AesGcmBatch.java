@@ -0,0 +1,334 @@
+package com.yyxnb.android.secure.encrypt.aes;
+
+import com.yyxnb.android.secure.utils.EncryptUtil;
+import com.yyxnb.android.secure.utils.LogUtil;
+
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AES/GCM批量加解密结果
+ * <p>
+ * 所有记录连续存放在一个数组中，第 i 条记录位于 [getOffset(i), getOffset(i) + getLength(i))。
+ * 加密结果每条记录的格式与{@link AesGcm#encrypt(byte[], byte[])}一致：IV + 密文 + tag。
+ * <p>
+ * 通过{@link AesGcm#encryptBatch(List, byte[])}、{@link AesGcm#decryptBatch(AesGcmBatch, byte[])}等方法获取。
+ *
+ * @author yyx
+ * @date 2023/10/10
+ */
+public final class AesGcmBatch {
+
+	private static final String TAG = "GCMBatch";
+
+	private static final String AES_GCM_ALGORITHM = "AES/GCM/NoPadding";
+
+	private static final String AES_ALGORITHM = "AES";
+
+	private static final int AES_GCM_IV_LEN = 12;
+
+	private static final int AES_GCM_TAG_LEN = 16;
+
+	/**
+	 * 并行处理时每个任务最少处理的记录数，记录太少时拆分任务得不偿失
+	 */
+	private static final int MIN_RECORDS_PER_TASK = 256;
+
+	private final byte[] data;
+
+	private final int[] offsets;
+
+	private final boolean[] failed;
+
+	private AesGcmBatch(byte[] data, int[] offsets, boolean[] failed) {
+		this.data = data;
+		this.offsets = offsets;
+		this.failed = failed;
+	}
+
+	/**
+	 * 记录条数
+	 *
+	 * @return 记录条数
+	 */
+	public int size() {
+		return offsets.length - 1;
+	}
+
+	/**
+	 * 所有记录连续存放的数组，不做拷贝
+	 *
+	 * @return 数据数组
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	/**
+	 * 第 index 条记录在数据数组中的起始位置
+	 *
+	 * @param index 记录下标
+	 * @return 起始位置
+	 */
+	public int getOffset(int index) {
+		return offsets[index];
+	}
+
+	/**
+	 * 第 index 条记录的长度，处理失败的记录长度为0
+	 *
+	 * @param index 记录下标
+	 * @return 长度
+	 */
+	public int getLength(int index) {
+		return offsets[index + 1] - offsets[index];
+	}
+
+	/**
+	 * 第 index 条记录是否处理失败
+	 *
+	 * @param index 记录下标
+	 * @return 失败返回true
+	 */
+	public boolean isFailed(int index) {
+		return failed[index];
+	}
+
+	/**
+	 * 是否有处理失败的记录
+	 *
+	 * @return 有失败记录返回true
+	 */
+	public boolean hasFailure() {
+		for (boolean item : failed) {
+			if (item) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 拷贝出第 index 条记录
+	 *
+	 * @param index 记录下标
+	 * @return 记录内容，处理失败的记录返回空数组
+	 */
+	public byte[] get(int index) {
+		return Arrays.copyOfRange(data, offsets[index], offsets[index + 1]);
+	}
+
+	/**
+	 * 拷贝出所有记录
+	 *
+	 * @return 记录列表
+	 */
+	public List<byte[]> toList() {
+		List<byte[]> list = new ArrayList<>(size());
+		for (int i = 0; i < size(); i++) {
+			list.add(get(i));
+		}
+		return list;
+	}
+
+	static AesGcmBatch encrypt(byte[][] contents, int[] contentOffsets, int[] contentLens, byte[] key,
+							   Executor executor) {
+		final int count = contents.length;
+		int[] offsets = new int[count + 1];
+		long total = 0;
+		for (int i = 0; i < count; i++) {
+			offsets[i] = (int) total;
+			total += AesGcm.getEncryptOutputLen(contentLens[i]);
+			if (total > Integer.MAX_VALUE) {
+				LogUtil.e(TAG, "encrypt batch is too large");
+				return null;
+			}
+		}
+		offsets[count] = (int) total;
+		// 一次性生成所有IV，直接写入每条记录的开头
+		byte[] ivs = EncryptUtil.generateSecureRandom(AES_GCM_IV_LEN * count);
+		if (ivs.length != AES_GCM_IV_LEN * count) {
+			LogUtil.e(TAG, "encrypt batch generate iv failed");
+			return null;
+		}
+		byte[] data = new byte[(int) total];
+		for (int i = 0; i < count; i++) {
+			System.arraycopy(ivs, i * AES_GCM_IV_LEN, data, offsets[i], AES_GCM_IV_LEN);
+		}
+		AesGcmBatch batch = new AesGcmBatch(data, offsets, new boolean[count]);
+		RangeTask task = new RangeTask(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, AES_ALGORITHM),
+				contents, contentOffsets, contentLens, batch);
+		return task.execute(executor) ? batch : null;
+	}
+
+	static AesGcmBatch decrypt(byte[][] contents, int[] contentOffsets, int[] contentLens, byte[] key,
+							   Executor executor) {
+		final int count = contents.length;
+		int[] offsets = new int[count + 1];
+		boolean[] failed = new boolean[count];
+		int total = 0;
+		for (int i = 0; i < count; i++) {
+			offsets[i] = total;
+			if (contentLens[i] < AES_GCM_IV_LEN + AES_GCM_TAG_LEN) {
+				failed[i] = true;
+			} else {
+				total += contentLens[i] - AES_GCM_IV_LEN - AES_GCM_TAG_LEN;
+			}
+		}
+		offsets[count] = total;
+		AesGcmBatch batch = new AesGcmBatch(new byte[total], offsets, failed);
+		RangeTask task = new RangeTask(Cipher.DECRYPT_MODE, new SecretKeySpec(key, AES_ALGORITHM),
+				contents, contentOffsets, contentLens, batch);
+		return task.execute(executor) ? batch : null;
+	}
+
+	/**
+	 * 失败的记录把长度收缩为0，只在所有任务完成后调用
+	 */
+	private void compactFailed() {
+		if (!hasFailure()) {
+			return;
+		}
+		int write = 0;
+		for (int i = 0; i < size(); i++) {
+			int start = offsets[i];
+			int length = failed[i] ? 0 : offsets[i + 1] - start;
+			System.arraycopy(data, start, data, write, length);
+			offsets[i] = write;
+			write += length;
+		}
+		Arrays.fill(data, write, offsets[size()], (byte) 0);
+		offsets[size()] = write;
+	}
+
+	private static final class RangeTask {
+
+		private final int mode;
+
+		private final SecretKeySpec secretKey;
+
+		private final byte[][] contents;
+
+		private final int[] contentOffsets;
+
+		private final int[] contentLens;
+
+		private final AesGcmBatch batch;
+
+		private final AtomicBoolean aborted = new AtomicBoolean(false);
+
+		RangeTask(int mode, SecretKeySpec secretKey, byte[][] contents, int[] contentOffsets, int[] contentLens,
+				  AesGcmBatch batch) {
+			this.mode = mode;
+			this.secretKey = secretKey;
+			this.contents = contents;
+			this.contentOffsets = contentOffsets;
+			this.contentLens = contentLens;
+			this.batch = batch;
+		}
+
+		boolean execute(Executor executor) {
+			int count = contents.length;
+			int tasks = executor == null ? 1 : Math.min(Runtime.getRuntime().availableProcessors(),
+					(count + MIN_RECORDS_PER_TASK - 1) / MIN_RECORDS_PER_TASK);
+			if (tasks <= 1) {
+				run(0, count);
+			} else {
+				final CountDownLatch latch = new CountDownLatch(tasks - 1);
+				int step = (count + tasks - 1) / tasks;
+				for (int t = 1; t < tasks; t++) {
+					final int from = t * step;
+					final int to = Math.min(count, from + step);
+					Runnable runnable = new Runnable() {
+						@Override
+						public void run() {
+							boolean completed = false;
+							try {
+								RangeTask.this.run(from, to);
+								completed = true;
+							} finally {
+								// 工作线程异常退出时该段结果不可信，整批作废
+								if (!completed) {
+									aborted.set(true);
+								}
+								latch.countDown();
+							}
+						}
+					};
+					try {
+						executor.execute(runnable);
+					} catch (RejectedExecutionException e) {
+						LogUtil.i(TAG, "executor rejected, run on current thread");
+						runnable.run();
+					}
+				}
+				// 当前线程处理第一段
+				run(0, Math.min(count, step));
+				try {
+					latch.await();
+				} catch (InterruptedException e) {
+					LogUtil.e(TAG, "batch interrupted");
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+			if (aborted.get()) {
+				return false;
+			}
+			if (mode == Cipher.DECRYPT_MODE) {
+				batch.compactFailed();
+			}
+			return true;
+		}
+
+		private void run(int from, int to) {
+			for (int i = from; i < to; i++) {
+				if (batch.failed[i]) {
+					continue;
+				}
+				try {
+					if (mode == Cipher.ENCRYPT_MODE) {
+						seal(i);
+					} else {
+						open(i);
+					}
+				} catch (GeneralSecurityException | RuntimeException e) {
+					// provider可能抛出ProviderException、IllegalStateException等运行时异常，同样按失败处理
+					LogUtil.e(TAG, "batch record " + i + " exception: " + e.getMessage());
+					batch.failed[i] = true;
+					if (mode == Cipher.ENCRYPT_MODE) {
+						// 加密失败说明密钥或环境有问题，整批作废
+						aborted.set(true);
+						return;
+					}
+				}
+			}
+		}
+
+		private void seal(int index) throws GeneralSecurityException {
+			int outputOffset = batch.offsets[index];
+			Cipher cipher = CipherUtil.initPooledCipher(AES_GCM_ALGORITHM, Cipher.ENCRYPT_MODE, secretKey,
+					AesGcm.getGcmAlgorithmParams(batch.data, outputOffset, AES_GCM_IV_LEN));
+			cipher.doFinal(contents[index], contentOffsets[index], contentLens[index], batch.data,
+					outputOffset + AES_GCM_IV_LEN);
+		}
+
+		private void open(int index) throws GeneralSecurityException {
+			byte[] content = contents[index];
+			int offset = contentOffsets[index];
+			Cipher cipher = CipherUtil.initPooledCipher(AES_GCM_ALGORITHM, Cipher.DECRYPT_MODE, secretKey,
+					AesGcm.getGcmAlgorithmParams(content, offset, AES_GCM_IV_LEN));
+			cipher.doFinal(content, offset + AES_GCM_IV_LEN, contentLens[index] - AES_GCM_IV_LEN, batch.data,
+					batch.offsets[index]);
+		}
+	}
+}
@@ -0,0 +1,334 @@
+package com.yyxnb.android.secure.encrypt.aes;
+
+import android.text.TextUtils;
+
+import com.yyxnb.android.secure.utils.EncryptUtil;
+import com.yyxnb.android.secure.utils.HexUtil;
+import com.yyxnb.android.secure.utils.LogUtil;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 绑定单个密钥的AES/GCM加解密上下文
+ * <p>
+ * 密钥的解析、长度和系统版本校验、SecretKeySpec的创建只在{@link #create(byte[])}时执行一次，
+ * 适合同一个工作密钥加解密大量小数据的场景。输出格式与{@link AesGcm}一致：IV（12字节）+ 密文 + tag（16字节），
+ * 两者可以互相解密。
+ * <p>
+ * 线程安全，cipher按线程复用。
+ *
+ * @author yyx
+ * @date 2023/10/9
+ */
+public final class AesGcmKeyContext {
+
+	private static final String TAG = "GCMKeyContext";
+
+	private static final String AES_GCM_ALGORITHM = "AES/GCM/NoPadding";
+
+	private static final String AES_ALGORITHM = "AES";
+
+	private static final String EMPTY = "";
+
+	private static final int AES_GCM_KEY_LEN = 16;
+
+	private static final int AES_GCM_IV_LEN = 12;
+
+	private static final int AES_GCM_TAG_LEN = 16;
+
+	private final SecretKeySpec secretKey;
+
+	private AesGcmKeyContext(byte[] key) {
+		this.secretKey = new SecretKeySpec(key, AES_ALGORITHM);
+	}
+
+	/**
+	 * 创建密钥上下文
+	 *
+	 * @param key 字节数组形式密钥，不少于16字节
+	 * @return 密钥上下文，参数不合法时返回null
+	 */
+	public static AesGcmKeyContext create(byte[] key) {
+		if (key == null || key.length < AES_GCM_KEY_LEN) {
+			LogUtil.e(TAG, "create key error: key is null or length less than 16 bytes.");
+			return null;
+		}
+		if (!AesGcm.isBuildVersionHigherThan19()) {
+			LogUtil.e(TAG, "create build version not higher than 19");
+			return null;
+		}
+		return new AesGcmKeyContext(key);
+	}
+
+	/**
+	 * 创建密钥上下文
+	 *
+	 * @param key 十六进制字符串形式的密钥
+	 * @return 密钥上下文，参数不合法时返回null
+	 */
+	public static AesGcmKeyContext create(String key) {
+		if (TextUtils.isEmpty(key)) {
+			LogUtil.e(TAG, "create key is null");
+			return null;
+		}
+		return create(HexUtil.hexStr2ByteArray(key));
+	}
+
+	/**
+	 * 加密
+	 *
+	 * @param content 待加密内容
+	 * @return IV + 密文 + tag，失败返回空数组
+	 */
+	public byte[] seal(byte[] content) {
+		return seal(content, null);
+	}
+
+	/**
+	 * 加密，附加认证数据不加密但参与认证
+	 *
+	 * @param content 待加密内容
+	 * @param aad     附加认证数据，可以为null
+	 * @return IV + 密文 + tag，失败返回空数组
+	 */
+	public byte[] seal(byte[] content, byte[] aad) {
+		if (content == null) {
+			LogUtil.e(TAG, "seal content is null");
+			return new byte[0];
+		}
+		byte[] output = new byte[AesGcm.getEncryptOutputLen(content.length)];
+		return seal(content, 0, content.length, aad, output, 0) < 0 ? new byte[0] : output;
+	}
+
+	/**
+	 * 加密，IV + 密文 + tag 直接写入调用方提供的数组
+	 *
+	 * @param content      待加密内容
+	 * @param offset       起始位置
+	 * @param len          长度
+	 * @param aad          附加认证数据，可以为null
+	 * @param output       输出数组，剩余长度不少于{@link AesGcm#getEncryptOutputLen(int)}
+	 * @param outputOffset 输出起始位置
+	 * @return 写入的长度，失败返回-1
+	 */
+	public int seal(byte[] content, int offset, int len, byte[] aad, byte[] output, int outputOffset) {
+		if (!isRangeValid(content, offset, len, "seal")) {
+			return -1;
+		}
+		if (output == null || outputOffset < 0 || output.length - outputOffset < AesGcm.getEncryptOutputLen(len)) {
+			LogUtil.e(TAG, "seal output is null or too short");
+			return -1;
+		}
+		if (!nextIv(output, outputOffset)) {
+			return -1;
+		}
+		try {
+			Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, output, outputOffset, aad);
+			return AES_GCM_IV_LEN + cipher.doFinal(content, offset, len, output, outputOffset + AES_GCM_IV_LEN);
+		} catch (GeneralSecurityException e) {
+			LogUtil.e(TAG, "seal exception: " + e.getMessage());
+		}
+		return -1;
+	}
+
+	/**
+	 * 加密，IV + 密文 + tag 直接写入dst，支持direct buffer
+	 *
+	 * @param src 待加密内容
+	 * @param dst 输出，剩余空间不少于{@link AesGcm#getEncryptOutputLen(int)}
+	 * @param aad 附加认证数据，可以为null
+	 * @return 写入的长度，失败返回-1
+	 */
+	public int seal(ByteBuffer src, ByteBuffer dst, byte[] aad) {
+		if (src == null || dst == null || dst.remaining() < AesGcm.getEncryptOutputLen(src.remaining())) {
+			LogUtil.e(TAG, "seal src or dst is null, or dst is too short");
+			return -1;
+		}
+		byte[] iv = new byte[AES_GCM_IV_LEN];
+		if (!nextIv(iv, 0)) {
+			return -1;
+		}
+		int srcPosition = src.position();
+		int dstPosition = dst.position();
+		try {
+			Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, iv, 0, aad);
+			dst.put(iv);
+			return AES_GCM_IV_LEN + cipher.doFinal(src, dst);
+		} catch (GeneralSecurityException e) {
+			LogUtil.e(TAG, "seal exception: " + e.getMessage());
+		}
+		src.position(srcPosition);
+		dst.position(dstPosition);
+		return -1;
+	}
+
+	/**
+	 * 解密
+	 *
+	 * @param content IV + 密文 + tag
+	 * @return 明文，失败返回空数组
+	 */
+	public byte[] open(byte[] content) {
+		return open(content, null);
+	}
+
+	/**
+	 * 解密
+	 *
+	 * @param content IV + 密文 + tag
+	 * @param aad     加密时使用的附加认证数据，可以为null
+	 * @return 明文，失败返回空数组
+	 */
+	public byte[] open(byte[] content, byte[] aad) {
+		if (content == null || content.length < AES_GCM_IV_LEN + AES_GCM_TAG_LEN) {
+			LogUtil.e(TAG, "open content is null or too short");
+			return new byte[0];
+		}
+		byte[] output = new byte[content.length - AES_GCM_IV_LEN - AES_GCM_TAG_LEN];
+		return open(content, 0, content.length, aad, output, 0) < 0 ? new byte[0] : output;
+	}
+
+	/**
+	 * 解密，明文直接写入调用方提供的数组，输出可以与输入是同一个数组
+	 *
+	 * @param content      IV + 密文 + tag
+	 * @param offset       起始位置
+	 * @param len          长度
+	 * @param aad          加密时使用的附加认证数据，可以为null
+	 * @param output       输出数组，剩余长度不少于 len - 28
+	 * @param outputOffset 输出起始位置
+	 * @return 明文长度，失败返回-1
+	 */
+	public int open(byte[] content, int offset, int len, byte[] aad, byte[] output, int outputOffset) {
+		if (!isRangeValid(content, offset, len, "open")) {
+			return -1;
+		}
+		if (len < AES_GCM_IV_LEN + AES_GCM_TAG_LEN) {
+			LogUtil.e(TAG, "open content is too short");
+			return -1;
+		}
+		if (output == null || outputOffset < 0
+				|| output.length - outputOffset < len - AES_GCM_IV_LEN - AES_GCM_TAG_LEN) {
+			LogUtil.e(TAG, "open output is null or too short");
+			return -1;
+		}
+		try {
+			Cipher cipher = initCipher(Cipher.DECRYPT_MODE, content, offset, aad);
+			return cipher.doFinal(content, offset + AES_GCM_IV_LEN, len - AES_GCM_IV_LEN, output, outputOffset);
+		} catch (GeneralSecurityException e) {
+			LogUtil.e(TAG, "open exception: " + e.getMessage());
+		}
+		return -1;
+	}
+
+	/**
+	 * 解密，明文直接写入dst，支持direct buffer
+	 *
+	 * @param src IV + 密文 + tag
+	 * @param dst 输出，剩余空间不少于 src.remaining() - 28
+	 * @param aad 加密时使用的附加认证数据，可以为null
+	 * @return 明文长度，失败返回-1
+	 */
+	public int open(ByteBuffer src, ByteBuffer dst, byte[] aad) {
+		if (src == null || dst == null || src.remaining() < AES_GCM_IV_LEN + AES_GCM_TAG_LEN
+				|| dst.remaining() < src.remaining() - AES_GCM_IV_LEN - AES_GCM_TAG_LEN) {
+			LogUtil.e(TAG, "open src or dst is null, or length is not right");
+			return -1;
+		}
+		int srcPosition = src.position();
+		int dstPosition = dst.position();
+		try {
+			byte[] iv = new byte[AES_GCM_IV_LEN];
+			src.get(iv);
+			Cipher cipher = initCipher(Cipher.DECRYPT_MODE, iv, 0, aad);
+			return cipher.doFinal(src, dst);
+		} catch (GeneralSecurityException e) {
+			LogUtil.e(TAG, "open exception: " + e.getMessage());
+		}
+		src.position(srcPosition);
+		dst.position(dstPosition);
+		return -1;
+	}
+
+	/**
+	 * 加密字符串，输出格式与{@link AesGcm#encrypt(String, byte[])}一致
+	 *
+	 * @param content 待加密内容
+	 * @return 十六进制形式的 IV + 密文
+	 */
+	public String sealString(String content) {
+		if (TextUtils.isEmpty(content)) {
+			LogUtil.e(TAG, "seal content is null");
+			return EMPTY;
+		}
+		try {
+			byte[] sealed = seal(content.getBytes("UTF-8"));
+			return sealed.length == 0 ? EMPTY : HexUtil.byteArray2HexStr(sealed);
+		} catch (UnsupportedEncodingException e) {
+			LogUtil.e(TAG, "seal string exception: " + e.getMessage());
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * 解密字符串，可解密{@link AesGcm#encrypt(String, byte[])}的结果
+	 *
+	 * @param content 十六进制形式的 IV + 密文
+	 * @return 明文
+	 */
+	public String openString(String content) {
+		if (TextUtils.isEmpty(content)) {
+			LogUtil.e(TAG, "open content is null");
+			return EMPTY;
+		}
+		byte[] sealed = HexUtil.hexStr2ByteArray(content);
+		if (sealed.length < AES_GCM_IV_LEN + AES_GCM_TAG_LEN) {
+			LogUtil.e(TAG, "open content is too short");
+			return EMPTY;
+		}
+		int length = open(sealed, 0, sealed.length, null, sealed, 0);
+		if (length < 0) {
+			return EMPTY;
+		}
+		try {
+			return new String(sealed, 0, length, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			LogUtil.e(TAG, "open string exception: " + e.getMessage());
+		}
+		return EMPTY;
+	}
+
+	private boolean nextIv(byte[] output, int offset) {
+		if (!EncryptUtil.generateSecureRandom(output, offset, AES_GCM_IV_LEN)) {
+			LogUtil.e(TAG, "generate iv failed");
+			return false;
+		}
+		return true;
+	}
+
+	private Cipher initCipher(int mode, byte[] ivBuffer, int ivOffset, byte[] aad) throws GeneralSecurityException {
+		Cipher cipher = CipherUtil.initPooledCipher(AES_GCM_ALGORITHM, mode, secretKey,
+				AesGcm.getGcmAlgorithmParams(ivBuffer, ivOffset, AES_GCM_IV_LEN));
+		if (aad != null && aad.length > 0) {
+			cipher.updateAAD(aad);
+		}
+		return cipher;
+	}
+
+	private static boolean isRangeValid(byte[] content, int offset, int len, String method) {
+		if (content == null) {
+			LogUtil.e(TAG, method + " content is null");
+			return false;
+		}
+		if (offset < 0 || len < 0 || content.length - offset < len) {
+			LogUtil.e(TAG, method + " offset or length is out of range");
+			return false;
+		}
+		return true;
+	}
+}
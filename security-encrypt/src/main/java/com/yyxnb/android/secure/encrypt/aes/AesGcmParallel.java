@@ -0,0 +1,274 @@
+package com.yyxnb.android.secure.encrypt.aes;
+
+import com.yyxnb.android.secure.utils.EncryptUtil;
+import com.yyxnb.android.secure.utils.LogUtil;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AES/GCM分段并行加解密
+ * <p>
+ * 密文格式与{@link AesGcmStreams}完全一致，各分段的nonce和AAD只依赖分段序号，互不依赖，
+ * 因此可以拆分到{@link ForkJoinPool}的多个线程上同时处理。本类加密的结果可以用
+ * {@link AesGcmStreams#newDecryptingStream}解密，反之亦然。
+ * <p>
+ * 适合内存中的大块数据，小数据请直接使用{@link AesGcm}。
+ *
+ * @author yyx
+ * @date 2023/10/10
+ */
+public final class AesGcmParallel {
+
+	private static final String TAG = "GCMParallel";
+
+	private static final String AES_GCM_ALGORITHM = "AES/GCM/NoPadding";
+
+	private static final String AES_ALGORITHM = "AES";
+
+	private static final int AES_GCM_KEY_LEN = 16;
+
+	/**
+	 * 单个任务至少处理的明文长度，避免任务拆分过细
+	 */
+	private static final int MIN_TASK_BYTES = 256 * 1024;
+
+	private AesGcmParallel() {
+
+	}
+
+	/**
+	 * 并行加密，使用默认分段长度和默认线程池
+	 *
+	 * @param content 待加密内容
+	 * @param key     加密密钥，不少于16字节
+	 * @return 密文，失败返回空数组
+	 */
+	public static byte[] encrypt(byte[] content, byte[] key) {
+		return encrypt(content, key, AesGcmStreams.DEFAULT_SEGMENT_SIZE, null);
+	}
+
+	/**
+	 * 并行加密
+	 *
+	 * @param content     待加密内容
+	 * @param key         加密密钥，不少于16字节
+	 * @param segmentSize 分段明文长度，取值范围[{@link AesGcmStreams#MIN_SEGMENT_SIZE},
+	 *                    {@link AesGcmStreams#MAX_SEGMENT_SIZE}]
+	 * @param pool        执行分段任务的线程池，为null时使用默认线程池
+	 * @return 密文，失败返回空数组
+	 */
+	public static byte[] encrypt(byte[] content, byte[] key, int segmentSize, ForkJoinPool pool) {
+		if (content == null) {
+			LogUtil.e(TAG, "encrypt content is null");
+			return new byte[0];
+		}
+		if (!isKeyValid(key, "encrypt")) {
+			return new byte[0];
+		}
+		if (segmentSize < AesGcmStreams.MIN_SEGMENT_SIZE || segmentSize > AesGcmStreams.MAX_SEGMENT_SIZE) {
+			LogUtil.e(TAG, "encrypt segment size is out of range");
+			return new byte[0];
+		}
+		int segmentCount = content.length == 0 ? 1 : (int) ((content.length + (long) segmentSize - 1) / segmentSize);
+		long outputLen = AesGcmStreams.HEADER_LEN + (long) content.length + (long) segmentCount * AesGcmStreams.TAG_LEN;
+		if (outputLen > Integer.MAX_VALUE) {
+			LogUtil.e(TAG, "encrypt content is too large");
+			return new byte[0];
+		}
+		byte[] noncePrefix = EncryptUtil.generateSecureRandom(AesGcmStreams.NONCE_PREFIX_LEN);
+		if (noncePrefix.length != AesGcmStreams.NONCE_PREFIX_LEN) {
+			LogUtil.e(TAG, "generate nonce prefix failed");
+			return new byte[0];
+		}
+		byte[] output = new byte[(int) outputLen];
+		AesGcmStreams.writeHeader(output, segmentSize, noncePrefix);
+		SegmentTask task = new SegmentTask(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, AES_ALGORITHM),
+				Arrays.copyOf(output, AesGcmStreams.HEADER_LEN), segmentSize, content, content.length,
+				output, segmentCount, 0, segmentCount);
+		if (!invoke(task, pool)) {
+			return new byte[0];
+		}
+		return output;
+	}
+
+	/**
+	 * 并行解密，使用默认线程池
+	 *
+	 * @param content 密文
+	 * @param key     解密密钥
+	 * @return 明文，失败返回空数组
+	 */
+	public static byte[] decrypt(byte[] content, byte[] key) {
+		return decrypt(content, key, null);
+	}
+
+	/**
+	 * 并行解密，任意分段认证失败都会导致整体失败，不会返回部分明文
+	 *
+	 * @param content 密文
+	 * @param key     解密密钥
+	 * @param pool    执行分段任务的线程池，为null时使用默认线程池
+	 * @return 明文，失败返回空数组
+	 */
+	public static byte[] decrypt(byte[] content, byte[] key, ForkJoinPool pool) {
+		if (content == null || content.length < AesGcmStreams.HEADER_LEN + AesGcmStreams.TAG_LEN) {
+			LogUtil.e(TAG, "decrypt content is null or too short");
+			return new byte[0];
+		}
+		if (!isKeyValid(key, "decrypt")) {
+			return new byte[0];
+		}
+		byte[] header = Arrays.copyOf(content, AesGcmStreams.HEADER_LEN);
+		int segmentSize = AesGcmStreams.readSegmentSize(header);
+		if (segmentSize < 0) {
+			LogUtil.e(TAG, "decrypt header is invalid");
+			return new byte[0];
+		}
+		int bodyLen = content.length - AesGcmStreams.HEADER_LEN;
+		int cipherSegmentSize = segmentSize + AesGcmStreams.TAG_LEN;
+		int segmentCount = (bodyLen + cipherSegmentSize - 1) / cipherSegmentSize;
+		int finalLen = bodyLen - (segmentCount - 1) * cipherSegmentSize;
+		if (finalLen < AesGcmStreams.TAG_LEN) {
+			LogUtil.e(TAG, "decrypt content is truncated");
+			return new byte[0];
+		}
+		byte[] output = new byte[bodyLen - segmentCount * AesGcmStreams.TAG_LEN];
+		SegmentTask task = new SegmentTask(Cipher.DECRYPT_MODE, new SecretKeySpec(key, AES_ALGORITHM), header,
+				segmentSize, content, content.length, output, segmentCount, 0, segmentCount);
+		if (!invoke(task, pool)) {
+			Arrays.fill(output, (byte) 0);
+			return new byte[0];
+		}
+		return output;
+	}
+
+	private static boolean invoke(SegmentTask task, ForkJoinPool pool) {
+		if (task.isSmall()) {
+			// 数据量小时拆分任务的开销大于收益，直接在当前线程处理
+			task.compute();
+		} else {
+			(pool == null ? DefaultPoolHolder.POOL : pool).invoke(task);
+		}
+		return !task.failed.get();
+	}
+
+	private static boolean isKeyValid(byte[] key, String method) {
+		if (key == null || key.length < AES_GCM_KEY_LEN) {
+			LogUtil.e(TAG, method + " key error: key is null or length less than 16 bytes.");
+			return false;
+		}
+		if (!AesGcm.isBuildVersionHigherThan19()) {
+			LogUtil.e(TAG, method + " build version not higher than 19");
+			return false;
+		}
+		return true;
+	}
+
+	private static final class DefaultPoolHolder {
+		private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * 处理 [from, to) 范围内的分段，范围较大时二分拆分
+	 */
+	private static final class SegmentTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int mode;
+
+		private final SecretKeySpec keySpec;
+
+		private final byte[] header;
+
+		private final int segmentSize;
+
+		private final byte[] input;
+
+		private final int inputLen;
+
+		private final byte[] output;
+
+		private final int segmentCount;
+
+		private final int from;
+
+		private final int to;
+
+		private final AtomicBoolean failed;
+
+		SegmentTask(int mode, SecretKeySpec keySpec, byte[] header, int segmentSize, byte[] input, int inputLen,
+					byte[] output, int segmentCount, int from, int to) {
+			this(mode, keySpec, header, segmentSize, input, inputLen, output, segmentCount, from, to,
+					new AtomicBoolean(false));
+		}
+
+		private SegmentTask(int mode, SecretKeySpec keySpec, byte[] header, int segmentSize, byte[] input,
+							int inputLen, byte[] output, int segmentCount, int from, int to, AtomicBoolean failed) {
+			this.mode = mode;
+			this.keySpec = keySpec;
+			this.header = header;
+			this.segmentSize = segmentSize;
+			this.input = input;
+			this.inputLen = inputLen;
+			this.output = output;
+			this.segmentCount = segmentCount;
+			this.from = from;
+			this.to = to;
+			this.failed = failed;
+		}
+
+		boolean isSmall() {
+			return (long) (to - from) * segmentSize <= MIN_TASK_BYTES || to - from <= 1;
+		}
+
+		@Override
+		protected void compute() {
+			if (failed.get()) {
+				return;
+			}
+			if (!isSmall()) {
+				int mid = (from + to) >>> 1;
+				invokeAll(fork(from, mid), fork(mid, to));
+				return;
+			}
+			byte[] nonce = new byte[AesGcmStreams.NONCE_LEN];
+			byte[] aad = new byte[AesGcmStreams.AAD_LEN];
+			int cipherSegmentSize = segmentSize + AesGcmStreams.TAG_LEN;
+			try {
+				for (int i = from; i < to && !failed.get(); i++) {
+					boolean isFinal = i == segmentCount - 1;
+					int plainOffset = i * segmentSize;
+					int cipherOffset = AesGcmStreams.HEADER_LEN + i * cipherSegmentSize;
+					AesGcmStreams.segmentNonceAndAad(header, i, isFinal, nonce, aad);
+					Cipher cipher = CipherUtil.initPooledCipher(AES_GCM_ALGORITHM, mode, keySpec,
+							AesGcm.getGcmAlgorithmParams(nonce));
+					cipher.updateAAD(aad);
+					if (mode == Cipher.ENCRYPT_MODE) {
+						int plainLen = isFinal ? inputLen - plainOffset : segmentSize;
+						cipher.doFinal(input, plainOffset, plainLen, output, cipherOffset);
+					} else {
+						int cipherLen = isFinal ? inputLen - cipherOffset : cipherSegmentSize;
+						cipher.doFinal(input, cipherOffset, cipherLen, output, plainOffset);
+					}
+				}
+			} catch (GeneralSecurityException | RuntimeException e) {
+				LogUtil.e(TAG, "segment " + (mode == Cipher.ENCRYPT_MODE ? "encrypt" : "decrypt")
+						+ " exception: " + e.getMessage());
+				failed.set(true);
+			}
+		}
+
+		private SegmentTask fork(int start, int end) {
+			return new SegmentTask(mode, keySpec, header, segmentSize, input, inputLen, output, segmentCount,
+					start, end, failed);
+		}
+	}
+}
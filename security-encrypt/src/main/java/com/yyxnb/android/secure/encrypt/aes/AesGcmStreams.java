@@ -0,0 +1,530 @@
+package com.yyxnb.android.secure.encrypt.aes;
+
+import com.yyxnb.android.secure.utils.EncryptUtil;
+import com.yyxnb.android.secure.utils.IOUtil;
+import com.yyxnb.android.secure.utils.LogUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AES/GCM分段流式加解密
+ * <p>
+ * 数据按固定长度分段，每段单独加密并带有认证tag，内存占用与数据总长度无关。
+ * 密文格式：头部 + 分段1 + 分段2 + ... + 最后一段
+ * <p>
+ * 头部（12字节）：版本号（1字节）+ 分段明文长度（4字节，大端）+ 随机nonce前缀（7字节）
+ * <p>
+ * 分段：AES/GCM(明文分段) + tag（16字节），最后一段明文长度可小于分段长度（可以为0）。
+ * 每段的nonce为 nonce前缀（7字节）+ 分段序号（4字节，大端）+ 最后一段标记（1字节），
+ * AAD为 头部 + 分段序号 + 最后一段标记，因此分段被删除、调换或截断都会导致解密失败。
+ * <p>
+ * 解密流只在分段认证通过后才输出该分段的明文，不会释放未经认证的数据。
+ *
+ * <pre>
+ * </pre>
+ *
+ * @author yyx
+ * @date 2023/10/8
+ */
+public final class AesGcmStreams {
+
+	private static final String TAG = "GCMStreams";
+
+	private static final String AES_GCM_ALGORITHM = "AES/GCM/NoPadding";
+
+	private static final String AES_ALGORITHM = "AES";
+
+	private static final int AES_GCM_KEY_LEN = 16;
+
+	private static final int BUFFER_SIZE = 1024 * 8;
+
+	static final byte VERSION = 0x01;
+
+	static final int NONCE_PREFIX_LEN = 7;
+
+	static final int HEADER_LEN = 1 + 4 + NONCE_PREFIX_LEN;
+
+	static final int NONCE_LEN = 12;
+
+	static final int TAG_LEN = 16;
+
+	static final int AAD_LEN = HEADER_LEN + 4 + 1;
+
+	/**
+	 * 默认分段明文长度 64KB
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
+	/**
+	 * 分段明文长度下限
+	 */
+	public static final int MIN_SEGMENT_SIZE = 1024;
+
+	/**
+	 * 分段明文长度上限，解密时用于拒绝被篡改的头部导致的超大内存分配
+	 */
+	public static final int MAX_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+	private AesGcmStreams() {
+	}
+
+	/**
+	 * 创建加密输出流，使用默认分段长度
+	 *
+	 * @param out 密文输出流
+	 * @param key 字节数组形式密钥，不少于16字节
+	 * @return 加密输出流，写入明文，close时写入最后一段
+	 * @throws IOException 写入头部失败或初始化cipher失败
+	 */
+	public static OutputStream newEncryptingStream(OutputStream out, byte[] key) throws IOException {
+		return newEncryptingStream(out, key, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * 创建加密输出流
+	 *
+	 * @param out         密文输出流
+	 * @param key         字节数组形式密钥，不少于16字节
+	 * @param segmentSize 分段明文长度，取值范围[{@link #MIN_SEGMENT_SIZE}, {@link #MAX_SEGMENT_SIZE}]
+	 * @return 加密输出流，写入明文，close时写入最后一段
+	 * @throws IOException 写入头部失败或初始化cipher失败
+	 */
+	public static OutputStream newEncryptingStream(OutputStream out, byte[] key, int segmentSize)
+			throws IOException {
+		checkParams(out, key);
+		if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > MAX_SEGMENT_SIZE) {
+			throw new IllegalArgumentException("segment size out of range: " + segmentSize);
+		}
+		return new EncryptingStream(out, key, segmentSize);
+	}
+
+	/**
+	 * 创建解密输入流
+	 *
+	 * @param in  密文输入流
+	 * @param key 字节数组形式密钥，不少于16字节
+	 * @return 解密输入流，读取明文；密文被篡改或截断时read抛出IOException
+	 * @throws IOException 初始化cipher失败
+	 */
+	public static InputStream newDecryptingStream(InputStream in, byte[] key) throws IOException {
+		checkParams(in, key);
+		return new DecryptingStream(in, key);
+	}
+
+	/**
+	 * 加密文件
+	 *
+	 * @param src 明文文件
+	 * @param dst 密文文件
+	 * @param key 字节数组形式密钥
+	 * @return 是否成功
+	 */
+	public static boolean encryptFile(File src, File dst, byte[] key) {
+		if (src == null || dst == null || !src.isFile()) {
+			LogUtil.e(TAG, "encrypt file: src or dst is not valid");
+			return false;
+		}
+		InputStream in = null;
+		OutputStream out = null;
+		try {
+			in = new FileInputStream(src);
+			out = newEncryptingStream(new FileOutputStream(dst), key);
+			copy(in, out);
+			out.close();
+			out = null;
+			return true;
+		} catch (IOException | IllegalArgumentException e) {
+			LogUtil.e(TAG, "encrypt file exception : " + e.getMessage());
+		} finally {
+			IOUtil.closeSecure(in);
+			IOUtil.closeSecure(out);
+		}
+		return false;
+	}
+
+	/**
+	 * 解密文件，解密失败时删除不完整的明文文件
+	 *
+	 * @param src 密文文件
+	 * @param dst 明文文件
+	 * @param key 字节数组形式密钥
+	 * @return 是否成功
+	 */
+	public static boolean decryptFile(File src, File dst, byte[] key) {
+		if (src == null || dst == null || !src.isFile()) {
+			LogUtil.e(TAG, "decrypt file: src or dst is not valid");
+			return false;
+		}
+		InputStream in = null;
+		OutputStream out = null;
+		boolean success = false;
+		try {
+			in = newDecryptingStream(new FileInputStream(src), key);
+			out = new FileOutputStream(dst);
+			copy(in, out);
+			out.close();
+			out = null;
+			success = true;
+		} catch (IOException | IllegalArgumentException e) {
+			LogUtil.e(TAG, "decrypt file exception : " + e.getMessage());
+		} finally {
+			IOUtil.closeSecure(in);
+			IOUtil.closeSecure(out);
+			if (!success && dst.exists() && !dst.delete()) {
+				LogUtil.e(TAG, "decrypt file: delete incomplete file failed");
+			}
+		}
+		return success;
+	}
+
+	private static void copy(InputStream in, OutputStream out) throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int length;
+		while ((length = in.read(buffer)) != -1) {
+			out.write(buffer, 0, length);
+		}
+	}
+
+	private static void checkParams(Object stream, byte[] key) {
+		if (stream == null) {
+			throw new IllegalArgumentException("stream is null");
+		}
+		if (key == null || key.length < AES_GCM_KEY_LEN) {
+			throw new IllegalArgumentException("key length less than 16 bytes");
+		}
+	}
+
+	/**
+	 * 写入头部
+	 *
+	 * @param header      头部缓冲区，长度不少于{@link #HEADER_LEN}
+	 * @param segmentSize 分段明文长度
+	 * @param noncePrefix nonce前缀
+	 */
+	static void writeHeader(byte[] header, int segmentSize, byte[] noncePrefix) {
+		header[0] = VERSION;
+		header[1] = (byte) (segmentSize >>> 24);
+		header[2] = (byte) (segmentSize >>> 16);
+		header[3] = (byte) (segmentSize >>> 8);
+		header[4] = (byte) segmentSize;
+		System.arraycopy(noncePrefix, 0, header, 5, NONCE_PREFIX_LEN);
+	}
+
+	/**
+	 * 从头部读取分段明文长度，头部不合法时返回-1
+	 *
+	 * @param header 头部
+	 * @return 分段明文长度
+	 */
+	static int readSegmentSize(byte[] header) {
+		if (header[0] != VERSION) {
+			return -1;
+		}
+		int segmentSize = ((header[1] & 0xFF) << 24) | ((header[2] & 0xFF) << 16)
+				| ((header[3] & 0xFF) << 8) | (header[4] & 0xFF);
+		if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > MAX_SEGMENT_SIZE) {
+			return -1;
+		}
+		return segmentSize;
+	}
+
+	/**
+	 * 计算分段的nonce和AAD
+	 *
+	 * @param header  头部
+	 * @param index   分段序号
+	 * @param isFinal 是否最后一段
+	 * @param nonce   输出：nonce，长度{@link #NONCE_LEN}
+	 * @param aad     输出：AAD，长度{@link #AAD_LEN}
+	 */
+	static void segmentNonceAndAad(byte[] header, int index, boolean isFinal, byte[] nonce, byte[] aad) {
+		System.arraycopy(header, 5, nonce, 0, NONCE_PREFIX_LEN);
+		nonce[7] = (byte) (index >>> 24);
+		nonce[8] = (byte) (index >>> 16);
+		nonce[9] = (byte) (index >>> 8);
+		nonce[10] = (byte) index;
+		nonce[11] = (byte) (isFinal ? 1 : 0);
+		System.arraycopy(header, 0, aad, 0, HEADER_LEN);
+		System.arraycopy(nonce, NONCE_PREFIX_LEN, aad, HEADER_LEN, 5);
+	}
+
+	/**
+	 * 加密/解密一个分段
+	 *
+	 * @return 输出长度
+	 */
+	static int processSegment(Cipher cipher, int mode, SecretKeySpec keySpec, byte[] header, int index,
+							  boolean isFinal, byte[] nonce, byte[] aad, byte[] input, int inputOffset,
+							  int inputLen, byte[] output, int outputOffset) throws GeneralSecurityException {
+		segmentNonceAndAad(header, index, isFinal, nonce, aad);
+		cipher.init(mode, keySpec, AesGcm.getGcmAlgorithmParams(nonce));
+		cipher.updateAAD(aad);
+		return cipher.doFinal(input, inputOffset, inputLen, output, outputOffset);
+	}
+
+	/**
+	 * 加密输出流。缓冲一个分段的明文，只有在确认后面还有数据时才把该分段作为非最后一段输出。
+	 */
+	private static final class EncryptingStream extends FilterOutputStream {
+		private final Cipher cipher;
+		private final SecretKeySpec keySpec;
+		private final byte[] header = new byte[HEADER_LEN];
+		private final byte[] nonce = new byte[NONCE_LEN];
+		private final byte[] aad = new byte[AAD_LEN];
+		private final byte[] plainBuffer;
+		private final byte[] cipherBuffer;
+		private int plainLen = 0;
+		private int segmentIndex = 0;
+		private boolean closed = false;
+
+		EncryptingStream(OutputStream out, byte[] key, int segmentSize) throws IOException {
+			super(out);
+			byte[] noncePrefix = EncryptUtil.generateSecureRandom(NONCE_PREFIX_LEN);
+			if (noncePrefix.length != NONCE_PREFIX_LEN) {
+				throw new IOException("generate nonce prefix failed");
+			}
+			try {
+				cipher = Cipher.getInstance(AES_GCM_ALGORITHM);
+			} catch (GeneralSecurityException e) {
+				throw new IOException("get cipher failed: " + e.getMessage(), e);
+			}
+			keySpec = new SecretKeySpec(key, AES_ALGORITHM);
+			writeHeader(header, segmentSize, noncePrefix);
+			plainBuffer = new byte[segmentSize];
+			cipherBuffer = new byte[segmentSize + TAG_LEN];
+			out.write(header);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[]{(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (closed) {
+				throw new IOException("stream closed");
+			}
+			if ((off | len | (off + len) | (b.length - (off + len))) < 0) {
+				throw new IndexOutOfBoundsException();
+			}
+			while (len > 0) {
+				// 缓冲区满且还有数据，说明当前分段不是最后一段
+				if (plainLen == plainBuffer.length) {
+					writeSegment(false);
+				}
+				int n = Math.min(len, plainBuffer.length - plainLen);
+				System.arraycopy(b, off, plainBuffer, plainLen, n);
+				plainLen += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			// 未满的分段不能提前输出，只刷新已经输出的密文
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				writeSegment(true);
+				out.flush();
+			} finally {
+				Arrays.fill(plainBuffer, (byte) 0);
+				out.close();
+			}
+		}
+
+		private void writeSegment(boolean isFinal) throws IOException {
+			if (segmentIndex == Integer.MAX_VALUE) {
+				throw new IOException("too many segments");
+			}
+			int cipherLen;
+			try {
+				cipherLen = processSegment(cipher, Cipher.ENCRYPT_MODE, keySpec, header, segmentIndex, isFinal,
+						nonce, aad, plainBuffer, 0, plainLen, cipherBuffer, 0);
+			} catch (GeneralSecurityException e) {
+				throw new IOException("encrypt segment failed: " + e.getMessage(), e);
+			}
+			out.write(cipherBuffer, 0, cipherLen);
+			segmentIndex++;
+			plainLen = 0;
+		}
+	}
+
+	/**
+	 * 解密输入流。多读取一个字节用于判断当前分段是否为最后一段，分段认证通过后才输出明文。
+	 */
+	private static final class DecryptingStream extends FilterInputStream {
+		private final Cipher cipher;
+		private final SecretKeySpec keySpec;
+		private final byte[] header = new byte[HEADER_LEN];
+		private final byte[] nonce = new byte[NONCE_LEN];
+		private final byte[] aad = new byte[AAD_LEN];
+		private byte[] cipherBuffer;
+		private byte[] plainBuffer;
+		private int cipherLen = 0;
+		private int plainPos = 0;
+		private int plainLen = 0;
+		private int segmentIndex = 0;
+		private boolean headerRead = false;
+		private boolean finalDone = false;
+
+		DecryptingStream(InputStream in, byte[] key) throws IOException {
+			super(in);
+			try {
+				cipher = Cipher.getInstance(AES_GCM_ALGORITHM);
+			} catch (GeneralSecurityException e) {
+				throw new IOException("get cipher failed: " + e.getMessage(), e);
+			}
+			keySpec = new SecretKeySpec(key, AES_ALGORITHM);
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] one = new byte[1];
+			int n = read(one, 0, 1);
+			return n == -1 ? -1 : one[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if ((off | len | (off + len) | (b.length - (off + len))) < 0) {
+				throw new IndexOutOfBoundsException();
+			}
+			if (len == 0) {
+				return 0;
+			}
+			while (plainPos == plainLen) {
+				if (finalDone) {
+					return -1;
+				}
+				nextSegment();
+			}
+			int n = Math.min(len, plainLen - plainPos);
+			System.arraycopy(plainBuffer, plainPos, b, off, n);
+			plainPos += n;
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long remaining = n;
+			byte[] skipBuffer = new byte[BUFFER_SIZE];
+			while (remaining > 0) {
+				int read = read(skipBuffer, 0, (int) Math.min(skipBuffer.length, remaining));
+				if (read == -1) {
+					break;
+				}
+				remaining -= read;
+			}
+			return n - remaining;
+		}
+
+		@Override
+		public int available() {
+			return plainLen - plainPos;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		@Override
+		public synchronized void mark(int readlimit) {
+		}
+
+		@Override
+		public synchronized void reset() throws IOException {
+			throw new IOException("mark/reset not supported");
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (plainBuffer != null) {
+				Arrays.fill(plainBuffer, (byte) 0);
+			}
+			super.close();
+		}
+
+		private void readHeader() throws IOException {
+			if (readFully(header, 0, HEADER_LEN) != HEADER_LEN) {
+				throw new IOException("ciphertext header is truncated");
+			}
+			int segmentSize = readSegmentSize(header);
+			if (segmentSize == -1) {
+				throw new IOException("ciphertext header is invalid");
+			}
+			// 多一个字节用于判断是否还有后续分段
+			cipherBuffer = new byte[segmentSize + TAG_LEN + 1];
+			plainBuffer = new byte[segmentSize];
+			headerRead = true;
+		}
+
+		private void nextSegment() throws IOException {
+			if (!headerRead) {
+				readHeader();
+			}
+			int segmentCipherLen = cipherBuffer.length - 1;
+			cipherLen += readFully(cipherBuffer, cipherLen, cipherBuffer.length - cipherLen);
+			boolean isFinal = cipherLen <= segmentCipherLen;
+			int currentLen = isFinal ? cipherLen : segmentCipherLen;
+			if (currentLen < TAG_LEN) {
+				throw new IOException("ciphertext segment is truncated");
+			}
+			if (segmentIndex == Integer.MAX_VALUE) {
+				throw new IOException("too many segments");
+			}
+			try {
+				plainLen = processSegment(cipher, Cipher.DECRYPT_MODE, keySpec, header, segmentIndex, isFinal,
+						nonce, aad, cipherBuffer, 0, currentLen, plainBuffer, 0);
+			} catch (GeneralSecurityException e) {
+				plainLen = 0;
+				throw new IOException("decrypt segment failed: " + e.getMessage(), e);
+			} finally {
+				plainPos = 0;
+			}
+			if (isFinal) {
+				cipherLen = 0;
+				finalDone = true;
+			} else {
+				// 预读的字节属于下一个分段
+				cipherBuffer[0] = cipherBuffer[segmentCipherLen];
+				cipherLen = 1;
+			}
+			segmentIndex++;
+		}
+
+		private int readFully(byte[] buffer, int offset, int len) throws IOException {
+			int total = 0;
+			while (total < len) {
+				int n = in.read(buffer, offset + total, len - total);
+				if (n == -1) {
+					break;
+				}
+				total += n;
+			}
+			return total;
+		}
+	}
+}
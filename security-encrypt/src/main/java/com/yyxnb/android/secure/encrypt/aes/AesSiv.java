@@ -0,0 +1,334 @@
+package com.yyxnb.android.secure.encrypt.aes;
+
+import android.text.TextUtils;
+
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
+import com.yyxnb.android.secure.utils.LogUtil;
+import com.yyxnb.android.secure.utils.MetricsUtil;
+import com.yyxnb.android.secure.utils.TextCodec;
+
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.macs.CMac;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AES-SIV确定性加密（RFC 5297）
+ * <p>
+ * 相同密钥、相同关联数据下，相同明文的密文总是相同，可以直接对密文建索引做相等查询，
+ * 不需要逐条解密比较。代价是会暴露“两条记录明文是否相同”，只适合手机号、账号ID等需要按值查找的字段，
+ * 其他数据仍应使用{@link AesGcm}。
+ * <p>
+ * 密钥长度为32、48或64字节，前一半用于S2V（CMAC），后一半用于CTR加密，分别对应AES-128/192/256。
+ * 输出格式为 SIV（16字节）+ 密文，SIV同时是认证标签。关联数据可以用来区分字段，使不同字段的相同值得到不同密文。
+ *
+ * <pre>
+ *     String index = AesSiv.encrypt(phone, key, TextCodec.BASE64_URL);
+ *     // 按index查询，取出后解密
+ *     String phone = AesSiv.decrypt(index, key, TextCodec.BASE64_URL);
+ * </pre>
+ *
+ * @author yyx
+ * @date 2023/10/16
+ */
+public final class AesSiv {
+
+	private static final String TAG = "SIV";
+
+	private static final String AES_CTR_ALGORITHM = "AES/CTR/NoPadding";
+
+	private static final String AES_ALGORITHM = "AES";
+
+	private static final String METRICS_ALGORITHM = "AES-SIV";
+
+	private static final String EMPTY = "";
+
+	private static final int SIV_LEN = 16;
+
+	private static final int BLOCK_LEN = 16;
+
+	private static final byte[] ZERO_BLOCK = new byte[BLOCK_LEN];
+
+	private AesSiv() {
+
+	}
+
+	/**
+	 * 加密字符串，输出十六进制字符串
+	 *
+	 * @param content 待加密内容
+	 * @param key     32、48或64字节密钥
+	 * @return SIV + 密文 的十六进制字符串，失败返回空字符串
+	 */
+	public static String encrypt(String content, byte[] key) {
+		return encrypt(content, key, TextCodec.HEX);
+	}
+
+	/**
+	 * 解密{@link #encrypt(String, byte[])}的结果
+	 *
+	 * @param content 十六进制密文
+	 * @param key     32、48或64字节密钥
+	 * @return 明文，失败返回空字符串
+	 */
+	public static String decrypt(String content, byte[] key) {
+		return decrypt(content, key, TextCodec.HEX);
+	}
+
+	/**
+	 * 加密字符串，使用指定的文本编码输出
+	 *
+	 * @param content 待加密内容
+	 * @param key     32、48或64字节密钥
+	 * @param codec   文本编码方式，作为索引时推荐{@link TextCodec#BASE64_URL}
+	 * @return 编码后的 SIV + 密文，失败返回空字符串
+	 */
+	public static String encrypt(String content, byte[] key, TextCodec codec) {
+		if (TextUtils.isEmpty(content)) {
+			LogUtil.e(TAG, "encrypt codec content is null");
+			return EMPTY;
+		}
+		if (codec == null) {
+			LogUtil.e(TAG, "encrypt codec is null");
+			return EMPTY;
+		}
+		try {
+			byte[] encrypted = encrypt(content.getBytes("UTF-8"), key, null);
+			return encrypted.length == 0 ? EMPTY : codec.encode(encrypted);
+		} catch (UnsupportedEncodingException e) {
+			LogUtil.e(TAG, "encrypt codec exception: " + e.getMessage());
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * 解密{@link #encrypt(String, byte[], TextCodec)}的结果
+	 *
+	 * @param content 编码后的密文
+	 * @param key     32、48或64字节密钥
+	 * @param codec   加密时使用的文本编码方式
+	 * @return 明文，失败返回空字符串
+	 */
+	public static String decrypt(String content, byte[] key, TextCodec codec) {
+		if (TextUtils.isEmpty(content)) {
+			LogUtil.e(TAG, "decrypt codec content is null");
+			return EMPTY;
+		}
+		if (codec == null) {
+			LogUtil.e(TAG, "decrypt codec is null");
+			return EMPTY;
+		}
+		byte[] encrypted = codec.decode(content);
+		if (encrypted.length < SIV_LEN) {
+			return EMPTY;
+		}
+		byte[] decrypted = decrypt(encrypted, key, null);
+		if (decrypted.length == 0) {
+			return EMPTY;
+		}
+		try {
+			return new String(decrypted, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			LogUtil.e(TAG, "decrypt codec exception: " + e.getMessage());
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * 确定性加密
+	 *
+	 * @param content 待加密内容
+	 * @param key     32、48或64字节密钥
+	 * @return SIV + 密文，失败返回空数组
+	 */
+	public static byte[] encrypt(byte[] content, byte[] key) {
+		return encrypt(content, key, null);
+	}
+
+	/**
+	 * 解密{@link #encrypt(byte[], byte[])}的结果
+	 *
+	 * @param content SIV + 密文
+	 * @param key     32、48或64字节密钥
+	 * @return 明文，认证失败返回空数组
+	 */
+	public static byte[] decrypt(byte[] content, byte[] key) {
+		return decrypt(content, key, null);
+	}
+
+	/**
+	 * 带关联数据的确定性加密，关联数据参与认证但不加密
+	 *
+	 * @param content        待加密内容
+	 * @param key            32、48或64字节密钥
+	 * @param associatedData 关联数据，如字段名，可以为null。解密时必须相同
+	 * @return SIV + 密文，失败返回空数组
+	 */
+	public static byte[] encrypt(byte[] content, byte[] key, byte[] associatedData) {
+		if (content == null) {
+			LogUtil.e(TAG, "encrypt content is null");
+			return new byte[0];
+		}
+		if (!isKeyValid(key, "encrypt")) {
+			return new byte[0];
+		}
+		byte[] macKey = Arrays.copyOfRange(key, 0, key.length / 2);
+		byte[] ctrKey = Arrays.copyOfRange(key, key.length / 2, key.length);
+		long start = MetricsUtil.start();
+		try {
+			byte[] siv = s2v(macKey, associatedData, content, 0, content.length);
+			byte[] output = new byte[SIV_LEN + content.length];
+			System.arraycopy(siv, 0, output, 0, SIV_LEN);
+			ctr(ctrKey, siv, content, 0, content.length, output, SIV_LEN);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, content.length, start);
+			return output;
+		} catch (GeneralSecurityException | RuntimeException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
+			LogUtil.e(TAG, "SIV encrypt exception: " + e.getMessage());
+		} finally {
+			Arrays.fill(macKey, (byte) 0);
+			Arrays.fill(ctrKey, (byte) 0);
+		}
+		return new byte[0];
+	}
+
+	/**
+	 * 解密{@link #encrypt(byte[], byte[], byte[])}的结果
+	 *
+	 * @param content        SIV + 密文
+	 * @param key            32、48或64字节密钥
+	 * @param associatedData 加密时使用的关联数据，可以为null
+	 * @return 明文，认证失败返回空数组
+	 */
+	public static byte[] decrypt(byte[] content, byte[] key, byte[] associatedData) {
+		if (content == null || content.length < SIV_LEN) {
+			LogUtil.e(TAG, "decrypt content is null or too short");
+			return new byte[0];
+		}
+		if (!isKeyValid(key, "decrypt")) {
+			return new byte[0];
+		}
+		byte[] macKey = Arrays.copyOfRange(key, 0, key.length / 2);
+		byte[] ctrKey = Arrays.copyOfRange(key, key.length / 2, key.length);
+		byte[] siv = Arrays.copyOf(content, SIV_LEN);
+		long start = MetricsUtil.start();
+		try {
+			byte[] output = new byte[content.length - SIV_LEN];
+			ctr(ctrKey, siv, content, SIV_LEN, output.length, output, 0);
+			byte[] expected = s2v(macKey, associatedData, output, 0, output.length);
+			if (!MessageDigest.isEqual(siv, expected)) {
+				Arrays.fill(output, (byte) 0);
+				MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, new AEADBadTagException(), start);
+				LogUtil.e(TAG, "SIV decrypt: authentication failed");
+				return new byte[0];
+			}
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, content.length, start);
+			return output;
+		} catch (GeneralSecurityException | RuntimeException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
+			LogUtil.e(TAG, "SIV decrypt exception: " + e.getMessage());
+		} finally {
+			Arrays.fill(macKey, (byte) 0);
+			Arrays.fill(ctrKey, (byte) 0);
+		}
+		return new byte[0];
+	}
+
+	/**
+	 * 获取 SIV + 密文 的长度
+	 *
+	 * @param contentLen 明文长度
+	 * @return 加密输出长度
+	 */
+	public static int getEncryptOutputLen(int contentLen) {
+		return SIV_LEN + contentLen;
+	}
+
+	/**
+	 * S2V，RFC 5297 2.4节，最多一个关联数据
+	 */
+	private static byte[] s2v(byte[] macKey, byte[] associatedData, byte[] plaintext, int offset, int len) {
+		CMac mac = new CMac(new AESEngine());
+		mac.init(new KeyParameter(macKey));
+		byte[] d = new byte[BLOCK_LEN];
+		mac.update(ZERO_BLOCK, 0, BLOCK_LEN);
+		mac.doFinal(d, 0);
+		if (associatedData != null) {
+			byte[] t = new byte[BLOCK_LEN];
+			mac.update(associatedData, 0, associatedData.length);
+			mac.doFinal(t, 0);
+			dbl(d);
+			xor(d, t, 0);
+		}
+		byte[] last = new byte[BLOCK_LEN];
+		if (len >= BLOCK_LEN) {
+			mac.update(plaintext, offset, len - BLOCK_LEN);
+			System.arraycopy(plaintext, offset + len - BLOCK_LEN, last, 0, BLOCK_LEN);
+			xor(last, d, 0);
+		} else {
+			dbl(d);
+			System.arraycopy(plaintext, offset, last, 0, len);
+			last[len] = (byte) 0x80;
+			xor(last, d, 0);
+		}
+		mac.update(last, 0, BLOCK_LEN);
+		byte[] v = new byte[SIV_LEN];
+		mac.doFinal(v, 0);
+		return v;
+	}
+
+	/**
+	 * CTR加解密，计数器初值为SIV清除第31和63位（RFC 5297 2.6节）
+	 */
+	private static void ctr(byte[] ctrKey, byte[] siv, byte[] input, int inputOffset, int inputLen, byte[] output,
+							int outputOffset) throws GeneralSecurityException {
+		byte[] counter = siv.clone();
+		counter[8] &= 0x7f;
+		counter[12] &= 0x7f;
+		Cipher cipher = CipherUtil.initPooledCipher(AES_CTR_ALGORITHM, Cipher.ENCRYPT_MODE,
+				new SecretKeySpec(ctrKey, AES_ALGORITHM), new IvParameterSpec(counter));
+		cipher.doFinal(input, inputOffset, inputLen, output, outputOffset);
+	}
+
+	/**
+	 * GF(2^128)上乘以x
+	 */
+	private static void dbl(byte[] block) {
+		int carry = 0;
+		for (int i = BLOCK_LEN - 1; i >= 0; i--) {
+			int b = block[i] & 0xFF;
+			block[i] = (byte) ((b << 1) | carry);
+			carry = b >>> 7;
+		}
+		if (carry != 0) {
+			block[BLOCK_LEN - 1] ^= (byte) 0x87;
+		}
+	}
+
+	private static void xor(byte[] target, byte[] source, int sourceOffset) {
+		for (int i = 0; i < BLOCK_LEN; i++) {
+			target[i] ^= source[sourceOffset + i];
+		}
+	}
+
+	private static boolean isKeyValid(byte[] key, String method) {
+		if (key == null) {
+			LogUtil.e(TAG, method + " key is null");
+			return false;
+		}
+		if (key.length != 32 && key.length != 48 && key.length != 64) {
+			LogUtil.e(TAG, method + " key error: key length must be 32, 48 or 64 bytes.");
+			return false;
+		}
+		return true;
+	}
+}
@@ -1,11 +1,22 @@
 package com.yyxnb.android.secure.encrypt.aes;
 
+import androidx.annotation.RestrictTo;
+
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
 import com.yyxnb.android.secure.utils.EncryptUtil;
 import com.yyxnb.android.secure.utils.HexUtil;
 import com.yyxnb.android.secure.utils.LogUtil;
+import com.yyxnb.android.secure.utils.MetricsUtil;
 
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
 import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.crypto.AEADBadTagException;
 import javax.crypto.BadPaddingException;
@@ -33,6 +44,17 @@ public class CipherUtil {
 	private static final int AES_GCM_KEY_LEN = 16;
 	private static final int AES_GCM_IV_LEN = 12;
 	private static final int AES_128_CBC_IV_LEN = 16;
+	private static final String KEYSTORE_POOL_PREFIX = "KS:";
+
+	/**
+	 * 每个线程缓存已创建的cipher，按transformation区分，避免每次加解密都查找provider并创建cipher
+	 */
+	private static final ThreadLocal<Map<String, Cipher>> CIPHER_POOL = new ThreadLocal<Map<String, Cipher>>() {
+		@Override
+		protected Map<String, Cipher> initialValue() {
+			return new HashMap<>(4);
+		}
+	};
 
 	public static Cipher getAesGcmEncryptCipher(byte[] key) {
 		byte[] iv = EncryptUtil.generateSecureRandom(AES_GCM_IV_LEN);
@@ -40,6 +62,31 @@ public class CipherUtil {
 		return getAesGcmEncryptCipher(key, iv);
 	}
 
+	/**
+	 * 根据计数器nonce序列取出的密钥和nonce生成cipher对象，用于加密。
+	 * 解密使用{@link NonceSequence.KeyedNonce#getKey()}，序列之后换密钥不影响它
+	 *
+	 * <pre>
+	 *     NonceSequence.KeyedNonce keyedNonce = sequence.next();
+	 *     Cipher cipher = CipherUtil.getAesGcmEncryptCipher(keyedNonce);
+	 * </pre>
+	 *
+	 * @param keyedNonce {@link NonceSequence#next()}的返回值，每个只能使用一次
+	 * @return cipher，keyedNonce为null时返回null
+	 */
+	public static Cipher getAesGcmEncryptCipher(NonceSequence.KeyedNonce keyedNonce) {
+		if (keyedNonce == null) {
+			LogUtil.e(TAG, "getAesGcmEncryptCipher: keyed nonce is null");
+			return null;
+		}
+		byte[] key = keyedNonce.getKey();
+		try {
+			return getAesGcmEncryptCipher(key, keyedNonce.getNonce());
+		} finally {
+			Arrays.fill(key, (byte) 0);
+		}
+	}
+
 	public static int getAesGcmEncryptContentLen(byte[] input, byte[] key) {
 		byte[] iv = EncryptUtil.generateSecureRandom(AES_GCM_IV_LEN);
 		return getAesGcmEncryptContentLen(input, key, iv);
@@ -86,7 +133,7 @@ public class CipherUtil {
 	 * @return
 	 */
 	public static int getAesGcmEncryptContentLen(byte[] input, byte[] key, byte[] ivParameter) {
-		Cipher cipher = getAesGcmEncryptCipher(key, ivParameter);
+		Cipher cipher = getPooledCipher(key, ivParameter, Cipher.ENCRYPT_MODE, AES_GCM_ALGORITHM);
 		return getOutputLen(cipher, input);
 	}
 
@@ -114,7 +161,7 @@ public class CipherUtil {
 	 * @return
 	 */
 	public static int getAesCbcEncryptContentLen(byte[] input, byte[] key, byte[] ivParameter) {
-		Cipher cipher = getAesCbcEncryptCipher(key, ivParameter);
+		Cipher cipher = getPooledCipher(key, ivParameter, Cipher.ENCRYPT_MODE, AES_CBC_ALGORITHM);
 		return getOutputLen(cipher, input);
 	}
 
@@ -130,22 +177,16 @@ public class CipherUtil {
 		return getCipher(key, ivParameter, mode, AES_CBC_ALGORITHM);
 	}
 
+	/**
+	 * 返回给调用方的cipher由调用方持有，不能使用线程池中的实例
+	 */
 	private static Cipher getCipher(byte[] key, byte[] ivParameter, int mode, String algorithm) {
-		if (key == null || key.length < AES_GCM_KEY_LEN || ivParameter == null || ivParameter.length < AES_GCM_IV_LEN
-				|| !AesGcm.isBuildVersionHigherThan19()) {
-			LogUtil.e(TAG, "gcm encrypt param is not right");
+		if (!isParamValid(key, ivParameter)) {
 			return null;
 		}
 		try {
-			SecretKeySpec secretkey = new SecretKeySpec(key, AES_ALGORITHM);
 			Cipher cipher = Cipher.getInstance(algorithm);
-			AlgorithmParameterSpec algorithmParameterSpec = null;
-			if (AES_GCM_ALGORITHM.equals(algorithm)) {
-				algorithmParameterSpec = AesGcm.getGcmAlgorithmParams(ivParameter);
-			} else {
-				algorithmParameterSpec = new IvParameterSpec(ivParameter);
-			}
-			cipher.init(mode, secretkey, algorithmParameterSpec);
+			cipher.init(mode, new SecretKeySpec(key, AES_ALGORITHM), getAlgorithmParams(ivParameter, algorithm));
 			return cipher;
 		} catch (GeneralSecurityException e) {
 			LogUtil.e(TAG, "GCM encrypt data error" + e.getMessage());
@@ -153,6 +194,80 @@ public class CipherUtil {
 		return null;
 	}
 
+	private static Cipher getPooledCipher(byte[] key, byte[] ivParameter, int mode, String algorithm) {
+		if (!isParamValid(key, ivParameter)) {
+			return null;
+		}
+		try {
+			return initPooledCipher(algorithm, mode, new SecretKeySpec(key, AES_ALGORITHM),
+					getAlgorithmParams(ivParameter, algorithm));
+		} catch (GeneralSecurityException e) {
+			LogUtil.e(TAG, "GCM encrypt data error" + e.getMessage());
+		}
+		return null;
+	}
+
+	private static boolean isParamValid(byte[] key, byte[] ivParameter) {
+		if (key == null || key.length < AES_GCM_KEY_LEN || ivParameter == null || ivParameter.length < AES_GCM_IV_LEN
+				|| !AesGcm.isBuildVersionHigherThan19()) {
+			LogUtil.e(TAG, "gcm encrypt param is not right");
+			return false;
+		}
+		return true;
+	}
+
+	private static AlgorithmParameterSpec getAlgorithmParams(byte[] ivParameter, String algorithm) {
+		if (AES_GCM_ALGORITHM.equals(algorithm)) {
+			return AesGcm.getGcmAlgorithmParams(ivParameter);
+		}
+		return new IvParameterSpec(ivParameter);
+	}
+
+	/**
+	 * 从当前线程的cipher池中取出cipher并使用新的key、IV重新初始化。
+	 * <p>
+	 * 返回的cipher属于当前线程，只能在本次调用中立即完成doFinal，不可保存或返回给调用方，
+	 * 否则同一线程的下一次调用会重新初始化它。
+	 * <p>
+	 * 非{@link SecretKeySpec}的密钥（如AndroidKeyStore密钥）会绑定到不同的provider，单独缓存。
+	 * 复用的cipher初始化失败时（provider不匹配，或GCM拒绝与上次相同的key和IV），换新的cipher重试一次。
+	 *
+	 * @param transformation 算法，如 AES/GCM/NoPadding
+	 * @param mode           加密或解密模式
+	 * @param key            密钥
+	 * @param params         算法参数，为null时由cipher自行生成IV（仅加密）
+	 * @return 已初始化的cipher
+	 * @throws GeneralSecurityException 创建或初始化cipher失败
+	 */
+	@RestrictTo(RestrictTo.Scope.LIBRARY)
+	public static Cipher initPooledCipher(String transformation, int mode, Key key, AlgorithmParameterSpec params)
+			throws GeneralSecurityException {
+		String poolKey = key instanceof SecretKeySpec ? transformation : KEYSTORE_POOL_PREFIX + transformation;
+		Map<String, Cipher> pool = CIPHER_POOL.get();
+		Cipher cipher = pool.get(poolKey);
+		if (cipher != null) {
+			try {
+				initCipher(cipher, mode, key, params);
+				return cipher;
+			} catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+				LogUtil.d(TAG, "initPooledCipher: pooled cipher rejected params, create a new one");
+			}
+		}
+		cipher = Cipher.getInstance(transformation);
+		initCipher(cipher, mode, key, params);
+		pool.put(poolKey, cipher);
+		return cipher;
+	}
+
+	private static void initCipher(Cipher cipher, int mode, Key key, AlgorithmParameterSpec params)
+			throws InvalidKeyException, InvalidAlgorithmParameterException {
+		if (params == null) {
+			cipher.init(mode, key);
+		} else {
+			cipher.init(mode, key, params);
+		}
+	}
+
 	private static int getOutputLen(Cipher cipher, byte[] input) {
 		if (cipher != null && input != null) {
 			return cipher.getOutputSize(input.length);
@@ -173,13 +288,19 @@ public class CipherUtil {
 			return -1;
 		}
 
+		long start = MetricsUtil.start();
 		try {
-			return cipher.doFinal(input, 0, input.length, output);
+			int length = cipher.doFinal(input, 0, input.length, output);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.CIPHER, cipher.getAlgorithm(), input.length, start);
+			return length;
 		} catch (BadPaddingException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.CIPHER, cipher.getAlgorithm(), e, start);
 			LogUtil.e(TAG, "getContent: BadPaddingException");
 		} catch (IllegalBlockSizeException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.CIPHER, cipher.getAlgorithm(), e, start);
 			LogUtil.e(TAG, "getContent: IllegalBlockSizeException");
 		} catch (ShortBufferException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.CIPHER, cipher.getAlgorithm(), e, start);
 			LogUtil.e(TAG, "getContent: ShortBufferException");
 		}
 		return -1;
@@ -253,7 +374,15 @@ public class CipherUtil {
 			LogUtil.e(TAG, "getEncryptCOntent: cipher is null or content is null");
 			return -1;
 		}
-		return cipher.doFinal(input, inputOffset, inputLen, output, outputOffset);
+		long start = MetricsUtil.start();
+		try {
+			int length = cipher.doFinal(input, inputOffset, inputLen, output, outputOffset);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.CIPHER, cipher.getAlgorithm(), inputLen, start);
+			return length;
+		} catch (BadPaddingException | IllegalBlockSizeException | ShortBufferException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.CIPHER, cipher.getAlgorithm(), e, start);
+			throw e;
+		}
 	}
 
 	public static byte[] getContent(Cipher cipher, byte[] input) {
@@ -262,13 +391,56 @@ public class CipherUtil {
 			return new byte[0];
 		}
 
+		long start = MetricsUtil.start();
 		try {
-			return cipher.doFinal(input, 0, input.length);
+			byte[] result = cipher.doFinal(input, 0, input.length);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.CIPHER, cipher.getAlgorithm(), input.length, start);
+			return result;
 		} catch (BadPaddingException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.CIPHER, cipher.getAlgorithm(), e, start);
 			LogUtil.e(TAG, "getContent: BadPaddingException");
 		} catch (IllegalBlockSizeException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.CIPHER, cipher.getAlgorithm(), e, start);
 			LogUtil.e(TAG, "getContent: IllegalBlockSizeException");
 		}
 		return new byte[0];
 	}
+
+	/**
+	 * 直接在ByteBuffer之间加解密，支持direct buffer，不产生中间数组。
+	 * 成功时input的position移动到limit，output的position移动到写入数据之后。
+	 *
+	 * @param cipher 已初始化的cipher
+	 * @param input  输入
+	 * @param output 输出，剩余空间不少于cipher.getOutputSize(input.remaining())
+	 * @return 写入output的长度，失败返回-1
+	 */
+	public static int getContent(Cipher cipher, ByteBuffer input, ByteBuffer output) {
+		if (cipher == null || input == null || output == null) {
+			LogUtil.e(TAG, "getContent: cipher is null or input/output is null");
+			return -1;
+		}
+		if (input == output) {
+			LogUtil.e(TAG, "getContent: input and output must not be the same buffer");
+			return -1;
+		}
+
+		int inputLen = input.remaining();
+		long start = MetricsUtil.start();
+		try {
+			int length = cipher.doFinal(input, output);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.CIPHER, cipher.getAlgorithm(), inputLen, start);
+			return length;
+		} catch (BadPaddingException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.CIPHER, cipher.getAlgorithm(), e, start);
+			LogUtil.e(TAG, "getContent: BadPaddingException");
+		} catch (IllegalBlockSizeException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.CIPHER, cipher.getAlgorithm(), e, start);
+			LogUtil.e(TAG, "getContent: IllegalBlockSizeException");
+		} catch (ShortBufferException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.CIPHER, cipher.getAlgorithm(), e, start);
+			LogUtil.e(TAG, "getContent: ShortBufferException");
+		}
+		return -1;
+	}
 }
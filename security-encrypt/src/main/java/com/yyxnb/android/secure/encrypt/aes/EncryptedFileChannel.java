@@ -0,0 +1,540 @@
+package com.yyxnb.android.secure.encrypt.aes;
+
+import android.os.Build;
+
+import androidx.annotation.RequiresApi;
+
+import com.yyxnb.android.secure.utils.EncryptUtil;
+import com.yyxnb.android.secure.utils.IOUtil;
+import com.yyxnb.android.secure.utils.LogUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 支持随机读写的加密文件通道
+ * <p>
+ * 文件按固定长度分页加密，每页有独立的随机nonce和tag，读写任意位置只需要解密/重新加密涉及的页，
+ * 最近访问的页缓存在内存中（LRU），修改过的页在淘汰、{@link #flush()}或{@link #close()}时写回。
+ * <p>
+ * 文件格式：头部（16字节）+ 页1 + 页2 + ... + 最后一页
+ * <p>
+ * 头部：版本号（1字节）+ 页明文长度（4字节，大端）+ 随机文件ID（11字节）
+ * <p>
+ * 页：nonce（12字节）+ AES/GCM(页明文) + tag（16字节），除最后一页外页明文长度都等于页长度。
+ * AAD为 头部 + 页序号（8字节）+ 最后一页标记（1字节），页被调换、复制到其他文件或整页截断都会导致解密失败。
+ * 文件至少包含一页，空文件也有一个明文长度为0的最后一页。
+ * <p>
+ * 非线程安全的操作都已加锁，与{@link FileChannel}一样可以在多个线程间共享。
+ * 写入过程中进程异常退出可能导致文件损坏，需要原子性时请写入临时文件再重命名。
+ *
+ * @author yyx
+ * @date 2023/10/14
+ */
+@RequiresApi(api = Build.VERSION_CODES.N)
+public final class EncryptedFileChannel implements SeekableByteChannel {
+
+	private static final String TAG = "EncryptedFileChannel";
+
+	private static final String AES_GCM_ALGORITHM = "AES/GCM/NoPadding";
+
+	private static final String AES_ALGORITHM = "AES";
+
+	private static final int AES_GCM_KEY_LEN = 16;
+
+	private static final byte VERSION = 0x01;
+
+	private static final int FILE_ID_LEN = 11;
+
+	private static final int HEADER_LEN = 1 + 4 + FILE_ID_LEN;
+
+	private static final int NONCE_LEN = 12;
+
+	private static final int TAG_LEN = 16;
+
+	private static final int PAGE_OVERHEAD = NONCE_LEN + TAG_LEN;
+
+	private static final int AAD_LEN = HEADER_LEN + 8 + 1;
+
+	/**
+	 * 默认页明文长度 4KB
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 4 * 1024;
+
+	/**
+	 * 页明文长度下限
+	 */
+	public static final int MIN_PAGE_SIZE = 512;
+
+	/**
+	 * 页明文长度上限
+	 */
+	public static final int MAX_PAGE_SIZE = 1024 * 1024;
+
+	/**
+	 * 默认缓存页数
+	 */
+	public static final int DEFAULT_CACHE_PAGES = 16;
+
+	private final RandomAccessFile file;
+
+	private final FileChannel channel;
+
+	private final boolean writable;
+
+	private final SecretKeySpec keySpec;
+
+	private final byte[] header;
+
+	private final int pageSize;
+
+	private final int recordSize;
+
+	private final PageCache cache;
+
+	private final byte[] nonce = new byte[NONCE_LEN];
+
+	private final byte[] aad = new byte[AAD_LEN];
+
+	private final byte[] record;
+
+	private long size;
+
+	private long position;
+
+	private boolean closed;
+
+	private EncryptedFileChannel(RandomAccessFile file, boolean writable, byte[] key, byte[] header,
+								 int cachePages) {
+		this.file = file;
+		this.channel = file.getChannel();
+		this.writable = writable;
+		this.keySpec = new SecretKeySpec(key, AES_ALGORITHM);
+		this.header = header;
+		this.pageSize = ((header[1] & 0xFF) << 24) | ((header[2] & 0xFF) << 16) | ((header[3] & 0xFF) << 8)
+				| (header[4] & 0xFF);
+		this.recordSize = pageSize + PAGE_OVERHEAD;
+		this.record = new byte[recordSize];
+		this.cache = new PageCache(cachePages);
+	}
+
+	/**
+	 * 打开加密文件，使用默认页长度和缓存页数
+	 *
+	 * @param file     文件，可写模式下不存在或为空时创建
+	 * @param key      字节数组形式密钥，不少于16字节
+	 * @param writable 是否可写
+	 * @return 加密文件通道
+	 * @throws IOException 文件不存在、格式不正确或读写失败
+	 */
+	public static EncryptedFileChannel open(File file, byte[] key, boolean writable) throws IOException {
+		return open(file, key, writable, DEFAULT_PAGE_SIZE, DEFAULT_CACHE_PAGES);
+	}
+
+	/**
+	 * 打开加密文件
+	 *
+	 * @param file       文件，可写模式下不存在或为空时创建
+	 * @param key        字节数组形式密钥，不少于16字节
+	 * @param writable   是否可写
+	 * @param pageSize   新建文件的页明文长度，取值范围[{@link #MIN_PAGE_SIZE}, {@link #MAX_PAGE_SIZE}]，
+	 *                   打开已有文件时使用文件头部记录的长度
+	 * @param cachePages 缓存页数，不少于1
+	 * @return 加密文件通道
+	 * @throws IOException 文件不存在、格式不正确或读写失败
+	 */
+	public static EncryptedFileChannel open(File file, byte[] key, boolean writable, int pageSize, int cachePages)
+			throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("file is null");
+		}
+		if (key == null || key.length < AES_GCM_KEY_LEN) {
+			throw new IllegalArgumentException("key length less than 16 bytes");
+		}
+		if (pageSize < MIN_PAGE_SIZE || pageSize > MAX_PAGE_SIZE) {
+			throw new IllegalArgumentException("page size is out of range");
+		}
+		if (cachePages < 1) {
+			throw new IllegalArgumentException("cache pages less than 1");
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+		EncryptedFileChannel encryptedChannel = null;
+		try {
+			byte[] header = new byte[HEADER_LEN];
+			boolean create = raf.length() == 0;
+			if (create) {
+				if (!writable) {
+					throw new IOException("file is empty");
+				}
+				byte[] fileId = EncryptUtil.generateSecureRandom(FILE_ID_LEN);
+				if (fileId.length != FILE_ID_LEN) {
+					throw new IOException("generate file id failed");
+				}
+				header[0] = VERSION;
+				header[1] = (byte) (pageSize >>> 24);
+				header[2] = (byte) (pageSize >>> 16);
+				header[3] = (byte) (pageSize >>> 8);
+				header[4] = (byte) pageSize;
+				System.arraycopy(fileId, 0, header, 5, FILE_ID_LEN);
+				raf.write(header);
+			} else {
+				raf.readFully(header);
+				int storedPageSize = ((header[1] & 0xFF) << 24) | ((header[2] & 0xFF) << 16)
+						| ((header[3] & 0xFF) << 8) | (header[4] & 0xFF);
+				if (header[0] != VERSION || storedPageSize < MIN_PAGE_SIZE || storedPageSize > MAX_PAGE_SIZE) {
+					throw new IOException("invalid header");
+				}
+			}
+			encryptedChannel = new EncryptedFileChannel(raf, writable, key, header, cachePages);
+			if (create) {
+				// 空文件也写入一个空的最后一页，防止所有页被截断后无法察觉
+				encryptedChannel.writePage(0, new byte[0], 0);
+			} else {
+				encryptedChannel.size = encryptedChannel.readLogicalSize(raf.length());
+			}
+			return encryptedChannel;
+		} finally {
+			if (encryptedChannel == null) {
+				IOUtil.closeSecure(raf);
+			}
+		}
+	}
+
+	@Override
+	public synchronized int read(ByteBuffer dst) throws IOException {
+		ensureOpen();
+		if (position >= size) {
+			return -1;
+		}
+		int total = 0;
+		while (dst.hasRemaining() && position < size) {
+			long index = position / pageSize;
+			int pageOffset = (int) (position % pageSize);
+			Page page = loadPage(index);
+			int n = Math.min(dst.remaining(), page.length - pageOffset);
+			dst.put(page.data, pageOffset, n);
+			position += n;
+			total += n;
+		}
+		return total;
+	}
+
+	@Override
+	public synchronized int write(ByteBuffer src) throws IOException {
+		ensureOpen();
+		ensureWritable();
+		int total = src.remaining();
+		long end = position + total;
+		if (end > size) {
+			growTo(end);
+		}
+		while (src.hasRemaining()) {
+			long index = position / pageSize;
+			int pageOffset = (int) (position % pageSize);
+			Page page = loadPage(index);
+			int n = Math.min(src.remaining(), page.length - pageOffset);
+			src.get(page.data, pageOffset, n);
+			page.dirty = true;
+			position += n;
+		}
+		return total;
+	}
+
+	@Override
+	public synchronized long position() throws IOException {
+		ensureOpen();
+		return position;
+	}
+
+	@Override
+	public synchronized EncryptedFileChannel position(long newPosition) throws IOException {
+		ensureOpen();
+		if (newPosition < 0) {
+			throw new IllegalArgumentException("position is negative");
+		}
+		position = newPosition;
+		return this;
+	}
+
+	@Override
+	public synchronized long size() throws IOException {
+		ensureOpen();
+		return size;
+	}
+
+	@Override
+	public synchronized EncryptedFileChannel truncate(long newSize) throws IOException {
+		ensureOpen();
+		ensureWritable();
+		if (newSize < 0) {
+			throw new IllegalArgumentException("size is negative");
+		}
+		if (newSize < size) {
+			long lastIndex = lastPageIndex(newSize);
+			// 按截断前的布局加载新的最后一页
+			Page last = loadPage(lastIndex);
+			cache.removeAfter(lastIndex);
+			size = newSize;
+			last.length = (int) (newSize - lastIndex * pageSize);
+			Arrays.fill(last.data, last.length, pageSize, (byte) 0);
+			writePage(lastIndex, last.data, last.length);
+			last.dirty = false;
+			channel.truncate(recordOffset(lastIndex) + last.length + PAGE_OVERHEAD);
+		}
+		if (position > newSize) {
+			position = newSize;
+		}
+		return this;
+	}
+
+	/**
+	 * 把缓存中修改过的页写回文件并同步到磁盘
+	 *
+	 * @throws IOException 写入失败
+	 */
+	public synchronized void flush() throws IOException {
+		ensureOpen();
+		flushPages();
+		if (writable) {
+			channel.force(false);
+		}
+	}
+
+	@Override
+	public synchronized boolean isOpen() {
+		return !closed;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			if (writable) {
+				flushPages();
+			}
+		} finally {
+			closed = true;
+			cache.clear();
+			Arrays.fill(record, (byte) 0);
+			file.close();
+		}
+	}
+
+	private void growTo(long newSize) throws IOException {
+		long oldLast = lastPageIndex(size);
+		long newLast = lastPageIndex(newSize);
+		// 按扩展前的布局加载原来的最后一页
+		Page old = loadPage(oldLast);
+		if (newLast == oldLast) {
+			size = newSize;
+			old.length = (int) (newSize - oldLast * pageSize);
+			old.dirty = true;
+			return;
+		}
+		size = newSize;
+		old.length = pageSize;
+		old.dirty = true;
+		byte[] zeros = new byte[pageSize];
+		for (long i = oldLast + 1; i < newLast; i++) {
+			writePage(i, zeros, pageSize);
+		}
+		Page last = new Page(newLast, new byte[pageSize], (int) (newSize - newLast * pageSize));
+		last.dirty = true;
+		putPage(last);
+	}
+
+	private Page loadPage(long index) throws IOException {
+		Page page = cache.get(index);
+		if (page != null) {
+			return page;
+		}
+		int length = pageLength(index);
+		int recordLength = length + PAGE_OVERHEAD;
+		readFully(ByteBuffer.wrap(record, 0, recordLength), recordOffset(index));
+		page = new Page(index, new byte[pageSize], length);
+		try {
+			Cipher cipher = initCipher(Cipher.DECRYPT_MODE, index, record, 0);
+			cipher.doFinal(record, NONCE_LEN, length + TAG_LEN, page.data, 0);
+		} catch (GeneralSecurityException e) {
+			LogUtil.e(TAG, "decrypt page " + index + " exception: " + e.getMessage());
+			throw new IOException("page " + index + " authentication failed", e);
+		}
+		putPage(page);
+		return page;
+	}
+
+	private void putPage(Page page) throws IOException {
+		Page eldest = cache.putAndEvict(page);
+		if (eldest != null && eldest.dirty) {
+			writePage(eldest.index, eldest.data, eldest.length);
+			eldest.dirty = false;
+		}
+		if (eldest != null) {
+			Arrays.fill(eldest.data, (byte) 0);
+		}
+	}
+
+	private void writePage(long index, byte[] data, int length) throws IOException {
+		if (!EncryptUtil.generateSecureRandom(record, 0, NONCE_LEN)) {
+			throw new IOException("generate nonce failed");
+		}
+		int cipherLength;
+		try {
+			Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, index, record, 0);
+			cipherLength = cipher.doFinal(data, 0, length, record, NONCE_LEN);
+		} catch (GeneralSecurityException e) {
+			LogUtil.e(TAG, "encrypt page " + index + " exception: " + e.getMessage());
+			throw new IOException("encrypt page " + index + " failed", e);
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(record, 0, NONCE_LEN + cipherLength);
+		long offset = recordOffset(index);
+		while (buffer.hasRemaining()) {
+			offset += channel.write(buffer, offset);
+		}
+	}
+
+	private void flushPages() throws IOException {
+		for (Page page : cache.values()) {
+			if (page.dirty) {
+				writePage(page.index, page.data, page.length);
+				page.dirty = false;
+			}
+		}
+	}
+
+	private Cipher initCipher(int mode, long index, byte[] nonceBuffer, int nonceOffset)
+			throws GeneralSecurityException {
+		System.arraycopy(nonceBuffer, nonceOffset, nonce, 0, NONCE_LEN);
+		System.arraycopy(header, 0, aad, 0, HEADER_LEN);
+		for (int i = 0; i < 8; i++) {
+			aad[HEADER_LEN + i] = (byte) (index >>> (56 - 8 * i));
+		}
+		aad[HEADER_LEN + 8] = (byte) (index == lastPageIndex(size) ? 1 : 0);
+		Cipher cipher = CipherUtil.initPooledCipher(AES_GCM_ALGORITHM, mode, keySpec,
+				AesGcm.getGcmAlgorithmParams(nonce));
+		cipher.updateAAD(aad);
+		return cipher;
+	}
+
+	private long readLogicalSize(long fileLength) throws IOException {
+		long body = fileLength - HEADER_LEN;
+		if (body < PAGE_OVERHEAD) {
+			throw new IOException("file is truncated");
+		}
+		long pages = (body + recordSize - 1) / recordSize;
+		long lastRecord = body - (pages - 1) * recordSize;
+		if (lastRecord < PAGE_OVERHEAD) {
+			throw new IOException("file is truncated");
+		}
+		return (pages - 1) * pageSize + lastRecord - PAGE_OVERHEAD;
+	}
+
+	private void readFully(ByteBuffer buffer, long offset) throws IOException {
+		while (buffer.hasRemaining()) {
+			int n = channel.read(buffer, offset);
+			if (n < 0) {
+				throw new IOException("unexpected end of file");
+			}
+			offset += n;
+		}
+	}
+
+	private long lastPageIndex(long logicalSize) {
+		return logicalSize == 0 ? 0 : (logicalSize - 1) / pageSize;
+	}
+
+	private int pageLength(long index) {
+		long last = lastPageIndex(size);
+		return index < last ? pageSize : (int) (size - last * pageSize);
+	}
+
+	private long recordOffset(long index) {
+		return HEADER_LEN + index * recordSize;
+	}
+
+	private void ensureOpen() throws ClosedChannelException {
+		if (closed) {
+			throw new ClosedChannelException();
+		}
+	}
+
+	private void ensureWritable() {
+		if (!writable) {
+			throw new NonWritableChannelException();
+		}
+	}
+
+	private static final class Page {
+		final long index;
+		final byte[] data;
+		int length;
+		boolean dirty;
+
+		Page(long index, byte[] data, int length) {
+			this.index = index;
+			this.data = data;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * 按访问顺序排列的页缓存，超过容量时由调用方写回被淘汰的页
+	 */
+	private static final class PageCache extends LinkedHashMap<Long, Page> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		PageCache(int capacity) {
+			super(capacity + 1, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		Page putAndEvict(Page page) {
+			put(page.index, page);
+			if (size() <= capacity) {
+				return null;
+			}
+			Iterator<Map.Entry<Long, Page>> iterator = entrySet().iterator();
+			Page eldest = iterator.next().getValue();
+			iterator.remove();
+			return eldest;
+		}
+
+		void removeAfter(long index) {
+			Iterator<Map.Entry<Long, Page>> iterator = entrySet().iterator();
+			while (iterator.hasNext()) {
+				Page page = iterator.next().getValue();
+				if (page.index > index) {
+					Arrays.fill(page.data, (byte) 0);
+					iterator.remove();
+				}
+			}
+		}
+
+		@Override
+		public void clear() {
+			for (Page page : values()) {
+				Arrays.fill(page.data, (byte) 0);
+			}
+			super.clear();
+		}
+	}
+}
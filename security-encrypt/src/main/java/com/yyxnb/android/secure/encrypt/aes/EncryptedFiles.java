@@ -0,0 +1,430 @@
+package com.yyxnb.android.secure.encrypt.aes;
+
+import com.yyxnb.android.secure.utils.EncryptUtil;
+import com.yyxnb.android.secure.utils.IOUtil;
+import com.yyxnb.android.secure.utils.LogUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 基于内存映射的文件加解密
+ * <p>
+ * 密文格式与{@link AesGcmStreams}一致，两者加密的文件可以互相解密。输入文件按窗口映射到内存，
+ * 分段加解密结果写入direct buffer，由单独的写线程写入输出文件，加解密与磁盘写入同时进行，
+ * 整个过程不把文件内容拷贝到Java堆上。
+ * <p>
+ * 映射在GC前不会释放，超过{@link #MAP_MAX_FILE_SIZE}的文件改为读入复用的direct buffer，
+ * 避免32位设备上累积大量映射耗尽虚拟地址空间。写线程和缓冲区处理完成后放回池中，下次调用复用。
+ * 输出文件fsync后才返回成功。
+ * <p>
+ * 解密时任意分段认证失败都会删除输出文件。
+ *
+ * @author yyx
+ * @date 2023/10/11
+ */
+public final class EncryptedFiles {
+
+	private static final String TAG = "EncryptedFiles";
+
+	private static final String AES_GCM_ALGORITHM = "AES/GCM/NoPadding";
+
+	private static final String AES_ALGORITHM = "AES";
+
+	private static final int AES_GCM_KEY_LEN = 16;
+
+	/**
+	 * 输入文件每次映射或读取的最大长度
+	 */
+	private static final int MAP_WINDOW_SIZE = 4 * 1024 * 1024;
+
+	/**
+	 * 不超过该大小的文件使用内存映射，更大的文件读入复用的缓冲区
+	 */
+	private static final long MAP_MAX_FILE_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * 写线程每个缓冲区的大致长度
+	 */
+	private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * 写缓冲区个数，一个在加解密时其余的可以同时在写入
+	 */
+	private static final int WRITE_BUFFER_COUNT = 3;
+
+	/**
+	 * 池中最多保留的空闲写线程缓冲区组数
+	 */
+	private static final int MAX_IDLE_WRITERS = 2;
+
+	private static final BlockingQueue<Writer> IDLE_WRITERS = new ArrayBlockingQueue<>(MAX_IDLE_WRITERS);
+
+	/**
+	 * 写线程池，线程空闲一段时间后退出
+	 */
+	private static final ExecutorService WRITER_EXECUTOR = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+			30, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "EncryptedFiles-writer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private EncryptedFiles() {
+
+	}
+
+	/**
+	 * 加密文件，使用默认分段长度
+	 *
+	 * @param src 明文文件
+	 * @param dst 密文文件
+	 * @param key 字节数组形式密钥
+	 * @return 是否成功
+	 */
+	public static boolean encrypt(File src, File dst, byte[] key) {
+		return encrypt(src, dst, key, AesGcmStreams.DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * 加密文件
+	 *
+	 * @param src         明文文件
+	 * @param dst         密文文件
+	 * @param key         字节数组形式密钥
+	 * @param segmentSize 分段明文长度，取值范围[{@link AesGcmStreams#MIN_SEGMENT_SIZE},
+	 *                    {@link AesGcmStreams#MAX_SEGMENT_SIZE}]
+	 * @return 是否成功
+	 */
+	public static boolean encrypt(File src, File dst, byte[] key, int segmentSize) {
+		if (segmentSize < AesGcmStreams.MIN_SEGMENT_SIZE || segmentSize > AesGcmStreams.MAX_SEGMENT_SIZE) {
+			LogUtil.e(TAG, "encrypt segment size is out of range");
+			return false;
+		}
+		return process(Cipher.ENCRYPT_MODE, src, dst, key, segmentSize);
+	}
+
+	/**
+	 * 解密文件，解密失败时删除不完整的明文文件
+	 *
+	 * @param src 密文文件
+	 * @param dst 明文文件
+	 * @param key 字节数组形式密钥
+	 * @return 是否成功
+	 */
+	public static boolean decrypt(File src, File dst, byte[] key) {
+		return process(Cipher.DECRYPT_MODE, src, dst, key, 0);
+	}
+
+	private static boolean process(int mode, File src, File dst, byte[] key, int segmentSize) {
+		String method = mode == Cipher.ENCRYPT_MODE ? "encrypt" : "decrypt";
+		if (src == null || dst == null || !src.isFile()) {
+			LogUtil.e(TAG, method + " file: src or dst is not valid");
+			return false;
+		}
+		if (key == null || key.length < AES_GCM_KEY_LEN) {
+			LogUtil.e(TAG, method + " key error: key is null or length less than 16 bytes.");
+			return false;
+		}
+		if (!AesGcm.isBuildVersionHigherThan19()) {
+			LogUtil.e(TAG, method + " build version not higher than 19");
+			return false;
+		}
+		FileInputStream in = null;
+		FileOutputStream out = null;
+		Writer writer = null;
+		boolean success = false;
+		try {
+			in = new FileInputStream(src);
+			out = new FileOutputStream(dst);
+			FileChannel inChannel = in.getChannel();
+			FileChannel outChannel = out.getChannel();
+			long size = inChannel.size();
+			byte[] header = new byte[AesGcmStreams.HEADER_LEN];
+			long bodyStart;
+			long segmentCount;
+			if (mode == Cipher.ENCRYPT_MODE) {
+				byte[] noncePrefix = EncryptUtil.generateSecureRandom(AesGcmStreams.NONCE_PREFIX_LEN);
+				if (noncePrefix.length != AesGcmStreams.NONCE_PREFIX_LEN) {
+					throw new IOException("generate nonce prefix failed");
+				}
+				AesGcmStreams.writeHeader(header, segmentSize, noncePrefix);
+				writeFully(outChannel, ByteBuffer.wrap(header));
+				bodyStart = 0;
+				segmentCount = size == 0 ? 1 : (size + segmentSize - 1) / segmentSize;
+			} else {
+				if (size < AesGcmStreams.HEADER_LEN + AesGcmStreams.TAG_LEN) {
+					throw new IOException("file is too short");
+				}
+				readFully(inChannel, ByteBuffer.wrap(header));
+				segmentSize = AesGcmStreams.readSegmentSize(header);
+				if (segmentSize < 0) {
+					throw new IOException("invalid header");
+				}
+				bodyStart = AesGcmStreams.HEADER_LEN;
+				long cipherSegmentSize = segmentSize + AesGcmStreams.TAG_LEN;
+				segmentCount = (size - bodyStart + cipherSegmentSize - 1) / cipherSegmentSize;
+				if (size - bodyStart - (segmentCount - 1) * cipherSegmentSize < AesGcmStreams.TAG_LEN) {
+					throw new IOException("file is truncated");
+				}
+			}
+			if (segmentCount > Integer.MAX_VALUE) {
+				throw new IOException("too many segments");
+			}
+			int inSegmentSize = mode == Cipher.ENCRYPT_MODE ? segmentSize : segmentSize + AesGcmStreams.TAG_LEN;
+			int outSegmentSize = mode == Cipher.ENCRYPT_MODE ? segmentSize + AesGcmStreams.TAG_LEN : segmentSize;
+			writer = Writer.obtain(outSegmentSize);
+			writer.start(outChannel);
+			boolean mapped = size <= MAP_MAX_FILE_SIZE;
+			SecretKeySpec keySpec = new SecretKeySpec(key, AES_ALGORITHM);
+			byte[] nonce = new byte[AesGcmStreams.NONCE_LEN];
+			byte[] aad = new byte[AesGcmStreams.AAD_LEN];
+			long segmentsPerWindow = Math.max(1, MAP_WINDOW_SIZE / inSegmentSize);
+			int index = 0;
+			while (index < segmentCount) {
+				long windowStart = bodyStart + (long) index * inSegmentSize;
+				long windowSegments = Math.min(segmentCount - index, segmentsPerWindow);
+				int windowLen = (int) Math.min(size - windowStart, windowSegments * inSegmentSize);
+				ByteBuffer window;
+				if (windowLen == 0) {
+					window = ByteBuffer.allocate(0);
+				} else if (mapped) {
+					window = inChannel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLen);
+				} else {
+					window = writer.readBuffer(windowLen);
+					readFully(inChannel, window, windowStart);
+				}
+				ByteBuffer buffer = writer.acquire();
+				for (int i = 0; i < windowSegments; i++, index++) {
+					if (buffer.remaining() < outSegmentSize) {
+						writer.submit(buffer);
+						buffer = writer.acquire();
+					}
+					int start = i * inSegmentSize;
+					window.clear();
+					window.limit(Math.min(windowLen, start + inSegmentSize));
+					window.position(start);
+					boolean isFinal = index == segmentCount - 1;
+					AesGcmStreams.segmentNonceAndAad(header, index, isFinal, nonce, aad);
+					Cipher cipher = CipherUtil.initPooledCipher(AES_GCM_ALGORITHM, mode, keySpec,
+							AesGcm.getGcmAlgorithmParams(nonce));
+					cipher.updateAAD(aad);
+					cipher.doFinal(window, buffer);
+				}
+				writer.submit(buffer);
+			}
+			writer.finish();
+			writer.recycle();
+			writer = null;
+			out.getFD().sync();
+			out.close();
+			out = null;
+			success = true;
+		} catch (IOException | GeneralSecurityException e) {
+			LogUtil.e(TAG, method + " file exception : " + e.getMessage());
+		} finally {
+			if (writer != null) {
+				writer.abort();
+			}
+			IOUtil.closeSecure(in);
+			IOUtil.closeSecure(out);
+			if (!success && dst.exists() && !dst.delete()) {
+				LogUtil.e(TAG, method + " file: delete incomplete file failed");
+			}
+		}
+		return success;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new IOException("unexpected end of file");
+			}
+		}
+	}
+
+	/**
+	 * 从指定位置读满buffer，完成后buffer切换为读模式
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int n = channel.read(buffer, position);
+			if (n < 0) {
+				throw new IOException("unexpected end of file");
+			}
+			position += n;
+		}
+		buffer.flip();
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * 写任务及其缓冲区。加解密线程从free队列取空缓冲区，写满后放入full队列，写任务写入文件后归还到free队列。
+	 * 成功完成后所有缓冲区都回到free队列，整组放回池中复用；出错时直接丢弃
+	 */
+	private static final class Writer implements Runnable {
+
+		private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+		private static final long POLL_INTERVAL_MS = 100;
+
+		private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(WRITE_BUFFER_COUNT);
+
+		private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<>(WRITE_BUFFER_COUNT + 1);
+
+		private final int bufferSize;
+
+		/**
+		 * 超过映射大小上限时使用的读缓冲区，按需创建
+		 */
+		private ByteBuffer readBuffer;
+
+		private FileChannel channel;
+
+		private Future<?> future;
+
+		private volatile IOException error;
+
+		private Writer(int bufferSize) {
+			this.bufferSize = bufferSize;
+			for (int i = 0; i < WRITE_BUFFER_COUNT; i++) {
+				free.add(ByteBuffer.allocateDirect(bufferSize));
+			}
+		}
+
+		/**
+		 * 从池中取缓冲区足够大的写任务，没有时新建
+		 *
+		 * @param outSegmentSize 输出分段长度
+		 */
+		static Writer obtain(int outSegmentSize) {
+			int bufferSize = outSegmentSize * Math.max(1, WRITE_BUFFER_SIZE / outSegmentSize);
+			Writer writer = IDLE_WRITERS.poll();
+			if (writer != null && writer.bufferSize >= outSegmentSize) {
+				return writer;
+			}
+			return new Writer(bufferSize);
+		}
+
+		void start(FileChannel channel) throws IOException {
+			this.channel = channel;
+			error = null;
+			try {
+				future = WRITER_EXECUTOR.submit(this);
+			} catch (RejectedExecutionException e) {
+				throw new IOException("start writer failed");
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					ByteBuffer buffer = full.take();
+					if (buffer == END) {
+						return;
+					}
+					writeFully(channel, buffer);
+					buffer.clear();
+					free.add(buffer);
+				}
+			} catch (IOException e) {
+				error = e;
+			} catch (InterruptedException e) {
+				error = new InterruptedIOException("writer interrupted");
+			}
+		}
+
+		ByteBuffer readBuffer(int len) {
+			if (readBuffer == null || readBuffer.capacity() < len) {
+				readBuffer = ByteBuffer.allocateDirect(Math.max(len, MAP_WINDOW_SIZE));
+			}
+			readBuffer.clear();
+			readBuffer.limit(len);
+			return readBuffer;
+		}
+
+		ByteBuffer acquire() throws IOException {
+			try {
+				ByteBuffer buffer;
+				// 写任务出错后不会再归还缓冲区，定时检查避免一直阻塞
+				while ((buffer = free.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) == null) {
+					checkError();
+				}
+				return buffer;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("acquire buffer interrupted");
+			}
+		}
+
+		void submit(ByteBuffer buffer) throws IOException {
+			checkError();
+			buffer.flip();
+			full.add(buffer);
+		}
+
+		void finish() throws IOException {
+			full.add(END);
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("wait writer interrupted");
+			} catch (ExecutionException e) {
+				throw new IOException("writer failed : " + e.getMessage());
+			}
+			checkError();
+		}
+
+		/**
+		 * 成功完成后放回池中，池满时丢弃
+		 */
+		void recycle() {
+			channel = null;
+			future = null;
+			if (free.size() == WRITE_BUFFER_COUNT && full.isEmpty()) {
+				IDLE_WRITERS.offer(this);
+			}
+		}
+
+		void abort() {
+			if (future != null) {
+				future.cancel(true);
+			}
+		}
+
+		private void checkError() throws IOException {
+			if (error != null) {
+				throw error;
+			}
+		}
+	}
+}
@@ -0,0 +1,422 @@
+package com.yyxnb.android.secure.encrypt.aes;
+
+import com.yyxnb.android.secure.utils.EncryptUtil;
+import com.yyxnb.android.secure.utils.HexUtil;
+import com.yyxnb.android.secure.utils.IOUtil;
+import com.yyxnb.android.secure.utils.LogUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * AES GCM的计数器nonce序列
+ * <p>
+ * nonce = 每个密钥随机生成的4字节前缀 + 8字节递增计数器，同一密钥下的nonce不会重复，
+ * 也不需要每次加密都生成随机数，适合同一个密钥要加密大量数据的场景。生成的密文格式与随机IV相同，
+ * 仍然使用{@link AesGcm#decrypt(byte[], byte[])}解密。
+ * <p>
+ * 计数器按{@link #RESERVE_BLOCK}预留并先落盘到状态文件再使用，进程崩溃后从已预留的上限继续，
+ * 跳过未用完的部分而不会重复使用nonce。状态文件只保存密钥指纹，不保存密钥。
+ * 会跨进程保存的密钥必须使用状态文件：每次启动都随机生成4字节前缀并从0计数时，n次启动中出现相同前缀的概率约为
+ * n^2/2^33（1万次约1%，6.5万次约40%），前缀相同的两次启动从0开始使用完全相同的nonce。
+ * 只在本进程生成、不会保存的临时密钥可以用{@link #createEphemeral(byte[])}在内存中计数。
+ * <p>
+ * 加密次数达到上限后调用{@link KeyRotator}换新密钥，没有设置或换密钥失败时拒绝继续加密。
+ * 换密钥后旧密钥加密的数据需要调用方保存旧密钥解密。
+ *
+ * <pre>
+ *     NonceSequence sequence = NonceSequence.create(key, stateFile, NonceSequence.DEFAULT_INVOCATION_LIMIT, rotator);
+ *     byte[] encrypted = AesGcm.encrypt(content, sequence);
+ * </pre>
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+public final class NonceSequence {
+
+	private static final String TAG = "NonceSequence";
+
+	/**
+	 * 默认单个密钥的加密次数上限
+	 */
+	public static final long DEFAULT_INVOCATION_LIMIT = 1L << 32;
+
+	/**
+	 * 每次落盘预留的计数个数
+	 */
+	public static final int RESERVE_BLOCK = 4096;
+
+	static final int NONCE_LEN = 12;
+
+	private static final int PREFIX_LEN = 4;
+
+	private static final int FINGERPRINT_LEN = 8;
+
+	private static final byte STATE_VERSION = 1;
+
+	private static final int STATE_LEN = 1 + FINGERPRINT_LEN + PREFIX_LEN + 8;
+
+	private static final int AES_GCM_KEY_LEN = 16;
+
+	/**
+	 * 本进程内已用于内存计数序列的密钥指纹
+	 */
+	private static final Set<String> EPHEMERAL_KEYS = new HashSet<>();
+
+	private final File stateFile;
+
+	private final long invocationLimit;
+
+	private final KeyRotator rotator;
+
+	private final byte[] prefix = new byte[PREFIX_LEN];
+
+	private byte[] key;
+
+	private long counter;
+
+	private long reserved;
+
+	/**
+	 * 换密钥回调
+	 */
+	public interface KeyRotator {
+
+		/**
+		 * 当前密钥达到加密次数上限时调用，在加密线程上同步执行
+		 *
+		 * @param retiredKey 即将停用的密钥，调用方需要保存以便解密旧数据
+		 * @return 新密钥，长度不少于16字节，返回null时停止加密
+		 */
+		byte[] rotate(byte[] retiredKey);
+	}
+
+	/**
+	 * 一次加密使用的密钥和nonce，密钥是取nonce时序列当前密钥的副本，换密钥不影响已取出的值
+	 */
+	public static final class KeyedNonce {
+
+		private final byte[] key;
+
+		private final byte[] nonce;
+
+		KeyedNonce(byte[] key, byte[] nonce) {
+			this.key = key;
+			this.nonce = nonce;
+		}
+
+		/**
+		 * 加密使用的密钥，解密时需要同一个密钥
+		 *
+		 * @return 密钥副本
+		 */
+		public byte[] getKey() {
+			return key.clone();
+		}
+
+		/**
+		 * @return 12字节nonce副本
+		 */
+		public byte[] getNonce() {
+			return nonce.clone();
+		}
+
+		/**
+		 * 用完后清零密钥
+		 */
+		public void clear() {
+			Arrays.fill(key, (byte) 0);
+		}
+	}
+
+	private NonceSequence(byte[] key, File stateFile, long invocationLimit, KeyRotator rotator) {
+		this.key = key.clone();
+		this.stateFile = stateFile;
+		this.invocationLimit = invocationLimit;
+		this.rotator = rotator;
+	}
+
+	/**
+	 * 创建只在内存中计数的序列，使用默认加密次数上限，不换密钥
+	 *
+	 * @param key 本进程生成的临时密钥，不能保存后在下次启动时再用
+	 * @return 序列，参数不合法或密钥已在本进程用过时返回null
+	 * @see #createEphemeral(byte[], long, KeyRotator)
+	 */
+	public static NonceSequence createEphemeral(byte[] key) {
+		return createEphemeral(key, DEFAULT_INVOCATION_LIMIT, null);
+	}
+
+	/**
+	 * 创建只在内存中计数的序列
+	 * <p>
+	 * 计数不落盘，无法知道密钥在以前的进程中用过哪些nonce，只能用于本进程生成、不会保存的临时密钥。
+	 * 同一个密钥（包括换密钥得到的新密钥）在本进程内只能创建一个内存计数序列，重复创建返回null；
+	 * 跨进程的重复使用无法检测，由调用方保证。
+	 *
+	 * @param key             本进程生成的临时密钥
+	 * @param invocationLimit 单个密钥的加密次数上限
+	 * @param rotator         换密钥回调，可以为null，返回的新密钥同样只能是临时密钥
+	 * @return 序列，参数不合法或密钥已在本进程用过时返回null
+	 */
+	public static NonceSequence createEphemeral(byte[] key, long invocationLimit, KeyRotator rotator) {
+		if (!checkParams(key, invocationLimit)) {
+			return null;
+		}
+		try {
+			if (!registerEphemeral(key)) {
+				LogUtil.e(TAG, "createEphemeral: key is already used by another sequence");
+				return null;
+			}
+			NonceSequence sequence = new NonceSequence(key, null, invocationLimit, rotator);
+			sequence.reset();
+			return sequence;
+		} catch (IOException e) {
+			LogUtil.e(TAG, "createEphemeral exception : " + e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * 创建计数保存在状态文件中的序列，密钥会跨进程保存时使用
+	 *
+	 * @param key             字节数组形式密钥
+	 * @param stateFile       状态文件，不能为null。文件中的密钥指纹与key一致时从保存的位置继续，
+	 *                        同一个密钥必须一直使用同一个状态文件
+	 * @param invocationLimit 单个密钥的加密次数上限
+	 * @param rotator         换密钥回调，可以为null
+	 * @return 序列，参数不合法或读写状态文件失败时返回null
+	 */
+	public static NonceSequence create(byte[] key, File stateFile, long invocationLimit, KeyRotator rotator) {
+		if (!checkParams(key, invocationLimit)) {
+			return null;
+		}
+		if (stateFile == null) {
+			LogUtil.e(TAG, "create state file is null, use createEphemeral for in-memory keys");
+			return null;
+		}
+		NonceSequence sequence = new NonceSequence(key, stateFile, invocationLimit, rotator);
+		try {
+			if (!sequence.restore()) {
+				sequence.reset();
+			}
+			return sequence;
+		} catch (IOException e) {
+			LogUtil.e(TAG, "create state file exception : " + e.getMessage());
+		}
+		return null;
+	}
+
+	private static boolean checkParams(byte[] key, long invocationLimit) {
+		if (key == null || key.length < AES_GCM_KEY_LEN) {
+			LogUtil.e(TAG, "create key error: key is null or length less than 16 bytes.");
+			return false;
+		}
+		if (invocationLimit <= 0) {
+			LogUtil.e(TAG, "create invocation limit must be positive");
+			return false;
+		}
+		return true;
+	}
+
+	private static boolean registerEphemeral(byte[] key) throws IOException {
+		String fingerprint = HexUtil.byteArray2HexStr(fingerprint(key));
+		synchronized (EPHEMERAL_KEYS) {
+			return EPHEMERAL_KEYS.add(fingerprint);
+		}
+	}
+
+	/**
+	 * 当前密钥的副本
+	 *
+	 * @return 密钥
+	 */
+	public synchronized byte[] getKey() {
+		return key.clone();
+	}
+
+	/**
+	 * 当前密钥下已使用的计数，进程重启后包含跳过的预留部分
+	 *
+	 * @return 计数
+	 */
+	public synchronized long getCounter() {
+		return counter;
+	}
+
+	/**
+	 * 取下一个nonce，只需要nonce时使用；需要同时确定对应密钥时使用{@link #next()}
+	 *
+	 * @param output 输出数组，剩余长度不少于12
+	 * @param offset 输出起始位置
+	 * @return 是否成功
+	 */
+	public boolean nextNonce(byte[] output, int offset) {
+		if (output == null || offset < 0 || output.length - offset < NONCE_LEN) {
+			LogUtil.e(TAG, "nextNonce: output is null or too short");
+			return false;
+		}
+		byte[] key = next(output, offset);
+		if (key == null) {
+			return false;
+		}
+		Arrays.fill(key, (byte) 0);
+		return true;
+	}
+
+	/**
+	 * 取下一个nonce和对应的密钥，用于{@link CipherUtil#getAesGcmEncryptCipher(KeyedNonce)}
+	 *
+	 * @return 密钥和nonce，达到上限且无法换密钥或落盘失败时返回null
+	 */
+	public KeyedNonce next() {
+		byte[] nonce = new byte[NONCE_LEN];
+		byte[] key = next(nonce, 0);
+		return key == null ? null : new KeyedNonce(key, nonce);
+	}
+
+	/**
+	 * 取下一个nonce，返回与nonce对应的密钥副本。副本在锁内复制，之后换密钥也不会改变它，调用方用完后清零
+	 *
+	 * @param output 输出数组，调用方保证剩余长度不少于12
+	 * @param offset 输出起始位置
+	 * @return 密钥副本，达到上限且无法换密钥或落盘失败时返回null
+	 */
+	synchronized byte[] next(byte[] output, int offset) {
+		try {
+			if (counter >= invocationLimit && !rotate()) {
+				return null;
+			}
+			if (stateFile != null && counter >= reserved) {
+				persist(counter + RESERVE_BLOCK);
+			}
+		} catch (IOException e) {
+			LogUtil.e(TAG, "next: persist state exception : " + e.getMessage());
+			return null;
+		}
+		System.arraycopy(prefix, 0, output, offset, PREFIX_LEN);
+		long value = counter++;
+		for (int i = NONCE_LEN - 1; i >= PREFIX_LEN; i--) {
+			output[offset + i] = (byte) value;
+			value >>>= 8;
+		}
+		return key.clone();
+	}
+
+	private boolean rotate() throws IOException {
+		if (rotator == null) {
+			LogUtil.e(TAG, "rotate: invocation limit reached and no rotator");
+			return false;
+		}
+		byte[] newKey = rotator.rotate(key.clone());
+		if (newKey == null || newKey.length < AES_GCM_KEY_LEN) {
+			LogUtil.e(TAG, "rotate: new key is null or length less than 16 bytes.");
+			return false;
+		}
+		if (Arrays.equals(newKey, key)) {
+			LogUtil.e(TAG, "rotate: new key is the same as the retired key");
+			return false;
+		}
+		if (stateFile == null && !registerEphemeral(newKey)) {
+			LogUtil.e(TAG, "rotate: new key is already used by another sequence");
+			return false;
+		}
+		// 旧密钥已交给rotator，这里只替换引用，不清零其他线程可能还在用的数组
+		key = newKey.clone();
+		reset();
+		LogUtil.i(TAG, "rotate: key rotated");
+		return true;
+	}
+
+	private void reset() throws IOException {
+		if (!EncryptUtil.generateSecureRandom(prefix, 0, PREFIX_LEN)) {
+			throw new IOException("generate nonce prefix failed");
+		}
+		counter = 0;
+		reserved = 0;
+		if (stateFile != null) {
+			persist(RESERVE_BLOCK);
+		}
+	}
+
+	/**
+	 * 读取状态文件，密钥指纹不一致或文件不存在时返回false
+	 */
+	private boolean restore() throws IOException {
+		if (stateFile == null || !stateFile.isFile()) {
+			return false;
+		}
+		byte[] state = new byte[STATE_LEN];
+		FileInputStream in = null;
+		try {
+			in = new FileInputStream(stateFile);
+			int read = 0;
+			int n;
+			while (read < STATE_LEN && (n = in.read(state, read, STATE_LEN - read)) > 0) {
+				read += n;
+			}
+			if (read != STATE_LEN || state[0] != STATE_VERSION) {
+				LogUtil.e(TAG, "restore: state file is corrupted, start a new prefix");
+				return false;
+			}
+		} finally {
+			IOUtil.closeSecure(in);
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(state, 1, STATE_LEN - 1);
+		byte[] fingerprint = new byte[FINGERPRINT_LEN];
+		buffer.get(fingerprint);
+		if (!MessageDigest.isEqual(fingerprint, fingerprint(key))) {
+			LogUtil.i(TAG, "restore: key changed, start a new prefix");
+			return false;
+		}
+		buffer.get(prefix);
+		long saved = buffer.getLong();
+		if (saved < 0) {
+			return false;
+		}
+		// 上次预留的部分可能已经用过，从预留上限继续
+		counter = saved;
+		reserved = saved;
+		return true;
+	}
+
+	/**
+	 * 写临时文件并同步到磁盘后再改名覆盖，任何时刻崩溃都能读到完整的旧状态或新状态
+	 */
+	private void persist(long newReserved) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(STATE_LEN);
+		buffer.put(STATE_VERSION).put(fingerprint(key)).put(prefix).putLong(newReserved);
+		File tmp = new File(stateFile.getPath() + ".tmp");
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(tmp);
+			out.write(buffer.array());
+			out.flush();
+			out.getFD().sync();
+		} finally {
+			IOUtil.closeSecure(out);
+		}
+		if (!tmp.renameTo(stateFile)) {
+			throw new IOException("rename state file failed");
+		}
+		reserved = newReserved;
+	}
+
+	private static byte[] fingerprint(byte[] key) throws IOException {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(TAG.getBytes("UTF-8"));
+			return Arrays.copyOf(digest.digest(key), FINGERPRINT_LEN);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("SHA-256 is not available");
+		}
+	}
+}
@@ -0,0 +1,280 @@
+package com.yyxnb.android.secure.encrypt.hash;
+
+import android.text.TextUtils;
+
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
+import com.yyxnb.android.secure.utils.LogUtil;
+import com.yyxnb.android.secure.utils.MetricsUtil;
+import com.yyxnb.android.secure.utils.TextCodec;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 盲索引，用于对加密字段做关键词、前缀和子串查询
+ * <p>
+ * 文本先归一化（NFKC + 小写），按非字母数字字符切分为关键词，再对关键词、关键词前缀或n-gram片段
+ * 计算HMAC-SHA256并截断为令牌。令牌与密文一起存储，查询时用同一密钥对查询词生成令牌，
+ * 在令牌上做相等匹配即可，不需要解密整张表。关键词、前缀、n-gram三类令牌的输入带有不同的类型前缀，互不相同。
+ * <p>
+ * 截断长度决定误判率与泄露程度：每个令牌与不相关片段碰撞的概率约为 2^(-8 * 截断字节数)，
+ * 截断越短误判越多，但攻击者通过令牌频率推断明文也越难。查询结果只是候选集合，需要解密后再确认。
+ * 令牌会暴露关键词的重复情况，密钥必须与加密数据的密钥分开。
+ * <p>
+ * 每个线程缓存一个已初始化的{@link Mac}，生成令牌时不再创建和初始化Mac。
+ *
+ * <pre>
+ *     BlindIndex blindIndex = BlindIndex.create(indexKey, BlindIndex.DEFAULT_TOKEN_LEN);
+ *     index.add(id, blindIndex.keywordTokens(text));
+ *     Set&lt;Long&gt; candidates = index.query(blindIndex.keywordTokens(keyword));
+ * </pre>
+ *
+ * @author yyx
+ * @date 2023/10/16
+ */
+public final class BlindIndex {
+
+	private static final String TAG = "BlindIndex";
+
+	private static final String ALGORITHM = "HmacSHA256";
+
+	/**
+	 * 默认截断长度（字节）
+	 */
+	public static final int DEFAULT_TOKEN_LEN = 8;
+
+	/**
+	 * 最短截断长度（字节）
+	 */
+	public static final int MIN_TOKEN_LEN = 2;
+
+	/**
+	 * 最长截断长度（字节），即不截断
+	 */
+	public static final int MAX_TOKEN_LEN = 32;
+
+	private static final int KEY_LEN = 32;
+
+	private static final byte TYPE_KEYWORD = 'k';
+
+	private static final byte TYPE_PREFIX = 'p';
+
+	private static final byte TYPE_NGRAM = 'n';
+
+	private final SecretKeySpec key;
+
+	private final int tokenLen;
+
+	private final ThreadLocal<Mac> mac = new ThreadLocal<>();
+
+	private BlindIndex(SecretKeySpec key, int tokenLen) {
+		this.key = key;
+		this.tokenLen = tokenLen;
+	}
+
+	/**
+	 * 创建盲索引
+	 *
+	 * @param key      索引密钥，至少32字节，不能与加密数据的密钥相同
+	 * @param tokenLen 令牌截断长度（字节），{@link #MIN_TOKEN_LEN}到{@link #MAX_TOKEN_LEN}之间
+	 * @return 盲索引，参数错误返回null
+	 */
+	public static BlindIndex create(byte[] key, int tokenLen) {
+		if (key == null || key.length < KEY_LEN) {
+			LogUtil.e(TAG, "create: key length must be at least 32 bytes");
+			return null;
+		}
+		if (tokenLen < MIN_TOKEN_LEN || tokenLen > MAX_TOKEN_LEN) {
+			LogUtil.e(TAG, "create: token length must be between 2 and 32");
+			return null;
+		}
+		return new BlindIndex(new SecretKeySpec(key, ALGORITHM), tokenLen);
+	}
+
+	/**
+	 * 令牌截断长度
+	 *
+	 * @return 字节数
+	 */
+	public int getTokenLen() {
+		return tokenLen;
+	}
+
+	/**
+	 * 归一化：NFKC、转小写、去掉首尾空白
+	 *
+	 * @param text 文本
+	 * @return 归一化后的文本，text为null时返回空字符串
+	 */
+	public static String normalize(String text) {
+		if (TextUtils.isEmpty(text)) {
+			return "";
+		}
+		return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT).trim();
+	}
+
+	/**
+	 * 切分关键词：归一化后按非字母数字字符切分，去重并保持原有顺序
+	 *
+	 * @param text 文本
+	 * @return 关键词
+	 */
+	public static List<String> splitKeywords(String text) {
+		String normalized = normalize(text);
+		Set<String> keywords = new LinkedHashSet<>();
+		int start = -1;
+		int i = 0;
+		while (i < normalized.length()) {
+			int codePoint = normalized.codePointAt(i);
+			if (Character.isLetterOrDigit(codePoint)) {
+				if (start < 0) {
+					start = i;
+				}
+			} else if (start >= 0) {
+				keywords.add(normalized.substring(start, i));
+				start = -1;
+			}
+			i += Character.charCount(codePoint);
+		}
+		if (start >= 0) {
+			keywords.add(normalized.substring(start));
+		}
+		return new ArrayList<>(keywords);
+	}
+
+	/**
+	 * 单个关键词的令牌，用于查询
+	 *
+	 * @param keyword 关键词，会先归一化
+	 * @return 令牌，失败返回空字符串
+	 */
+	public String keywordToken(String keyword) {
+		return token(TYPE_KEYWORD, normalize(keyword));
+	}
+
+	/**
+	 * 文本中所有关键词的令牌，用于建立索引；对查询串调用时，查询结果为同时包含所有关键词的记录
+	 *
+	 * @param text 文本
+	 * @return 令牌集合，失败时不包含对应令牌
+	 */
+	public Set<String> keywordTokens(String text) {
+		Set<String> tokens = new LinkedHashSet<>();
+		for (String keyword : splitKeywords(text)) {
+			addToken(tokens, token(TYPE_KEYWORD, keyword));
+		}
+		return tokens;
+	}
+
+	/**
+	 * 前缀查询的令牌
+	 *
+	 * @param prefix 前缀，会先归一化，长度（按字符计）需在建立索引时的范围内才能查到
+	 * @return 令牌，失败返回空字符串
+	 */
+	public String prefixToken(String prefix) {
+		return token(TYPE_PREFIX, normalize(prefix));
+	}
+
+	/**
+	 * 文本中每个关键词的前缀令牌，用于建立前缀索引
+	 *
+	 * @param text   文本
+	 * @param minLen 最短前缀（字符数），不小于1
+	 * @param maxLen 最长前缀（字符数），关键词更短时取整个关键词
+	 * @return 令牌集合
+	 */
+	public Set<String> prefixTokens(String text, int minLen, int maxLen) {
+		Set<String> tokens = new LinkedHashSet<>();
+		if (minLen < 1 || maxLen < minLen) {
+			LogUtil.e(TAG, "prefixTokens: invalid prefix length");
+			return tokens;
+		}
+		for (String keyword : splitKeywords(text)) {
+			int count = keyword.codePointCount(0, keyword.length());
+			for (int len = minLen; len <= Math.min(maxLen, count); len++) {
+				addToken(tokens, token(TYPE_PREFIX, keyword.substring(0, keyword.offsetByCodePoints(0, len))));
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * 文本中每个关键词的n-gram令牌，用于子串查询
+	 * <p>
+	 * 建立索引和查询使用同一个n，查询串的n-gram令牌全部命中的记录为候选。
+	 * 查询串短于n时无法生成令牌，应改用前缀索引。中文等不以空格分词的文本也适用。
+	 *
+	 * @param text 文本
+	 * @param n    片段长度（字符数），常用2或3
+	 * @return 令牌集合，关键词短于n时包含整个关键词的令牌
+	 */
+	public Set<String> ngramTokens(String text, int n) {
+		Set<String> tokens = new LinkedHashSet<>();
+		if (n < 1) {
+			LogUtil.e(TAG, "ngramTokens: n must be positive");
+			return tokens;
+		}
+		for (String keyword : splitKeywords(text)) {
+			int count = keyword.codePointCount(0, keyword.length());
+			if (count < n) {
+				addToken(tokens, token(TYPE_NGRAM, keyword));
+				continue;
+			}
+			int begin = 0;
+			for (int i = 0; i + n <= count; i++) {
+				int end = keyword.offsetByCodePoints(begin, n);
+				addToken(tokens, token(TYPE_NGRAM, keyword.substring(begin, end)));
+				begin = keyword.offsetByCodePoints(begin, 1);
+			}
+		}
+		return tokens;
+	}
+
+	private static void addToken(Set<String> tokens, String token) {
+		if (!token.isEmpty()) {
+			tokens.add(token);
+		}
+	}
+
+	private String token(byte type, String fragment) {
+		if (fragment.isEmpty()) {
+			return "";
+		}
+		long start = MetricsUtil.start();
+		try {
+			Mac m = getMac();
+			m.update(type);
+			byte[] content = fragment.getBytes("UTF-8");
+			byte[] result = m.doFinal(content);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.HMAC, TAG, content.length, start);
+			return TextCodec.BASE64_URL.encode(result, 0, tokenLen);
+		} catch (GeneralSecurityException | UnsupportedEncodingException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.HMAC, TAG, e, start);
+			LogUtil.e(TAG, "token exception : " + e.getMessage());
+		}
+		return "";
+	}
+
+	/**
+	 * 当前线程的Mac，首次使用时创建并用索引密钥初始化，doFinal后自动重置可以直接复用
+	 */
+	private Mac getMac() throws GeneralSecurityException {
+		Mac m = mac.get();
+		if (m == null) {
+			m = Mac.getInstance(ALGORITHM);
+			m.init(key);
+			mac.set(m);
+		}
+		return m;
+	}
+}
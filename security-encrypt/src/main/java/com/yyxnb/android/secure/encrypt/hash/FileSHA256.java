@@ -2,9 +2,11 @@ package com.yyxnb.android.secure.encrypt.hash;
 
 import android.text.TextUtils;
 
-import com.yyxnb.android.secure.utils.HexUtil;
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
 import com.yyxnb.android.secure.utils.IOUtil;
 import com.yyxnb.android.secure.utils.LogUtil;
+import com.yyxnb.android.secure.utils.MetricsUtil;
+import com.yyxnb.android.secure.utils.TextCodec;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -51,10 +53,26 @@ public abstract class FileSHA256 {
 	 * @return 摘要值 （十六进制字符串形式）
 	 */
 	public static String fileSHAEncrypt(File file, String algorithm) {
+		return fileSHAEncrypt(file, algorithm, TextCodec.HEX);
+	}
+
+	/**
+	 * 求一个文件的摘要信息，使用指定的文本编码输出
+	 *
+	 * @param file      待哈希的文件
+	 * @param algorithm 指定采用什么算法进行哈希
+	 * @param codec     文本编码方式
+	 * @return 摘要值 （编码后的字符串形式）
+	 */
+	public static String fileSHAEncrypt(File file, String algorithm, TextCodec codec) {
 		if (TextUtils.isEmpty(algorithm) || !isLegalAlgorithm(algorithm)) {
 			LogUtil.e(TAG, "algorithm is empty or not safe");
 			return EMPTY;
 		}
+		if (codec == null) {
+			LogUtil.e(TAG, "codec is null");
+			return EMPTY;
+		}
 
 		if (!isValidFile(file)) {
 			LogUtil.e(TAG, "file is not valid");
@@ -62,22 +80,26 @@ public abstract class FileSHA256 {
 		}
 		String hashValue = null;
 		FileInputStream fis = null;
+		long start = MetricsUtil.start();
 		try {
 			MessageDigest md = MessageDigest.getInstance(algorithm);
 			fis = new FileInputStream(file);
 			byte[] buffer = new byte[BUFFERSIZE];
 			int length;
-			boolean hasUpdate = false;
+			long total = 0;
 			while ((length = fis.read(buffer)) > 0) {
 				md.update(buffer, 0, length);
-				hasUpdate = true;
+				total += length;
 			}
-			if (hasUpdate) {
-				hashValue = HexUtil.byteArray2HexStr(md.digest());
+			if (total > 0) {
+				hashValue = codec.encode(md.digest());
+				MetricsUtil.onSuccess(CryptoMetrics.Operation.HASH, algorithm, total, start);
 			}
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.HASH, algorithm, e, start);
 			LogUtil.e(TAG, "NoSuchAlgorithmException" + e.getMessage());
 		} catch (IOException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.HASH, algorithm, e, start);
 			LogUtil.e(TAG, "IOException" + e.getMessage());
 		} finally {
 			IOUtil.closeSecure(fis);
@@ -105,20 +127,38 @@ public abstract class FileSHA256 {
 	 * @return string
 	 */
 	public static String inputStreamSHAEncrypt(InputStream is, String algorithm) {
-		if (is == null) {
+		return inputStreamSHAEncrypt(is, algorithm, TextCodec.HEX);
+	}
+
+	/**
+	 * 对文件流求SHA，使用指定的文本编码输出
+	 *
+	 * @param is        文件流，处理完后关闭
+	 * @param algorithm 指定采用什么算法进行哈希
+	 * @param codec     文本编码方式
+	 * @return 摘要值 （编码后的字符串形式）
+	 */
+	public static String inputStreamSHAEncrypt(InputStream is, String algorithm, TextCodec codec) {
+		if (is == null || codec == null) {
 			return EMPTY;
 		}
 		byte[] buffer = new byte[BUFFERSIZE];
+		long start = MetricsUtil.start();
 		try {
 			MessageDigest md = MessageDigest.getInstance(algorithm);
 			int length;
+			long total = 0;
 			while ((length = is.read(buffer)) >= 0) {
 				if (length > 0) {
 					md.update(buffer, 0, length);
+					total += length;
 				}
 			}
-			return HexUtil.byteArray2HexStr(md.digest());
+			String hashValue = codec.encode(md.digest());
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.HASH, algorithm, total, start);
+			return hashValue;
 		} catch (IOException | NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.HASH, algorithm, e, start);
 			LogUtil.e(TAG, "inputstraem exception");
 		} finally {
 			IOUtil.closeSecure(is);
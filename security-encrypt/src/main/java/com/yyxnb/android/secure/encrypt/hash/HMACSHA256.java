@@ -2,8 +2,11 @@ package com.yyxnb.android.secure.encrypt.hash;
 
 import android.text.TextUtils;
 
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
 import com.yyxnb.android.secure.utils.HexUtil;
 import com.yyxnb.android.secure.utils.LogUtil;
+import com.yyxnb.android.secure.utils.MetricsUtil;
+import com.yyxnb.android.secure.utils.TextCodec;
 
 import java.io.UnsupportedEncodingException;
 import java.security.InvalidKeyException;
@@ -58,7 +61,19 @@ public abstract class HMACSHA256 {
 	 * @return 哈希结果 （十六进制形式字符串）
 	 */
 	public static String hmacSHA256Encrypt(String content, byte[] key) {
-		if (TextUtils.isEmpty(content) || key == null) {
+		return hmacSHA256Encrypt(content, key, TextCodec.HEX);
+	}
+
+	/**
+	 * HMACSHA256算法，使用指定的文本编码输出
+	 *
+	 * @param content 待哈希内容
+	 * @param key     密钥（字节数组形式）
+	 * @param codec   文本编码方式
+	 * @return 哈希结果 （编码后的字符串形式）
+	 */
+	public static String hmacSHA256Encrypt(String content, byte[] key, TextCodec codec) {
+		if (TextUtils.isEmpty(content) || key == null || codec == null) {
 			return EMPTY;
 		}
 
@@ -74,7 +89,7 @@ public abstract class HMACSHA256 {
 			LogUtil.e(TAG, "hmacsha256 encrypt exception" + e.getMessage());
 		}
 		byte[] encrypt = hmacEncrypt(contentBytes, key);
-		return HexUtil.byteArray2HexStr(encrypt);
+		return codec.encode(encrypt);
 	}
 
 	/**
@@ -93,12 +108,16 @@ public abstract class HMACSHA256 {
 			LogUtil.e(TAG, "hmac key length is not right");
 			return new byte[0];
 		}
+		long start = MetricsUtil.start();
 		try {
 			SecretKeySpec secretKey = new SecretKeySpec(key, ALGORITHM);
 			Mac mac = Mac.getInstance(secretKey.getAlgorithm());
 			mac.init(secretKey);
-			return mac.doFinal(content);
+			byte[] result = mac.doFinal(content);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.HMAC, ALGORITHM, content.length, start);
+			return result;
 		} catch (InvalidKeyException | NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.HMAC, ALGORITHM, e, start);
 			LogUtil.e(TAG, "hmacsha256 encrypt exception" + e.getMessage());
 			return new byte[0];
 		}
@@ -0,0 +1,138 @@
+package com.yyxnb.android.secure.encrypt.hash;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link BlindIndex}令牌的内存倒排索引
+ * <p>
+ * 保存 令牌 -> 记录ID 的映射，查询时取所有令牌对应记录的交集，从最少的令牌开始求交。
+ * 由于令牌截断会有误判，查询结果是候选集合，需要解密记录后再确认。线程安全。
+ *
+ * <pre>
+ *     InMemoryBlindIndex&lt;Long&gt; index = new InMemoryBlindIndex&lt;&gt;();
+ *     index.add(id, blindIndex.ngramTokens(text, 3));
+ *     Set&lt;Long&gt; candidates = index.query(blindIndex.ngramTokens(keyword, 3));
+ * </pre>
+ *
+ * @param <K> 记录ID类型
+ * @author yyx
+ * @date 2023/10/16
+ */
+public class InMemoryBlindIndex<K> {
+
+	private final Map<String, Set<K>> postings = new HashMap<>();
+
+	private final Map<K, Set<String>> records = new HashMap<>();
+
+	/**
+	 * 添加记录的令牌，记录已存在时追加
+	 *
+	 * @param id     记录ID
+	 * @param tokens 令牌
+	 */
+	public synchronized void add(K id, Collection<String> tokens) {
+		if (id == null || tokens == null) {
+			return;
+		}
+		Set<String> recordTokens = records.get(id);
+		if (recordTokens == null) {
+			recordTokens = new HashSet<>(tokens.size());
+			records.put(id, recordTokens);
+		}
+		for (String token : tokens) {
+			if (!recordTokens.add(token)) {
+				continue;
+			}
+			Set<K> ids = postings.get(token);
+			if (ids == null) {
+				ids = new HashSet<>(2);
+				postings.put(token, ids);
+			}
+			ids.add(id);
+		}
+	}
+
+	/**
+	 * 删除记录的全部令牌
+	 *
+	 * @param id 记录ID
+	 */
+	public synchronized void remove(K id) {
+		Set<String> recordTokens = records.remove(id);
+		if (recordTokens == null) {
+			return;
+		}
+		for (String token : recordTokens) {
+			Set<K> ids = postings.get(token);
+			if (ids != null && ids.remove(id) && ids.isEmpty()) {
+				postings.remove(token);
+			}
+		}
+	}
+
+	/**
+	 * 查询包含全部令牌的记录
+	 *
+	 * @param tokens 查询令牌
+	 * @return 候选记录ID，tokens为空时返回空集合
+	 */
+	public synchronized Set<K> query(Collection<String> tokens) {
+		if (tokens == null || tokens.isEmpty()) {
+			return Collections.emptySet();
+		}
+		Set<K> smallest = null;
+		for (String token : tokens) {
+			Set<K> ids = postings.get(token);
+			if (ids == null) {
+				return Collections.emptySet();
+			}
+			if (smallest == null || ids.size() < smallest.size()) {
+				smallest = ids;
+			}
+		}
+		Set<K> result = new HashSet<>(smallest);
+		for (String token : tokens) {
+			Set<K> ids = postings.get(token);
+			if (ids != smallest) {
+				result.retainAll(ids);
+				if (result.isEmpty()) {
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 查询包含单个令牌的记录
+	 *
+	 * @param token 查询令牌
+	 * @return 候选记录ID
+	 */
+	public synchronized Set<K> query(String token) {
+		Set<K> ids = postings.get(token);
+		return ids == null ? Collections.<K>emptySet() : new HashSet<>(ids);
+	}
+
+	/**
+	 * 记录数
+	 *
+	 * @return 记录数
+	 */
+	public synchronized int size() {
+		return records.size();
+	}
+
+	/**
+	 * 清空索引
+	 */
+	public synchronized void clear() {
+		postings.clear();
+		records.clear();
+	}
+}
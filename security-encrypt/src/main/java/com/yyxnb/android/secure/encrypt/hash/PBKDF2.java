@@ -3,9 +3,11 @@ package com.yyxnb.android.secure.encrypt.hash;
 import android.os.Build;
 import android.text.TextUtils;
 
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
 import com.yyxnb.android.secure.utils.EncryptUtil;
 import com.yyxnb.android.secure.utils.HexUtil;
 import com.yyxnb.android.secure.utils.LogUtil;
+import com.yyxnb.android.secure.utils.MetricsUtil;
 
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
@@ -169,6 +171,8 @@ public abstract class PBKDF2 {
 	}
 
 	private static byte[] pbkdf(char[] password, byte[] salt, int iterations, int bytes, boolean isSHA256) {
+		String algorithm = isSHA256 ? PBKDF2_SHA256_ALGORITHM : PBKDF2_ALGORITHM;
+		long start = MetricsUtil.start();
 		try {
 			SecretKeyFactory skf = null;
 			PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, bytes);
@@ -177,8 +181,11 @@ public abstract class PBKDF2 {
 			} else {
 				skf = SecretKeyFactory.getInstance(PBKDF2_ALGORITHM);
 			}
-			return skf.generateSecret(spec).getEncoded();
+			byte[] result = skf.generateSecret(spec).getEncoded();
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.KEY_DERIVATION, algorithm, 0, start);
+			return result;
 		} catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEY_DERIVATION, algorithm, e, start);
 			LogUtil.e(TAG, "pbkdf exception : " + e.getMessage());
 		}
 		return new byte[0];
@@ -2,8 +2,10 @@ package com.yyxnb.android.secure.encrypt.hash;
 
 import android.text.TextUtils;
 
-import com.yyxnb.android.secure.utils.HexUtil;
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
 import com.yyxnb.android.secure.utils.LogUtil;
+import com.yyxnb.android.secure.utils.MetricsUtil;
+import com.yyxnb.android.secure.utils.TextCodec;
 
 import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
@@ -49,9 +51,21 @@ public final class SHA {
 	 * @return 摘要值 （十六进制字符串形式）
 	 */
 	public static String shaEncrypt(String content, String algorithm) {
+		return shaEncrypt(content, algorithm, TextCodec.HEX);
+	}
 
-		if (TextUtils.isEmpty(content) || TextUtils.isEmpty(algorithm)) {
-			LogUtil.e(TAG, "content or algorithm is null.");
+	/**
+	 * SHA算法，使用指定的文本编码输出
+	 *
+	 * @param content   待取摘要的内容
+	 * @param algorithm 指定哈希算法，可指定SHA-256，SHA-384，SHA-512
+	 * @param codec     文本编码方式
+	 * @return 摘要值 （编码后的字符串形式）
+	 */
+	public static String shaEncrypt(String content, String algorithm, TextCodec codec) {
+
+		if (TextUtils.isEmpty(content) || TextUtils.isEmpty(algorithm) || codec == null) {
+			LogUtil.e(TAG, "content, algorithm or codec is null.");
 			return EMPTY;
 		}
 		if (!isLegalAlgorithm(algorithm)) {
@@ -66,7 +80,7 @@ public final class SHA {
 			LogUtil.e(TAG, "Error in generate SHA UnsupportedEncodingException");
 		}
 		byte[] encrypt = shaEncryptByte(contentBytes, algorithm);
-		return HexUtil.byteArray2HexStr(encrypt);
+		return codec.encode(encrypt);
 	}
 
 	/**
@@ -85,11 +99,15 @@ public final class SHA {
 			LogUtil.e(TAG, "algorithm is not safe or legal");
 			return new byte[0];
 		}
+		long start = MetricsUtil.start();
 		try {
 			MessageDigest messageDigest = MessageDigest.getInstance(algorithm);
 			messageDigest.update(content);
-			return messageDigest.digest();
+			byte[] digest = messageDigest.digest();
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.HASH, algorithm, content.length, start);
+			return digest;
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.HASH, algorithm, e, start);
 			LogUtil.e(TAG, "Error in generate SHA NoSuchAlgorithmException");
 		}
 		return new byte[0];
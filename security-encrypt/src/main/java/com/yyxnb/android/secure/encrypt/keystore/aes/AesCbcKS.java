@@ -7,8 +7,11 @@ import android.text.TextUtils;
 
 import androidx.annotation.RequiresApi;
 
+import com.yyxnb.android.secure.encrypt.aes.CipherUtil;
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
 import com.yyxnb.android.secure.utils.HexUtil;
 import com.yyxnb.android.secure.utils.LogUtil;
+import com.yyxnb.android.secure.utils.MetricsUtil;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
@@ -54,6 +57,11 @@ public class AesCbcKS {
 
 	private static final String AES_CBC_ALGORITHM = "AES/CBC/PKCS7Padding";
 
+	/**
+	 * 统计中使用的算法名，与软件实现的AES/CBC分开统计
+	 */
+	private static final String METRICS_ALGORITHM = ANDROID_KEY_STORE + ":" + AES_CBC_ALGORITHM;
+
 	private static final String EMPTY = "";
 
 	private static final int AES_CBC_IV_LEN = 16;
@@ -120,6 +128,7 @@ public class AesCbcKS {
 		LogUtil.i(TAG, "load key");
 		SecretKey secretKey = null;
 		KeyStore keyStore = null;
+		long start = MetricsUtil.start();
 		try {
 			keyStore = KeyStore.getInstance(ANDROID_KEY_STORE);
 			keyStore.load(null);
@@ -138,21 +147,30 @@ public class AesCbcKS {
 						.build());
 				secretKey = keyGenerator.generateKey();
 			}
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, 0, start);
 		} catch (KeyStoreException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "KeyStoreException: " + e.getMessage());
 		} catch (IOException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "IOException: " + e.getMessage());
 		} catch (CertificateException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "CertificateException: " + e.getMessage());
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchAlgorithmException: " + e.getMessage());
 		} catch (UnrecoverableKeyException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "UnrecoverableKeyException: " + e.getMessage());
 		} catch (InvalidAlgorithmParameterException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "InvalidAlgorithmParameterException: " + e.getMessage());
 		} catch (NoSuchProviderException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchProviderException: " + e.getMessage());
 		} catch (Exception e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "Exception: " + e.getMessage());
 		}
 		keyMap.put(alias, secretKey);
@@ -179,15 +197,16 @@ public class AesCbcKS {
 		}
 
 		Cipher cipher = null;
+		long start = MetricsUtil.start();
 		try {
-			cipher = Cipher.getInstance(AES_CBC_ALGORITHM);
 			SecretKey secretKey = getKey(alias);
 			if (secretKey == null) {
 				LogUtil.e(TAG, "encrypt secret key is null");
 				return result;
 			}
-			cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+			cipher = CipherUtil.initPooledCipher(AES_CBC_ALGORITHM, Cipher.ENCRYPT_MODE, secretKey, null);
 			byte[] encryptBytes = cipher.doFinal(content);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, content.length, start);
 
 			byte[] iv = cipher.getIV();
 			if (iv == null || iv.length != AES_CBC_IV_LEN) {
@@ -197,16 +216,22 @@ public class AesCbcKS {
 			result = Arrays.copyOf(iv, iv.length + encryptBytes.length);
 			System.arraycopy(encryptBytes, 0, result, iv.length, encryptBytes.length);
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchAlgorithmException: " + e.getMessage());
 		} catch (NoSuchPaddingException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchPaddingException: " + e.getMessage());
 		} catch (BadPaddingException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "BadPaddingException: " + e.getMessage());
 		} catch (IllegalBlockSizeException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "IllegalBlockSizeException: " + e.getMessage());
 		} catch (InvalidKeyException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "InvalidKeyException: " + e.getMessage());
 		} catch (Exception e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "Exception: " + e.getMessage());
 		}
 		return result;
@@ -242,23 +267,33 @@ public class AesCbcKS {
 		}
 		byte[] iv = Arrays.copyOf(content, AES_CBC_IV_LEN);
 		Cipher cipher = null;
+		long start = MetricsUtil.start();
 		try {
-			cipher = Cipher.getInstance(AES_CBC_ALGORITHM);
-			cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(iv));
-			return cipher.doFinal(content, AES_CBC_IV_LEN, content.length - AES_CBC_IV_LEN);
+			cipher = CipherUtil.initPooledCipher(AES_CBC_ALGORITHM, Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(iv));
+			byte[] result = cipher.doFinal(content, AES_CBC_IV_LEN, content.length - AES_CBC_IV_LEN);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, content.length - AES_CBC_IV_LEN,
+					start);
+			return result;
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchAlgorithmException: " + e.getMessage());
 		} catch (NoSuchPaddingException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchPaddingException: " + e.getMessage());
 		} catch (InvalidKeyException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "InvalidKeyException: " + e.getMessage());
 		} catch (InvalidAlgorithmParameterException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "InvalidAlgorithmParameterException: " + e.getMessage());
 		} catch (IllegalBlockSizeException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "IllegalBlockSizeException: " + e.getMessage());
 		} catch (BadPaddingException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "BadPaddingException: " + e.getMessage());
 		} catch (Exception e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "Exception: " + e.getMessage());
 		}
 		return decryptedData;
@@ -7,8 +7,11 @@ import android.text.TextUtils;
 
 import androidx.annotation.RequiresApi;
 
+import com.yyxnb.android.secure.encrypt.aes.CipherUtil;
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
 import com.yyxnb.android.secure.utils.HexUtil;
 import com.yyxnb.android.secure.utils.LogUtil;
+import com.yyxnb.android.secure.utils.MetricsUtil;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
@@ -54,6 +57,11 @@ public class AesGcmKS {
 
 	private static final String AES_GCM_ALGORITHM = "AES/GCM/NoPadding";
 
+	/**
+	 * 统计中使用的算法名，与软件实现的AES/GCM分开统计
+	 */
+	private static final String METRICS_ALGORITHM = ANDROID_KEY_STORE + ":" + AES_GCM_ALGORITHM;
+
 	private static final String EMPTY = "";
 
 	private static final int AES_GCM_IV_LEN = 12;
@@ -118,6 +126,7 @@ public class AesGcmKS {
 		LogUtil.i(TAG, "load key");
 		SecretKey secretKey = null;
 		KeyStore keyStore = null;
+		long start = MetricsUtil.start();
 		try {
 			keyStore = KeyStore.getInstance("AndroidKeyStore");
 			keyStore.load(null);
@@ -136,21 +145,30 @@ public class AesGcmKS {
 						.build());
 				secretKey = keyGenerator.generateKey();
 			}
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, 0, start);
 		} catch (KeyStoreException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "KeyStoreException : " + e.getMessage());
 		} catch (IOException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "IOException : " + e.getMessage());
 		} catch (CertificateException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "CertificateException : " + e.getMessage());
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchAlgorithmException : " + e.getMessage());
 		} catch (UnrecoverableKeyException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "UnrecoverableKeyException : " + e.getMessage());
 		} catch (InvalidAlgorithmParameterException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "InvalidAlgorithmParameterException : " + e.getMessage());
 		} catch (NoSuchProviderException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchProviderException : " + e.getMessage());
 		} catch (Exception e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "Exception: " + e.getMessage());
 		}
 		keyMap.put(alias, secretKey);
@@ -204,10 +222,11 @@ public class AesGcmKS {
 		}
 
 		Cipher cipher = null;
+		long start = MetricsUtil.start();
 		try {
-			cipher = Cipher.getInstance(AES_GCM_ALGORITHM);
-			cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+			cipher = CipherUtil.initPooledCipher(AES_GCM_ALGORITHM, Cipher.ENCRYPT_MODE, secretKey, null);
 			byte[] encryptBytes = cipher.doFinal(content);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, content.length, start);
 
 			byte[] iv = cipher.getIV();
 			if (iv == null || iv.length != AES_GCM_IV_LEN) {
@@ -217,16 +236,22 @@ public class AesGcmKS {
 			result = Arrays.copyOf(iv, iv.length + encryptBytes.length);
 			System.arraycopy(encryptBytes, 0, result, iv.length, encryptBytes.length);
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchAlgorithmException : " + e.getMessage());
 		} catch (NoSuchPaddingException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchPaddingException : " + e.getMessage());
 		} catch (BadPaddingException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "BadPaddingException : " + e.getMessage());
 		} catch (IllegalBlockSizeException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "IllegalBlockSizeException : " + e.getMessage());
 		} catch (InvalidKeyException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "InvalidKeyException : " + e.getMessage());
 		} catch (Exception e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "Exception: " + e.getMessage());
 		}
 		return result;
@@ -289,24 +314,32 @@ public class AesGcmKS {
 
 		byte[] iv = Arrays.copyOf(content, AES_GCM_IV_LEN);
 		Cipher cipher = null;
+		long start = MetricsUtil.start();
 		try {
-			cipher = Cipher.getInstance(AES_GCM_ALGORITHM);
 			GCMParameterSpec gcmParameterSpec = new GCMParameterSpec(128, iv);
-			cipher.init(Cipher.DECRYPT_MODE, secretKey, gcmParameterSpec);
+			cipher = CipherUtil.initPooledCipher(AES_GCM_ALGORITHM, Cipher.DECRYPT_MODE, secretKey, gcmParameterSpec);
 			decryptedData = cipher.doFinal(content, AES_GCM_IV_LEN, content.length - AES_GCM_IV_LEN);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, content.length - AES_GCM_IV_LEN, start);
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchAlgorithmException : " + e.getMessage());
 		} catch (NoSuchPaddingException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchPaddingException : " + e.getMessage());
 		} catch (InvalidKeyException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "InvalidKeyException : " + e.getMessage());
 		} catch (InvalidAlgorithmParameterException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "InvalidAlgorithmParameterException : " + e.getMessage());
 		} catch (IllegalBlockSizeException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "IllegalBlockSizeException : " + e.getMessage());
 		} catch (BadPaddingException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "BadPaddingException : " + e.getMessage());
 		} catch (Exception e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "Exception: " + e.getMessage());
 		}
 		return decryptedData;
@@ -4,11 +4,13 @@ import android.os.Build;
 import android.security.keystore.KeyGenParameterSpec;
 import android.security.keystore.KeyProperties;
 import android.text.TextUtils;
-import android.util.Base64;
 
 import androidx.annotation.RequiresApi;
 
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
 import com.yyxnb.android.secure.utils.LogUtil;
+import com.yyxnb.android.secure.utils.MetricsUtil;
+import com.yyxnb.android.secure.utils.TextCodec;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
@@ -50,6 +52,11 @@ public abstract class RSAEncryptKS {
 
 	private static final String RSA_MODE_OAEP = "RSA/ECB/OAEPWithSHA-256AndMGF1Padding";
 
+	/**
+	 * 统计中使用的算法名，与软件实现的RSA分开统计
+	 */
+	private static final String METRICS_ALGORITHM = ANDROID_KEY_STORE + ":" + RSA_MODE_OAEP;
+
 	private static final String EMPTY = "";
 
 	private static final int KEY_LENGTH = 2048;
@@ -66,7 +73,7 @@ public abstract class RSAEncryptKS {
 	public static String encrypt(String alias, String plaintext) {
 		if (!TextUtils.isEmpty(plaintext)) {
 			try {
-				return Base64.encodeToString(encrypt(alias, plaintext.getBytes("UTF-8")), Base64.DEFAULT);
+				return TextCodec.BASE64_DEFAULT.encode(encrypt(alias, plaintext.getBytes("UTF-8")));
 			} catch (UnsupportedEncodingException e) {
 				LogUtil.e(TAG, "UnsupportedEncodingException: " + e.getMessage());
 			}
@@ -84,7 +91,7 @@ public abstract class RSAEncryptKS {
 	@Deprecated
 	public static String decrpyt(String alias, String encrypted) {
 		try {
-			return new String(decrpyt(alias, Base64.decode(encrypted, Base64.DEFAULT)), "UTF-8");
+			return new String(decrpyt(alias, TextCodec.BASE64_DEFAULT.decode(encrypted)), "UTF-8");
 		} catch (UnsupportedEncodingException e) {
 			LogUtil.e(TAG, "UnsupportedEncodingException: " + e.getMessage());
 		} catch (Exception e) {
@@ -131,25 +138,35 @@ public abstract class RSAEncryptKS {
 			return result;
 		}
 		Cipher cipher = null;
+		long start = MetricsUtil.start();
 		try {
 			cipher = Cipher.getInstance(RSA_MODE_OAEP);
 			OAEPParameterSpec sp =
 					new OAEPParameterSpec("SHA-256", "MGF1", new MGF1ParameterSpec("SHA-1"), PSource.PSpecified.DEFAULT);
 			cipher.init(Cipher.DECRYPT_MODE, privateKey, sp);
-			return cipher.doFinal(encrypted);
+			result = cipher.doFinal(encrypted);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, encrypted.length, start);
+			return result;
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchAlgorithmException: " + e.getMessage());
 		} catch (NoSuchPaddingException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchPaddingException: " + e.getMessage());
 		} catch (InvalidKeyException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "InvalidKeyException: " + e.getMessage());
 		} catch (InvalidAlgorithmParameterException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "InvalidAlgorithmParameterException: " + e.getMessage());
 		} catch (IllegalBlockSizeException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "IllegalBlockSizeException: " + e.getMessage());
 		} catch (BadPaddingException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "BadPaddingException: " + e.getMessage());
 		} catch (Exception e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "Exception: " + e.getMessage());
 		}
 		return result;
@@ -165,7 +182,7 @@ public abstract class RSAEncryptKS {
 	public static String encryptNew(String alias, String plaintext) {
 		if (!TextUtils.isEmpty(plaintext)) {
 			try {
-				return Base64.encodeToString(encryptNew(alias, plaintext.getBytes("UTF-8")), Base64.DEFAULT);
+				return TextCodec.BASE64_DEFAULT.encode(encryptNew(alias, plaintext.getBytes("UTF-8")));
 			} catch (UnsupportedEncodingException e) {
 				LogUtil.e(TAG, "UnsupportedEncodingException: " + e.getMessage());
 			}
@@ -182,7 +199,7 @@ public abstract class RSAEncryptKS {
 	 */
 	public static String decrpytNew(String alias, String encrypted) {
 		try {
-			return new String(decrpytNew(alias, Base64.decode(encrypted, Base64.DEFAULT)), "UTF-8");
+			return new String(decrpytNew(alias, TextCodec.BASE64_DEFAULT.decode(encrypted)), "UTF-8");
 		} catch (UnsupportedEncodingException e) {
 			LogUtil.e(TAG, "UnsupportedEncodingException: " + e.getMessage());
 		} catch (Exception e) {
@@ -231,26 +248,36 @@ public abstract class RSAEncryptKS {
 			return result;
 		}
 		Cipher cipher = null;
+		long start = MetricsUtil.start();
 		try {
 			cipher = Cipher.getInstance(RSA_MODE_OAEP);
 			// 不加下面sp变量会抛出IllegalBlockSizeException异常异常，参考：https://issuetracker.google.com/issues/36708951#comment15，https://stackoverflow.com/questions/46042127/android-8-0-illegalblocksizeexception-when-using-rsa-ecb-oaepwithsha-512andmgf1
 			OAEPParameterSpec sp =
 					new OAEPParameterSpec("SHA-256", "MGF1", new MGF1ParameterSpec("SHA-1"), PSource.PSpecified.DEFAULT);
 			cipher.init(Cipher.ENCRYPT_MODE, publicKey, sp);
-			return cipher.doFinal(plaintext);
+			result = cipher.doFinal(plaintext);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, plaintext.length, start);
+			return result;
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchAlgorithmException: " + e.getMessage());
 		} catch (NoSuchPaddingException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchPaddingException: " + e.getMessage());
 		} catch (InvalidKeyException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "InvalidKeyException: " + e.getMessage());
 		} catch (InvalidAlgorithmParameterException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "InvalidAlgorithmParameterException: " + e.getMessage());
 		} catch (IllegalBlockSizeException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "IllegalBlockSizeException: " + e.getMessage());
 		} catch (BadPaddingException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "BadPaddingException: " + e.getMessage());
 		} catch (Exception e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "Exception: " + e.getMessage());
 		}
 		return result;
@@ -273,6 +300,7 @@ public abstract class RSAEncryptKS {
 		KeyPair keyPair = null;
 
 		LogUtil.i(TAG, "generate key pair.");
+		long start = MetricsUtil.start();
 		try {
 			keyPairGenerator = KeyPairGenerator.getInstance(KeyProperties.KEY_ALGORITHM_RSA, ANDROID_KEY_STORE);
 			if (!is3072) {
@@ -289,13 +317,18 @@ public abstract class RSAEncryptKS {
 						.build());
 			}
 			keyPair = keyPairGenerator.generateKeyPair();
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, 0, start);
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchAlgorithmException: " + e.getMessage());
 		} catch (NoSuchProviderException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchProviderException: " + e.getMessage());
 		} catch (InvalidAlgorithmParameterException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "InvalidAlgorithmParameterException: " + e.getMessage());
 		} catch (Exception e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "Exception: " + e.getMessage());
 		}
 		return keyPair;
@@ -330,19 +363,26 @@ public abstract class RSAEncryptKS {
 		Certificate certificate = null;
 
 		KeyStore keyStore = null;
+		long start = MetricsUtil.start();
 		try {
 			keyStore = KeyStore.getInstance(ANDROID_KEY_STORE);
 			keyStore.load(null);
 			certificate = keyStore.getCertificate(alias);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, 0, start);
 		} catch (KeyStoreException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "KeyStoreException: " + e.getMessage());
 		} catch (CertificateException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "CertificateException: " + e.getMessage());
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchAlgorithmException: " + e.getMessage());
 		} catch (IOException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "IOException: " + e.getMessage());
 		} catch (Exception e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "Exception: " + e.getMessage());
 		}
 		return certificate;
@@ -361,21 +401,29 @@ public abstract class RSAEncryptKS {
 		PrivateKey privateKey = null;
 
 		KeyStore keyStore = null;
+		long start = MetricsUtil.start();
 		try {
 			keyStore = KeyStore.getInstance(ANDROID_KEY_STORE);
 			keyStore.load(null);
 			privateKey = (PrivateKey) keyStore.getKey(alias, null);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, 0, start);
 		} catch (KeyStoreException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "KeyStoreException: " + e.getMessage());
 		} catch (CertificateException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "CertificateException: " + e.getMessage());
 		} catch (UnrecoverableKeyException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "UnrecoverableKeyException: " + e.getMessage());
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchAlgorithmException: " + e.getMessage());
 		} catch (IOException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "IOException: " + e.getMessage());
 		} catch (Exception e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "Exception: " + e.getMessage());
 		}
 		return privateKey;
@@ -4,11 +4,13 @@ import android.os.Build;
 import android.security.keystore.KeyGenParameterSpec;
 import android.security.keystore.KeyProperties;
 import android.text.TextUtils;
-import android.util.Base64;
 
 import androidx.annotation.RequiresApi;
 
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
 import com.yyxnb.android.secure.utils.LogUtil;
+import com.yyxnb.android.secure.utils.MetricsUtil;
+import com.yyxnb.android.secure.utils.TextCodec;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
@@ -42,6 +44,11 @@ public abstract class RSASignKS {
 
 	private static final String RSA_MODE_SIGN = "SHA256withRSA/PSS";
 
+	/**
+	 * 统计中使用的算法名，与软件实现的RSA签名分开统计
+	 */
+	private static final String METRICS_ALGORITHM = ANDROID_KEY_STORE + ":" + RSA_MODE_SIGN;
+
 	private static final String EMPTY = "";
 
 	private static final int KEY_LENGTH = 2048;
@@ -59,7 +66,7 @@ public abstract class RSASignKS {
 
 	public static String sign(String alias, String data) {
 		try {
-			return Base64.encodeToString(sign(alias, data.getBytes("UTF-8")), Base64.DEFAULT);
+			return TextCodec.BASE64_DEFAULT.encode(sign(alias, data.getBytes("UTF-8")));
 		} catch (UnsupportedEncodingException e) {
 			LogUtil.e(TAG, "sign UnsupportedEncodingException : " + e.getMessage());
 		}
@@ -78,7 +85,7 @@ public abstract class RSASignKS {
 
 	public static boolean verifySign(String alias, String data, String signValue) {
 		try {
-			return verifySign(alias, data.getBytes("UTF-8"), Base64.decode(signValue, Base64.DEFAULT));
+			return verifySign(alias, data.getBytes("UTF-8"), TextCodec.BASE64_DEFAULT.decode(signValue));
 		} catch (UnsupportedEncodingException e) {
 			LogUtil.e(TAG, "verifySign UnsupportedEncodingException: " + e.getMessage());
 		} catch (Exception e) {
@@ -97,7 +104,7 @@ public abstract class RSASignKS {
 
 	public static String signNew(String alias, String data) {
 		try {
-			return Base64.encodeToString(signNew(alias, data.getBytes("UTF-8")), Base64.DEFAULT);
+			return TextCodec.BASE64_DEFAULT.encode(signNew(alias, data.getBytes("UTF-8")));
 		} catch (UnsupportedEncodingException e) {
 			LogUtil.e(TAG, "sign UnsupportedEncodingException : " + e.getMessage());
 		}
@@ -115,7 +122,7 @@ public abstract class RSASignKS {
 
 	public static boolean verifySignNew(String alias, String data, String signValue) {
 		try {
-			return verifySignNew(alias, data.getBytes("UTF-8"), Base64.decode(signValue, Base64.DEFAULT));
+			return verifySignNew(alias, data.getBytes("UTF-8"), TextCodec.BASE64_DEFAULT.decode(signValue));
 		} catch (UnsupportedEncodingException e) {
 			LogUtil.e(TAG, "verifySign UnsupportedEncodingException: " + e.getMessage());
 		} catch (Exception e) {
@@ -194,18 +201,25 @@ public abstract class RSASignKS {
 			return result;
 		}
 		Signature signature = null;
+		long start = MetricsUtil.start();
 		try {
 			signature = Signature.getInstance(RSA_MODE_SIGN);
 			signature.initSign(((KeyStore.PrivateKeyEntry) entry).getPrivateKey());
 			signature.update(data);
-			return signature.sign();
+			result = signature.sign();
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.SIGN, METRICS_ALGORITHM, data.length, start);
+			return result;
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.SIGN, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchAlgorithmException: " + e.getMessage());
 		} catch (SignatureException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.SIGN, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "SignatureException: " + e.getMessage());
 		} catch (InvalidKeyException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.SIGN, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "InvalidKeyException: " + e.getMessage());
 		} catch (Exception e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.SIGN, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "Exception: " + e.getMessage());
 		}
 		return result;
@@ -229,18 +243,24 @@ public abstract class RSASignKS {
 			return false;
 		}
 		Signature signature = null;
+		long start = MetricsUtil.start();
 		try {
 			signature = Signature.getInstance(RSA_MODE_SIGN);
 			signature.initVerify(((KeyStore.PrivateKeyEntry) entry).getCertificate());
 			signature.update(data);
 			result = signature.verify(signValue);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.VERIFY, METRICS_ALGORITHM, data.length, start);
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.VERIFY, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchAlgorithmException: " + e.getMessage());
 		} catch (SignatureException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.VERIFY, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "SignatureException: " + e.getMessage());
 		} catch (InvalidKeyException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.VERIFY, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "InvalidKeyException: " + e.getMessage());
 		} catch (Exception e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.VERIFY, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "Exception: " + e.getMessage());
 		}
 		return result;
@@ -262,6 +282,7 @@ public abstract class RSASignKS {
 		KeyPairGenerator keyPairGenerator;
 		KeyPair keyPair = null;
 
+		long start = MetricsUtil.start();
 		try {
 			keyPairGenerator = KeyPairGenerator.getInstance(KeyProperties.KEY_ALGORITHM_RSA, ANDROID_KEY_STORE);
 			if (!is3072) {
@@ -280,11 +301,15 @@ public abstract class RSASignKS {
 								.build());
 			}
 			keyPair = keyPairGenerator.generateKeyPair();
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, 0, start);
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchAlgorithmException: " + e.getMessage());
 		} catch (NoSuchProviderException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchProviderException: " + e.getMessage());
 		} catch (InvalidAlgorithmParameterException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "InvalidAlgorithmParameterException: " + e.getMessage());
 		}
 		return keyPair;
@@ -304,6 +329,7 @@ public abstract class RSASignKS {
 		}
 		KeyStore.Entry entry = null;
 		KeyStore keyStore = null;
+		long start = MetricsUtil.start();
 		try {
 			keyStore = KeyStore.getInstance(ANDROID_KEY_STORE);
 			keyStore.load(null);
@@ -312,15 +338,21 @@ public abstract class RSASignKS {
 			 * /30
 			 */
 			entry = keyStore.getEntry(alias, null);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, 0, start);
 		} catch (KeyStoreException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "KeyStoreException: " + e.getMessage());
 		} catch (CertificateException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "CertificateException: " + e.getMessage());
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "NoSuchAlgorithmException: " + e.getMessage());
 		} catch (IOException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "IOException: " + e.getMessage());
 		} catch (UnrecoverableEntryException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEYSTORE, METRICS_ALGORITHM, e, start);
 			LogUtil.e(TAG, "UnrecoverableEntryException: " + e.getMessage());
 		}
 		return entry;
@@ -1,10 +1,12 @@
 package com.yyxnb.android.secure.encrypt.rsa;
 
 import android.text.TextUtils;
-import android.util.Base64;
 
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
 import com.yyxnb.android.secure.utils.EncryptUtil;
 import com.yyxnb.android.secure.utils.LogUtil;
+import com.yyxnb.android.secure.utils.MetricsUtil;
+import com.yyxnb.android.secure.utils.TextCodec;
 
 import java.io.UnsupportedEncodingException;
 import java.security.GeneralSecurityException;
@@ -84,12 +86,28 @@ public abstract class RSAEncrypt {
 	 * @return 加密后数据 ，每次加密结果都不一样，即使是相同的公钥和明文
 	 */
 	public static String encrypt(String data, PublicKey publicKey) {
+		return encrypt(data, publicKey, TextCodec.BASE64_DEFAULT);
+	}
+
+	/**
+	 * RSA加密，公钥加密，用指定编码输出密文
+	 *
+	 * @param data      待加密数据
+	 * @param publicKey 加密公钥
+	 * @param codec     密文编码，如{@link TextCodec#BASE64}输出不换行的Base64
+	 * @return 加密后数据
+	 */
+	public static String encrypt(String data, PublicKey publicKey, TextCodec codec) {
+		if (codec == null) {
+			LogUtil.e(TAG, "codec is null");
+			return EMPTY;
+		}
 		if (TextUtils.isEmpty(data) || publicKey == null || !isPublicKeyLengthRight((RSAPublicKey) publicKey)) {
 			LogUtil.e(TAG, "content or PublicKey is null , or length is too short");
 			return EMPTY;
 		}
 		try {
-			return Base64.encodeToString(encrypt(data.getBytes(CHARSET), publicKey), Base64.DEFAULT);
+			return codec.encode(encrypt(data.getBytes(CHARSET), publicKey));
 		} catch (UnsupportedEncodingException e) {
 			LogUtil.e(TAG, "encrypt: UnsupportedEncodingException");
 		} catch (Exception e) {
@@ -106,12 +124,28 @@ public abstract class RSAEncrypt {
 	 * @return 解密后的结果 string
 	 */
 	public static String decrypt(String data, PrivateKey privateKey) {
+		return decrypt(data, privateKey, TextCodec.BASE64_DEFAULT);
+	}
+
+	/**
+	 * RSA解密，私钥解密，密文为指定编码
+	 *
+	 * @param data       待解密数据
+	 * @param privateKey 解密私钥
+	 * @param codec      密文编码，需与加密时一致
+	 * @return 解密后的结果 string
+	 */
+	public static String decrypt(String data, PrivateKey privateKey, TextCodec codec) {
+		if (codec == null) {
+			LogUtil.e(TAG, "codec is null");
+			return EMPTY;
+		}
 		if (TextUtils.isEmpty(data) || privateKey == null || !isPrivateKeyLengthRight((RSAPrivateKey) privateKey)) {
 			LogUtil.e(TAG, "content or privateKey is null , or length is too short");
 			return EMPTY;
 		}
 		try {
-			return new String(decrypt(Base64.decode(data, Base64.DEFAULT), privateKey), CHARSET);
+			return new String(decrypt(codec.decode(data), privateKey), CHARSET);
 		} catch (UnsupportedEncodingException e) {
 			LogUtil.e(TAG, "RSA decrypt exception : " + e.getMessage());
 		} catch (Exception e) {
@@ -133,11 +167,15 @@ public abstract class RSAEncrypt {
 			LogUtil.e(TAG, "content or PublicKey is null , or length is too short");
 			return result;
 		}
+		long start = MetricsUtil.start();
 		try {
 			Cipher cipher = Cipher.getInstance(ALGORITHM);
 			cipher.init(Cipher.ENCRYPT_MODE, publicKey);
-			return cipher.doFinal(data);
+			result = cipher.doFinal(data);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.ENCRYPT, ALGORITHM, data.length, start);
+			return result;
 		} catch (GeneralSecurityException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.ENCRYPT, ALGORITHM, e, start);
 			LogUtil.e(TAG, "RSA encrypt exception : " + e.getMessage());
 		}
 		return result;
@@ -156,11 +194,14 @@ public abstract class RSAEncrypt {
 			LogUtil.e(TAG, "content or privateKey is null , or length is too short");
 			return result;
 		}
+		long start = MetricsUtil.start();
 		try {
 			Cipher cipher = Cipher.getInstance(ALGORITHM);
 			cipher.init(Cipher.DECRYPT_MODE, privateKey);
 			result = cipher.doFinal(data);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.DECRYPT, ALGORITHM, data.length, start);
 		} catch (GeneralSecurityException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.DECRYPT, ALGORITHM, e, start);
 			LogUtil.e(TAG, "RSA decrypt exception : " + e.getMessage());
 		}
 		return result;
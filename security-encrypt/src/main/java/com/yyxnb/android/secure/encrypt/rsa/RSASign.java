@@ -2,10 +2,12 @@ package com.yyxnb.android.secure.encrypt.rsa;
 
 import android.os.Build;
 import android.text.TextUtils;
-import android.util.Base64;
 
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
 import com.yyxnb.android.secure.utils.EncryptUtil;
 import com.yyxnb.android.secure.utils.LogUtil;
+import com.yyxnb.android.secure.utils.MetricsUtil;
+import com.yyxnb.android.secure.utils.TextCodec;
 
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
@@ -98,7 +100,7 @@ public abstract class RSASign {
 	 */
 	@Deprecated
 	public static String sign(String content, PrivateKey privateKey) {
-		return sign(content, privateKey, false);
+		return sign(content, privateKey, false, TextCodec.BASE64_DEFAULT);
 	}
 
 	/**
@@ -114,12 +116,32 @@ public abstract class RSASign {
 			LogUtil.e(TAG, "sdk version is too low");
 			return EMPTY;
 		}
-		return sign(content, privateKey, true);
+		return sign(content, privateKey, true, TextCodec.BASE64_DEFAULT);
 	}
 
-	private static String sign(String content, PrivateKey privateKey, boolean isNewSign) {
+	/**
+	 * SHA256WithRSA/PSS 签名，用指定编码输出签名值
+	 *
+	 * @param content    待签名数据
+	 * @param privateKey PrivateKey形式的私钥
+	 * @param codec      签名值编码，如{@link TextCodec#BASE64}输出不换行的Base64
+	 * @return 签名值
+	 */
+	public static String newSign(String content, PrivateKey privateKey, TextCodec codec) {
+		if (!isBuildVersionHigherThan23()) {
+			LogUtil.e(TAG, "sdk version is too low");
+			return EMPTY;
+		}
+		if (codec == null) {
+			LogUtil.e(TAG, "codec is null");
+			return EMPTY;
+		}
+		return sign(content, privateKey, true, codec);
+	}
+
+	private static String sign(String content, PrivateKey privateKey, boolean isNewSign, TextCodec codec) {
 		try {
-			return Base64.encodeToString(sign(content.getBytes(CHARSET), privateKey, isNewSign), Base64.DEFAULT);
+			return codec.encode(sign(content.getBytes(CHARSET), privateKey, isNewSign));
 		} catch (UnsupportedEncodingException e) {
 			LogUtil.e(TAG, "sign UnsupportedEncodingException: " + e.getMessage());
 		}
@@ -133,6 +155,8 @@ public abstract class RSASign {
 			return result;
 		}
 		Signature signature;
+		String algorithm = isNewSign ? SHA256WithRSA_PSS_ALGORITHM : ALGORITHM;
+		long start = MetricsUtil.start();
 		try {
 			if (isNewSign) {
 				signature = Signature.getInstance(SHA256WithRSA_PSS_ALGORITHM);
@@ -143,15 +167,21 @@ public abstract class RSASign {
 			signature.initSign(privateKey);
 			signature.update(content);
 			result = signature.sign();
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.SIGN, algorithm, content.length, start);
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.SIGN, algorithm, e, start);
 			LogUtil.e(TAG, "sign NoSuchAlgorithmException: " + e.getMessage());
 		} catch (InvalidKeyException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.SIGN, algorithm, e, start);
 			LogUtil.e(TAG, "sign InvalidKeyException: " + e.getMessage());
 		} catch (SignatureException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.SIGN, algorithm, e, start);
 			LogUtil.e(TAG, "sign SignatureException: " + e.getMessage());
 		} catch (InvalidAlgorithmParameterException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.SIGN, algorithm, e, start);
 			LogUtil.e(TAG, "sign InvalidAlgorithmParameterException: " + e.getMessage());
 		} catch (Exception e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.SIGN, algorithm, e, start);
 			LogUtil.e(TAG, "sign Exception: " + e.getMessage());
 		}
 		return result;
@@ -164,6 +194,9 @@ public abstract class RSASign {
 			return result;
 		}
 		Signature signature;
+		String algorithm = isNewSign ? SHA256WithRSA_PSS_ALGORITHM : ALGORITHM;
+		int inputLen = content.remaining();
+		long start = MetricsUtil.start();
 		try {
 			if (isNewSign) {
 				signature = Signature.getInstance(SHA256WithRSA_PSS_ALGORITHM);
@@ -174,16 +207,22 @@ public abstract class RSASign {
 			signature.initSign(privateKey);
 			signature.update(content);
 			result = signature.sign();
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.SIGN, algorithm, inputLen, start);
 			LogUtil.i(TAG, "result is : " + Arrays.toString(result));
 		} catch (NoSuchAlgorithmException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.SIGN, algorithm, e, start);
 			LogUtil.e(TAG, "sign NoSuchAlgorithmException: " + e.getMessage());
 		} catch (InvalidKeyException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.SIGN, algorithm, e, start);
 			LogUtil.e(TAG, "sign InvalidKeyException: " + e.getMessage());
 		} catch (SignatureException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.SIGN, algorithm, e, start);
 			LogUtil.e(TAG, "sign SignatureException: " + e.getMessage());
 		} catch (InvalidAlgorithmParameterException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.SIGN, algorithm, e, start);
 			LogUtil.e(TAG, "sign InvalidAlgorithmParameterException: " + e.getMessage());
 		} catch (Exception e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.SIGN, algorithm, e, start);
 			LogUtil.e(TAG, "sign Exception: " + e.getMessage());
 		}
 		return result;
@@ -243,7 +282,7 @@ public abstract class RSASign {
 	 */
 	@Deprecated
 	public static boolean verifySign(String content, String signVal, PublicKey publicKey) {
-		return verifySign(content, signVal, publicKey, false);
+		return verifySign(content, signVal, publicKey, false, TextCodec.BASE64_DEFAULT);
 	}
 
 	/**
@@ -260,12 +299,34 @@ public abstract class RSASign {
 			LogUtil.e(TAG, "sdk version is too low");
 			return false;
 		}
-		return verifySign(content, signVal, publicKey, true);
+		return verifySign(content, signVal, publicKey, true, TextCodec.BASE64_DEFAULT);
+	}
+
+	/**
+	 * SHA256WithRSA/PSS 验签，签名值为指定编码
+	 *
+	 * @param content   待验签数据
+	 * @param signVal   签名值
+	 * @param publicKey 公钥
+	 * @param codec     签名值编码，需与签名时一致
+	 * @return the boolean
+	 */
+	public static boolean newVerifySign(String content, String signVal, PublicKey publicKey, TextCodec codec) {
+		if (!isBuildVersionHigherThan23()) {
+			LogUtil.e(TAG, "sdk version is too low");
+			return false;
+		}
+		if (codec == null) {
+			LogUtil.e(TAG, "codec is null");
+			return false;
+		}
+		return verifySign(content, signVal, publicKey, true, codec);
 	}
 
-	private static boolean verifySign(String content, String signVal, PublicKey publicKey, boolean isNewVerifySign) {
+	private static boolean verifySign(String content, String signVal, PublicKey publicKey, boolean isNewVerifySign,
+									  TextCodec codec) {
 		try {
-			return verifySign(content.getBytes(CHARSET), Base64.decode(signVal, Base64.DEFAULT), publicKey,
+			return verifySign(content.getBytes(CHARSET), codec.decode(signVal), publicKey,
 					isNewVerifySign);
 		} catch (UnsupportedEncodingException e) {
 			LogUtil.e(TAG, "verifySign UnsupportedEncodingException: " + e.getMessage());
@@ -282,6 +343,8 @@ public abstract class RSASign {
 			return false;
 		}
 		Signature signature;
+		String algorithm = isNewVerifySign ? SHA256WithRSA_PSS_ALGORITHM : ALGORITHM;
+		long start = MetricsUtil.start();
 		try {
 			if (isNewVerifySign) {
 				signature = Signature.getInstance(SHA256WithRSA_PSS_ALGORITHM);
@@ -291,10 +354,14 @@ public abstract class RSASign {
 			}
 			signature.initVerify(publicKey);
 			signature.update(content);
-			return signature.verify(signVal);
+			boolean verified = signature.verify(signVal);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.VERIFY, algorithm, content.length, start);
+			return verified;
 		} catch (GeneralSecurityException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.VERIFY, algorithm, e, start);
 			LogUtil.e(TAG, "check sign exception: " + e.getMessage());
 		} catch (Exception e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.VERIFY, algorithm, e, start);
 			LogUtil.e(TAG, "exception : " + e.getMessage());
 		}
 		return false;
@@ -307,6 +374,9 @@ public abstract class RSASign {
 			return false;
 		}
 		Signature signature;
+		String algorithm = isNewVerifySign ? SHA256WithRSA_PSS_ALGORITHM : ALGORITHM;
+		int inputLen = content.remaining();
+		long start = MetricsUtil.start();
 		try {
 			if (isNewVerifySign) {
 				signature = Signature.getInstance(SHA256WithRSA_PSS_ALGORITHM);
@@ -316,10 +386,14 @@ public abstract class RSASign {
 			}
 			signature.initVerify(publicKey);
 			signature.update(content);
-			return signature.verify(signVal);
+			boolean verified = signature.verify(signVal);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.VERIFY, algorithm, inputLen, start);
+			return verified;
 		} catch (GeneralSecurityException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.VERIFY, algorithm, e, start);
 			LogUtil.e(TAG, "check sign exception: " + e.getMessage());
 		} catch (Exception e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.VERIFY, algorithm, e, start);
 			LogUtil.e(TAG, "exception : " + e.getMessage());
 		}
 		return false;
@@ -0,0 +1,1046 @@
+package com.yyxnb.android.secure.encrypt.store;
+
+import androidx.annotation.WorkerThread;
+
+import com.yyxnb.android.secure.encrypt.aes.AesGcm;
+import com.yyxnb.android.secure.encrypt.aes.AesGcmKeyContext;
+import com.yyxnb.android.secure.utils.EncryptUtil;
+import com.yyxnb.android.secure.utils.IOUtil;
+import com.yyxnb.android.secure.utils.LogUtil;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 加密键值存储，用于替代“SharedPreferences + 手动AesGcm加密每个值”的用法
+ * <p>
+ * 数据保存在只追加的日志文件中，每条记录（操作、类型、键、值）整体用AES GCM加密，键名也不以明文落盘。
+ * 文件头中有随机生成的文件ID，第i条记录以 文件ID + i 作为附加认证数据，重放时按位置校验：
+ * 把旧记录重新追加到末尾（回滚某个值）、删除或调换中间的记录、拼接其他文件的记录都会解密失败。
+ * 整个文件替换为旧版本、或只截掉末尾的记录无法在文件内部检测，需要时由调用方在别处保存版本信息。
+ * 写操作只更新内存并加入待写队列，由后台线程在{@link #DEFAULT_FLUSH_DELAY_MILLIS}后或待写数据较多时批量追加到文件，
+ * 一批记录只做一次write和一次fsync。需要确认落盘时调用{@link #flush()}。
+ * <p>
+ * 读操作不访问文件：内存中保存每个键最新记录的密文，解密后的值放在有上限的LRU缓存中，被淘汰或覆盖时清零。
+ * 注意getString返回的String无法清零，敏感数据优先使用{@link #getBytes(String, byte[])}。
+ * <p>
+ * 打开时按顺序重放日志，只有末尾记录的长度超出文件末尾（写入时崩溃）才截断到最后一条完整记录，
+ * 因此崩溃最多丢失最近一批未落盘的写入。长度完整但长度字段非法或解密失败的记录说明文件已损坏，
+ * 此时打开失败且不修改文件，避免删除它之后的有效记录。
+ * 文件头中保存一段用密钥加密的校验数据，密钥错误时打开失败而不会截断文件。
+ * 日志中的过期记录超过一半时，后台线程用新的文件ID重新加密当前数据，写入临时文件、fsync后改名覆盖。
+ *
+ * <pre>
+ *     EncryptedKeyValueStore store = EncryptedKeyValueStore.open(new File(context.getFilesDir(), "secure.kv"), key);
+ *     store.putString("token", token);
+ *     String token = store.getString("token", null);
+ *     store.flush();
+ * </pre>
+ *
+ * @author yyx
+ * @date 2023/10/17
+ */
+public final class EncryptedKeyValueStore implements Closeable {
+
+	private static final String TAG = "EncryptedKVStore";
+
+	/**
+	 * 默认的批量写入延迟
+	 */
+	public static final long DEFAULT_FLUSH_DELAY_MILLIS = 100;
+
+	/**
+	 * 默认缓存的解密值个数
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 64;
+
+	private static final byte[] MAGIC = {'E', 'K', 'V', 'S'};
+
+	private static final byte VERSION = 2;
+
+	private static final int FILE_ID_LEN = 8;
+
+	/**
+	 * 文件ID + 记录序号
+	 */
+	private static final int RECORD_AAD_LEN = FILE_ID_LEN + 8;
+
+	private static final int LENGTH_LEN = 4;
+
+	private static final int MAX_RECORD_LEN = 16 * 1024 * 1024;
+
+	private static final int MAX_KEY_LEN = 0xFFFF;
+
+	/**
+	 * 待写数据达到该大小时立即写入，不再等待延迟
+	 */
+	private static final int FLUSH_BYTES = 64 * 1024;
+
+	/**
+	 * 文件小于该大小时不压缩
+	 */
+	private static final long COMPACT_MIN_BYTES = 32 * 1024;
+
+	private static final byte OP_PUT = 1;
+
+	private static final byte OP_REMOVE = 2;
+
+	private static final byte OP_CLEAR = 3;
+
+	private static final byte TYPE_BYTES = 1;
+
+	private static final byte TYPE_STRING = 2;
+
+	private static final byte TYPE_INT = 3;
+
+	private static final byte TYPE_LONG = 4;
+
+	private static final byte TYPE_BOOLEAN = 5;
+
+	/**
+	 * 操作 + 类型 + 键长度
+	 */
+	private static final int RECORD_HEAD_LEN = 4;
+
+	private final File file;
+
+	private final AesGcmKeyContext keyContext;
+
+	private final long flushDelayMillis;
+
+	private final Object lock = new Object();
+
+	/**
+	 * 键 -> 最新一条写入记录，由lock保护
+	 */
+	private final Map<String, Record> records = new HashMap<>();
+
+	/**
+	 * 解密值的LRU缓存，由lock保护
+	 */
+	private final LinkedHashMap<String, Value> cache;
+
+	private final ScheduledExecutorService writer;
+
+	private final Callable<Boolean> flushTask = new Callable<Boolean>() {
+		@Override
+		public Boolean call() {
+			return writePending();
+		}
+	};
+
+	/**
+	 * 以下字段由lock保护
+	 */
+	private byte[] header;
+
+	private byte[] fileId;
+
+	/**
+	 * 下一条记录在文件中的序号
+	 */
+	private long nextSequence;
+
+	private List<byte[]> pending = new ArrayList<>();
+
+	private int pendingBytes;
+
+	private boolean flushScheduled;
+
+	private boolean closed;
+
+	/**
+	 * 文件头 + 所有有效记录的长度，由lock保护
+	 */
+	private long liveLength;
+
+	/**
+	 * 以下字段只在写线程上访问
+	 */
+	private FileOutputStream out;
+
+	private long fileLength;
+
+	private boolean needRewrite;
+
+	private EncryptedKeyValueStore(File file, AesGcmKeyContext keyContext, long flushDelayMillis,
+								   final int cacheSize) {
+		this.file = file;
+		this.keyContext = keyContext;
+		this.flushDelayMillis = flushDelayMillis;
+		this.cache = new LinkedHashMap<String, Value>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Value> eldest) {
+				if (size() > cacheSize) {
+					eldest.getValue().clear();
+					return true;
+				}
+				return false;
+			}
+		};
+		this.writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, TAG);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * 打开存储，使用默认的写入延迟和缓存大小
+	 *
+	 * @param file 日志文件，不存在时创建
+	 * @param key  AES密钥，16、24或32字节
+	 * @return 存储，文件损坏、密钥错误或读写失败时返回null
+	 */
+	@WorkerThread
+	public static EncryptedKeyValueStore open(File file, byte[] key) {
+		return open(file, key, DEFAULT_FLUSH_DELAY_MILLIS, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * 打开存储，会读取并重放整个日志文件，应在后台线程调用
+	 *
+	 * @param file             日志文件，不存在时创建
+	 * @param key              AES密钥，16、24或32字节
+	 * @param flushDelayMillis 写操作后延迟多久批量写入文件，为0时尽快写入
+	 * @param cacheSize        缓存的解密值个数，为0时不缓存
+	 * @return 存储，文件损坏、密钥错误或读写失败时返回null
+	 */
+	@WorkerThread
+	public static EncryptedKeyValueStore open(File file, byte[] key, long flushDelayMillis, int cacheSize) {
+		if (file == null || key == null || (key.length != 16 && key.length != 24 && key.length != 32)) {
+			LogUtil.e(TAG, "open: file is null or key length is not right");
+			return null;
+		}
+		if (flushDelayMillis < 0 || cacheSize < 0) {
+			LogUtil.e(TAG, "open: flush delay and cache size must not be negative");
+			return null;
+		}
+		AesGcmKeyContext keyContext = AesGcmKeyContext.create(key);
+		if (keyContext == null) {
+			return null;
+		}
+		EncryptedKeyValueStore store = new EncryptedKeyValueStore(file, keyContext, flushDelayMillis, cacheSize);
+		try {
+			if (store.load()) {
+				return store;
+			}
+		} catch (IOException e) {
+			LogUtil.e(TAG, "open exception : " + e.getMessage());
+		}
+		store.writer.shutdownNow();
+		IOUtil.closeSecure(store.out);
+		return null;
+	}
+
+	public String getString(String name, String defValue) {
+		Value value = getValue(name, TYPE_STRING);
+		if (value == null) {
+			return defValue;
+		}
+		String result = decodeString(value.data);
+		value.clear();
+		return result == null ? defValue : result;
+	}
+
+	/**
+	 * 读取字节数组
+	 *
+	 * @param name     键
+	 * @param defValue 不存在或类型不符时的返回值
+	 * @return 值的副本，调用方用完后可以清零
+	 */
+	public byte[] getBytes(String name, byte[] defValue) {
+		Value value = getValue(name, TYPE_BYTES);
+		return value == null ? defValue : value.data;
+	}
+
+	public int getInt(String name, int defValue) {
+		Value value = getValue(name, TYPE_INT);
+		return value == null ? defValue : ByteBuffer.wrap(value.data).getInt();
+	}
+
+	public long getLong(String name, long defValue) {
+		Value value = getValue(name, TYPE_LONG);
+		return value == null ? defValue : ByteBuffer.wrap(value.data).getLong();
+	}
+
+	public boolean getBoolean(String name, boolean defValue) {
+		Value value = getValue(name, TYPE_BOOLEAN);
+		return value == null ? defValue : value.data[0] != 0;
+	}
+
+	/**
+	 * 写入字符串，value为null时等同于{@link #remove(String)}
+	 *
+	 * @param name  键
+	 * @param value 值
+	 * @return 是否成功写入内存，落盘是异步的
+	 */
+	public boolean putString(String name, String value) {
+		if (value == null) {
+			return remove(name);
+		}
+		byte[] data;
+		try {
+			data = value.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			LogUtil.e(TAG, "putString exception : " + e.getMessage());
+			return false;
+		}
+		return put(name, TYPE_STRING, data);
+	}
+
+	/**
+	 * 写入字节数组，value为null时等同于{@link #remove(String)}
+	 *
+	 * @param name  键
+	 * @param value 值，会被复制，调用方可以随后清零
+	 * @return 是否成功写入内存，落盘是异步的
+	 */
+	public boolean putBytes(String name, byte[] value) {
+		if (value == null) {
+			return remove(name);
+		}
+		return put(name, TYPE_BYTES, value.clone());
+	}
+
+	public boolean putInt(String name, int value) {
+		return put(name, TYPE_INT, ByteBuffer.allocate(4).putInt(value).array());
+	}
+
+	public boolean putLong(String name, long value) {
+		return put(name, TYPE_LONG, ByteBuffer.allocate(8).putLong(value).array());
+	}
+
+	public boolean putBoolean(String name, boolean value) {
+		return put(name, TYPE_BOOLEAN, new byte[]{(byte) (value ? 1 : 0)});
+	}
+
+	/**
+	 * 删除键
+	 *
+	 * @param name 键
+	 * @return 是否成功，键不存在时也返回true
+	 */
+	public boolean remove(String name) {
+		byte[] keyBytes = encodeKey(name);
+		if (keyBytes == null) {
+			return false;
+		}
+		byte[] plain = encodeRecord(OP_REMOVE, (byte) 0, keyBytes, null);
+		if (plain == null) {
+			return false;
+		}
+		try {
+			synchronized (lock) {
+				if (closed) {
+					LogUtil.e(TAG, "remove: store is closed");
+					return false;
+				}
+				if (!records.containsKey(name)) {
+					return true;
+				}
+				Record record = sealRecord(plain);
+				if (record == null) {
+					return false;
+				}
+				removeRecord(name);
+				removeCache(name);
+				enqueue(record);
+			}
+		} finally {
+			Arrays.fill(plain, (byte) 0);
+		}
+		return true;
+	}
+
+	/**
+	 * 删除所有键
+	 *
+	 * @return 是否成功
+	 */
+	public boolean clear() {
+		byte[] plain = encodeRecord(OP_CLEAR, (byte) 0, new byte[0], null);
+		if (plain == null) {
+			return false;
+		}
+		synchronized (lock) {
+			if (closed) {
+				LogUtil.e(TAG, "clear: store is closed");
+				return false;
+			}
+			Record record = sealRecord(plain);
+			if (record == null) {
+				return false;
+			}
+			records.clear();
+			liveLength = header.length;
+			clearCache();
+			enqueue(record);
+		}
+		return true;
+	}
+
+	public boolean contains(String name) {
+		synchronized (lock) {
+			return records.containsKey(name);
+		}
+	}
+
+	/**
+	 * 所有键
+	 *
+	 * @return 键的副本
+	 */
+	public Set<String> keys() {
+		synchronized (lock) {
+			return new HashSet<>(records.keySet());
+		}
+	}
+
+	/**
+	 * 把所有待写数据写入文件并fsync，阻塞到完成，相当于SharedPreferences的commit
+	 *
+	 * @return 是否成功落盘
+	 */
+	@WorkerThread
+	public boolean flush() {
+		try {
+			return writer.submit(flushTask).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LogUtil.e(TAG, "flush interrupted");
+		} catch (ExecutionException | RejectedExecutionException e) {
+			LogUtil.e(TAG, "flush exception : " + e.getMessage());
+		}
+		return false;
+	}
+
+	/**
+	 * 写入待写数据后关闭文件，清零缓存的解密值。关闭后的读写操作返回默认值或失败
+	 */
+	@WorkerThread
+	@Override
+	public void close() {
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+		try {
+			writer.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					boolean result = writePending();
+					IOUtil.closeSecure(out);
+					out = null;
+					return result;
+				}
+			}).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LogUtil.e(TAG, "close interrupted");
+		} catch (ExecutionException e) {
+			LogUtil.e(TAG, "close exception : " + e.getMessage());
+		}
+		writer.shutdownNow();
+		synchronized (lock) {
+			clearCache();
+			records.clear();
+			pending.clear();
+		}
+	}
+
+	private boolean put(String name, byte type, byte[] data) {
+		byte[] keyBytes = encodeKey(name);
+		if (keyBytes == null) {
+			return false;
+		}
+		byte[] plain = encodeRecord(OP_PUT, type, keyBytes, data);
+		if (plain == null) {
+			return false;
+		}
+		try {
+			synchronized (lock) {
+				if (closed) {
+					LogUtil.e(TAG, "put: store is closed");
+					return false;
+				}
+				// 序号决定记录在文件中的位置，分配序号、加密和入队在同一次加锁内完成
+				Record record = sealRecord(plain);
+				if (record == null) {
+					return false;
+				}
+				putRecord(name, record);
+				putCache(name, new Value(type, data));
+				enqueue(record);
+			}
+		} finally {
+			Arrays.fill(plain, (byte) 0);
+		}
+		return true;
+	}
+
+	/**
+	 * 读取值，先查缓存，未命中时解密内存中的记录
+	 *
+	 * @return 值的副本，不存在或类型不符时返回null
+	 */
+	private Value getValue(String name, byte type) {
+		if (name == null) {
+			return null;
+		}
+		Record record;
+		synchronized (lock) {
+			Value cached = cache.get(name);
+			if (cached != null) {
+				return cached.type == type ? cached.copy() : null;
+			}
+			record = records.get(name);
+		}
+		if (record == null) {
+			return null;
+		}
+		byte[] plain = keyContext.open(record.data, record.aad);
+		Value value = decodeValue(plain);
+		Arrays.fill(plain, (byte) 0);
+		if (value == null) {
+			LogUtil.e(TAG, "getValue: decrypt record failed");
+			return null;
+		}
+		synchronized (lock) {
+			// 解密期间被覆盖或删除时不写入缓存
+			if (records.get(name) == record) {
+				putCache(name, value.copy());
+			}
+		}
+		if (value.type != type) {
+			value.clear();
+			return null;
+		}
+		return value;
+	}
+
+	private void putRecord(String name, Record record) {
+		Record old = records.put(name, record);
+		liveLength += LENGTH_LEN + record.data.length;
+		if (old != null) {
+			liveLength -= LENGTH_LEN + old.data.length;
+		}
+	}
+
+	private boolean removeRecord(String name) {
+		Record old = records.remove(name);
+		if (old == null) {
+			return false;
+		}
+		liveLength -= LENGTH_LEN + old.data.length;
+		return true;
+	}
+
+	private void putCache(String name, Value value) {
+		Value old = cache.put(name, value);
+		if (old != null && old != value) {
+			old.clear();
+		}
+	}
+
+	private void removeCache(String name) {
+		Value old = cache.remove(name);
+		if (old != null) {
+			old.clear();
+		}
+	}
+
+	private void clearCache() {
+		for (Value value : cache.values()) {
+			value.clear();
+		}
+		cache.clear();
+	}
+
+	/**
+	 * 加入待写队列并安排写入，调用方持有lock
+	 */
+	private void enqueue(Record record) {
+		pending.add(record.data);
+		pendingBytes += LENGTH_LEN + record.data.length;
+		try {
+			if (pendingBytes >= FLUSH_BYTES) {
+				writer.submit(flushTask);
+			} else if (!flushScheduled) {
+				flushScheduled = true;
+				writer.schedule(flushTask, flushDelayMillis, TimeUnit.MILLISECONDS);
+			}
+		} catch (RejectedExecutionException e) {
+			LogUtil.e(TAG, "enqueue: writer is shut down");
+		}
+	}
+
+	/**
+	 * 在写线程上批量追加待写记录。上次写入失败时文件末尾可能有残缺数据，改为整体重写
+	 */
+	private boolean writePending() {
+		if (out == null) {
+			return false;
+		}
+		if (needRewrite) {
+			return compact();
+		}
+		List<byte[]> batch;
+		int batchBytes;
+		synchronized (lock) {
+			flushScheduled = false;
+			if (pending.isEmpty()) {
+				return true;
+			}
+			batch = pending;
+			batchBytes = pendingBytes;
+			pending = new ArrayList<>();
+			pendingBytes = 0;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(batchBytes);
+		for (byte[] record : batch) {
+			buffer.putInt(record.length).put(record);
+		}
+		try {
+			out.write(buffer.array());
+			out.flush();
+			out.getFD().sync();
+			fileLength += batchBytes;
+		} catch (IOException e) {
+			LogUtil.e(TAG, "writePending exception : " + e.getMessage());
+			needRewrite = true;
+			return false;
+		}
+		long live;
+		synchronized (lock) {
+			live = liveLength;
+		}
+		if (fileLength > COMPACT_MIN_BYTES && fileLength > 2 * live) {
+			compact();
+		}
+		return true;
+	}
+
+	/**
+	 * 在写线程上用新的文件ID从序号0开始重新加密内存中的有效记录，写入临时文件，fsync后改名覆盖日志文件。
+	 * 待写队列中的记录已经反映在内存中，一并清空；之后的写入从新文件的序号继续
+	 */
+	private boolean compact() {
+		List<byte[]> snapshot;
+		byte[] newHeader;
+		synchronized (lock) {
+			flushScheduled = false;
+			byte[] newFileId = EncryptUtil.generateSecureRandom(FILE_ID_LEN);
+			newHeader = newFileId.length == FILE_ID_LEN ? createHeader(newFileId) : null;
+			if (newHeader == null) {
+				LogUtil.e(TAG, "compact: create header failed");
+				needRewrite = true;
+				return false;
+			}
+			Map<String, Record> rewritten = new HashMap<>(records.size());
+			snapshot = new ArrayList<>(records.size());
+			long sequence = 0;
+			for (Map.Entry<String, Record> entry : records.entrySet()) {
+				Record old = entry.getValue();
+				byte[] plain = keyContext.open(old.data, old.aad);
+				Record record = plain.length == 0 ? null : sealRecord(plain, newFileId, sequence++);
+				Arrays.fill(plain, (byte) 0);
+				if (record == null) {
+					LogUtil.e(TAG, "compact: re-encrypt record failed");
+					needRewrite = true;
+					return false;
+				}
+				rewritten.put(entry.getKey(), record);
+				snapshot.add(record.data);
+			}
+			records.putAll(rewritten);
+			header = newHeader;
+			fileId = newFileId;
+			nextSequence = sequence;
+			pending = new ArrayList<>();
+			pendingBytes = 0;
+		}
+		File tmp = new File(file.getPath() + ".tmp");
+		try {
+			long length = writeFile(tmp, newHeader, snapshot);
+			IOUtil.closeSecure(out);
+			out = null;
+			if (!tmp.renameTo(file)) {
+				throw new IOException("rename log file failed");
+			}
+			fileLength = length;
+			needRewrite = false;
+			LogUtil.d(TAG, "compact: " + snapshot.size() + " records, " + length + " bytes");
+			return true;
+		} catch (IOException e) {
+			LogUtil.e(TAG, "compact exception : " + e.getMessage());
+			needRewrite = true;
+			if (tmp.exists() && !tmp.delete()) {
+				LogUtil.e(TAG, "compact: delete tmp file failed");
+			}
+			return false;
+		} finally {
+			if (out == null) {
+				try {
+					out = new FileOutputStream(file, true);
+				} catch (IOException e) {
+					LogUtil.e(TAG, "compact: reopen log file failed : " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	private static long writeFile(File target, byte[] header, List<byte[]> snapshot) throws IOException {
+		FileOutputStream output = null;
+		long length = header.length;
+		try {
+			output = new FileOutputStream(target);
+			output.write(header);
+			ByteBuffer buffer = ByteBuffer.allocate(FLUSH_BYTES);
+			for (byte[] record : snapshot) {
+				if (buffer.remaining() < LENGTH_LEN + record.length) {
+					output.write(buffer.array(), 0, buffer.position());
+					buffer.clear();
+				}
+				if (buffer.remaining() < LENGTH_LEN + record.length) {
+					output.write(ByteBuffer.allocate(LENGTH_LEN).putInt(record.length).array());
+					output.write(record);
+				} else {
+					buffer.putInt(record.length).put(record);
+				}
+				length += LENGTH_LEN + record.length;
+			}
+			output.write(buffer.array(), 0, buffer.position());
+			output.flush();
+			output.getFD().sync();
+		} finally {
+			IOUtil.closeSecure(output);
+		}
+		return length;
+	}
+
+	/**
+	 * 读取并重放日志，截断末尾的残缺记录。中间的记录损坏时返回false，不修改文件
+	 */
+	private boolean load() throws IOException {
+		if (!file.exists() || file.length() == 0) {
+			fileId = EncryptUtil.generateSecureRandom(FILE_ID_LEN);
+			header = fileId.length == FILE_ID_LEN ? createHeader(fileId) : null;
+			if (header == null) {
+				return false;
+			}
+			liveLength = header.length;
+			File tmp = new File(file.getPath() + ".tmp");
+			fileLength = writeFile(tmp, header, new ArrayList<byte[]>());
+			if (!tmp.renameTo(file)) {
+				throw new IOException("rename log file failed");
+			}
+			out = new FileOutputStream(file, true);
+			return true;
+		}
+		byte[] data = readFile(file);
+		int offset = readHeader(data);
+		if (offset < 0) {
+			return false;
+		}
+		header = Arrays.copyOf(data, offset);
+		fileId = Arrays.copyOfRange(data, MAGIC.length + 1, MAGIC.length + 1 + FILE_ID_LEN);
+		liveLength = header.length;
+		int count = 0;
+		while (data.length - offset >= LENGTH_LEN) {
+			int len = ByteBuffer.wrap(data, offset, LENGTH_LEN).getInt();
+			if (len <= 0 || len > MAX_RECORD_LEN) {
+				// 崩溃后文件末尾可能是填充的0，其他情况是文件损坏
+				if (isZero(data, offset)) {
+					break;
+				}
+				LogUtil.e(TAG, "load: record " + count + " has a broken length, file is corrupted");
+				return false;
+			}
+			if (len > data.length - offset - LENGTH_LEN) {
+				break;
+			}
+			byte[] recordData = Arrays.copyOfRange(data, offset + LENGTH_LEN, offset + LENGTH_LEN + len);
+			if (!replay(new Record(recordData, recordAad(fileId, count)))) {
+				LogUtil.e(TAG, "load: record " + count + " can not be decrypted or is out of place, file is corrupted");
+				return false;
+			}
+			offset += LENGTH_LEN + len;
+			count++;
+		}
+		if (offset < data.length) {
+			LogUtil.w(TAG, "load: truncate " + (data.length - offset) + " bytes of incomplete records");
+			truncate(offset);
+		}
+		fileLength = offset;
+		nextSequence = count;
+		out = new FileOutputStream(file, true);
+		LogUtil.d(TAG, "load: " + count + " records, " + records.size() + " keys");
+		return true;
+	}
+
+	/**
+	 * 文件头：MAGIC + 版本 + 文件ID + 校验数据长度 + 校验数据，校验数据以前面的字段作为附加认证数据
+	 */
+	private byte[] createHeader(byte[] newFileId) {
+		int fixed = MAGIC.length + 1 + FILE_ID_LEN;
+		byte[] aad = ByteBuffer.allocate(fixed).put(MAGIC).put(VERSION).put(newFileId).array();
+		byte[] check = keyContext.seal(MAGIC, aad);
+		if (check.length == 0) {
+			return null;
+		}
+		return ByteBuffer.allocate(fixed + LENGTH_LEN + check.length)
+				.put(aad).putInt(check.length).put(check).array();
+	}
+
+	/**
+	 * 校验文件头，返回记录的起始位置，格式或密钥错误时返回-1
+	 */
+	private int readHeader(byte[] data) {
+		int fixed = MAGIC.length + 1 + FILE_ID_LEN + LENGTH_LEN;
+		if (data.length < fixed || !Arrays.equals(Arrays.copyOf(data, MAGIC.length), MAGIC)
+				|| data[MAGIC.length] != VERSION) {
+			LogUtil.e(TAG, "load: not a store file or version is not supported");
+			return -1;
+		}
+		int checkLen = ByteBuffer.wrap(data, fixed - LENGTH_LEN, LENGTH_LEN).getInt();
+		if (checkLen <= 0 || checkLen > data.length - fixed) {
+			LogUtil.e(TAG, "load: header is broken");
+			return -1;
+		}
+		byte[] check = keyContext.open(Arrays.copyOfRange(data, fixed, fixed + checkLen),
+				Arrays.copyOf(data, fixed - LENGTH_LEN));
+		if (!Arrays.equals(check, MAGIC)) {
+			LogUtil.e(TAG, "load: key is not right");
+			return -1;
+		}
+		return fixed + checkLen;
+	}
+
+	private boolean replay(Record record) {
+		byte[] plain = keyContext.open(record.data, record.aad);
+		try {
+			if (plain.length < RECORD_HEAD_LEN) {
+				return false;
+			}
+			byte op = plain[0];
+			if (op == OP_CLEAR) {
+				records.clear();
+				liveLength = header.length;
+				return true;
+			}
+			int keyLen = ((plain[2] & 0xFF) << 8) | (plain[3] & 0xFF);
+			if (plain.length < RECORD_HEAD_LEN + keyLen) {
+				return false;
+			}
+			String name = decodeString(Arrays.copyOfRange(plain, RECORD_HEAD_LEN, RECORD_HEAD_LEN + keyLen));
+			if (name == null) {
+				return false;
+			}
+			if (op == OP_PUT) {
+				putRecord(name, record);
+			} else if (op == OP_REMOVE) {
+				removeRecord(name);
+			} else {
+				return false;
+			}
+			return true;
+		} finally {
+			Arrays.fill(plain, (byte) 0);
+		}
+	}
+
+	private static boolean isZero(byte[] data, int offset) {
+		for (int i = offset; i < data.length; i++) {
+			if (data[i] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void truncate(long length) throws IOException {
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(file, "rw");
+			raf.setLength(length);
+			raf.getFD().sync();
+		} finally {
+			IOUtil.closeSecure(raf);
+		}
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		long length = file.length();
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("log file is too large");
+		}
+		byte[] data = new byte[(int) length];
+		FileInputStream input = null;
+		try {
+			input = new FileInputStream(file);
+			int read = 0;
+			while (read < data.length) {
+				int n = input.read(data, read, data.length - read);
+				if (n < 0) {
+					break;
+				}
+				read += n;
+			}
+			return read == data.length ? data : Arrays.copyOf(data, read);
+		} finally {
+			IOUtil.closeSecure(input);
+		}
+	}
+
+	/**
+	 * 记录明文：操作(1) + 类型(1) + 键长度(2) + 键 + 值
+	 */
+	private static byte[] encodeRecord(byte op, byte type, byte[] keyBytes, byte[] data) {
+		int dataLen = data == null ? 0 : data.length;
+		if (RECORD_HEAD_LEN + keyBytes.length + dataLen > MAX_RECORD_LEN - AesGcm.getEncryptOutputLen(0)) {
+			LogUtil.e(TAG, "encodeRecord: value is too large");
+			return null;
+		}
+		byte[] plain = new byte[RECORD_HEAD_LEN + keyBytes.length + dataLen];
+		plain[0] = op;
+		plain[1] = type;
+		plain[2] = (byte) (keyBytes.length >>> 8);
+		plain[3] = (byte) keyBytes.length;
+		System.arraycopy(keyBytes, 0, plain, RECORD_HEAD_LEN, keyBytes.length);
+		if (data != null) {
+			System.arraycopy(data, 0, plain, RECORD_HEAD_LEN + keyBytes.length, dataLen);
+		}
+		return plain;
+	}
+
+	/**
+	 * 用当前文件ID和下一个序号加密记录，成功时序号加一，调用方持有lock
+	 */
+	private Record sealRecord(byte[] plain) {
+		Record record = sealRecord(plain, fileId, nextSequence);
+		if (record != null) {
+			nextSequence++;
+		}
+		return record;
+	}
+
+	private Record sealRecord(byte[] plain, byte[] recordFileId, long sequence) {
+		byte[] aad = recordAad(recordFileId, sequence);
+		byte[] data = keyContext.seal(plain, aad);
+		if (data.length == 0) {
+			LogUtil.e(TAG, "sealRecord: encrypt failed");
+			return null;
+		}
+		return new Record(data, aad);
+	}
+
+	private static byte[] recordAad(byte[] recordFileId, long sequence) {
+		return ByteBuffer.allocate(RECORD_AAD_LEN).put(recordFileId).putLong(sequence).array();
+	}
+
+	private static Value decodeValue(byte[] plain) {
+		if (plain.length < RECORD_HEAD_LEN || plain[0] != OP_PUT) {
+			return null;
+		}
+		int keyLen = ((plain[2] & 0xFF) << 8) | (plain[3] & 0xFF);
+		int offset = RECORD_HEAD_LEN + keyLen;
+		if (plain.length < offset) {
+			return null;
+		}
+		return new Value(plain[1], Arrays.copyOfRange(plain, offset, plain.length));
+	}
+
+	private static byte[] encodeKey(String name) {
+		if (name == null) {
+			LogUtil.e(TAG, "key is null");
+			return null;
+		}
+		try {
+			byte[] keyBytes = name.getBytes("UTF-8");
+			if (keyBytes.length > MAX_KEY_LEN) {
+				LogUtil.e(TAG, "key is too long");
+				return null;
+			}
+			return keyBytes;
+		} catch (UnsupportedEncodingException e) {
+			LogUtil.e(TAG, "encodeKey exception : " + e.getMessage());
+			return null;
+		}
+	}
+
+	private static String decodeString(byte[] data) {
+		try {
+			return new String(data, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			LogUtil.e(TAG, "decodeString exception : " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * 一条记录的密文和加密时使用的附加认证数据
+	 */
+	private static final class Record {
+
+		final byte[] data;
+
+		final byte[] aad;
+
+		Record(byte[] data, byte[] aad) {
+			this.data = data;
+			this.aad = aad;
+		}
+	}
+
+	/**
+	 * 解密后的值
+	 */
+	private static final class Value {
+
+		final byte type;
+
+		final byte[] data;
+
+		Value(byte type, byte[] data) {
+			this.type = type;
+			this.data = data;
+		}
+
+		Value copy() {
+			return new Value(type, data.clone());
+		}
+
+		void clear() {
+			Arrays.fill(data, (byte) 0);
+		}
+	}
+}
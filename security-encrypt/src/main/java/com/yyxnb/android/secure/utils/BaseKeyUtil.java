@@ -16,8 +16,8 @@ import com.yyxnb.android.secure.encrypt.hash.PBKDF2;
 public class BaseKeyUtil {
 	private static final String TAG = BaseKeyUtil.class.getSimpleName();
 	private static final int ROOT_KEY_COMP_MIN_VALID_LENGTH = 16; // 密钥材料最小长度为16字节\
-	private static final int ROOT_KEY_LEN = 16;
-	private static final int ITERATION_COUNT = 10000;
+	static final int ROOT_KEY_LEN = 16;
+	static final int ITERATION_COUNT = 10000;
 	private static final int ROOT_KEY_LEN_32 = 32; // 导出长度32字节
 	private static final int ITERATION_COUNT_1 = 1; // 迭代次数1，满足安全要求
 
@@ -1,20 +1,17 @@
 package com.yyxnb.android.secure.utils;
 
-import android.os.Build;
-import android.util.Base64;
-
 import org.bouncycastle.crypto.BlockCipher;
 import org.bouncycastle.crypto.engines.AESEngine;
 import org.bouncycastle.crypto.prng.SP800SecureRandomBuilder;
 
 import java.security.GeneralSecurityException;
 import java.security.KeyFactory;
-import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.SecureRandom;
 import java.security.interfaces.RSAPublicKey;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.concurrent.TimeUnit;
 
 /**
  * EncryptUtil
@@ -28,42 +25,83 @@ import java.security.spec.X509EncodedKeySpec;
 public class EncryptUtil {
 	private static final String TAG = "EncryptUtil";
 	private static final String RSA_ALGORITHM = "RSA";
-	private static boolean bouncycastleFlag = false;
+	/**
+	 * 缓存的生成器生成超过该字节数后重新播种
+	 */
+	private static final long RESEED_BYTES = 1024 * 1024;
+	/**
+	 * 缓存的生成器使用超过该时间后重新播种
+	 */
+	private static final long RESEED_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(10);
+	private static final ThreadLocal<CachedRandom> CACHED_RANDOM = new ThreadLocal<>();
+	private static volatile boolean bouncycastleFlag = false;
+	private static volatile RandomPool randomPool;
 	private static boolean isLogError = true;
 
 	/**
 	 * 生成len长度的安全随机数。如果依赖了BC库，且设置flag为true，则调用BC库生成安全随机数
+	 * <p>
+	 * 每个线程缓存一个已播种的生成器，按生成字节数和时间重新播种，调用开销固定且不会阻塞等待熵。
+	 * 开启{@link RandomPool}后，不超过{@link RandomPool#SLOT_SIZE}的请求优先从池中取。
 	 *
 	 * @return
 	 */
 	public static byte[] generateSecureRandom(int len) {
-		if (!bouncycastleFlag) {
-			byte[] randomBytes = new byte[len];
-			SecureRandom random = null;
-			try {
-				if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-					// 鸿蒙系统调用失败
-					random = SecureRandom.getInstanceStrong();
-				}
-			} catch (NoSuchAlgorithmException e) {
-				LogUtil.e(TAG, "getSecureRandomBytes: NoSuchAlgorithmException");
-			}
+		if (len < 0) {
+			LogUtil.e(TAG, "getSecureRandomBytes: len is negative");
+			return new byte[0];
+		}
+		byte[] randomBytes = new byte[len];
+		return generateSecureRandom(randomBytes, 0, len) ? randomBytes : new byte[0];
+	}
 
-			try {
-				if (random == null) {
-					random = SecureRandom.getInstance("SHA1PRNG");
-				}
+	/**
+	 * 生成安全随机数，直接写入调用方提供的数组
+	 *
+	 * @param output 输出数组
+	 * @param offset 起始位置
+	 * @param len    长度
+	 * @return 是否成功
+	 */
+	public static boolean generateSecureRandom(byte[] output, int offset, int len) {
+		if (output == null || offset < 0 || len < 0 || output.length - offset < len) {
+			LogUtil.e(TAG, "getSecureRandomBytes: output is null or out of range");
+			return false;
+		}
+		RandomPool pool = randomPool;
+		if (pool != null && pool.take(output, offset, len)) {
+			return true;
+		}
+		return generateSecureRandomDirect(output, offset, len);
+	}
+
+	/**
+	 * 不经过随机数池，直接用当前线程缓存的生成器生成
+	 *
+	 * @param output 输出数组
+	 * @param offset 起始位置
+	 * @param len    长度
+	 * @return 是否成功
+	 */
+	static boolean generateSecureRandomDirect(byte[] output, int offset, int len) {
+		SecureRandom random = getCachedSecureRandom(len);
+		if (random == null) {
+			return false;
+		}
+		try {
+			if (offset == 0 && len == output.length) {
+				random.nextBytes(output);
+			} else {
+				byte[] randomBytes = new byte[len];
 				random.nextBytes(randomBytes);
-				return randomBytes;
-			} catch (NoSuchAlgorithmException e) {
-				LogUtil.e(TAG, "getSecureRandomBytes getInstance: NoSuchAlgorithmException");
-			} catch (Exception e) {
-				LogUtil.e(TAG, "getSecureRandomBytes getInstance: exception : " + e.getMessage());
+				System.arraycopy(randomBytes, 0, output, offset, len);
 			}
-		} else {
-			return generateSecureRandomNew(len);
+			return true;
+		} catch (Exception e) {
+			LogUtil.e(TAG, "getSecureRandomBytes: exception : " + e.getMessage());
+			CACHED_RANDOM.remove();
 		}
-		return new byte[0];
+		return false;
 	}
 
 	/**
@@ -76,51 +114,80 @@ public class EncryptUtil {
 	}
 
 	/**
-	 * 生成SecureRandom
+	 * 生成SecureRandom，开启随机数池时返回使用池的SecureRandom，否则返回当前线程缓存的生成器
 	 *
 	 * @return SecureRandom
 	 */
 	public static SecureRandom genSecureRandom() {
-		if (!bouncycastleFlag) {
-			SecureRandom source = null;
-			try {
-				if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-					source = SecureRandom.getInstanceStrong();
-				} else {
-					source = SecureRandom.getInstance("SHA1PRNG");
-				}
-			} catch (NoSuchAlgorithmException e) {
-				LogUtil.e(TAG, "genSecureRandom: NoSuchAlgorithmException");
-			}
-			return source;
-		} else {
-			return genSecureRandomNew();
+		RandomPool pool = randomPool;
+		if (pool != null) {
+			return pool.getSecureRandom();
 		}
+		return getCachedSecureRandom(0);
 	}
 
 	/**
-	 * 生成secureRandom对象
+	 * 开启或关闭随机数池，默认关闭
+	 * <p>
+	 * 开启后启动一个低优先级后台线程预生成随机数，适合短时间内大量加密的场景。关闭时清零池中未使用的随机数。
 	 *
-	 * @throws GeneralSecurityException
+	 * @param enabled 是否开启
 	 */
+	public static synchronized void setRandomPoolEnabled(boolean enabled) {
+		LogUtil.i(TAG, "setRandomPoolEnabled: " + enabled);
+		RandomPool pool = randomPool;
+		if (enabled && pool == null) {
+			randomPool = new RandomPool(RandomPool.DEFAULT_CAPACITY);
+		} else if (!enabled && pool != null) {
+			randomPool = null;
+			pool.shutdown();
+		}
+	}
 
-	private static SecureRandom genSecureRandomNew() {
-		LogUtil.i(TAG, "generateSecureRandomNew ");
-		SecureRandom source = null;
-		try {
-			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-				// 鸿蒙系统调用失败
-				source = SecureRandom.getInstanceStrong();
+	/**
+	 * 获取随机数池，可用于查看命中率
+	 *
+	 * @return 随机数池，未开启时返回null
+	 */
+	public static RandomPool getRandomPool() {
+		return randomPool;
+	}
+
+	/**
+	 * 获取当前线程缓存的生成器，生成字节数或使用时间超过阈值、BC开关变化时重新创建
+	 *
+	 * @param len 本次将要生成的字节数
+	 * @return SecureRandom，创建失败返回null
+	 */
+	private static SecureRandom getCachedSecureRandom(int len) {
+		boolean useBouncycastle = bouncycastleFlag;
+		long now = System.nanoTime();
+		CachedRandom cached = CACHED_RANDOM.get();
+		if (cached == null || cached.isBouncycastle != useBouncycastle
+				|| cached.generatedBytes >= RESEED_BYTES || now - cached.seedTime >= RESEED_INTERVAL_NANOS) {
+			SecureRandom random = useBouncycastle ? genSecureRandomNew() : new SecureRandom();
+			if (random == null) {
+				CACHED_RANDOM.remove();
+				return null;
 			}
-		} catch (NoSuchAlgorithmException e) {
-			LogUtil.e(TAG, "getSecureRandomBytes: NoSuchAlgorithmException");
+			cached = new CachedRandom(random, useBouncycastle, now);
+			CACHED_RANDOM.set(cached);
 		}
+		cached.generatedBytes += len;
+		return cached.random;
+	}
 
+	/**
+	 * 生成secureRandom对象
+	 * <p>
+	 * 熵源使用不阻塞的系统SecureRandom。生成器由{@link #getCachedSecureRandom(int)}按策略重建，
+	 * 因此不再开启predictionResistant（每次取随机数都从熵源重新播种）。
+	 */
+	private static SecureRandom genSecureRandomNew() {
+		LogUtil.i(TAG, "generateSecureRandomNew ");
+		SecureRandom source = new SecureRandom();
 		try {
-			if (source == null) {
-				source = SecureRandom.getInstance("SHA1PRNG");
-			}
-			boolean predictionResistant = true; // /dev/random可以认为是活熵源
+			boolean predictionResistant = false;
 
 			// NID_aes_256_ctr
 			BlockCipher cipher = new AESEngine();
@@ -132,8 +199,6 @@ public class EncryptUtil {
 			boolean reSeed = false; // 是否每次取完随机数都重新刷新熵源
 			return new SP800SecureRandomBuilder(source, predictionResistant)
 					.setEntropyBitsRequired(entropyBitesRequired).buildCTR(cipher, cipherLen, nonce, reSeed);
-		} catch (NoSuchAlgorithmException e) {
-			LogUtil.e(TAG, "NoSuchAlgorithmException");
 		} catch (Throwable e) {
 			// 如果没有引入bc库，会报类找不到的错误，需要捕获异常，否则会导致应用crash
 			if (isLogError) {
@@ -144,16 +209,6 @@ public class EncryptUtil {
 		return source;
 	}
 
-	private static byte[] generateSecureRandomNew(int byteSize) {
-		SecureRandom secureRandom = genSecureRandomNew();
-		if (secureRandom == null) {
-			return new byte[0];
-		}
-		byte[] bytes = new byte[byteSize];
-		secureRandom.nextBytes(bytes);
-		return bytes;
-	}
-
 	public static boolean isBouncycastleFlag() {
 		return bouncycastleFlag;
 	}
@@ -171,15 +226,25 @@ public class EncryptUtil {
 	 * @throws Exception 加载公钥时产生的异常
 	 */
 	public static RSAPublicKey getPublicKey(String publicKeyStr) {
+		return getPublicKey(publicKeyStr, TextCodec.BASE64_DEFAULT);
+	}
 
-		byte[] publicKey;
-		try {
-			publicKey = Base64.decode(publicKeyStr, Base64.DEFAULT);
-		} catch (IllegalArgumentException e) {
-			LogUtil.e(TAG, "base64 decode IllegalArgumentException");
+	/**
+	 * 从指定编码的字符串中加载公钥
+	 *
+	 * @param publicKeyStr 公钥数据字符串
+	 * @param codec        公钥编码
+	 * @return RSAPublicKey 公钥
+	 */
+	public static RSAPublicKey getPublicKey(String publicKeyStr, TextCodec codec) {
+		if (codec == null) {
+			LogUtil.e(TAG, "codec is null");
 			return null;
-		} catch (Exception e) {
-			LogUtil.e(TAG, "base64 decode Exception" + e.getMessage());
+		}
+		byte[] publicKey;
+		publicKey = codec.decode(publicKeyStr);
+		if (publicKey.length == 0) {
+			LogUtil.e(TAG, "base64 decode failed");
 			return null;
 		}
 		try {
@@ -198,14 +263,24 @@ public class EncryptUtil {
 	 * @param privateKeyStr 密钥字符串（经过base64编码）
 	 */
 	public static PrivateKey getPrivateKey(String privateKeyStr) {
-		byte[] privatekey;
-		try {
-			privatekey = Base64.decode(privateKeyStr, Base64.DEFAULT);
-		} catch (IllegalArgumentException e) {
-			LogUtil.e(TAG, "base64 decode IllegalArgumentException");
+		return getPrivateKey(privateKeyStr, TextCodec.BASE64_DEFAULT);
+	}
+
+	/**
+	 * 从指定编码的字符串中得到私钥
+	 *
+	 * @param privateKeyStr 密钥字符串
+	 * @param codec         密钥编码
+	 */
+	public static PrivateKey getPrivateKey(String privateKeyStr, TextCodec codec) {
+		if (codec == null) {
+			LogUtil.e(TAG, "codec is null");
 			return null;
-		} catch (Exception e) {
-			LogUtil.e(TAG, "base64 decode Exception" + e.getMessage());
+		}
+		byte[] privatekey;
+		privatekey = codec.decode(privateKeyStr);
+		if (privatekey.length == 0) {
+			LogUtil.e(TAG, "base64 decode failed");
 			return null;
 		}
 		try {
@@ -217,4 +292,17 @@ public class EncryptUtil {
 		}
 		return null;
 	}
+
+	private static final class CachedRandom {
+		private final SecureRandom random;
+		private final boolean isBouncycastle;
+		private final long seedTime;
+		private long generatedBytes;
+
+		CachedRandom(SecureRandom random, boolean isBouncycastle, long seedTime) {
+			this.random = random;
+			this.isBouncycastle = isBouncycastle;
+			this.seedTime = seedTime;
+		}
+	}
 }
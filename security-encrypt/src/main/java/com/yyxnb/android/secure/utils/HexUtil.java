@@ -3,7 +3,7 @@ package com.yyxnb.android.secure.utils;
 import android.text.TextUtils;
 
 import java.io.UnsupportedEncodingException;
-import java.util.Locale;
+import java.nio.CharBuffer;
 
 /**
  * 常用十六进制转换工具类
@@ -36,16 +36,25 @@ public final class HexUtil {
 		if (null == bytes || bytes.length == 0) {
 			return EMPTY;
 		}
+		return TextCodec.HEX.encode(bytes);
+	}
 
-		StringBuilder sb = new StringBuilder();
-		for (byte aByte : bytes) {
-			String hex = Integer.toHexString(0xFF & aByte);
-			if (hex.length() == 1) {
-				sb.append('0');
-			}
-			sb.append(hex);
+	/**
+	 * 字节数组的一部分转换为十六进制字符，写入调用方提供的字符数组，不产生中间对象
+	 *
+	 * @param bytes     字节数组
+	 * @param offset    起始位置
+	 * @param len       长度
+	 * @param dst       输出字符数组，剩余长度不少于 len * 2
+	 * @param dstOffset 输出起始位置
+	 * @return 写入的字符数，参数不合法时返回-1
+	 */
+	public static int byteArray2HexChars(byte[] bytes, int offset, int len, char[] dst, int dstOffset) {
+		if (bytes == null || dst == null || offset < 0 || len < 0 || dstOffset < 0
+				|| bytes.length - offset < len || dst.length - dstOffset < len * 2L) {
+			return -1;
 		}
-		return sb.toString();
+		return TextCodec.HEX.encode(bytes, offset, len, dst, dstOffset);
 	}
 
 	/**
@@ -69,35 +78,56 @@ public final class HexUtil {
 	}
 
 	/**
-	 * 十六进制形式字符串转换为字节数组
+	 * 十六进制形式字符串转换为字节数组，大小写均可，长度为奇数时忽略最后一个字符
 	 *
 	 * @param str 字符串
-	 * @return byte[] 字节数组
+	 * @return byte[] 字节数组，包含非十六进制字符时返回空数组
 	 */
 	public static byte[] hexStr2ByteArray(String str) {
 		if (TextUtils.isEmpty(str)) {
 			return new byte[0];
 		}
-		try {
-			str = str.toUpperCase(Locale.ENGLISH);
-		} catch (Throwable throwable) {
-			LogUtil.e(TAG, "hex string toUpperCase exception : " + throwable.getMessage());
-			return new byte[0];
-		}
-		byte[] bytes = new byte[str.length() / 2];
-		byte[] source;
-		try {
-			source = str.getBytes("UTF-8");
-			for (int i = 0; i < bytes.length; ++i) {
-				byte bh = Byte.decode("0x" + new String(new byte[]{source[i * 2]}, "UTF-8")).byteValue();
-				bh = (byte) (bh << 4);
-				byte bl = Byte.decode("0x" + new String(new byte[]{source[i * 2 + 1]}, "UTF-8")).byteValue();
-				bytes[i] = (byte) (bh ^ bl);
-			}
-		} catch (UnsupportedEncodingException | NumberFormatException e) {
-			LogUtil.e(TAG, "hex string 2 byte array exception : " + e.getMessage());
+		int len = str.length() & ~1;
+		byte[] bytes = new byte[len / 2];
+		if (TextCodec.HEX.decode(str, 0, len, bytes, 0) < 0) {
+			LogUtil.e(TAG, "hex string 2 byte array: invalid hex character");
 			return new byte[0];
 		}
 		return bytes;
 	}
+
+	/**
+	 * 十六进制字符解码到调用方提供的字节数组，不产生中间对象，非法输入不抛异常
+	 *
+	 * @param src       十六进制字符，大小写均可
+	 * @param offset    起始位置
+	 * @param len       字符数，必须为偶数
+	 * @param dst       输出字节数组，剩余长度不少于 len / 2
+	 * @param dstOffset 输出起始位置
+	 * @return 写入的字节数，参数或字符不合法时返回-1
+	 */
+	public static int hexStr2ByteArray(CharSequence src, int offset, int len, byte[] dst, int dstOffset) {
+		if (src == null || dst == null || offset < 0 || len < 0 || dstOffset < 0
+				|| src.length() - offset < len || dst.length - dstOffset < len / 2) {
+			return -1;
+		}
+		return TextCodec.HEX.decode(src, offset, len, dst, dstOffset);
+	}
+
+	/**
+	 * 十六进制字符数组解码到调用方提供的字节数组
+	 *
+	 * @param src       十六进制字符数组
+	 * @param offset    起始位置
+	 * @param len       字符数，必须为偶数
+	 * @param dst       输出字节数组，剩余长度不少于 len / 2
+	 * @param dstOffset 输出起始位置
+	 * @return 写入的字节数，参数或字符不合法时返回-1
+	 */
+	public static int hexChars2ByteArray(char[] src, int offset, int len, byte[] dst, int dstOffset) {
+		if (src == null) {
+			return -1;
+		}
+		return hexStr2ByteArray(CharBuffer.wrap(src), offset, len, dst, dstOffset);
+	}
 }
@@ -0,0 +1,275 @@
+package com.yyxnb.android.secure.utils;
+
+import java.security.SecureRandom;
+import java.security.SecureRandomSpi;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 预生成安全随机数的环形缓冲池
+ * <p>
+ * 低优先级后台线程预先生成随机数放入环形缓冲区，IV、盐值、密钥等短随机数直接从池中取用，
+ * 避免突发请求时逐次调用生成器的开销。
+ * <ul>
+ *     <li>每个槽位{@link #SLOT_SIZE}字节，一次请求独占一个槽位，取走后槽位置空，保证同一份随机数只会被使用一次</li>
+ *     <li>取出的字节拷贝给调用方后槽位数据立即清零</li>
+ *     <li>池为空或请求长度超过槽位大小时返回false，由调用方直接生成</li>
+ *     <li>取用过程无锁，后台线程只在空槽位写入</li>
+ * </ul>
+ * 通过{@link EncryptUtil#setRandomPoolEnabled(boolean)}开启后，{@link EncryptUtil#generateSecureRandom(int)}自动使用。
+ *
+ * @author yyx
+ * @date 2023/10/15
+ */
+public final class RandomPool {
+
+	private static final String TAG = "RandomPool";
+
+	/**
+	 * 每个槽位的字节数，覆盖常见的IV（12/16字节）、盐值和AES密钥（16/32字节）
+	 */
+	public static final int SLOT_SIZE = 32;
+
+	/**
+	 * 默认槽位个数
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/**
+	 * 后台线程的最长休眠时间，防止唤醒信号丢失
+	 */
+	private static final long REFILL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+	/**
+	 * 后台线程每次批量生成的槽位个数
+	 */
+	private static final int REFILL_BATCH_SLOTS = 32;
+
+	private final AtomicReferenceArray<byte[]> slots;
+
+	private final int capacity;
+
+	/**
+	 * 下一个要取用的序号
+	 */
+	private final AtomicLong head = new AtomicLong();
+
+	/**
+	 * 下一个要填充的序号，只有后台线程修改
+	 */
+	private final AtomicLong tail = new AtomicLong();
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicBoolean refillRequested = new AtomicBoolean();
+
+	private final Thread refillThread;
+
+	private final SecureRandom secureRandom = new PooledSecureRandom();
+
+	private volatile boolean running = true;
+
+	RandomPool(int capacity) {
+		this.capacity = capacity;
+		this.slots = new AtomicReferenceArray<>(capacity);
+		this.refillThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				refillLoop();
+			}
+		}, "RandomPool-refill");
+		refillThread.setDaemon(true);
+		refillThread.setPriority(Thread.MIN_PRIORITY);
+		refillThread.start();
+	}
+
+	/**
+	 * 从池中取随机数
+	 *
+	 * @param output 输出数组
+	 * @param offset 起始位置
+	 * @param len    长度，不超过{@link #SLOT_SIZE}
+	 * @return 成功返回true，池为空、已关闭或长度超过槽位大小时返回false，长度超过槽位大小不计入未命中
+	 */
+	public boolean take(byte[] output, int offset, int len) {
+		if (len > SLOT_SIZE) {
+			return false;
+		}
+		if (!running) {
+			missCount.incrementAndGet();
+			return false;
+		}
+		while (true) {
+			long h = head.get();
+			if (h >= tail.get()) {
+				missCount.incrementAndGet();
+				requestRefill();
+				return false;
+			}
+			if (!head.compareAndSet(h, h + 1)) {
+				continue;
+			}
+			byte[] slot = slots.getAndSet((int) (h % capacity), null);
+			if (slot == null) {
+				// 关闭时被清空
+				missCount.incrementAndGet();
+				return false;
+			}
+			System.arraycopy(slot, 0, output, offset, len);
+			Arrays.fill(slot, (byte) 0);
+			hitCount.incrementAndGet();
+			if (tail.get() - h - 1 < capacity / 2) {
+				requestRefill();
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * 以SecureRandom的形式使用池，供KeyPairGenerator等需要SecureRandom参数的接口使用
+	 * <p>
+	 * 短请求从池中取，长请求和池为空时直接生成。
+	 *
+	 * @return SecureRandom
+	 */
+	public SecureRandom getSecureRandom() {
+		return secureRandom;
+	}
+
+	/**
+	 * 当前可用的槽位个数
+	 *
+	 * @return 可用槽位个数
+	 */
+	public int getAvailable() {
+		if (!running) {
+			return 0;
+		}
+		return (int) Math.max(0, tail.get() - head.get());
+	}
+
+	/**
+	 * 从池中取到随机数的次数
+	 *
+	 * @return 命中次数
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * 池为空等原因需要直接生成的次数
+	 *
+	 * @return 未命中次数
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * 命中率
+	 *
+	 * @return 命中率，没有请求时返回0
+	 */
+	public double getHitRatio() {
+		long hits = hitCount.get();
+		long total = hits + missCount.get();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * 关闭池，停止后台线程并清零所有未使用的槽位
+	 */
+	void shutdown() {
+		running = false;
+		LockSupport.unpark(refillThread);
+		for (int i = 0; i < capacity; i++) {
+			byte[] slot = slots.getAndSet(i, null);
+			if (slot != null) {
+				Arrays.fill(slot, (byte) 0);
+			}
+		}
+	}
+
+	private void requestRefill() {
+		if (refillRequested.compareAndSet(false, true)) {
+			LockSupport.unpark(refillThread);
+		}
+	}
+
+	private void refillLoop() {
+		byte[] batch = new byte[SLOT_SIZE * REFILL_BATCH_SLOTS];
+		while (running) {
+			refillRequested.set(false);
+			try {
+				fill(batch);
+			} catch (Throwable e) {
+				LogUtil.e(TAG, "refill exception : " + e.getMessage());
+			}
+			LockSupport.parkNanos(this, REFILL_INTERVAL_NANOS);
+		}
+		Arrays.fill(batch, (byte) 0);
+	}
+
+	private void fill(byte[] batch) {
+		while (running && tail.get() - head.get() < capacity) {
+			if (!EncryptUtil.generateSecureRandomDirect(batch, 0, batch.length)) {
+				return;
+			}
+			for (int i = 0; i < REFILL_BATCH_SLOTS; i++) {
+				long t = tail.get();
+				if (t - head.get() >= capacity) {
+					break;
+				}
+				byte[] slot = Arrays.copyOfRange(batch, i * SLOT_SIZE, (i + 1) * SLOT_SIZE);
+				// 只写入空槽位，槽位还没被取走说明取用方落后，等下一轮
+				if (!slots.compareAndSet((int) (t % capacity), null, slot)) {
+					Arrays.fill(slot, (byte) 0);
+					break;
+				}
+				tail.set(t + 1);
+			}
+			Arrays.fill(batch, (byte) 0);
+		}
+		if (!running) {
+			shutdown();
+		}
+	}
+
+	private static final class PooledSecureRandom extends SecureRandom {
+
+		private static final long serialVersionUID = 1L;
+
+		PooledSecureRandom() {
+			super(new PooledSpi(), null);
+		}
+	}
+
+	private static final class PooledSpi extends SecureRandomSpi {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void engineSetSeed(byte[] seed) {
+			// 种子由生成器自行管理，忽略外部种子
+		}
+
+		@Override
+		protected void engineNextBytes(byte[] bytes) {
+			if (!EncryptUtil.generateSecureRandom(bytes, 0, bytes.length)) {
+				throw new IllegalStateException("generate secure random failed");
+			}
+		}
+
+		@Override
+		protected byte[] engineGenerateSeed(int numBytes) {
+			return new SecureRandom().generateSeed(numBytes);
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package com.yyxnb.android.secure.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+
+import com.yyxnb.android.secure.encrypt.keystore.aes.AesGcmKS;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * 导出根密钥的持久化缓存，冷启动时用一次AndroidKeyStore解密代替完整的PBKDF2导出
+ * <p>
+ * 默认关闭，调用{@link #setEnabled(boolean)}开启后，{@link RootKeyUtil}导出根密钥时先查缓存。
+ * 导出的根密钥用{@link AesGcmKS}的硬件密钥加密后保存在SharedPreferences中。
+ * 条目名只由不保密的参数（盐值、迭代次数、导出长度、算法）计算，不包含根密钥组件，
+ * 否则拿到prefs文件就能用一次SHA-256验证对组件的猜测，绕过PBKDF2的迭代次数。
+ * 加密内容为 全部参数（含组件）的摘要 + 根密钥，解密后校验摘要，组件或其他参数变化时不会命中，
+ * 重新导出后覆盖同名条目。
+ * <p>
+ * 开启后根密钥的保护强度等同于AndroidKeyStore中的密钥：能以本应用身份使用该keystore密钥的代码即可还原根密钥。
+ * 低于API 23、未调用{@link SecureConfig#init(android.app.Application)}或keystore不可用时直接导出，不缓存。
+ *
+ * <pre>
+ *     RootKeyCache.setEnabled(true);
+ *     RootKeyUtil rootKey = RootKeyUtil.newInstance(first, second, third, salt);
+ * </pre>
+ *
+ * @author yyx
+ * @date 2023/10/17
+ */
+public final class RootKeyCache {
+
+	private static final String TAG = "RootKeyCache";
+
+	private static final String PREFS_NAME = "secure_root_key_cache";
+
+	/**
+	 * keystore别名，只用于本缓存
+	 */
+	private static final String KEYSTORE_ALIAS = "com.yyxnb.android.secure.root_key_cache";
+
+	private static final String DIGEST_DOMAIN = "RootKeyCache/1";
+
+	private static final String NAME_DOMAIN = "RootKeyCache/name/1";
+
+	private static final String PBKDF2_SHA1 = "PBKDF2WithHmacSHA1";
+
+	private static final String PBKDF2_SHA256 = "PBKDF2WithHmacSHA256";
+
+	private static final int DIGEST_LEN = 32;
+
+	private static volatile boolean sEnabled = false;
+
+	private RootKeyCache() {
+	}
+
+	/**
+	 * 开启或关闭缓存，关闭时不删除已保存的条目
+	 *
+	 * @param enabled 是否开启
+	 */
+	public static void setEnabled(boolean enabled) {
+		sEnabled = enabled;
+	}
+
+	public static boolean isEnabled() {
+		return sEnabled;
+	}
+
+	/**
+	 * 删除所有缓存条目，如根密钥组件轮换后清理旧条目
+	 */
+	public static void clear() {
+		SharedPreferences prefs = getPreferences();
+		if (prefs != null) {
+			prefs.edit().clear().apply();
+		}
+	}
+
+	/**
+	 * 带缓存的{@link BaseKeyUtil#exportRootKey(String, String, String, byte[], boolean)}，导出长度16，迭代次数10000
+	 *
+	 * @param first    第一段 Hex String 形式根密钥组件（长度至少32）
+	 * @param second   第二段 Hex String 形式根密钥组件（长度至少32）
+	 * @param third    第三段 Hex String 形式根密钥组件（长度至少32）
+	 * @param salt     盐值，长度最少16
+	 * @param isSHA256 是否使用SHA256
+	 * @return 根密钥
+	 */
+	public static byte[] exportRootKey(String first, String second, String third, byte[] salt, boolean isSHA256) {
+		return exportRootKey(first, second, third, salt, BaseKeyUtil.ITERATION_COUNT, BaseKeyUtil.ROOT_KEY_LEN,
+				isSHA256);
+	}
+
+	/**
+	 * 带缓存的{@link BaseKeyUtil#exportRootKey(String, String, String, byte[], int, int, boolean)}，
+	 * 缓存未开启或不可用时直接导出
+	 *
+	 * @param first     第一段 Hex String 形式根密钥组件（长度至少32）
+	 * @param second    第二段 Hex String 形式根密钥组件（长度至少32）
+	 * @param third     第三段 Hex String 形式根密钥组件（长度至少32）
+	 * @param salt      盐值，长度最少16
+	 * @param iteration 迭代次数
+	 * @param exportLen 导出长度，16或者32
+	 * @param isSHA256  是否使用SHA256
+	 * @return 根密钥
+	 */
+	public static byte[] exportRootKey(String first, String second, String third, byte[] salt, int iteration,
+									   int exportLen, boolean isSHA256) {
+		SharedPreferences prefs = sEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? getPreferences() : null;
+		if (prefs == null) {
+			return BaseKeyUtil.exportRootKey(first, second, third, salt, iteration, exportLen, isSHA256);
+		}
+		byte[] digest = digest(first, second, third, salt, iteration, exportLen, isSHA256);
+		if (digest.length != DIGEST_LEN) {
+			return BaseKeyUtil.exportRootKey(first, second, third, salt, iteration, exportLen, isSHA256);
+		}
+		String name = entryName(salt, iteration, exportLen, isSHA256);
+		if (name == null) {
+			return BaseKeyUtil.exportRootKey(first, second, third, salt, iteration, exportLen, isSHA256);
+		}
+		byte[] cached = load(prefs, name, digest, exportLen);
+		if (cached != null) {
+			LogUtil.i(TAG, "exportRootKey: cache hit");
+			return cached;
+		}
+		byte[] rootKey = BaseKeyUtil.exportRootKey(first, second, third, salt, iteration, exportLen, isSHA256);
+		if (rootKey != null && rootKey.length == exportLen) {
+			save(prefs, name, digest, rootKey);
+		}
+		return rootKey;
+	}
+
+	private static byte[] load(SharedPreferences prefs, String name, byte[] digest, int exportLen) {
+		String wrapped = prefs.getString(name, null);
+		if (wrapped == null) {
+			return null;
+		}
+		byte[] plain = AesGcmKS.decrypt(KEYSTORE_ALIAS, HexUtil.hexStr2ByteArray(wrapped));
+		try {
+			if (plain.length == DIGEST_LEN + exportLen
+					&& MessageDigest.isEqual(Arrays.copyOf(plain, DIGEST_LEN), digest)) {
+				return Arrays.copyOfRange(plain, DIGEST_LEN, plain.length);
+			}
+		} finally {
+			Arrays.fill(plain, (byte) 0);
+		}
+		// 组件变化、keystore密钥丢失（如用户清除了锁屏）或条目被篡改，重新导出后覆盖
+		LogUtil.w(TAG, "load: cache entry does not match, derive again");
+		prefs.edit().remove(name).apply();
+		return null;
+	}
+
+	private static void save(SharedPreferences prefs, String name, byte[] digest, byte[] rootKey) {
+		byte[] plain = new byte[DIGEST_LEN + rootKey.length];
+		System.arraycopy(digest, 0, plain, 0, DIGEST_LEN);
+		System.arraycopy(rootKey, 0, plain, DIGEST_LEN, rootKey.length);
+		byte[] wrapped = AesGcmKS.encrypt(KEYSTORE_ALIAS, plain);
+		Arrays.fill(plain, (byte) 0);
+		if (wrapped.length == 0) {
+			LogUtil.e(TAG, "save: keystore encrypt failed");
+			return;
+		}
+		prefs.edit().putString(name, HexUtil.byteArray2HexStr(wrapped)).apply();
+	}
+
+	/**
+	 * 条目名，只使用不保密的参数
+	 */
+	private static String entryName(byte[] salt, int iteration, int exportLen, boolean isSHA256) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			update(digest, NAME_DOMAIN.getBytes("UTF-8"));
+			updateParams(digest, salt, iteration, exportLen, isSHA256);
+			return HexUtil.byteArray2HexStr(digest.digest());
+		} catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+			LogUtil.e(TAG, "entryName exception : " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * 全部导出参数的摘要，只保存在加密内容中，各字段带长度前缀
+	 */
+	private static byte[] digest(String first, String second, String third, byte[] salt, int iteration,
+								 int exportLen, boolean isSHA256) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			update(digest, DIGEST_DOMAIN.getBytes("UTF-8"));
+			for (String comp : new String[]{first, second, third}) {
+				update(digest, comp == null ? new byte[0] : comp.getBytes("UTF-8"));
+			}
+			updateParams(digest, salt, iteration, exportLen, isSHA256);
+			return digest.digest();
+		} catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+			LogUtil.e(TAG, "digest exception : " + e.getMessage());
+			return new byte[0];
+		}
+	}
+
+	private static void updateParams(MessageDigest digest, byte[] salt, int iteration, int exportLen,
+									 boolean isSHA256) throws UnsupportedEncodingException {
+		update(digest, (isSHA256 ? PBKDF2_SHA256 : PBKDF2_SHA1).getBytes("UTF-8"));
+		update(digest, salt == null ? new byte[0] : salt);
+		update(digest, new byte[]{(byte) (iteration >>> 24), (byte) (iteration >>> 16),
+				(byte) (iteration >>> 8), (byte) iteration, (byte) exportLen});
+	}
+
+	private static void update(MessageDigest digest, byte[] field) {
+		int len = field.length;
+		digest.update(new byte[]{(byte) (len >>> 24), (byte) (len >>> 16), (byte) (len >>> 8), (byte) len});
+		digest.update(field);
+	}
+
+	private static SharedPreferences getPreferences() {
+		Context context = SecureConfig.getInstance().getContext();
+		if (context == null) {
+			return null;
+		}
+		return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+	}
+}
@@ -3,11 +3,40 @@ package com.yyxnb.android.secure.utils;
 import android.annotation.SuppressLint;
 import android.os.Build;
 
+import com.yyxnb.android.secure.metrics.CryptoMetrics;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
 /**
  * 根密钥导出工具
  * 根据三段根密钥组件和一段盐值，使用PBKDF算法导出根密钥对象，用于对工作密钥进行加解密
+ * <p>
+ * 导出使用10000次迭代的PBKDF2，低端机上可能需要几百毫秒。可以在Application启动时调用
+ * {@link #prepareAsync(String, String, String, byte[])}提前在后台线程导出，之后以相同参数调用
+ * {@link #newInstance(String, String, String, byte[])}时直接取得结果，导出尚未完成时等待，尚未开始时在当前线程执行。
+ * 导出耗时和等待耗时通过{@link CryptoMetrics}以{@link CryptoMetrics.Operation#KEY_DERIVATION}上报，
+ * 算法分别为"RootKey"和"RootKey:wait"。
  *
  * <pre>
+ *     // Application.onCreate
+ *     RootKeyUtil.prepareAsync(first, second, third, salt);
+ *     // 首个页面
+ *     RootKeyUtil rootKey = RootKeyUtil.newInstance(first, second, third, salt);
  * </pre>
  *
  * @author yyx
@@ -15,8 +44,33 @@ import android.os.Build;
  */
 public class RootKeyUtil {
 	private static final String TAG = RootKeyUtil.class.getSimpleName();
+
+	private static final String METRICS_ALGORITHM = "RootKey";
+
+	private static final String METRICS_WAIT_ALGORITHM = "RootKey:wait";
+
+	/**
+	 * 参数摘要 -> 提前导出的任务，不以明文保存根密钥组件
+	 */
+	private static final Map<String, DerivationTask> PREPARED = new ConcurrentHashMap<>();
+
+	private static volatile ExecutorService sExecutor;
+
 	private byte[] rootKey = null;
 
+	/**
+	 * 提前导出完成的回调
+	 */
+	public interface Callback {
+
+		/**
+		 * 在导出线程上调用，导出前已完成时在注册的线程上调用
+		 *
+		 * @param rootKey 导出的根密钥，参数错误导致导出失败时为null
+		 */
+		void onPrepared(RootKeyUtil rootKey);
+	}
+
 	private RootKeyUtil() {
 	}
 
@@ -30,9 +84,7 @@ public class RootKeyUtil {
 	 * @return 导出的根密钥
 	 */
 	public static RootKeyUtil newInstance(String firstRootKeyComp, String secondRootKeyComp, String thirdRootKeyComp, String salt) {
-		RootKeyUtil keyObj = new RootKeyUtil();
-		keyObj.initRootKey(firstRootKeyComp, secondRootKeyComp, thirdRootKeyComp, salt);
-		return keyObj;
+		return newInstance(firstRootKeyComp, secondRootKeyComp, thirdRootKeyComp, HexUtil.hexStr2ByteArray(salt));
 	}
 
 	/**
@@ -45,13 +97,167 @@ public class RootKeyUtil {
 	 * @return 导出的根密钥
 	 */
 	public static RootKeyUtil newInstance(String firstRootKeyComp, String secondRootKeyComp, String thirdRootKeyComp, byte[] salt) {
+		if (!PREPARED.isEmpty()) {
+			String id = derivationId(firstRootKeyComp, secondRootKeyComp, thirdRootKeyComp, salt);
+			DerivationTask task = id.isEmpty() ? null : PREPARED.get(id);
+			if (task != null) {
+				return join(task);
+			}
+		}
+		return derive(firstRootKeyComp, secondRootKeyComp, thirdRootKeyComp, salt);
+	}
+
+	/**
+	 * 在后台线程提前导出根密钥，盐值为hex形式
+	 *
+	 * @param firstRootKeyComp  第一段根密钥
+	 * @param secondRootKeyComp 第二段根密钥
+	 * @param thirdRootKeyComp  第三代根密钥
+	 * @param salt              盐值，hex形式，不低于32字节
+	 * @return 导出结果，参数错误时get()抛出ExecutionException
+	 */
+	public static Future<RootKeyUtil> prepareAsync(String firstRootKeyComp, String secondRootKeyComp,
+												   String thirdRootKeyComp, String salt) {
+		return prepareAsync(firstRootKeyComp, secondRootKeyComp, thirdRootKeyComp, HexUtil.hexStr2ByteArray(salt),
+				null, null);
+	}
+
+	/**
+	 * 在后台线程提前导出根密钥
+	 *
+	 * @param firstRootKeyComp  第一段根密钥
+	 * @param secondRootKeyComp 第二段根密钥
+	 * @param thirdRootKeyComp  第三代根密钥
+	 * @param salt              盐值，不低于16字节
+	 * @return 导出结果，参数错误时get()抛出ExecutionException
+	 */
+	public static Future<RootKeyUtil> prepareAsync(String firstRootKeyComp, String secondRootKeyComp,
+												   String thirdRootKeyComp, byte[] salt) {
+		return prepareAsync(firstRootKeyComp, secondRootKeyComp, thirdRootKeyComp, salt, null, null);
+	}
+
+	/**
+	 * 在后台线程提前导出根密钥，相同参数重复调用时返回同一个任务
+	 *
+	 * @param firstRootKeyComp  第一段根密钥
+	 * @param secondRootKeyComp 第二段根密钥
+	 * @param thirdRootKeyComp  第三代根密钥
+	 * @param salt              盐值，不低于16字节
+	 * @param callback          导出完成的回调，可以为null
+	 * @param executor          执行导出的executor，为null时使用内置的低优先级后台线程
+	 * @return 导出结果，参数错误时get()抛出ExecutionException
+	 */
+	public static Future<RootKeyUtil> prepareAsync(final String firstRootKeyComp, final String secondRootKeyComp,
+												   final String thirdRootKeyComp, byte[] salt,
+												   Callback callback, Executor executor) {
+		final byte[] saltCopy = salt == null ? null : salt.clone();
+		String id = derivationId(firstRootKeyComp, secondRootKeyComp, thirdRootKeyComp, saltCopy);
+		DerivationTask task = id.isEmpty() ? null : PREPARED.get(id);
+		if (task == null) {
+			DerivationTask created = new DerivationTask(new Callable<RootKeyUtil>() {
+				@Override
+				public RootKeyUtil call() {
+					return derive(firstRootKeyComp, secondRootKeyComp, thirdRootKeyComp, saltCopy);
+				}
+			});
+			// 无法计算参数摘要时只在后台执行，不供newInstance复用
+			task = id.isEmpty() ? null : PREPARED.putIfAbsent(id, created);
+			if (task == null) {
+				task = created;
+				try {
+					(executor == null ? getExecutor() : executor).execute(task);
+				} catch (RejectedExecutionException e) {
+					// 留给第一个newInstance调用方在当前线程执行
+					LogUtil.e(TAG, "prepareAsync: executor rejected");
+				}
+			}
+		}
+		if (callback != null) {
+			task.addCallback(callback);
+		}
+		return task;
+	}
+
+	/**
+	 * 释放所有提前导出的结果，之后newInstance重新同步导出
+	 */
+	public static void clearPrepared() {
+		PREPARED.clear();
+	}
+
+	private static RootKeyUtil derive(String first, String second, String third, byte[] salt) {
 		RootKeyUtil keyObj = new RootKeyUtil();
-		keyObj.initRootKey(firstRootKeyComp, secondRootKeyComp, thirdRootKeyComp, salt);
+		keyObj.initRootKey(first, second, third, salt);
 		return keyObj;
 	}
 
-	private void initRootKey(String first, String second, String third, String salt) {
-		initRootKey(first, second, third, HexUtil.hexStr2ByteArray(salt));
+	/**
+	 * 取提前导出的结果：已完成时直接返回，正在执行时等待，尚未开始时在当前线程执行
+	 */
+	private static RootKeyUtil join(DerivationTask task) {
+		long start = task.isDone() ? 0 : MetricsUtil.start();
+		// 已开始或已完成时run()不做任何事
+		task.run();
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					RootKeyUtil result = task.get();
+					MetricsUtil.onSuccess(CryptoMetrics.Operation.KEY_DERIVATION, METRICS_WAIT_ALGORITHM, 0, start);
+					return result;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static String derivationId(String first, String second, String third, byte[] salt) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (String comp : new String[]{first, second, third}) {
+				byte[] bytes = comp == null ? new byte[0] : comp.getBytes("UTF-8");
+				digest.update((byte) (bytes.length >>> 8));
+				digest.update((byte) bytes.length);
+				digest.update(bytes);
+			}
+			if (salt != null) {
+				digest.update(salt);
+			}
+			return HexUtil.byteArray2HexStr(digest.digest());
+		} catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+			LogUtil.e(TAG, "derivationId exception : " + e.getMessage());
+			return "";
+		}
+	}
+
+	private static ExecutorService getExecutor() {
+		if (sExecutor == null) {
+			synchronized (RootKeyUtil.class) {
+				if (sExecutor == null) {
+					sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, TAG);
+							thread.setDaemon(true);
+							thread.setPriority(Thread.MIN_PRIORITY);
+							return thread;
+						}
+					});
+				}
+			}
+		}
+		return sExecutor;
 	}
 
 
@@ -75,12 +281,76 @@ public class RootKeyUtil {
 
 	@SuppressLint("NewApi")
 	private void initRootKey(String first, String second, String third, byte[] salt) {
-		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
-			LogUtil.i(TAG, "initRootKey: sha1");
-			rootKey = BaseKeyUtil.exportRootKey(first, second, third, salt, false);
+		long start = MetricsUtil.start();
+		try {
+			if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+				LogUtil.i(TAG, "initRootKey: sha1");
+				rootKey = RootKeyCache.exportRootKey(first, second, third, salt, false);
+			} else {
+				LogUtil.i(TAG, "initRootKey: sha256");
+				rootKey = RootKeyCache.exportRootKey(first, second, third, salt, true);
+			}
+		} catch (RuntimeException e) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEY_DERIVATION, METRICS_ALGORITHM, e, start);
+			throw e;
+		}
+		if (rootKey == null || rootKey.length == 0) {
+			MetricsUtil.onFailure(CryptoMetrics.Operation.KEY_DERIVATION, METRICS_ALGORITHM, null, start);
 		} else {
-			LogUtil.i(TAG, "initRootKey: sha256");
-			rootKey = BaseKeyUtil.exportRootKey(first, second, third, salt, true);
+			MetricsUtil.onSuccess(CryptoMetrics.Operation.KEY_DERIVATION, METRICS_ALGORITHM, 0, start);
+		}
+	}
+
+	/**
+	 * 支持完成回调的导出任务
+	 */
+	private static final class DerivationTask extends FutureTask<RootKeyUtil> {
+
+		private final List<Callback> callbacks = new ArrayList<>();
+
+		private boolean finished;
+
+		DerivationTask(Callable<RootKeyUtil> callable) {
+			super(callable);
+		}
+
+		void addCallback(Callback callback) {
+			synchronized (this) {
+				if (!finished) {
+					callbacks.add(callback);
+					return;
+				}
+			}
+			deliver(callback);
+		}
+
+		@Override
+		protected void done() {
+			List<Callback> pending;
+			synchronized (this) {
+				finished = true;
+				pending = new ArrayList<>(callbacks);
+				callbacks.clear();
+			}
+			for (Callback callback : pending) {
+				deliver(callback);
+			}
+		}
+
+		private void deliver(Callback callback) {
+			RootKeyUtil result = null;
+			try {
+				result = get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				LogUtil.e(TAG, "prepareAsync exception : " + e.getCause());
+			}
+			try {
+				callback.onPrepared(result);
+			} catch (RuntimeException e) {
+				LogUtil.e(TAG, "prepareAsync callback exception : " + e.getMessage());
+			}
 		}
 	}
 }
@@ -6,6 +6,8 @@ import com.yyxnb.android.secure.encrypt.aes.AesGcm;
 /**
  * 使用根密钥对象对工作密钥使用AES/CBC 或者 AES/GCM 算法进行加解密
  * gcm模式 @RequiresApi(api = Build.VERSION_CODES.KITKAT)
+ * <p>
+ * 每次调用都会重新解密工作密钥，同一工作密钥需要反复使用时改用{@link WorkKeyHolder}
  *
  * <pre>
  * </pre>
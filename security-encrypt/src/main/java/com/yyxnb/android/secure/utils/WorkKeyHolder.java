@@ -0,0 +1,327 @@
+package com.yyxnb.android.secure.utils;
+
+import android.text.TextUtils;
+
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 工作密钥持有者，每个加密的工作密钥只用根密钥解密一次
+ * <p>
+ * {@link WorkKeyCryptUtil}每次调用都会复制根密钥并重新解密工作密钥，按字段加解密时开销集中在这里。
+ * 本类在创建时取一次根密钥，解密后的工作密钥按加密的工作密钥缓存在内存中，
+ * 超过空闲时间未使用的在下次访问或{@link #trimIdle()}时移除。
+ * 密钥轮换时调用{@link #invalidate(String)}、{@link #invalidateAll()}或{@link #setRootKey(RootKeyUtil)}，
+ * 不再使用时调用{@link #destroy()}清零根密钥。启动时可以用{@link #preload(Collection, boolean)}批量解密。线程安全。
+ *
+ * <pre>
+ *     WorkKeyHolder holder = new WorkKeyHolder(rootKeyUtil);
+ *     holder.preload(encryptedWorkKeys, true);
+ *     String workKey = holder.decryptWorkKeyGcm(encryptedWorkKey);
+ * </pre>
+ *
+ * @author yyx
+ * @date 2023/10/17
+ */
+public final class WorkKeyHolder {
+
+	private static final String TAG = "WorkKeyHolder";
+
+	/**
+	 * 默认空闲时间
+	 */
+	public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 5 * 60 * 1000;
+
+	private static final String EMPTY = "";
+
+	private static final int MIN_KEYS_PER_TASK = 8;
+
+	private final long idleTimeoutNanos;
+
+	private final Map<String, Entry> cbcWorkKeys = new ConcurrentHashMap<>();
+
+	private final Map<String, Entry> gcmWorkKeys = new ConcurrentHashMap<>();
+
+	private volatile byte[] rootKey;
+
+	/**
+	 * 更换根密钥与放入工作密钥互斥，用旧根密钥解密的工作密钥不会出现在缓存中
+	 */
+	private final Object rootKeyLock = new Object();
+
+	private volatile long lastTrimNanos = System.nanoTime();
+
+	/**
+	 * 使用默认空闲时间
+	 *
+	 * @param rootKeyUtil 根密钥
+	 */
+	public WorkKeyHolder(RootKeyUtil rootKeyUtil) {
+		this(rootKeyUtil, DEFAULT_IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param rootKeyUtil 根密钥
+	 * @param idleTimeout 工作密钥的空闲时间，超过后需要重新解密
+	 * @param unit        空闲时间单位
+	 */
+	public WorkKeyHolder(RootKeyUtil rootKeyUtil, long idleTimeout, TimeUnit unit) {
+		this(rootKeyUtil == null ? null : rootKeyUtil.getRootKey(), idleTimeout, unit);
+	}
+
+	/**
+	 * @param rootKey     根密钥，会被复制
+	 * @param idleTimeout 工作密钥的空闲时间，超过后需要重新解密
+	 * @param unit        空闲时间单位
+	 */
+	public WorkKeyHolder(byte[] rootKey, long idleTimeout, TimeUnit unit) {
+		if (rootKey == null || idleTimeout <= 0 || unit == null) {
+			throw new IllegalArgumentException("rootKey is null or idle timeout is not positive");
+		}
+		this.rootKey = rootKey.clone();
+		this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+	}
+
+	/**
+	 * 等同于{@link WorkKeyCryptUtil#decryptWorkKey(String, RootKeyUtil)}，结果会被缓存
+	 *
+	 * @param enWorkKey 加密的工作密钥（AES/CBC）
+	 * @return 明文的工作密钥，失败返回空字符串
+	 */
+	public String decryptWorkKey(String enWorkKey) {
+		return get(enWorkKey, false);
+	}
+
+	/**
+	 * 等同于{@link WorkKeyCryptUtil#decryptWorkKeyGcm(String, RootKeyUtil)}，结果会被缓存
+	 *
+	 * @param enWorkKey 加密的工作密钥（AES/GCM）
+	 * @return 明文的工作密钥，失败返回空字符串
+	 */
+	public String decryptWorkKeyGcm(String enWorkKey) {
+		return get(enWorkKey, true);
+	}
+
+	/**
+	 * 在当前线程批量解密工作密钥，已缓存的跳过
+	 *
+	 * @param enWorkKeys 加密的工作密钥
+	 * @param gcm        是否为GCM模式加密，否则为CBC模式
+	 * @return 可用的工作密钥个数
+	 */
+	@WorkerThread
+	public int preload(Collection<String> enWorkKeys, boolean gcm) {
+		return preload(enWorkKeys, gcm, null);
+	}
+
+	/**
+	 * 批量解密工作密钥，个数较多时拆分到executor上并行处理，当前线程也参与处理并等待全部完成
+	 *
+	 * @param enWorkKeys 加密的工作密钥
+	 * @param gcm        是否为GCM模式加密，否则为CBC模式
+	 * @param executor   并行处理使用的executor，为null时在当前线程处理
+	 * @return 可用的工作密钥个数
+	 */
+	@WorkerThread
+	public int preload(Collection<String> enWorkKeys, final boolean gcm, Executor executor) {
+		if (enWorkKeys == null || enWorkKeys.isEmpty()) {
+			return 0;
+		}
+		final List<String> list = new ArrayList<>(enWorkKeys);
+		final AtomicInteger loaded = new AtomicInteger();
+		int count = list.size();
+		int tasks = executor == null ? 1 : Math.min(Runtime.getRuntime().availableProcessors(),
+				(count + MIN_KEYS_PER_TASK - 1) / MIN_KEYS_PER_TASK);
+		if (tasks <= 1) {
+			return load(list, 0, count, gcm);
+		}
+		final CountDownLatch latch = new CountDownLatch(tasks - 1);
+		int step = (count + tasks - 1) / tasks;
+		for (int t = 1; t < tasks; t++) {
+			final int from = t * step;
+			final int to = Math.min(count, from + step);
+			Runnable runnable = new Runnable() {
+				@Override
+				public void run() {
+					try {
+						loaded.addAndGet(load(list, from, to, gcm));
+					} finally {
+						latch.countDown();
+					}
+				}
+			};
+			try {
+				executor.execute(runnable);
+			} catch (RejectedExecutionException e) {
+				LogUtil.i(TAG, "preload: executor rejected, run on current thread");
+				runnable.run();
+			}
+		}
+		// 当前线程处理第一段
+		loaded.addAndGet(load(list, 0, Math.min(count, step), gcm));
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			LogUtil.e(TAG, "preload interrupted");
+			Thread.currentThread().interrupt();
+		}
+		return loaded.get();
+	}
+
+	/**
+	 * 移除一个工作密钥，下次使用时重新解密
+	 *
+	 * @param enWorkKey 加密的工作密钥
+	 */
+	public void invalidate(String enWorkKey) {
+		if (enWorkKey == null) {
+			return;
+		}
+		cbcWorkKeys.remove(enWorkKey);
+		gcmWorkKeys.remove(enWorkKey);
+	}
+
+	/**
+	 * 移除所有工作密钥
+	 */
+	public void invalidateAll() {
+		cbcWorkKeys.clear();
+		gcmWorkKeys.clear();
+	}
+
+	/**
+	 * 根密钥轮换，移除所有用旧根密钥解密的工作密钥
+	 *
+	 * @param rootKeyUtil 新的根密钥
+	 */
+	public void setRootKey(RootKeyUtil rootKeyUtil) {
+		if (rootKeyUtil == null) {
+			LogUtil.e(TAG, "setRootKey: rootKeyUtil is null");
+			return;
+		}
+		byte[] newRootKey = rootKeyUtil.getRootKey();
+		// 旧根密钥可能正被其他线程使用，不在这里清零
+		synchronized (rootKeyLock) {
+			rootKey = newRootKey;
+			invalidateAll();
+		}
+	}
+
+	/**
+	 * 移除超过空闲时间的工作密钥
+	 */
+	public void trimIdle() {
+		long now = System.nanoTime();
+		lastTrimNanos = now;
+		trimIdle(cbcWorkKeys, now);
+		trimIdle(gcmWorkKeys, now);
+	}
+
+	/**
+	 * 移除所有工作密钥并清零根密钥，之后解密都返回空字符串，正在进行的解密也返回空字符串
+	 */
+	public void destroy() {
+		byte[] old;
+		synchronized (rootKeyLock) {
+			old = rootKey;
+			rootKey = null;
+			invalidateAll();
+		}
+		if (old != null) {
+			Arrays.fill(old, (byte) 0);
+		}
+	}
+
+	/**
+	 * 缓存的工作密钥个数
+	 *
+	 * @return 个数
+	 */
+	public int size() {
+		return cbcWorkKeys.size() + gcmWorkKeys.size();
+	}
+
+	private int load(List<String> list, int from, int to, boolean gcm) {
+		int loaded = 0;
+		for (int i = from; i < to; i++) {
+			if (!TextUtils.isEmpty(get(list.get(i), gcm))) {
+				loaded++;
+			}
+		}
+		return loaded;
+	}
+
+	private String get(String enWorkKey, boolean gcm) {
+		if (TextUtils.isEmpty(enWorkKey)) {
+			LogUtil.e(TAG, "get: enWorkKey is null");
+			return EMPTY;
+		}
+		Map<String, Entry> workKeys = gcm ? gcmWorkKeys : cbcWorkKeys;
+		long now = System.nanoTime();
+		Entry entry = workKeys.get(enWorkKey);
+		if (entry != null) {
+			if (now - entry.lastAccessNanos <= idleTimeoutNanos) {
+				entry.lastAccessNanos = now;
+				return entry.workKey;
+			}
+			workKeys.remove(enWorkKey, entry);
+		}
+		byte[] root = rootKey;
+		if (root == null) {
+			LogUtil.e(TAG, "get: holder is destroyed");
+			return EMPTY;
+		}
+		String workKey = gcm ? WorkKeyCryptUtil.decryptWorkKeyGcm(enWorkKey, root)
+				: WorkKeyCryptUtil.decryptWorkKey(enWorkKey, root);
+		if (TextUtils.isEmpty(workKey)) {
+			return EMPTY;
+		}
+		// 解密期间根密钥被轮换或被destroy()清零时，结果可能来自旧根密钥或全0密钥，不缓存也不返回。
+		// destroy()先置空引用再清零，这里看到的引用未变说明解密时根密钥还是完整的；
+		// 检查和放入在同一把锁内，放入前根密钥不会再被更换
+		synchronized (rootKeyLock) {
+			if (rootKey != root) {
+				LogUtil.i(TAG, "get: root key changed during decryption");
+				return EMPTY;
+			}
+			workKeys.put(enWorkKey, new Entry(workKey, now));
+		}
+		if (now - lastTrimNanos > idleTimeoutNanos) {
+			trimIdle();
+		}
+		return workKey;
+	}
+
+	private void trimIdle(Map<String, Entry> workKeys, long now) {
+		Iterator<Entry> iterator = workKeys.values().iterator();
+		while (iterator.hasNext()) {
+			if (now - iterator.next().lastAccessNanos > idleTimeoutNanos) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private static final class Entry {
+
+		final String workKey;
+
+		volatile long lastAccessNanos;
+
+		Entry(String workKey, long lastAccessNanos) {
+			this.workKey = workKey;
+			this.lastAccessNanos = lastAccessNanos;
+		}
+	}
+}